@@ -0,0 +1,96 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.benchmarks;
+
+import gov.sandia.hemlock.classification.fusion.SumRule;
+import gov.sandia.hemlock.data.*;
+import gov.sandia.hemlock.evaluation.StratifiedCrossValidation;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for importing data sets and for the subsampling done by
+ * cross validation and bagging.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataBenchmarks
+{
+	@Param({"1000", "10000", "100000"})
+	public int numInstances;
+
+	@Param({"10", "100"})
+	public int numFeatures;
+
+	private DataSetInfo info;
+	private DataSet data;
+	private BaggingEnsemble ensemble;
+	private Hashtable<String, DataSet> savedCache;
+
+	/**
+	 * Gives access to the bootstrap sampling of EnsembleModel without
+	 * building any base classifiers.
+	 */
+	private static class BaggingEnsemble extends SumRule
+	{
+		BaggingEnsemble(DataSet data)
+		{
+			setData(data);
+			generator = new Random(1);
+		}
+	}
+
+	@Setup
+	public void setup() throws Exception
+	{
+		//the benchmarks get a cache of their own, and the shared one is put
+		//back afterwards
+		savedCache = DataImporter.cachedDataSets;
+		DataImporter.cachedDataSets = new Hashtable<String, DataSet>();
+		info = SyntheticData.generateOnDisk(numInstances, numFeatures, 2);
+		data = new DataImporter().importDataSet(info);
+		ensemble = new BaggingEnsemble(data);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		DataImporter.cachedDataSets = savedCache;
+		SyntheticData.deleteOnDisk(info);
+	}
+
+	@Benchmark
+	public DataSet importDataSet() throws Exception
+	{
+		//empty the cache so the data set is read from the disk every time
+		DataImporter.cachedDataSets.clear();
+		return new DataImporter().importDataSet(info);
+	}
+
+	@Benchmark
+	public StratifiedCrossValidation splitRecords()
+	{
+		//the constructor splits the records into folds
+		return new StratifiedCrossValidation(10, data, 1);
+	}
+
+	@Benchmark
+	public DataSet generateBag()
+	{
+		return ensemble.generateBag();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.benchmarks;
+
+import gov.sandia.hemlock.data.*;
+import gov.sandia.hemlock.evaluation.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for the ROC analysis and every diversity measure.  The
+ * predictions come from synthetic base classifiers, so no learning
+ * framework is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EvaluationBenchmarks
+{
+	@Param({"1000", "10000", "100000"})
+	public int numInstances;
+
+	@Param({"10", "50"})
+	public int numBaseClassifiers;
+
+	private ClassifiedDataSet[] cds;
+
+	@Setup
+	public void setup() throws Exception
+	{
+		DataSet data = SyntheticData.generate(numInstances, 10, 3, "");
+		cds = SyntheticData.classify(data, numBaseClassifiers, 0.7);
+	}
+
+	@Benchmark
+	public double rocGraph()
+	{
+		ROCGraph roc = new ROCGraph(cds[0], 1);
+		roc.calculateROCPoints();
+		return roc.calculateAUC();
+	}
+
+	@Benchmark
+	public double multiClassROC()
+	{
+		return new MultiClassROC(cds[0]).calculateMacroAUC();
+	}
+
+	@Benchmark
+	public double disagreement() throws Exception
+	{
+		return Diversity.disagreement(cds);
+	}
+
+	@Benchmark
+	public double yuleQ() throws Exception
+	{
+		return Diversity.yule_q(cds);
+	}
+
+	@Benchmark
+	public double correlation() throws Exception
+	{
+		return Diversity.correlation(cds);
+	}
+
+	@Benchmark
+	public double doubleFault() throws Exception
+	{
+		return Diversity.double_fault(cds);
+	}
+
+	@Benchmark
+	public double entropy() throws Exception
+	{
+		return Diversity.entropy(cds);
+	}
+
+	@Benchmark
+	public double generalDiversity() throws Exception
+	{
+		return Diversity.general_diversity(cds);
+	}
+
+	@Benchmark
+	public double coincidentFailure() throws Exception
+	{
+		return Diversity.coincident_failure(cds);
+	}
+
+	@Benchmark
+	public double difficulty() throws Exception
+	{
+		return Diversity.difficulty(cds);
+	}
+
+	@Benchmark
+	public double diversityEngine() throws Exception
+	{
+		//all of the pairwise measures from one pass
+		DiversityEngine engine = new DiversityEngine(cds);
+		engine.countPairs();
+		return engine.getDisagreement() + engine.getYuleQ() + engine.getDoubleFault();
+	}
+}
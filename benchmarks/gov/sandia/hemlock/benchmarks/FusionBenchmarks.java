@@ -0,0 +1,82 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.benchmarks;
+
+import gov.sandia.hemlock.classification.*;
+import gov.sandia.hemlock.classification.fusion.BaseClassifierSet;
+import gov.sandia.hemlock.classification.parameters.*;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for scoring a data set with each of the fusion methods.  The
+ * base classifiers are Weka naive Bayes models, which are quick to train,
+ * so the setup cost stays small.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FusionBenchmarks
+{
+	@Param({"Voting", "SumRule", "LinearRegression"})
+	public String fusion;
+
+	@Param({"1000", "10000"})
+	public int numInstances;
+
+	@Param({"5", "20"})
+	public int numBaseClassifiers;
+
+	private Model ensemble;
+	private DataSet data;
+
+	@Setup
+	public void setup() throws Exception
+	{
+		data = SyntheticData.generate(numInstances, 10, 3, "");
+
+		ModelParameters[] baseParams = new ModelParameters[numBaseClassifiers];
+		for(int i = 0; i < numBaseClassifiers; i++)
+			baseParams[i] = ModelParameters.createModelParameters(FrameworkType.weka,
+				ModelType.NaiveBayesian, new Hashtable<String,String>());
+
+		Hashtable<String,String> parameters = new Hashtable<String,String>();
+		parameters.put("EnsembleGeneration", "Bagging");
+		parameters.put("seed", "1");
+		EnsembleParameters ensembleParams = (EnsembleParameters)ModelParameters.createModelParameters(
+			FrameworkType.hemlock, ModelType.valueOf(fusion), parameters);
+		ensembleParams.setBaseModelParameters(new BaseClassifierSet(baseParams));
+
+		ensemble = new ClassifierFactory(FrameworkType.hemlock, data).createModel(ensembleParams);
+	}
+
+	@Benchmark
+	public void scoreDistributions(Blackhole bh) throws Exception
+	{
+		for(int i = 0; i < data.records.size(); i++)
+			bh.consume(ensemble.getTargetDistribution(data.records.get(i)));
+	}
+
+	@Benchmark
+	public void scoreLabels(Blackhole bh) throws Exception
+	{
+		for(int i = 0; i < data.records.size(); i++)
+			bh.consume(ensemble.getTargetValue(data.records.get(i)));
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.benchmarks;
+
+import gov.sandia.hemlock.classification.*;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.data.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Creates the synthetic data sets and predictions that the benchmarks are
+ * run against.  All data sets come from {@link StreamingDataSetGenerator}
+ * with a fixed seed, so every run sees the same data, with half of the
+ * features nominal and half continuous, and the class means shifted apart
+ * so that the models have something to learn.
+ */
+public class SyntheticData
+{
+	/**
+	 * Generates a data set in memory.
+	 *
+	 * @param numInstances Number of instances to generate.
+	 * @param numFeatures Number of features, half of them nominal.
+	 * @param numClasses Number of class labels.
+	 * @param repositoryPath Where the data set would be serialized to.
+	 * @return The generated data set.
+	 */
+	public static DataSet generate(int numInstances, int numFeatures, int numClasses, String repositoryPath)
+	{
+		return createGenerator(numInstances, numFeatures, numClasses, repositoryPath).generateDataSet();
+	}
+
+	private static StreamingDataSetGenerator createGenerator(int numInstances, int numFeatures, int numClasses, String repositoryPath)
+	{
+		StreamingDataSetGenerator dsg = new StreamingDataSetGenerator();
+		dsg.seed = 1;
+		dsg.dataSetName = "benchmark_" + numInstances + "_" + numFeatures + "_" + numClasses;
+		dsg.repositoryPath = repositoryPath;
+		dsg.numClasses = numClasses;
+		dsg.numNominalFeatures = numFeatures / 2;
+		dsg.numContinuousFeatures = numFeatures - dsg.numNominalFeatures;
+		dsg.numInstances = numInstances;
+		dsg.nominalFeaturesNumValues = new int[numFeatures];
+		dsg.mean = new double[numClasses][numFeatures];
+		dsg.std = new double[numClasses][numFeatures];
+		for(int j = 0; j < numFeatures; j++)
+		{
+			if(j < dsg.numNominalFeatures)
+				dsg.nominalFeaturesNumValues[j] = 10;
+			for(int c = 0; c < numClasses; c++)
+			{
+				dsg.mean[c][j] = 2 + (j % 5) + c;
+				dsg.std[c][j] = 2;
+			}
+		}
+		return dsg;
+	}
+
+	/**
+	 * Generates a data set and writes it to a temporary repository in
+	 * Modified C45 format so that it can be imported.  Remove it with
+	 * {@link #deleteOnDisk} when done.
+	 *
+	 * @return Information needed to import the written data set.
+	 * @throws Exception
+	 */
+	public static DataSetInfo generateOnDisk(int numInstances, int numFeatures, int numClasses) throws Exception
+	{
+		File repository = File.createTempFile("hemlock-benchmark", "");
+		repository.delete();
+		repository.mkdirs();
+		return createGenerator(numInstances, numFeatures, numClasses, repository.getAbsolutePath()).generateToDisk();
+	}
+
+	/**
+	 * Deletes a data set written by {@link #generateOnDisk} along with its
+	 * temporary repository.
+	 *
+	 * @param info Information returned by generateOnDisk.
+	 */
+	public static void deleteOnDisk(DataSetInfo info)
+	{
+		delete(new File(info.absolutePath).getParentFile());
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+		{
+			for(File child : children)
+				delete(child);
+		}
+		if(!file.delete())
+			System.err.println("Could not delete " + file);
+	}
+
+	/**
+	 * Makes predictions for a data set with several synthetic base
+	 * classifiers of the given accuracy, as input to the evaluation
+	 * benchmarks.
+	 *
+	 * @param data The labeled data to predict.
+	 * @param numModels Number of base classifiers.
+	 * @param accuracy Probability that each prediction is correct.
+	 * @return The predictions of each base classifier.
+	 * @throws Exception
+	 */
+	public static ClassifiedDataSet[] classify(DataSet data, int numModels, double accuracy) throws Exception
+	{
+		ClassifiedDataSet[] cds = new ClassifiedDataSet[numModels];
+		for(int m = 0; m < numModels; m++)
+			cds[m] = new ClassifiedDataSet(data, new NoisyModel(data.recordSchema, m, accuracy));
+		return cds;
+	}
+
+	/**
+	 * A model that predicts the true label with a fixed probability, and
+	 * otherwise a random label.  Each prediction is a function of the seed
+	 * and the record so that repeated scoring gives the same results.
+	 */
+	public static class NoisyModel implements Model
+	{
+		private final int numClasses;
+		private final int classIndex;
+		private final long seed;
+		private final double accuracy;
+
+		public NoisyModel(RecordSchema schema, long seed, double accuracy)
+		{
+			this.numClasses = schema.labels.length;
+			this.classIndex = schema.numAttributes;
+			this.seed = seed;
+			this.accuracy = accuracy;
+		}
+
+		private Random generatorFor(double[] record)
+		{
+			return new Random(seed * 31 + Arrays.hashCode(record));
+		}
+
+		public double[] getTargetDistribution(double[] record)
+		{
+			Random r = generatorFor(record);
+			int label = (r.nextDouble() < accuracy) ? (int)record[classIndex] : r.nextInt(numClasses);
+			double[] distribution = new double[numClasses];
+			double confidence = 0.5 + 0.5*r.nextDouble();
+			for(int k = 0; k < numClasses; k++)
+				distribution[k] = (k == label) ? confidence : (1 - confidence)/(numClasses - 1);
+			return distribution;
+		}
+
+		public double getTargetValue(double[] record)
+		{
+			double[] distribution = getTargetDistribution(record);
+			int best = 0;
+			for(int k = 1; k < numClasses; k++)
+				if(distribution[k] > distribution[best])
+					best = k;
+			return best;
+		}
+
+		public void buildModel(ModelParameters modelParameters)
+		{
+		}
+
+		public void setData(IDataSet data)
+		{
+		}
+
+		public ModelType getModelType()
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.benchmarks;
+
+import gov.sandia.hemlock.data.*;
+import gov.sandia.hemlock.wekaInterface.WekaDataSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for converting Hemlock data sets into Weka data sets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WekaBenchmarks
+{
+	@Param({"1000", "10000", "100000"})
+	public int numInstances;
+
+	@Param({"10", "100"})
+	public int numFeatures;
+
+	private DataSet data;
+
+	@Setup
+	public void setup()
+	{
+		data = SyntheticData.generate(numInstances, numFeatures, 2, "");
+	}
+
+	@Benchmark
+	public WekaDataSet convertToWeka()
+	{
+		return new WekaDataSet(data);
+	}
+}
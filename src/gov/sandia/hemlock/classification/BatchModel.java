@@ -0,0 +1,37 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification;
+
+import java.util.ArrayList;
+
+/**
+ * A model that predicts many instances faster together than one at a
+ * time, for example by dividing them among several threads.
+ * {@link gov.sandia.hemlock.data.ClassifiedDataSet} scores such models a
+ * data set at a time.  The class label predicted by getTargetValue must be
+ * the first most probable class of the predicted distribution.
+ *
+ * @author Sean A. Gilpin
+ */
+public interface BatchModel extends Model
+{
+	/**
+	 * Predicts the class distribution of each of a set of instances.
+	 * Assumes the model has already been built.
+	 *
+	 * @param records The instances to make predictions for.
+	 * @return The distribution predicted for each instance, in the same
+	 * 	order as records.
+	 * @throws Exception
+	 */
+	public double[][] getTargetDistributions(ArrayList<double[]> records) throws Exception;
+}
@@ -14,6 +14,7 @@ package gov.sandia.hemlock.classification;
 import gov.sandia.hemlock.classification.parameters.ModelParameters;
 import gov.sandia.hemlock.core.*;
 import gov.sandia.hemlock.data.*;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
 import java.lang.reflect.*;
 
 /**
@@ -34,6 +35,8 @@ public class ClassifierFactory
 	private IDataSet cognitiveDataSet;
 	private boolean isFoldSet = false;
 	private int fold;
+	/** Fingerprint of dataSet, computed when first needed */
+	private String dataFingerprint;
 	
 	private boolean wekaSupported = false;
 	private boolean cognitiveSupported = false;
@@ -96,6 +99,95 @@ public class ClassifierFactory
 	 *
 	 */
 	public Model createModel(ModelParameters modelParameters) throws Exception
+	{
+		return createModelEntry(modelParameters).model;
+	}
+	
+	/**
+	 * Creates a model as {@link #createModel} does, looking it up in the
+	 * {@link ModelStore} once and training and storing it when it is not
+	 * found.  The training data is converted before the model is trained,
+	 * so the conversion is not counted in the training time.
+	 *
+	 * @param modelParameters Specifies the parameters for a model to be
+	 *	built.
+	 * @return The model and the time it took to train, when it was stored
+	 * 	if it was found in the store.
+	 * @throws Exception
+	 */
+	public ModelCache.Entry createModelEntry(ModelParameters modelParameters) throws Exception
+	{
+		//ensembles are not stored, but their base classifiers are
+		ModelStore store = ModelStore.getDefault();
+		String key = null;
+		if(store != null && !modelParameters.isEnsemble())
+		{
+			key = ModelStore.createKey(modelParameters, getDataFingerprint());
+			ModelCache.Entry stored = store.load(key);
+			if(stored != null)
+				return stored;
+		}
+		convertDataSet();
+		long start = System.nanoTime();
+		Model model = trainModel(modelParameters);
+		long trainTime = System.nanoTime() - start;
+		if(key != null)
+			store.store(key, model, trainTime);
+		return new ModelCache.Entry(model, trainTime);
+	}
+	
+	/**
+	 * Brings a model trained on part of the training data of this factory
+	 * up to date with the rest of it.  A model which is an 
+	 * {@link UpdateableModel} learns the new instances in place, any other
+	 * model is trained again on all of the data.
+	 *
+	 * @param model A model trained with modelParameters.
+	 * @param modelParameters The parameters the model was built with.
+	 * @param newData The instances of the training data of this factory
+	 * 	that the model has not been trained on.
+	 * @return The updated model, which is model itself when it was updated
+	 * 	in place.
+	 * @throws Exception
+	 */
+	public Model updateModel(Model model, ModelParameters modelParameters, DataSet newData) throws Exception
+	{
+		if(model instanceof UpdateableModel)
+		{
+			((UpdateableModel)model).updateModel(newData);
+			return model;
+		}
+		return createModel(modelParameters);
+	}
+	
+	/**
+	 * Sets the fingerprint of the training data when it is already known,
+	 * so that it is not computed again.
+	 *
+	 * @param fingerprint The value of getFingerprint for the training data.
+	 */
+	public void setDataFingerprint(String fingerprint)
+	{
+		this.dataFingerprint = fingerprint;
+	}
+	
+	private String getDataFingerprint() throws Exception
+	{
+		if(dataFingerprint == null)
+			dataFingerprint = dataSet.getFingerprint();
+		return dataFingerprint;
+	}
+	
+	/**
+	 * Trains a model as specified in modelParameters, without looking for
+	 * it in the {@link ModelStore}.
+	 *
+	 * @param modelParameters Specifies the parameters for a model to be
+	 *	built.
+	 * @return The resulting trained model
+	 * @throws Exception
+	 */
+	private Model trainModel(ModelParameters modelParameters) throws Exception
 	{
 		if(framework == FrameworkType.weka)
 		{
@@ -104,7 +196,9 @@ public class ClassifierFactory
 			{
 				wekaDataSet = getDataSet(framework, dataSet);
 			}
-			return createWekaModel(modelParameters);
+			Model model = createWekaModel(modelParameters);
+			HemlockMetrics.modelTrained();
+			return model;
 		}
 		else if(framework == FrameworkType.cog_foundry)
 		{
@@ -124,6 +218,22 @@ public class ClassifierFactory
 		}
 	}
 	
+	/**
+	 * Converts the training data set to the framework specific native data
+	 * set now, instead of when the first model is created.  This keeps the
+	 * cost of the conversion out of the time taken to build the first
+	 * model.
+	 *
+	 * @throws Exception
+	 */
+	public void convertDataSet() throws Exception
+	{
+		if(framework == FrameworkType.weka && wekaDataSet == null)
+			wekaDataSet = getDataSet(framework, dataSet);
+		else if(framework == FrameworkType.cog_foundry && cognitiveDataSet == null)
+			cognitiveDataSet = getDataSet(framework, dataSet);
+	}
+	
 	/**
 	 * Creates a model using the Hemlock framework.  The details of the
 	 * types of models that Hemlock can create are detailed within this
@@ -162,6 +272,31 @@ public class ClassifierFactory
 			else
 				sr.buildModel(modelParameters);
 			return sr;
+		case RandomTree:
+			gov.sandia.hemlock.classification.trees.RandomTree tree = new gov.sandia.hemlock.classification.trees.RandomTree();
+			tree.setData(dataSet);
+			tree.buildModel(modelParameters);
+			return tree;
+		case RandomForest:
+			gov.sandia.hemlock.classification.trees.RandomForest forest = new gov.sandia.hemlock.classification.trees.RandomForest();
+			forest.setData(dataSet);
+			forest.buildModel(modelParameters);
+			return forest;
+		case KNearestNeighbor:
+			gov.sandia.hemlock.classification.neighbors.KNearestNeighbor knn = new gov.sandia.hemlock.classification.neighbors.KNearestNeighbor();
+			knn.setData(dataSet);
+			knn.buildModel(modelParameters);
+			return knn;
+		case NaiveBayesian:
+			gov.sandia.hemlock.classification.bayes.NaiveBayesian nb = new gov.sandia.hemlock.classification.bayes.NaiveBayesian();
+			nb.setData(dataSet);
+			nb.buildModel(modelParameters);
+			return nb;
+		case SVM:
+			gov.sandia.hemlock.classification.linear.SVM svm = new gov.sandia.hemlock.classification.linear.SVM();
+			svm.setData(dataSet);
+			svm.buildModel(modelParameters);
+			return svm;
 		default:
 			throw new Exception ("that model is not supported");
 		}
@@ -314,13 +449,29 @@ public class ClassifierFactory
 		{
 			Class wekaDataSetClass = loadClass("gov.sandia.hemlock.wekaInterface.WekaDataSet");
 			Constructor constr = wekaDataSetClass.getConstructor(argsClass);
-			return (IDataSet) constr.newInstance(args);
+			PerformanceRecorder.begin(PerformanceRecorder.CONVERT);
+			try
+			{
+				return (IDataSet) constr.newInstance(args);
+			}
+			finally
+			{
+				PerformanceRecorder.end();
+			}
 		}
 		else if(frameworkType == FrameworkType.cog_foundry)
 		{
 			Class wekaDataSetClass = loadClass("gov.sandia.hemlock.cognitiveFoundryInterface.CognitiveDataSet");
 			Constructor constr = wekaDataSetClass.getConstructor(argsClass);
-			return (IDataSet) constr.newInstance(args);
+			PerformanceRecorder.begin(PerformanceRecorder.CONVERT);
+			try
+			{
+				return (IDataSet) constr.newInstance(args);
+			}
+			finally
+			{
+				PerformanceRecorder.end();
+			}
 		}
 		else 
 		{
@@ -20,6 +20,7 @@ import gov.sandia.hemlock.core.FrameworkType;
 import gov.sandia.hemlock.data.DataSet;
 import gov.sandia.hemlock.data.IDataSet;
 import gov.sandia.hemlock.classification.fusion.*;
+import gov.sandia.hemlock.classification.trees.CompiledTreeEnsemble;
 
 
 /**
@@ -33,13 +34,22 @@ import gov.sandia.hemlock.classification.fusion.*;
  *
  * @author Sean A. Gilpin
  */
-public abstract class EnsembleModel implements Model
+public abstract class EnsembleModel implements UpdateableModel
 {
 
-	protected DataSet dataSet;
+	/** The training data, which is not saved with the model */
+	protected transient DataSet dataSet;
 	protected Model[] baseClassifierSet;
-	protected DataSet[] outOfBagTestSets;
+	protected transient DataSet[] outOfBagTestSets;
+	/** Number of class labels of the training data */
+	protected int numClasses;
 	protected Random generator;
+	/** Time in nanoseconds spent training each base classifier, null when
+		the base classifiers were loaded */
+	protected long[] baseClassifierTrainTimes;
+	/** True while the base classifiers may also be held by the 
+		{@link ModelCache}, so they must be copied before being updated */
+	protected transient boolean baseClassifiersShared = false;
 	/** Ensemble parameters */
 	public EnsembleParameters ensembleParams;
 	
@@ -68,7 +78,7 @@ public abstract class EnsembleModel implements Model
 		{
 			baseClassifierSet = baseSet.loadModels(dataSet.info.dataSetName);			
 		}
-		
+		compileBaseClassifiers();
 	}
 	
 	/**
@@ -103,6 +113,39 @@ public abstract class EnsembleModel implements Model
 		{
 			baseClassifierSet = baseSet.loadModels(dataSet.info.dataSetName, fold);			
 		}
+		compileBaseClassifiers();
+	}
+	
+	/**
+	 * Replaces the tree and forest base classifiers with compiled node
+	 * tables, and the base classifiers with copies stored at a reduced
+	 * precision, when the ensemble parameters ask for it.  The base
+	 * classifiers themselves are not changed, as other ensembles may share
+	 * them.
+	 *
+	 * @throws Exception If a base classifier can not be compiled.
+	 */
+	protected void compileBaseClassifiers() throws Exception
+	{
+		for(int i = 0; i < baseClassifierSet.length; i++)
+			compileBaseClassifier(i);
+	}
+	
+	/**
+	 * Compiles and reduces one base classifier, as
+	 * {@link #compileBaseClassifiers} does for all of them.
+	 *
+	 * @param i The index of the base classifier.
+	 * @throws Exception If the base classifier can not be compiled.
+	 */
+	protected void compileBaseClassifier(int i) throws Exception
+	{
+		StoragePrecision precision = ensembleParams.getPrecision();
+		if(ensembleParams.getCompileTrees() && CompiledTreeEnsemble.isCompilable(baseClassifierSet[i]))
+			baseClassifierSet[i] = CompiledTreeEnsemble.compile(baseClassifierSet[i]);
+		//an ensemble would be reduced in place
+		if(precision != StoragePrecision.Full && !(baseClassifierSet[i] instanceof EnsembleModel))
+			baseClassifierSet[i] = ModelSerialization.reducePrecision(baseClassifierSet[i], precision);
 	}
 	
 	
@@ -160,6 +203,7 @@ public abstract class EnsembleModel implements Model
 	public void setData(IDataSet data)
 	{
 		dataSet = (DataSet)data;
+		numClasses = dataSet.recordSchema.labels.length;
 	}
 	
 	/**
@@ -183,4 +227,140 @@ public abstract class EnsembleModel implements Model
 	{
 		return baseClassifierSet;
 	}
+	
+	/**
+	 * The time spent training each of the base classifiers, not counting
+	 * the time spent creating their training data.
+	 *
+	 * @return Nanoseconds spent training each base classifier, or null if
+	 *	the base classifiers were loaded instead of trained.
+	 */
+	public long[] getBaseClassifierTrainTimes()
+	{
+		return baseClassifierTrainTimes;
+	}
+	
+	/**
+	 * Used by {@link BaseClassifierSet} to record how long each base
+	 * classifier took to train.
+	 *
+	 * @param trainTimes Nanoseconds spent training each base classifier.
+	 */
+	public void setBaseClassifierTrainTimes(long[] trainTimes)
+	{
+		baseClassifierTrainTimes = trainTimes;
+	}
+	
+	/**
+	 * Used by {@link BaseClassifierSet} to record that the base classifiers
+	 * may be shared with other ensembles through the {@link ModelCache}.
+	 *
+	 * @param shared True if the base classifiers may be shared.
+	 */
+	public void setBaseClassifiersShared(boolean shared)
+	{
+		baseClassifiersShared = shared;
+	}
+	
+	/**
+	 * Updates the ensemble with instances appended to its training data.
+	 * Base classifiers which are {@link UpdateableModel}s learn the new 
+	 * instances in place, the others are trained again on all of the data.
+	 * When the ensemble uses bagging, each base classifier sees each new
+	 * instance a Poisson(1) distributed number of times, which is the
+	 * online equivalent of drawing a new bootstrap sample.  Sub classes
+	 * which learn from the training data themselves update that state in
+	 * {@link #absorb}.
+	 *
+	 * @param newData The new instances, with the same schema as the data
+	 * 	this model was trained on.
+	 * @throws Exception If the model was loaded, and so no longer has its
+	 * 	training data, or if a base classifier must be trained again but
+	 * 	the base classifiers were loaded instead of built from parameters.
+	 */
+	public void updateModel(DataSet newData) throws Exception
+	{
+		if(dataSet == null)
+			throw new Exception("a loaded ensemble does not keep its training data, so it can not be updated");
+		if(baseClassifiersShared)
+		{
+			//never change models that other ensembles may be using
+			for(int i = 0; i < baseClassifierSet.length; i++)
+				baseClassifierSet[i] = ModelSerialization.copyModel(baseClassifierSet[i]);
+			baseClassifiersShared = false;
+		}
+		
+		//the caller's data set is left alone
+		ArrayList<double[]> records = new ArrayList<double[]>(dataSet.records);
+		records.addAll(newData.records);
+		dataSet = new DataSet(dataSet.recordSchema, dataSet.info, records);
+		
+		boolean bagging = ensembleParams.getEnsembleGeneration() == EnsembleParameters.EnsembleGenerationType.Bagging;
+		BaseClassifierSet baseSet = ensembleParams.getBaseModelParameters();
+		for(int i = 0; i < baseClassifierSet.length; i++)
+		{
+			if(baseClassifierSet[i] instanceof UpdateableModel)
+			{
+				DataSet trainingData = bagging ? generateOnlineBag(newData) : newData;
+				long start = System.nanoTime();
+				((UpdateableModel)baseClassifierSet[i]).updateModel(trainingData);
+				if(baseClassifierTrainTimes != null)
+					baseClassifierTrainTimes[i] += System.nanoTime() - start;
+			}
+			else
+			{
+				if(baseSet.type != BaseClassifierSetType.ModelParameters)
+					throw new Exception("base classifiers loaded from " + baseSet.path + " can not be trained again");
+				ModelParameters params = baseSet.params[i % baseSet.params.length];
+				DataSet trainingData = bagging ? generateBag() : dataSet;
+				ClassifierFactory factory = new ClassifierFactory(params.frameworkType, trainingData);
+				factory.convertDataSet();
+				long start = System.nanoTime();
+				baseClassifierSet[i] = factory.createModel(params);
+				if(baseClassifierTrainTimes != null)
+					baseClassifierTrainTimes[i] = System.nanoTime() - start;
+				//the members updated in place were compiled when they
+				//were built, and compiled members are never updateable
+				compileBaseClassifier(i);
+			}
+		}
+		
+		absorb(newData);
+	}
+	
+	/**
+	 * Called at the end of {@link #updateModel}, after the base classifiers
+	 * have been updated, so that sub classes can bring the way they combine
+	 * the base classifiers up to date.  Does nothing by default, which is
+	 * right for fixed combination rules such as voting.
+	 *
+	 * @param newData The instances that were added to the training data.
+	 * @throws Exception
+	 */
+	protected void absorb(DataSet newData) throws Exception
+	{
+	}
+	
+	/**
+	 * Resamples new instances for online bagging, repeating each instance a
+	 * Poisson(1) distributed number of times.
+	 *
+	 * @param newData The instances to resample.
+	 * @return The DataSet which contains the sampled instances.
+	 */
+	private DataSet generateOnlineBag(DataSet newData)
+	{
+		double limit = Math.exp(-1);
+		ArrayList<double[]> bag = new ArrayList<double[]>();
+		for(double[] record : newData.records)
+		{
+			double p = generator.nextDouble();
+			while(p > limit)
+			{
+				bag.add(record);
+				p *= generator.nextDouble();
+			}
+		}
+		return new DataSet(newData.recordSchema, newData.info, bag);
+	}
 }
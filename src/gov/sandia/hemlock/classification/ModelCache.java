@@ -0,0 +1,174 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification;
+
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import java.lang.ref.SoftReference;
+import java.util.*;
+
+/**
+ * Keeps recently trained base classifiers in memory so that experiments
+ * sharing a base classifier set, such as ensembles that only differ in how
+ * they combine the base classifiers, train each base classifier once.
+ * Models are found by the description of their parameters and the
+ * fingerprint of the data they were trained on, which covers the data set,
+ * the fold and any bootstrap sample.
+ * <p>
+ * At most {@link #getCapacity} models are kept, discarding the least
+ * recently used first.  The models are softly referenced, so the garbage
+ * collector may also discard them when memory runs low.  The cache is off
+ * unless the hemlock.modelCache.size system property gives a capacity,
+ * since finding a model means hashing every training set, fold and
+ * bootstrap sample, which costs more than it saves unless experiments
+ * really do share base classifiers.
+ * <p>
+ * A cached model is the same instance for every experiment that finds it,
+ * not a copy.  Models must not be changed once they are cached; ensembles
+ * built while the cache is on are marked with
+ * {@link EnsembleModel#setBaseClassifiersShared}, and copy their base
+ * classifiers before updating them.
+ *
+ * @author Sean A. Gilpin
+ */
+public class ModelCache
+{
+	/** System property holding the number of models to keep */
+	public static final String SIZE_PROPERTY = "hemlock.modelCache.size";
+	/** Number of models kept when the size property is not set, which
+		turns the cache off */
+	public static final int DEFAULT_CAPACITY = 0;
+
+	/**
+	 * A cached model along with the time it originally took to train.
+	 */
+	public static class Entry
+	{
+		public final Model model;
+		/** Nanoseconds spent training the model */
+		public final long trainTime;
+
+		public Entry(Model model, long trainTime)
+		{
+			this.model = model;
+			this.trainTime = trainTime;
+		}
+	}
+
+	private static int capacity = Integer.getInteger(SIZE_PROPERTY, DEFAULT_CAPACITY);
+
+	private static final LinkedHashMap<String, SoftReference<Entry>> entries =
+		new LinkedHashMap<String, SoftReference<Entry>>(16, 0.75f, true)
+		{
+			protected boolean removeEldestEntry(Map.Entry<String, SoftReference<ModelCache.Entry>> eldest)
+			{
+				return size() > capacity;
+			}
+		};
+
+	private static long hits = 0;
+	private static long misses = 0;
+
+	/**
+	 * Creates the key a model is cached under.
+	 *
+	 * @param modelParameters The parameters the model is built with.
+	 * @param dataFingerprint The fingerprint of the training data, from
+	 * 	{@link gov.sandia.hemlock.data.DataSet#getFingerprint}.
+	 * @return The key, or null if models with these parameters cannot be
+	 * 	cached.
+	 */
+	public static String createKey(ModelParameters modelParameters, String dataFingerprint)
+	{
+		String description = modelParameters.getDescription();
+		if(description == null)
+			return null;
+		return dataFingerprint + " " + description;
+	}
+
+	/**
+	 * @param key The key from {@link #createKey}, may be null.
+	 * @return The cached model, or null if it is not cached.
+	 */
+	public static synchronized Entry get(String key)
+	{
+		if(key == null || capacity <= 0)
+			return null;
+		SoftReference<Entry> ref = entries.get(key);
+		Entry entry = (ref == null) ? null : ref.get();
+		if(entry == null)
+		{
+			if(ref != null)
+				entries.remove(key);
+			misses++;
+		}
+		else
+			hits++;
+		return entry;
+	}
+
+	/**
+	 * Caches a newly trained model.
+	 *
+	 * @param key The key from {@link #createKey}, may be null.
+	 * @param model The trained model.
+	 * @param trainTime Nanoseconds spent training the model.
+	 */
+	public static synchronized void put(String key, Model model, long trainTime)
+	{
+		if(key == null || capacity <= 0)
+			return;
+		entries.put(key, new SoftReference<Entry>(new Entry(model, trainTime)));
+	}
+
+	/**
+	 * Discards all cached models.
+	 */
+	public static synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * @param newCapacity The number of models to keep, 0 to turn the cache
+	 * 	off.
+	 */
+	public static synchronized void setCapacity(int newCapacity)
+	{
+		capacity = newCapacity;
+		if(capacity <= 0)
+			entries.clear();
+		else
+		{
+			Iterator<String> it = entries.keySet().iterator();
+			while(entries.size() > capacity && it.hasNext())
+			{
+				it.next();
+				it.remove();
+			}
+		}
+	}
+
+	public static synchronized int getCapacity()
+	{
+		return capacity;
+	}
+
+	public static synchronized long getHits()
+	{
+		return hits;
+	}
+
+	public static synchronized long getMisses()
+	{
+		return misses;
+	}
+}
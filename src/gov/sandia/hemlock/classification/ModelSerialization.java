@@ -11,6 +11,7 @@
 
 package gov.sandia.hemlock.classification;
 
+import gov.sandia.hemlock.classification.trees.CompiledTreeEnsemble;
 import gov.sandia.hemlock.core.*; 
 import java.io.*;
 
@@ -43,6 +44,35 @@ public class ModelSerialization
 		out.close();
 	}
 	
+	/**
+	 * Finds the number of bytes a model takes up when serialized, without
+	 * writing it anywhere.
+	 *
+	 * @param model The classification model to measure.
+	 * @return The size of the serialized model in bytes.
+	 * @throws IOException If the model cannot be serialized.
+	 */
+	public static long getSerializedSize(Model model) throws IOException
+	{
+		final long[] count = new long[1];
+		OutputStream counter = new OutputStream()
+		{
+			public void write(int b)
+			{
+				count[0]++;
+			}
+			
+			public void write(byte[] b, int off, int len)
+			{
+				count[0] += len;
+			}
+		};
+		ObjectOutputStream out = new ObjectOutputStream(counter);
+		out.writeObject(model);
+		out.close();
+		return count[0];
+	}
+	
 	/**
 	 * Load a previously serialized model for use of making further
 	 * predictions.
@@ -60,4 +90,71 @@ public class ModelSerialization
 		in.close();
 		return loaded;
 	}
+	
+	/**
+	 * Load a previously serialized model and store its parameters at a
+	 * reduced precision, so that a large ensemble never holds more than one
+	 * of its base classifiers at full precision once loaded.
+	 *
+	 * @param path The path, including file name, where the serialized
+	 *	model will be found and loaded from.
+	 * @param precision The precision to store the model's parameters in.
+	 * @return The classification model that is retrieved.
+	 * @throws Exception
+	 */
+	public static Model loadModel(String path, StoragePrecision precision) throws Exception
+	{
+		return reducePrecision(loadModel(path), precision);
+	}
+	
+	/**
+	 * Stores the parameters of a model at a reduced precision.  Weka trees
+	 * and forests are compiled into a {@link CompiledTreeEnsemble} first.
+	 * The base classifiers of an ensemble are replaced in the ensemble
+	 * itself, so an ensemble should only be reduced when it is not shared,
+	 * as when it was just loaded; other models are left unchanged.  Models
+	 * that cannot be reduced are returned as they are.
+	 *
+	 * @param model A trained classification model.
+	 * @param precision The precision to store the model's parameters in.
+	 * @return The reduced model.
+	 * @throws Exception If a model cannot be compiled or reduced.
+	 */
+	public static Model reducePrecision(Model model, StoragePrecision precision) throws Exception
+	{
+		if(precision == StoragePrecision.Full)
+			return model;
+		if(model instanceof EnsembleModel)
+		{
+			Model[] baseClassifiers = ((EnsembleModel)model).baseClassifierSet;
+			for(int i = 0; i < baseClassifiers.length; i++)
+				baseClassifiers[i] = reducePrecision(baseClassifiers[i], precision);
+			return model;
+		}
+		if(!(model instanceof ReducedPrecisionModel) && CompiledTreeEnsemble.isCompilable(model))
+			model = CompiledTreeEnsemble.compile(model);
+		if(model instanceof ReducedPrecisionModel)
+			return ((ReducedPrecisionModel)model).reducePrecision(precision);
+		return model;
+	}
+	
+	/**
+	 * Makes a deep copy of a model by serializing it to memory and
+	 * loading it again.
+	 *
+	 * @param model The classification model to copy.
+	 * @return A copy of the model which shares no state with the original.
+	 * @throws Exception If the model cannot be serialized.
+	 */
+	public static Model copyModel(Model model) throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(model);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		Model copy = (Model)in.readObject();
+		in.close();
+		return copy;
+	}
 }
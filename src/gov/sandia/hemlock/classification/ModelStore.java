@@ -0,0 +1,314 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification;
+
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.Constants;
+import gov.sandia.hemlock.data.DataSet;
+import java.io.*;
+import java.security.MessageDigest;
+import java.util.*;
+import javax.xml.parsers.*;
+import org.w3c.dom.*;
+
+/**
+ * A directory of trained models, each saved under a hash of the model
+ * parameters and the fingerprint of the data it was trained on.
+ * {@link ClassifierFactory} looks models up here before training them, so
+ * rerunning an experiment, or a changed meta experiment, only trains the
+ * models whose parameters or training data are new.
+ * <p>
+ * The store is turned on by a ModelStore element in the Hemlock
+ * configuration file, holding the directory and, optionally, the largest
+ * number of bytes the store may use:
+ * <pre>
+ * &lt;ModelStore maxSize="2G"&gt;models/&lt;/ModelStore&gt;
+ * </pre>
+ * When the store grows larger than maxSize the least recently used models
+ * are deleted.
+ *
+ * @author Sean A. Gilpin
+ */
+public class ModelStore
+{
+	/** Extension of the files models are stored in */
+	public static final String EXTENSION = ".model";
+
+	private static ModelStore defaultStore;
+	private static boolean defaultStoreRead = false;
+
+	private final File directory;
+	private final long maxSize;
+	private long size = 0;
+
+	/**
+	 * Opens a store, creating its directory if necessary.
+	 *
+	 * @param directory The directory models are stored in.
+	 * @param maxSize The largest number of bytes the stored models may
+	 * 	take up, or 0 for no limit.
+	 */
+	public ModelStore(File directory, long maxSize)
+	{
+		this.directory = directory;
+		this.maxSize = maxSize;
+		directory.mkdirs();
+		for(File file : listModelFiles())
+			size += file.length();
+	}
+
+	/**
+	 * @return The store configured in the Hemlock configuration file, or
+	 * 	null if no store is configured.
+	 * @throws Exception If the configuration file cannot be read.
+	 */
+	public static synchronized ModelStore getDefault() throws Exception
+	{
+		if(!defaultStoreRead)
+		{
+			defaultStore = readConfiguration(new File(Constants.configurationFilePath));
+			defaultStoreRead = true;
+		}
+		return defaultStore;
+	}
+
+	/**
+	 * Replaces the store configured in the Hemlock configuration file.
+	 *
+	 * @param store The store to use, or null for none.
+	 */
+	public static synchronized void setDefault(ModelStore store)
+	{
+		defaultStore = store;
+		defaultStoreRead = true;
+	}
+
+	private static ModelStore readConfiguration(File file) throws Exception
+	{
+		if(!file.exists())
+			return null;
+		DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+		Document doc = builder.parse(file);
+		Element root = (Element)doc.getElementsByTagName("config").item(0);
+		NodeList stores = root.getElementsByTagName("ModelStore");
+		if(stores.getLength() == 0)
+			return null;
+		Element eStore = (Element)stores.item(0);
+		String path = eStore.getTextContent().trim();
+		long maxSize = 0;
+		if(eStore.hasAttribute("maxSize"))
+			maxSize = parseSize(eStore.getAttribute("maxSize"));
+		return new ModelStore(new File(path), maxSize);
+	}
+
+	/**
+	 * @param size A number of bytes, optionally followed by K, M or G.
+	 * @return The number of bytes.
+	 */
+	static long parseSize(String size)
+	{
+		String s = size.trim().toUpperCase();
+		long multiplier = 1;
+		if(s.endsWith("K"))
+			multiplier = 1L << 10;
+		else if(s.endsWith("M"))
+			multiplier = 1L << 20;
+		else if(s.endsWith("G"))
+			multiplier = 1L << 30;
+		if(multiplier != 1)
+			s = s.substring(0, s.length() - 1).trim();
+		return (long)(Double.parseDouble(s) * multiplier);
+	}
+
+	/**
+	 * Creates the key a model is stored under.
+	 *
+	 * @param modelParameters The parameters the model is built with,
+	 * 	including its framework and seed.
+	 * @param dataFingerprint The fingerprint of the training data, from
+	 * 	{@link DataSet#getFingerprint}, which covers the data set, fold
+	 * 	and any bootstrap sample.
+	 * @return The key, or null if models with these parameters cannot be
+	 * 	stored.
+	 * @throws Exception If SHA-1 is not available.
+	 */
+	public static String createKey(ModelParameters modelParameters, String dataFingerprint) throws Exception
+	{
+		String description = modelParameters.getDescription();
+		if(description == null)
+			return null;
+		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+		digest.update(dataFingerprint.getBytes("UTF-8"));
+		digest.update((byte)0);
+		digest.update(description.getBytes("UTF-8"));
+		return DataSet.toHex(digest.digest());
+	}
+
+	/**
+	 * Loads a stored model, marking it as recently used.
+	 *
+	 * @param key The key from {@link #createKey}, may be null.
+	 * @return The model and the time it took to train, or null if the model
+	 * 	is not stored or cannot be read, in which case a file that cannot
+	 * 	be read is deleted.
+	 */
+	public synchronized ModelCache.Entry load(String key)
+	{
+		if(key == null)
+			return null;
+		File file = getFile(key);
+		if(!file.exists())
+			return null;
+		try
+		{
+			ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try
+			{
+				long trainTime = in.readLong();
+				Model model = (Model)in.readObject();
+				file.setLastModified(System.currentTimeMillis());
+				return new ModelCache.Entry(model, trainTime);
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch(Exception e)
+		{
+			//a model written by an older version of a framework, or a
+			//damaged file, is trained again and replaced
+			System.err.println("Discarding stored model " + file.getPath() + ", which cannot be read: " + e);
+			long length = file.length();
+			if(file.delete())
+				size -= length;
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a newly trained model, then deletes the least recently used
+	 * models if the store has grown too large.  A model that cannot be
+	 * written, for example because the disk is full, is reported and not
+	 * stored, since the model itself is still good.
+	 *
+	 * @param key The key from {@link #createKey}, may be null.
+	 * @param model The trained model.
+	 * @param trainTime Nanoseconds spent training the model.
+	 */
+	public synchronized void store(String key, Model model, long trainTime)
+	{
+		if(key == null)
+			return;
+		File file = getFile(key);
+		file.getParentFile().mkdirs();
+		//write to a temporary file first so that a model is never read
+		//half written
+		File temp = new File(file.getPath() + ".tmp");
+		try
+		{
+			ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try
+			{
+				out.writeLong(trainTime);
+				out.writeObject(model);
+			}
+			finally
+			{
+				out.close();
+			}
+			if(file.exists())
+			{
+				size -= file.length();
+				file.delete();
+			}
+			if(!temp.renameTo(file))
+				throw new IOException("could not rename " + temp.getPath());
+		}
+		catch(IOException e)
+		{
+			System.err.println("Could not store model " + file.getPath() + ": " + e);
+			temp.delete();
+			return;
+		}
+		size += file.length();
+		collectGarbage();
+	}
+
+	/**
+	 * Deletes the least recently used models until the store is no larger
+	 * than its maximum size.
+	 */
+	private void collectGarbage()
+	{
+		if(maxSize <= 0 || size <= maxSize)
+			return;
+		File[] files = listModelFiles();
+		final long[] lastUsed = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		for(int i = 0; i < files.length; i++)
+		{
+			lastUsed[i] = files[i].lastModified();
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			public int compare(Integer a, Integer b)
+			{
+				return (lastUsed[a] < lastUsed[b]) ? -1 : ((lastUsed[a] == lastUsed[b]) ? 0 : 1);
+			}
+		});
+		for(int i = 0; i < order.length && size > maxSize; i++)
+		{
+			File file = files[order[i]];
+			long length = file.length();
+			if(file.delete())
+				size -= length;
+		}
+	}
+
+	/**
+	 * @return The number of bytes taken up by the stored models.
+	 */
+	public synchronized long getSize()
+	{
+		return size;
+	}
+
+	private File getFile(String key)
+	{
+		//spread the models over subdirectories named by the first two
+		//characters of the key to keep directories small
+		return new File(new File(directory, key.substring(0, 2)), key + EXTENSION);
+	}
+
+	private File[] listModelFiles()
+	{
+		ArrayList<File> files = new ArrayList<File>();
+		File[] subdirectories = directory.listFiles();
+		if(subdirectories != null)
+		{
+			for(File subdirectory : subdirectories)
+			{
+				File[] models = subdirectory.listFiles();
+				if(models == null)
+					continue;
+				for(File model : models)
+				{
+					if(model.getName().endsWith(EXTENSION))
+						files.add(model);
+				}
+			}
+		}
+		return files.toArray(new File[files.size()]);
+	}
+}
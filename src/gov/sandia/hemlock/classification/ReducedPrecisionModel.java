@@ -0,0 +1,34 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification;
+
+/**
+ * A model that can store its parameters in less memory than doubles take.
+ * Use {@link ModelSerialization#reducePrecision} to reduce any model,
+ * including ensembles and Weka trees.
+ *
+ * @author Sean A. Gilpin
+ */
+public interface ReducedPrecisionModel extends Model
+{
+	/**
+	 * Makes a model that predicts as this one does, with its parameters
+	 * stored at the given precision.  This model is not changed, so it may
+	 * be shared.  Assumes the model has already been built.
+	 *
+	 * @param precision The precision of the parameters.
+	 * @return This model for {@link StoragePrecision#Full}, otherwise the
+	 * 	reduced model.
+	 * @throws Exception If the model cannot be reduced.
+	 */
+	public Model reducePrecision(StoragePrecision precision) throws Exception;
+}
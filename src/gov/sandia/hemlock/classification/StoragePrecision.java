@@ -0,0 +1,33 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification;
+
+/**
+ * Precisions in which a model can store the parameters that make up most of
+ * its size, such as the split thresholds and class distributions of trees
+ * and the reference points of a nearest neighbor model.  Reduced precisions
+ * make large models take less memory at the cost of small changes in their
+ * predictions, which {@link gov.sandia.hemlock.evaluation.PrecisionDrift}
+ * measures.
+ *
+ * @author Sean A. Gilpin
+ */
+public enum StoragePrecision
+{
+	/** 64 bit doubles, as the model was trained */
+	Full,
+	/** 32 bit floats */
+	Float32,
+	/** 16 bit fixed point values for quantities known to lie in a fixed
+		range, such as probabilities, and 32 bit floats for the rest */
+	Quantized16;
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification;
+
+import gov.sandia.hemlock.data.DataSet;
+
+/**
+ * A model that can learn from instances appended to its training data
+ * without being trained again from scratch.  Use
+ * {@link ClassifierFactory#updateModel} to bring any model up to date, which
+ * retrains the models that do not implement this interface.
+ *
+ * @author Sean A. Gilpin
+ */
+public interface UpdateableModel extends Model
+{
+	/**
+	 * Updates a trained model with new training instances.  The model
+	 * afterwards approximates, and for some learning algorithms equals,
+	 * a model trained on the original and new instances together.
+	 *
+	 * @param newData The new instances, with the same schema as the data
+	 * 	the model was trained on.
+	 * @throws Exception
+	 */
+	public void updateModel(DataSet newData) throws Exception;
+}
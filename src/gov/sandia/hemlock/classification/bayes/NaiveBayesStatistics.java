@@ -0,0 +1,261 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.bayes;
+
+import gov.sandia.hemlock.data.AdditiveStatistics;
+import gov.sandia.hemlock.data.AttributeType;
+import gov.sandia.hemlock.data.DataSet;
+import gov.sandia.hemlock.data.FoldedDataSet;
+import gov.sandia.hemlock.data.RecordSchema;
+import java.util.*;
+
+/**
+ * The sufficient statistics of a Naive Bayes model: the number of instances
+ * of each class, the number of instances of each class with each value of a
+ * discrete attribute, and the count, mean and sum of squared deviations of a
+ * continuous attribute within each class.  They are gathered in one pass
+ * over the instances, and the statistics of two sets of instances can be
+ * merged into those of their union, the means and deviations being combined
+ * as described by Chan, Golub and LeVeque, or the statistics of a subset
+ * removed by reversing the merge.  Missing values, stored as NaN, are not
+ * counted.
+ *
+ * @author Sean A. Gilpin
+ */
+public class NaiveBayesStatistics implements AdditiveStatistics<NaiveBayesStatistics>
+{
+	private static final Calculator<NaiveBayesStatistics> calculator = new Calculator<NaiveBayesStatistics>() {
+		public NaiveBayesStatistics compute(RecordSchema schema, List<double[]> records)
+		{
+			return NaiveBayesStatistics.compute(schema, records);
+		}
+	};
+
+	/** Number of class labels */
+	public final int numClasses;
+	/** Number of attributes, not counting the class label */
+	public final int numAttributes;
+	/** Number of instances of each class */
+	public final double[] classCounts;
+	/** For each discrete attribute, class and value, the number of instances;
+		null for continuous attributes */
+	public final double[][][] valueCounts;
+	/** For each continuous attribute and class, the number of values */
+	public final double[][] counts;
+	/** For each continuous attribute and class, the mean value */
+	public final double[][] means;
+	/** For each continuous attribute and class, the sum of squared
+		deviations from the mean */
+	public final double[][] deviations;
+
+	/**
+	 * Creates empty statistics for data with the given schema.
+	 *
+	 * @param schema The schema of the data.
+	 */
+	public NaiveBayesStatistics(RecordSchema schema)
+	{
+		numClasses = schema.labels.length;
+		numAttributes = schema.numAttributes;
+		classCounts = new double[numClasses];
+		valueCounts = new double[numAttributes][][];
+		counts = new double[numAttributes][];
+		means = new double[numAttributes][];
+		deviations = new double[numAttributes][];
+		for(int a = 0; a < numAttributes; a++)
+		{
+			if(schema.attributeTypes[a] == AttributeType.Discrete)
+				valueCounts[a] = new double[numClasses][schema.attributeValues[a].length];
+			else
+			{
+				counts[a] = new double[numClasses];
+				means[a] = new double[numClasses];
+				deviations[a] = new double[numClasses];
+			}
+		}
+	}
+
+	/**
+	 * Gathers the statistics of a set of instances in one pass.
+	 *
+	 * @param schema The schema of the instances.
+	 * @param records The instances.
+	 * @return The statistics of the instances.
+	 */
+	public static NaiveBayesStatistics compute(RecordSchema schema, List<double[]> records)
+	{
+		NaiveBayesStatistics statistics = new NaiveBayesStatistics(schema);
+		for(double[] record : records)
+			statistics.add(record);
+		return statistics;
+	}
+
+	/**
+	 * Gathers the statistics of a training data set.  When the data set is
+	 * the training data of a fold of a cross validation, the statistics are
+	 * those of all of the data minus those of the held out subsample, from
+	 * {@link FoldedDataSet#getStatistics}, so the folds of a cross
+	 * validation take one pass over the data between them.
+	 *
+	 * @param data The training data.
+	 * @return The statistics of the training data.
+	 */
+	public static NaiveBayesStatistics compute(DataSet data)
+	{
+		if(data instanceof FoldedDataSet)
+			return ((FoldedDataSet)data).getStatistics("NaiveBayesStatistics", calculator);
+		return compute(data.recordSchema, data.records);
+	}
+
+	/**
+	 * Adds one instance to the statistics.
+	 *
+	 * @param record The instance, with its class label last.
+	 */
+	public void add(double[] record)
+	{
+		int label = (int)record[numAttributes];
+		classCounts[label]++;
+		for(int a = 0; a < numAttributes; a++)
+		{
+			double value = record[a];
+			if(Double.isNaN(value))
+				continue;
+			if(valueCounts[a] != null)
+				valueCounts[a][label][(int)value]++;
+			else
+			{
+				//Welford's update of the mean and deviations
+				double n = ++counts[a][label];
+				double delta = value - means[a][label];
+				means[a][label] += delta/n;
+				deviations[a][label] += delta*(value - means[a][label]);
+			}
+		}
+	}
+
+	/**
+	 * @return An independent copy of these statistics.
+	 */
+	public NaiveBayesStatistics copy()
+	{
+		return new NaiveBayesStatistics(this);
+	}
+
+	private NaiveBayesStatistics(NaiveBayesStatistics other)
+	{
+		numClasses = other.numClasses;
+		numAttributes = other.numAttributes;
+		classCounts = other.classCounts.clone();
+		valueCounts = new double[numAttributes][][];
+		counts = new double[numAttributes][];
+		means = new double[numAttributes][];
+		deviations = new double[numAttributes][];
+		for(int a = 0; a < numAttributes; a++)
+		{
+			if(other.valueCounts[a] != null)
+			{
+				valueCounts[a] = new double[numClasses][];
+				for(int c = 0; c < numClasses; c++)
+					valueCounts[a][c] = other.valueCounts[a][c].clone();
+			}
+			else
+			{
+				counts[a] = other.counts[a].clone();
+				means[a] = other.means[a].clone();
+				deviations[a] = other.deviations[a].clone();
+			}
+		}
+	}
+
+	/**
+	 * Adds the statistics of another set of instances to these, making them
+	 * the statistics of both sets together.
+	 *
+	 * @param other Statistics of data with the same schema.
+	 */
+	public void merge(NaiveBayesStatistics other)
+	{
+		for(int c = 0; c < numClasses; c++)
+			classCounts[c] += other.classCounts[c];
+		for(int a = 0; a < numAttributes; a++)
+		{
+			if(valueCounts[a] != null)
+			{
+				for(int c = 0; c < numClasses; c++)
+				{
+					for(int v = 0; v < valueCounts[a][c].length; v++)
+						valueCounts[a][c][v] += other.valueCounts[a][c][v];
+				}
+				continue;
+			}
+			for(int c = 0; c < numClasses; c++)
+			{
+				double n1 = counts[a][c];
+				double n2 = other.counts[a][c];
+				double n = n1 + n2;
+				if(n2 == 0)
+					continue;
+				double delta = other.means[a][c] - means[a][c];
+				means[a][c] += delta*n2/n;
+				deviations[a][c] += other.deviations[a][c] + delta*delta*n1*n2/n;
+				counts[a][c] = n;
+			}
+		}
+	}
+
+	/**
+	 * Removes the statistics of a subset of the instances from these, by
+	 * reversing {@link #merge}.  The sums of squared deviations lose some
+	 * precision when most of the instances are removed, and are kept from
+	 * going negative.
+	 *
+	 * @param other Statistics of instances that are included in these.
+	 */
+	public void subtract(NaiveBayesStatistics other)
+	{
+		for(int c = 0; c < numClasses; c++)
+			classCounts[c] -= other.classCounts[c];
+		for(int a = 0; a < numAttributes; a++)
+		{
+			if(valueCounts[a] != null)
+			{
+				for(int c = 0; c < numClasses; c++)
+				{
+					for(int v = 0; v < valueCounts[a][c].length; v++)
+						valueCounts[a][c][v] -= other.valueCounts[a][c][v];
+				}
+				continue;
+			}
+			for(int c = 0; c < numClasses; c++)
+			{
+				double n = counts[a][c];
+				double n2 = other.counts[a][c];
+				double n1 = n - n2;
+				if(n2 == 0)
+					continue;
+				if(n1 <= 0)
+				{
+					counts[a][c] = 0;
+					means[a][c] = 0;
+					deviations[a][c] = 0;
+					continue;
+				}
+				double mean1 = (n*means[a][c] - n2*other.means[a][c])/n1;
+				double delta = other.means[a][c] - mean1;
+				deviations[a][c] = Math.max(0, deviations[a][c] - other.deviations[a][c] - delta*delta*n1*n2/n);
+				means[a][c] = mean1;
+				counts[a][c] = n1;
+			}
+		}
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.bayes;
+
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.UpdateableModel;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.data.DataSet;
+import gov.sandia.hemlock.data.IDataSet;
+
+/**
+ * Hemlock's own Naive Bayes classifier, trained from
+ * {@link NaiveBayesStatistics} instead of converting the data for Weka.  As
+ * in Weka's NaiveBayes, class priors and discrete attributes use Laplace
+ * estimates and continuous attributes are modeled by a normal distribution
+ * within each class.  So that a class whose values of an attribute are all
+ * the same does not get an infinitely narrow distribution, the standard
+ * deviation within a class is at least {@link #MIN_DEVIATION_FRACTION} of
+ * the standard deviation of the attribute over all classes.
+ * <p>
+ * Because the statistics can be merged, the folds of a cross validation
+ * share one pass over the data, and the model can be updated with new
+ * instances exactly.
+ *
+ * @author Sean A. Gilpin
+ */
+public class NaiveBayesian implements UpdateableModel
+{
+	/** Smallest standard deviation within a class, as a fraction of the
+		standard deviation over all classes */
+	public static final double MIN_DEVIATION_FRACTION = 1e-3;
+
+	private NaiveBayesStatistics statistics;
+	private double[] logPriors;
+	/** Log probability of each value of a discrete attribute within each
+		class, by attribute, class and value */
+	private double[][][] logProbabilities;
+	private double[][] means;
+	private double[][] deviations;
+	private transient DataSet dataSet;
+
+	/**
+	 * Associates this model with a set of data that will be used for
+	 * training.
+	 *
+	 * @param data A {@link DataSet}.
+	 */
+	public void setData(IDataSet data)
+	{
+		this.dataSet = (DataSet)data;
+	}
+
+	/**
+	 * Perform all steps to build/train the model.  Assumes the data set has
+	 * already been specified.
+	 *
+	 * @param modelParameters Specifies all information about which type of
+	 *	model should be built.
+	 * @throws Exception
+	 */
+	public void buildModel(ModelParameters modelParameters) throws Exception
+	{
+		statistics = NaiveBayesStatistics.compute(dataSet);
+		estimate();
+		//Cleanout training data
+		dataSet = null;
+	}
+
+	/**
+	 * Adds new instances to the statistics of the model and estimates the
+	 * model again, giving the model that would be trained on the original
+	 * and new instances together.
+	 *
+	 * @param newData The new instances.
+	 * @throws Exception
+	 */
+	public void updateModel(DataSet newData) throws Exception
+	{
+		for(double[] record : newData.records)
+			statistics.add(record);
+		estimate();
+	}
+
+	/**
+	 * Works out the probabilities used for prediction from the statistics.
+	 */
+	private void estimate()
+	{
+		int numClasses = statistics.numClasses;
+		int numAttributes = statistics.numAttributes;
+		double total = 0;
+		for(int c = 0; c < numClasses; c++)
+			total += statistics.classCounts[c];
+		logPriors = new double[numClasses];
+		for(int c = 0; c < numClasses; c++)
+			logPriors[c] = Math.log((statistics.classCounts[c] + 1)/(total + numClasses));
+
+		logProbabilities = new double[numAttributes][][];
+		means = new double[numAttributes][];
+		deviations = new double[numAttributes][];
+		for(int a = 0; a < numAttributes; a++)
+		{
+			if(statistics.valueCounts[a] != null)
+			{
+				logProbabilities[a] = new double[numClasses][];
+				for(int c = 0; c < numClasses; c++)
+				{
+					double[] valueCounts = statistics.valueCounts[a][c];
+					double count = 0;
+					for(int v = 0; v < valueCounts.length; v++)
+						count += valueCounts[v];
+					logProbabilities[a][c] = new double[valueCounts.length];
+					for(int v = 0; v < valueCounts.length; v++)
+						logProbabilities[a][c][v] = Math.log((valueCounts[v] + 1)/(count + valueCounts.length));
+				}
+				continue;
+			}
+
+			//pool the classes for the deviation over all of them, which is
+			//also used for classes with no values
+			double n = 0;
+			double mean = 0;
+			double squares = 0;
+			for(int c = 0; c < numClasses; c++)
+			{
+				double nc = statistics.counts[a][c];
+				if(nc == 0)
+					continue;
+				double delta = statistics.means[a][c] - mean;
+				mean += delta*nc/(n + nc);
+				squares += statistics.deviations[a][c] + delta*delta*n*nc/(n + nc);
+				n += nc;
+			}
+			double pooled = (n > 0) ? Math.sqrt(squares/n) : 0;
+			//an attribute with one value says nothing about the class
+			if(pooled == 0)
+				continue;
+			means[a] = new double[numClasses];
+			deviations[a] = new double[numClasses];
+			for(int c = 0; c < numClasses; c++)
+			{
+				double nc = statistics.counts[a][c];
+				if(nc == 0)
+				{
+					means[a][c] = mean;
+					deviations[a][c] = pooled;
+				}
+				else
+				{
+					means[a][c] = statistics.means[a][c];
+					deviations[a][c] = Math.max(Math.sqrt(statistics.deviations[a][c]/nc), MIN_DEVIATION_FRACTION*pooled);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Predicts the class label for an instance. Assumes the model has
+	 * already been built.
+	 *
+	 * @param record The instance which the prediction is made for.
+	 * @return The index of the predicted class label
+	 * @throws Exception
+	 */
+	public double getTargetValue(double[] record) throws Exception
+	{
+		double[] distribution = getTargetDistribution(record);
+		int maxIndex = 0;
+		for(int c = 1; c < distribution.length; c++)
+		{
+			if(distribution[c] > distribution[maxIndex])
+				maxIndex = c;
+		}
+		return maxIndex;
+	}
+
+	/**
+	 * Predicts the class distribution given an instance. Assumes the model
+	 * has already been built.
+	 *
+	 * @param record The given instance which the prediction is made for.
+	 * @return Distribution represented as an array of probabilities, where
+	 * 	the ith element is the probability of class i.
+	 * @throws Exception
+	 */
+	public double[] getTargetDistribution(double[] record) throws Exception
+	{
+		int numClasses = logPriors.length;
+		double[] logLikelihoods = logPriors.clone();
+		for(int a = 0; a < logProbabilities.length; a++)
+		{
+			double value = record[a];
+			if(Double.isNaN(value))
+				continue;
+			if(logProbabilities[a] != null)
+			{
+				int v = (int)value;
+				for(int c = 0; c < numClasses; c++)
+				{
+					if(v >= 0 && v < logProbabilities[a][c].length)
+						logLikelihoods[c] += logProbabilities[a][c][v];
+				}
+			}
+			else if(means[a] != null)
+			{
+				for(int c = 0; c < numClasses; c++)
+				{
+					double z = (value - means[a][c])/deviations[a][c];
+					logLikelihoods[c] -= Math.log(deviations[a][c]) + 0.5*z*z;
+				}
+			}
+		}
+
+		//scale by the largest likelihood before leaving log space
+		double max = Double.NEGATIVE_INFINITY;
+		for(int c = 0; c < numClasses; c++)
+			max = Math.max(max, logLikelihoods[c]);
+		double total = 0;
+		double[] distribution = new double[numClasses];
+		for(int c = 0; c < numClasses; c++)
+		{
+			distribution[c] = Math.exp(logLikelihoods[c] - max);
+			total += distribution[c];
+		}
+		for(int c = 0; c < numClasses; c++)
+			distribution[c] /= total;
+		return distribution;
+	}
+
+	/**
+	 * Will report the learning algorithm that is used by this model.
+	 *
+	 * @return The learning algorithm that is used by this model.
+	 */
+	public ModelType getModelType()
+	{
+		return ModelType.NaiveBayesian;
+	}
+}
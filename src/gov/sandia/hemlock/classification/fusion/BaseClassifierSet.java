@@ -16,6 +16,7 @@ import gov.sandia.hemlock.classification.*;
 import gov.sandia.hemlock.core.*;
 import gov.sandia.hemlock.data.*;
 import java.io.*;
+import java.util.Hashtable;
 
 /**
  * All information needed to specify a set of base classifiers for use with
@@ -24,7 +25,7 @@ import java.io.*;
  *
  * @author Sean A. Gilpin
  */
-public class BaseClassifierSet
+public class BaseClassifierSet implements Serializable
 {
 	/** The method for specifying the set of base classifiers*/
 	public BaseClassifierSetType type;
@@ -188,33 +189,7 @@ public class BaseClassifierSet
 	 */
 	public Model[] getModels(EnsembleModel eModel) throws Exception
 	{
-		Model[] models = new Model[this.params.length];
-		
-		ClassifierFactory wekaFactory = null;
-		for(int i = 0; i < models.length; i++)
-		{
-			if(params[i % params.length].frameworkType == FrameworkType.weka)
-			{
-				if(eModel.ensembleParams.getEnsembleGeneration() == EnsembleParameters.EnsembleGenerationType.Bagging)
-				{
-					//generate bootstrapped data set
-					DataSet bag = eModel.generateBag();
-					//outOfBagTestSets[i] = generateOutOfBag(bag); 
-					//create new wekaFactory
-					wekaFactory = new ClassifierFactory(FrameworkType.weka, bag);
-				}
-				else if(wekaFactory == null)
-				{
-					wekaFactory = new ClassifierFactory(FrameworkType.weka, eModel.getData());
-				}
-				models[i] = wekaFactory.createModel(params[i % params.length]);
-			}
-			else
-			{
-				throw new Exception("Need to add support for base classifiers in other framework");
-			}
-		}
-		
+		Model[] models = buildModels(eModel);
 		if(serialize)
 			this.serializeModels(models, eModel.getData().info.dataSetName);
 		
@@ -236,27 +211,88 @@ public class BaseClassifierSet
 	 * @throws Exception
 	 */
 	public Model[] getModels(EnsembleModel eModel, int fold) throws Exception
+	{
+		Model[] models = buildModels(eModel);
+		if(serialize)
+			this.serializeModels(models, eModel.getData().info.dataSetName, fold);
+		
+		return models;
+	}
+	
+	/**
+	 * Builds the base classifiers for an ensemble, taking any that have
+	 * already been trained with the same parameters on the same data from
+	 * the {@link ModelCache} or the {@link ModelStore}.  The time reported
+	 * for such a base classifier is the time it originally took to train.
+	 *
+	 * @param eModel The ensemble model which may have special instructions
+	 *	for producing the models, such as whether or not to use bagging.
+	 * @return An array of Models which are produced by this method.
+	 * @throws Exception
+	 */
+	private Model[] buildModels(EnsembleModel eModel) throws Exception
 	{
 		Model[] models = new Model[this.params.length];
+		long[] trainTimes = new long[models.length];
+		boolean bagging = eModel.ensembleParams.getEnsembleGeneration() == EnsembleParameters.EnsembleGenerationType.Bagging;
 		
-		ClassifierFactory wekaFactory = null;
+		//one factory per framework, so that each converts the training
+		//data once
+		Hashtable<FrameworkType, ClassifierFactory> factories = new Hashtable<FrameworkType, ClassifierFactory>();
+		String fingerprint = null;
 		for(int i = 0; i < models.length; i++)
 		{
-			if(params[i % params.length].frameworkType == FrameworkType.weka)
+			FrameworkType framework = params[i % params.length].frameworkType;
+			if(framework == FrameworkType.weka || framework == FrameworkType.hemlock)
 			{
-				if(eModel.ensembleParams.getEnsembleGeneration() == EnsembleParameters.EnsembleGenerationType.Bagging)
+				PerformanceRecorder.begin(PerformanceRecorder.TRAIN_BASE_MODEL);
+				try
 				{
-					//generate bootstrapped data set
-					DataSet bag = eModel.generateBag();
-					//outOfBagTestSets[i] = generateOutOfBag(bag); 
-					//create new wekaFactory
-					wekaFactory = new ClassifierFactory(FrameworkType.weka, bag);
+					DataSet trainingData = null;
+					if(bagging)
+					{
+						//generate bootstrapped data set, even when the model is
+						//cached, so that later bags are drawn the same way
+						trainingData = eModel.generateBag();
+						//outOfBagTestSets[i] = generateOutOfBag(bag); 
+						factories.clear();
+						fingerprint = null;
+					}
+					else
+					{
+						trainingData = eModel.getData();
+					}
+					if(fingerprint == null && ModelCache.getCapacity() > 0)
+						fingerprint = trainingData.getFingerprint();
+					String key = (fingerprint == null) ? null : ModelCache.createKey(params[i % params.length], fingerprint);
+					ModelCache.Entry cached = ModelCache.get(key);
+					if(cached != null)
+					{
+						models[i] = cached.model;
+						trainTimes[i] = cached.trainTime;
+					}
+					else
+					{
+						//create new factory
+						ClassifierFactory factory = factories.get(framework);
+						if(factory == null)
+						{
+							factory = new ClassifierFactory(framework, trainingData);
+							if(fingerprint != null)
+								factory.setDataFingerprint(fingerprint);
+							factories.put(framework, factory);
+						}
+						//the data is only converted if the model is not stored
+						ModelCache.Entry created = factory.createModelEntry(params[i % params.length]);
+						models[i] = created.model;
+						trainTimes[i] = created.trainTime;
+						ModelCache.put(key, models[i], trainTimes[i]);
+					}
 				}
-				else if(wekaFactory == null)
+				finally
 				{
-					wekaFactory = new ClassifierFactory(FrameworkType.weka, eModel.getData());
+					PerformanceRecorder.end();
 				}
-				models[i] = wekaFactory.createModel(params[i % params.length]);
 			}
 			else
 			{
@@ -264,9 +300,8 @@ public class BaseClassifierSet
 			}
 		}
 		
-		if(serialize)
-			this.serializeModels(models, eModel.getData().info.dataSetName, fold);
-		
+		eModel.setBaseClassifierTrainTimes(trainTimes);
+		eModel.setBaseClassifiersShared(ModelCache.getCapacity() > 0);
 		return models;
 	}
 	
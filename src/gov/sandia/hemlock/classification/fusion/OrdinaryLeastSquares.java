@@ -13,6 +13,7 @@ package gov.sandia.hemlock.classification.fusion;
 
 import gov.sandia.hemlock.classification.*;
 import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.PerformanceRecorder;
 import gov.sandia.hemlock.data.DataSet;
 import Jama.*;
 import java.io.*;
@@ -31,11 +32,22 @@ import java.io.*;
  * features and 0 or 1 is used for the dependent variable depending on whether
  * class i is the true class for the original instance.
  *
+ * The products of the design matrix with itself and with the dependent
+ * variable are kept, so that when the model is updated with new instances
+ * the weights can be solved for again without predicting the old instances.
+ * The kept products hold the predictions the base classifiers made at the
+ * time each instance was added, not the predictions of the updated base
+ * classifiers.
+ *
  * @author Sean A. Gilpin
  */
 public class OrdinaryLeastSquares extends EnsembleModel
 {
 	private double[] linearWeights;
+	/** Transpose of the design matrix times itself */
+	private Matrix xtx;
+	/** Transpose of the design matrix times the dependent variable */
+	private Matrix xty;
 
 	/**
 	 * Trains the OLS ensemble model by creating the set of base classifiers
@@ -49,7 +61,15 @@ public class OrdinaryLeastSquares extends EnsembleModel
 	public void buildModel(ModelParameters modelParameters) throws Exception
 	{
 		super.buildModel(modelParameters);
-		linearWeights = getLinearWeights();
+		PerformanceRecorder.begin(PerformanceRecorder.FUSE);
+		try
+		{
+			linearWeights = getLinearWeights();
+		}
+		finally
+		{
+			PerformanceRecorder.end();
+		}
 	}
 	
 	/**
@@ -67,7 +87,15 @@ public class OrdinaryLeastSquares extends EnsembleModel
 	public void buildModel(ModelParameters modelParameters, int fold) throws Exception
 	{
 		super.buildModel(modelParameters, fold);
-		linearWeights = getLinearWeights();
+		PerformanceRecorder.begin(PerformanceRecorder.FUSE);
+		try
+		{
+			linearWeights = getLinearWeights();
+		}
+		finally
+		{
+			PerformanceRecorder.end();
+		}
 	}
 	
 	/**
@@ -79,8 +107,9 @@ public class OrdinaryLeastSquares extends EnsembleModel
 	 */
 	private double[] getLinearWeights() throws Exception
 	{
-		Matrix inputs = createInputMatrix();
-		Matrix trueDist = createTrueDistributionVector();
+		Matrix inputs = createInputMatrix(dataSet);
+		Matrix trueDist = createTrueDistributionVector(dataSet);
+		accumulate(inputs, trueDist);
 		
 		/* //Debug
 		PrintWriter pw1 = new PrintWriter("matrix.txt");
@@ -93,14 +122,76 @@ public class OrdinaryLeastSquares extends EnsembleModel
 		pw2.close();
 		//End Debug */
 		
-		//The following method is used instead of Matrix.solve,
-		//which would perform least squares, to deal with case when
-		//(transpose(X)X) is not invertible.
-		Matrix pseudoInverse = inputs.inverse();
-		Matrix weights = pseudoInverse.times(trueDist);
-		double[] arrWeights = weights.getColumnPackedCopy();
-
-		return arrWeights;
+		//solved the same way as when the model is updated, so that
+		//building on all of the data and updating give the same weights
+		return solveNormalEquations();
+	}
+	
+	/**
+	 * Adds the design rows of new instances to the kept products and
+	 * solves for the weights again.
+	 *
+	 * @param newData The instances that were added to the training data.
+	 * @throws Exception
+	 */
+	@Override
+	protected void absorb(DataSet newData) throws Exception
+	{
+		PerformanceRecorder.begin(PerformanceRecorder.FUSE);
+		try
+		{
+			accumulate(createInputMatrix(newData), createTrueDistributionVector(newData));
+			linearWeights = solveNormalEquations();
+		}
+		finally
+		{
+			PerformanceRecorder.end();
+		}
+	}
+	
+	/**
+	 * Adds the products of design rows with themselves and with the
+	 * dependent variable to the kept products.
+	 *
+	 * @param inputs Rows of the design matrix.
+	 * @param trueDist The matching elements of the dependent variable.
+	 */
+	private void accumulate(Matrix inputs, Matrix trueDist)
+	{
+		Matrix inputsT = inputs.transpose();
+		if(xtx == null)
+		{
+			xtx = inputsT.times(inputs);
+			xty = inputsT.times(trueDist);
+		}
+		else
+		{
+			xtx = xtx.plus(inputsT.times(inputs));
+			xty = xty.plus(inputsT.times(trueDist));
+		}
+	}
+	
+	/**
+	 * Solves the normal equations from the kept products.  The pseudo 
+	 * inverse is used, through the singular value decomposition, to deal
+	 * with the case when (transpose(X)X) is not invertible.
+	 *
+	 * @return An array representing the weights vector
+	 */
+	private double[] solveNormalEquations()
+	{
+		SingularValueDecomposition svd = xtx.svd();
+		double[] singularValues = svd.getSingularValues();
+		int n = singularValues.length;
+		double tolerance = n * singularValues[0] * 1e-12;
+		Matrix inverseS = new Matrix(n, n);
+		for(int i = 0; i < n; i++)
+		{
+			if(singularValues[i] > tolerance)
+				inverseS.set(i, i, 1 / singularValues[i]);
+		}
+		Matrix pseudoInverse = svd.getV().times(inverseS).times(svd.getU().transpose());
+		return pseudoInverse.times(xty).getColumnPackedCopy();
 	}
 	
 	/**
@@ -110,13 +201,14 @@ public class OrdinaryLeastSquares extends EnsembleModel
 	 * a given training instance.  Each scalar from the vector will
 	 * correspond to the prediction from one of the base classifiers.
 	 *
+	 * @param data The instances to create the design matrix for.
 	 * @return Matrix The design matrix needed for the OLS problem.
 	 * @throws Exception
 	 */
-	private Matrix createInputMatrix() throws Exception
+	private Matrix createInputMatrix(DataSet data) throws Exception
 	{
-		int numClasses = this.dataSet.recordSchema.labels.length;
-		int numInstances = this.dataSet.records.size();
+		int numClasses = data.recordSchema.labels.length;
+		int numInstances = data.records.size();
 		int numBaseClassifiers = this.baseClassifierSet.length;
 		double[][] inputs = new double[numClasses*numInstances][numBaseClassifiers+1];
 		
@@ -125,7 +217,7 @@ public class OrdinaryLeastSquares extends EnsembleModel
 			Model bModel = baseClassifierSet[i];
 			for(int j = 0; j < numInstances; j++)
 			{
-				double[] instance = dataSet.records.get(j);
+				double[] instance = data.records.get(j);
 				double[] dist = bModel.getTargetDistribution(instance);
 				for(int k = 0; k < numClasses; k++)
 				{
@@ -151,15 +243,26 @@ public class OrdinaryLeastSquares extends EnsembleModel
 	 */
 	public Matrix createTrueDistributionVector()
 	{
-		int numClasses = this.dataSet.recordSchema.labels.length;
-		int numInstances = this.dataSet.records.size();
+		return createTrueDistributionVector(dataSet);
+	}
+	
+	/**
+	 * Creates the dependent variable vector for the given instances.
+	 *
+	 * @param data The instances to create the vector for.
+	 * @return Matrix The column vector representing the dependent variable.
+	 */
+	private Matrix createTrueDistributionVector(DataSet data)
+	{
+		int numClasses = data.recordSchema.labels.length;
+		int numInstances = data.records.size();
 		double[] trueDist = new double[numClasses*numInstances];
 		
 		for(int i = 0; i < numInstances; i++)
 		{
 			//get true class for target
-			double[] instance = dataSet.records.get(i);
-			double trueClass = instance[dataSet.recordSchema.numAttributes];
+			double[] instance = data.records.get(i);
+			double trueClass = instance[data.recordSchema.numAttributes];
 			for(int j = 0; j < numClasses; j++)
 			{
 				trueDist[i*numClasses + j] = (j==trueClass) ? 1 : 0;
@@ -181,7 +284,6 @@ public class OrdinaryLeastSquares extends EnsembleModel
 	@Override
 	public double[] getTargetDistribution(double[] record) throws Exception
 	{
-		int numClasses = dataSet.recordSchema.labels.length;
 		double[] finalDist = new double[numClasses];
 		for(int i = 0; i < baseClassifierSet.length; i++)
 		{
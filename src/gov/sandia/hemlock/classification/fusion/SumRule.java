@@ -61,19 +61,19 @@ public class SumRule extends EnsembleModel
 	 */
 	public double[] getTargetDistribution(double[] record) throws Exception
 	{
-		double[] sumDist = new double[dataSet.recordSchema.labels.length];
+		double[] sumDist = new double[numClasses];
 		for(int i = 0; i < baseClassifierSet.length; i++)
 		{
 			double[] dist = baseClassifierSet[i].getTargetDistribution(record);
-			for(int j = 0; j < dataSet.recordSchema.labels.length; j++)
+			for(int j = 0; j < numClasses; j++)
 				sumDist[j] += dist[j];
 		}
 		//calculate 1-norm
 		double norm = 0;
-		for(int i = 0; i < dataSet.recordSchema.labels.length; i++)
+		for(int i = 0; i < numClasses; i++)
 			norm += sumDist[i];
 		//set 1-norm of distribution to 1
-		for(int i = 0; i < dataSet.recordSchema.labels.length; i++)
+		for(int i = 0; i < numClasses; i++)
 			sumDist[i] = sumDist[i]/norm;
 		
 		return sumDist;
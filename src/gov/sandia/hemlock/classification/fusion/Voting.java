@@ -72,7 +72,7 @@ public class Voting extends EnsembleModel
 	 */
 	public double[] getTargetDistribution(double[] record) throws Exception
 	{
-		double[] votes = new double[dataSet.recordSchema.labels.length];
+		double[] votes = new double[numClasses];
 		for(int i = 0; i < baseClassifierSet.length; i++)
 		{
 			int label = (int)baseClassifierSet[i].getTargetValue(record);
@@ -81,10 +81,10 @@ public class Voting extends EnsembleModel
 		
 		//calculate 1-norm
 		double norm = 0;
-		for(int i = 0; i < dataSet.recordSchema.labels.length; i++)
+		for(int i = 0; i < numClasses; i++)
 			norm += votes[i];
 		//set 1-norm of distribution to 1
-		for(int i = 0; i < dataSet.recordSchema.labels.length; i++)
+		for(int i = 0; i < numClasses; i++)
 			votes[i] = votes[i]/norm;
 		return votes;
 	}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.linear;
+
+import java.util.*;
+
+/**
+ * Trains a binary linear classifier by coordinate descent on the dual of
+ * its regularized loss, one instance at a time in a random order, as in
+ * LIBLINEAR.  The hinge loss follows Hsieh et al., "A Dual Coordinate
+ * Descent Method for Large-scale Linear SVM" (2008), and the logistic loss
+ * Yu, Huang and Lin, "Dual Coordinate Descent Methods for Logistic
+ * Regression and Maximum Entropy Models" (2011).  Each step costs one pass
+ * over the features of one instance, so an epoch is linear in the size of
+ * the data.
+ * <p>
+ * The instances are the rows of a dense row-major matrix.  The bias is not
+ * treated specially, so callers add a feature that is always 1.
+ *
+ * @author Sean A. Gilpin
+ */
+class DualCoordinateDescent
+{
+	/** Most passes over the data before giving up on the tolerance */
+	static final int MAX_EPOCHS = 1000;
+	/** Most Newton steps for the dual variable of one instance */
+	private static final int MAX_NEWTON_STEPS = 100;
+
+	private final double[] x;
+	private final int numRows;
+	private final int dim;
+	private final double[] squaredNorms;
+
+	/**
+	 * @param x The features of each instance, row after row.
+	 * @param numRows The number of instances.
+	 * @param dim The number of features of each instance.
+	 */
+	DualCoordinateDescent(double[] x, int numRows, int dim)
+	{
+		this.x = x;
+		this.numRows = numRows;
+		this.dim = dim;
+		squaredNorms = new double[numRows];
+		for(int i = 0; i < numRows; i++)
+		{
+			double s = 0;
+			for(int j = i*dim; j < (i + 1)*dim; j++)
+				s += x[j]*x[j];
+			squaredNorms[i] = s;
+		}
+	}
+
+	/**
+	 * Trains a linear support vector machine, minimizing
+	 * 0.5 w.w + C sum(max(0, 1 - y w.x)).
+	 *
+	 * @param positive For each instance, whether it is in the positive
+	 * 	class.
+	 * @param complexity C, the cost of the loss against the regularization.
+	 * @param tolerance Training stops when no projected gradient of the
+	 * 	dual exceeds another by more than this.
+	 * @param random Chooses the order of the instances.
+	 * @return The weight vector.
+	 */
+	double[] trainHinge(boolean[] positive, double complexity, double tolerance, Random random)
+	{
+		double[] w = new double[dim];
+		double[] alpha = new double[numRows];
+		int[] order = identity();
+		for(int epoch = 0; epoch < MAX_EPOCHS; epoch++)
+		{
+			shuffle(order, random);
+			double maxGradient = Double.NEGATIVE_INFINITY;
+			double minGradient = Double.POSITIVE_INFINITY;
+			for(int k = 0; k < numRows; k++)
+			{
+				int i = order[k];
+				if(squaredNorms[i] == 0)
+					continue;
+				double y = positive[i] ? 1 : -1;
+				double g = y*dot(w, i) - 1;
+				//the gradient projected onto the box [0, C]
+				double pg = g;
+				if(alpha[i] == 0)
+					pg = Math.min(g, 0);
+				else if(alpha[i] == complexity)
+					pg = Math.max(g, 0);
+				maxGradient = Math.max(maxGradient, pg);
+				minGradient = Math.min(minGradient, pg);
+				if(pg != 0)
+				{
+					double old = alpha[i];
+					alpha[i] = Math.min(Math.max(old - g/squaredNorms[i], 0), complexity);
+					addRow(w, i, (alpha[i] - old)*y);
+				}
+			}
+			if(maxGradient - minGradient <= tolerance)
+				break;
+		}
+		return w;
+	}
+
+	/**
+	 * Trains a logistic regression model, minimizing
+	 * 0.5 w.w + C sum(log(1 + exp(-y w.x))).
+	 *
+	 * @param positive For each instance, whether it is in the positive
+	 * 	class.
+	 * @param complexity C, the cost of the loss against the regularization.
+	 * @param tolerance Training stops when no derivative of the dual
+	 * 	exceeds this in size.
+	 * @param random Chooses the order of the instances.
+	 * @return The weight vector.
+	 */
+	double[] trainLogistic(boolean[] positive, double complexity, double tolerance, Random random)
+	{
+		double[] w = new double[dim];
+		double[] alpha = new double[numRows];
+		//the dual variables must start strictly inside (0, C)
+		double start = Math.min(1e-3*complexity, 1e-8);
+		for(int i = 0; i < numRows; i++)
+		{
+			alpha[i] = start;
+			addRow(w, i, positive[i] ? start : -start);
+		}
+		int[] order = identity();
+		for(int epoch = 0; epoch < MAX_EPOCHS; epoch++)
+		{
+			shuffle(order, random);
+			double maxGradient = 0;
+			for(int k = 0; k < numRows; k++)
+			{
+				int i = order[k];
+				double y = positive[i] ? 1 : -1;
+				double a = squaredNorms[i];
+				double b = y*dot(w, i);
+				double old = alpha[i];
+				maxGradient = Math.max(maxGradient, Math.abs(Math.log(old/(complexity - old)) + b));
+
+				//minimize z log z + (C - z) log(C - z) + a/2 (z - old)^2
+				//+ b (z - old) over (0, C) by Newton's method, falling back
+				//to bisection when a step leaves the bracket
+				double lo = 0;
+				double hi = complexity;
+				double z = old;
+				for(int step = 0; step < MAX_NEWTON_STEPS; step++)
+				{
+					double d1 = Math.log(z/(complexity - z)) + a*(z - old) + b;
+					if(d1 > 0)
+						hi = z;
+					else
+						lo = z;
+					double d2 = complexity/(z*(complexity - z)) + a;
+					double next = z - d1/d2;
+					if(!(next > lo && next < hi))
+						next = (lo + hi)/2;
+					if(Math.abs(next - z) <= 1e-12*complexity)
+					{
+						z = next;
+						break;
+					}
+					z = next;
+				}
+				if(z > 0 && z < complexity && z != old)
+				{
+					alpha[i] = z;
+					addRow(w, i, (z - old)*y);
+				}
+			}
+			if(maxGradient <= tolerance)
+				break;
+		}
+		return w;
+	}
+
+	/**
+	 * @return The inner product of w with the features of instance i.
+	 */
+	double dot(double[] w, int i)
+	{
+		double s = 0;
+		int offset = i*dim;
+		for(int j = 0; j < dim; j++)
+			s += w[j]*x[offset + j];
+		return s;
+	}
+
+	private void addRow(double[] w, int i, double scale)
+	{
+		int offset = i*dim;
+		for(int j = 0; j < dim; j++)
+			w[j] += scale*x[offset + j];
+	}
+
+	private int[] identity()
+	{
+		int[] order = new int[numRows];
+		for(int i = 0; i < numRows; i++)
+			order[i] = i;
+		return order;
+	}
+
+	private static void shuffle(int[] order, Random random)
+	{
+		for(int i = order.length - 1; i > 0; i--)
+		{
+			int j = random.nextInt(i + 1);
+			int t = order[i];
+			order[i] = order[j];
+			order[j] = t;
+		}
+	}
+}
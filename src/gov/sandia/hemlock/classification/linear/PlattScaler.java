@@ -0,0 +1,148 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.linear;
+
+import java.io.Serializable;
+
+/**
+ * Turns the output of a binary classifier into a probability with a
+ * sigmoid, 1/(1 + exp(A f + B)), fit by Platt's method.  The fit uses the
+ * Newton method with backtracking of Lin, Lin and Weng, "A Note on Platt's
+ * Probabilistic Outputs for Support Vector Machines" (2007), which is the
+ * one LIBSVM uses.
+ *
+ * @author Sean A. Gilpin
+ */
+class PlattScaler implements Serializable
+{
+	private static final int MAX_ITERATIONS = 100;
+	private static final double MIN_STEP = 1e-10;
+	private static final double SIGMA = 1e-12;
+
+	private double a;
+	private double b;
+
+	/**
+	 * Fits the sigmoid to the outputs of a classifier.
+	 *
+	 * @param outputs The output of the classifier for each instance.
+	 * @param positive For each instance, whether it is in the positive
+	 * 	class.
+	 */
+	PlattScaler(double[] outputs, boolean[] positive)
+	{
+		int n = outputs.length;
+		double numPositive = 0;
+		for(int i = 0; i < n; i++)
+		{
+			if(positive[i])
+				numPositive++;
+		}
+		double numNegative = n - numPositive;
+
+		//targets a little inside 0 and 1, as Platt suggests
+		double hiTarget = (numPositive + 1)/(numPositive + 2);
+		double loTarget = 1/(numNegative + 2);
+		double[] t = new double[n];
+		for(int i = 0; i < n; i++)
+			t[i] = positive[i] ? hiTarget : loTarget;
+
+		a = 0;
+		b = Math.log((numNegative + 1)/(numPositive + 1));
+		double fval = objective(outputs, t, a, b);
+		for(int iteration = 0; iteration < MAX_ITERATIONS; iteration++)
+		{
+			double h11 = SIGMA;
+			double h22 = SIGMA;
+			double h21 = 0;
+			double g1 = 0;
+			double g2 = 0;
+			for(int i = 0; i < n; i++)
+			{
+				double fApB = outputs[i]*a + b;
+				double p;
+				double q;
+				if(fApB >= 0)
+				{
+					p = Math.exp(-fApB)/(1 + Math.exp(-fApB));
+					q = 1/(1 + Math.exp(-fApB));
+				}
+				else
+				{
+					p = 1/(1 + Math.exp(fApB));
+					q = Math.exp(fApB)/(1 + Math.exp(fApB));
+				}
+				double d2 = p*q;
+				h11 += outputs[i]*outputs[i]*d2;
+				h22 += d2;
+				h21 += outputs[i]*d2;
+				double d1 = t[i] - p;
+				g1 += outputs[i]*d1;
+				g2 += d1;
+			}
+			if(Math.abs(g1) < 1e-5 && Math.abs(g2) < 1e-5)
+				break;
+
+			double det = h11*h22 - h21*h21;
+			double dA = -(h22*g1 - h21*g2)/det;
+			double dB = -(-h21*g1 + h11*g2)/det;
+			double gd = g1*dA + g2*dB;
+			double step = 1;
+			while(step >= MIN_STEP)
+			{
+				double newA = a + step*dA;
+				double newB = b + step*dB;
+				double newf = objective(outputs, t, newA, newB);
+				if(newf < fval + 1e-4*step*gd)
+				{
+					a = newA;
+					b = newB;
+					fval = newf;
+					break;
+				}
+				step /= 2;
+			}
+			if(step < MIN_STEP)
+				break;
+		}
+	}
+
+	/**
+	 * @return The cross entropy of the sigmoid with parameters A and B
+	 * 	against the targets.
+	 */
+	private static double objective(double[] outputs, double[] t, double a, double b)
+	{
+		double f = 0;
+		for(int i = 0; i < outputs.length; i++)
+		{
+			double fApB = outputs[i]*a + b;
+			if(fApB >= 0)
+				f += t[i]*fApB + Math.log(1 + Math.exp(-fApB));
+			else
+				f += (t[i] - 1)*fApB + Math.log(1 + Math.exp(fApB));
+		}
+		return f;
+	}
+
+	/**
+	 * @param output An output of the classifier.
+	 * @return The probability that the instance is in the positive class.
+	 */
+	double probability(double output)
+	{
+		double fApB = output*a + b;
+		if(fApB >= 0)
+			return Math.exp(-fApB)/(1 + Math.exp(-fApB));
+		return 1/(1 + Math.exp(fApB));
+	}
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.linear;
+
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.classification.parameters.SVMParameters;
+import gov.sandia.hemlock.classification.parameters.SVMParameters.LossType;
+import gov.sandia.hemlock.core.WorkerThread;
+import gov.sandia.hemlock.data.AttributeType;
+import gov.sandia.hemlock.data.DataSet;
+import gov.sandia.hemlock.data.IDataSet;
+import gov.sandia.hemlock.data.RecordSchema;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Hemlock's own linear support vector machine or logistic regression,
+ * trained by {@link DualCoordinateDescent} in time linear in the size of
+ * the data instead of with the kernel matrix of Weka's SMO.  As SMO does,
+ * continuous attributes are scaled to [0, 1] by their range in the
+ * training data and discrete attributes become one binary feature per
+ * value.  The complexity parameter is C, defaulting to 1 as in SMO, and
+ * epsilon is the tolerance training stops at, defaulting to
+ * {@link #DEFAULT_TOLERANCE}.
+ * <p>
+ * More than two classes are handled one against the rest, with the
+ * classifiers of the classes trained in parallel.  The probability of each
+ * class comes from a sigmoid of its classifier's output, which for the
+ * hinge loss is fit to the training data by Platt scaling, and the
+ * probabilities are normalized to add up to one.  Setting
+ * buildLogisticModels to false skips Platt scaling and predicts a
+ * probability of one for the class with the largest output.
+ *
+ * @author Sean A. Gilpin
+ */
+public class SVM implements Model
+{
+	/** Tolerance of the dual solver when epsilon is not set, as in LIBLINEAR */
+	public static final double DEFAULT_TOLERANCE = 0.1;
+
+	private LossType loss;
+	private boolean calibrate;
+	private int numClasses;
+	/** For each attribute, its first feature */
+	private int[] offset;
+	private boolean[] discrete;
+	private double[] minimum;
+	private double[] range;
+	private int dim;
+	/** Weights of each one against the rest classifier, just one for two
+		classes */
+	private double[][] weights;
+	private PlattScaler[] scalers;
+	private transient DataSet dataSet;
+
+	/**
+	 * Associates this model with a set of data that will be used for
+	 * training.
+	 *
+	 * @param data A {@link DataSet}.
+	 */
+	public void setData(IDataSet data)
+	{
+		this.dataSet = (DataSet)data;
+	}
+
+	/**
+	 * Perform all steps to build/train the model.  Assumes the data set has
+	 * already been specified.
+	 *
+	 * @param modelParameters Specifies all information about which type of
+	 *	model should be built.
+	 * @throws Exception If training one of the classifiers fails.
+	 */
+	public void buildModel(ModelParameters modelParameters) throws Exception
+	{
+		SVMParameters params = (SVMParameters)modelParameters;
+		loss = params.isSetLoss() ? params.getLoss() : LossType.hinge;
+		calibrate = loss == LossType.hinge && (!params.isSetBuildLogisticModels() || params.getBuildLogisticModels());
+		final double complexity = params.isSetComplexity() ? params.getComplexity() : 1;
+		final double tolerance = params.isSetEpsilon() ? params.getEpsilon() : DEFAULT_TOLERANCE;
+		final long seed = params.isSetSeed() ? params.getSeed() : 1;
+
+		RecordSchema schema = dataSet.recordSchema;
+		numClasses = schema.labels.length;
+		createFeatures(schema);
+		final int numRows = dataSet.records.size();
+		double[] x = new double[numRows*dim];
+		final int[] labels = new int[numRows];
+		double[] features = new double[dim];
+		for(int i = 0; i < numRows; i++)
+		{
+			double[] record = dataSet.records.get(i);
+			encode(record, features);
+			System.arraycopy(features, 0, x, i*dim, dim);
+			labels[i] = (int)record[schema.numAttributes];
+		}
+		final DualCoordinateDescent solver = new DualCoordinateDescent(x, numRows, dim);
+
+		//two classes need only the classifier of the second class
+		int numClassifiers = (numClasses == 2) ? 1 : numClasses;
+		weights = new double[numClassifiers][];
+		scalers = new PlattScaler[numClassifiers];
+		int numThreads = Math.min(numClassifiers, WorkerThread.availableThreads());
+		if(numThreads <= 1)
+		{
+			for(int c = 0; c < numClassifiers; c++)
+				trainClassifier(solver, labels, c, complexity, tolerance, seed);
+		}
+		else
+		{
+			ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+			HemlockMetrics.registerExecutor(executor);
+			try
+			{
+				ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+				for(int c = 0; c < numClassifiers; c++)
+				{
+					final int classifier = c;
+					futures.add(executor.submit(new Callable<Object>() {
+						public Object call()
+						{
+							trainClassifier(solver, labels, classifier, complexity, tolerance, seed);
+							return null;
+						}
+					}));
+				}
+				for(Future<Object> f : futures)
+					f.get();
+			}
+			finally
+			{
+				HemlockMetrics.unregisterExecutor(executor);
+				executor.shutdown();
+			}
+		}
+		//Cleanout training data
+		dataSet = null;
+	}
+
+	/**
+	 * Trains one classifier of the model, and its Platt scaling if the model
+	 * is calibrated.
+	 */
+	private void trainClassifier(DualCoordinateDescent solver, int[] labels, int classifier,
+		double complexity, double tolerance, long seed)
+	{
+		int positiveClass = (numClasses == 2) ? 1 : classifier;
+		boolean[] positive = new boolean[labels.length];
+		for(int i = 0; i < labels.length; i++)
+			positive[i] = labels[i] == positiveClass;
+		Random random = new Random(seed);
+		double[] w = (loss == LossType.logistic) ?
+			solver.trainLogistic(positive, complexity, tolerance, random) :
+			solver.trainHinge(positive, complexity, tolerance, random);
+		weights[classifier] = w;
+		if(calibrate)
+		{
+			double[] outputs = new double[labels.length];
+			for(int i = 0; i < labels.length; i++)
+				outputs[i] = solver.dot(w, i);
+			scalers[classifier] = new PlattScaler(outputs, positive);
+		}
+	}
+
+	private void createFeatures(RecordSchema schema)
+	{
+		int numAttributes = schema.numAttributes;
+		offset = new int[numAttributes];
+		discrete = new boolean[numAttributes];
+		minimum = new double[numAttributes];
+		range = new double[numAttributes];
+		dim = 0;
+		for(int a = 0; a < numAttributes; a++)
+		{
+			offset[a] = dim;
+			discrete[a] = schema.attributeTypes[a] == AttributeType.Discrete;
+			if(discrete[a])
+			{
+				dim += schema.attributeValues[a].length;
+				continue;
+			}
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for(double[] record : dataSet.records)
+			{
+				if(Double.isNaN(record[a]))
+					continue;
+				min = Math.min(min, record[a]);
+				max = Math.max(max, record[a]);
+			}
+			minimum[a] = min;
+			range[a] = max - min;
+			dim++;
+		}
+		//the bias
+		dim++;
+	}
+
+	/**
+	 * Maps an instance to its features, leaving missing values at 0.
+	 */
+	private void encode(double[] record, double[] features)
+	{
+		Arrays.fill(features, 0);
+		for(int a = 0; a < offset.length; a++)
+		{
+			double value = record[a];
+			if(Double.isNaN(value))
+				continue;
+			if(discrete[a])
+			{
+				int v = (int)value;
+				int end = (a + 1 < offset.length) ? offset[a + 1] : dim - 1;
+				if(v >= 0 && offset[a] + v < end)
+					features[offset[a] + v] = 1;
+			}
+			else if(range[a] > 0)
+				features[offset[a]] = (value - minimum[a])/range[a];
+		}
+		features[dim - 1] = 1;
+	}
+
+	/**
+	 * @return The probability the classifier gives its positive class.
+	 */
+	private double probability(int classifier, double output)
+	{
+		if(loss == LossType.logistic)
+			return 1/(1 + Math.exp(-output));
+		return scalers[classifier].probability(output);
+	}
+
+	/**
+	 * Predicts the class label for an instance, the most probable class.
+	 * Assumes the model has already been built.
+	 *
+	 * @param record The instance which the prediction is made for.
+	 * @return The index of the predicted class label
+	 * @throws Exception
+	 */
+	public double getTargetValue(double[] record) throws Exception
+	{
+		double[] distribution = getTargetDistribution(record);
+		int maxIndex = 0;
+		for(int c = 1; c < distribution.length; c++)
+		{
+			if(distribution[c] > distribution[maxIndex])
+				maxIndex = c;
+		}
+		return maxIndex;
+	}
+
+	/**
+	 * Predicts the class distribution given an instance. Assumes the model
+	 * has already been built.
+	 *
+	 * @param record The given instance which the prediction is made for.
+	 * @return Distribution represented as an array of probabilities, where
+	 * 	the ith element is the probability of class i.
+	 * @throws Exception
+	 */
+	public double[] getTargetDistribution(double[] record) throws Exception
+	{
+		double[] features = new double[dim];
+		encode(record, features);
+		double[] outputs = new double[weights.length];
+		for(int c = 0; c < weights.length; c++)
+		{
+			for(int j = 0; j < dim; j++)
+				outputs[c] += weights[c][j]*features[j];
+		}
+
+		double[] distribution = new double[numClasses];
+		if(numClasses == 2)
+		{
+			if(loss == LossType.hinge && !calibrate)
+				distribution[(outputs[0] > 0) ? 1 : 0] = 1;
+			else
+			{
+				distribution[1] = probability(0, outputs[0]);
+				distribution[0] = 1 - distribution[1];
+			}
+			return distribution;
+		}
+		if(loss == LossType.hinge && !calibrate)
+		{
+			int maxIndex = 0;
+			for(int c = 1; c < numClasses; c++)
+			{
+				if(outputs[c] > outputs[maxIndex])
+					maxIndex = c;
+			}
+			distribution[maxIndex] = 1;
+			return distribution;
+		}
+		double total = 0;
+		for(int c = 0; c < numClasses; c++)
+		{
+			distribution[c] = probability(c, outputs[c]);
+			total += distribution[c];
+		}
+		for(int c = 0; c < numClasses; c++)
+			distribution[c] = (total > 0) ? distribution[c]/total : 1.0/numClasses;
+		return distribution;
+	}
+
+	/**
+	 * Will report the learning algorithm that is used by this model.
+	 *
+	 * @return The learning algorithm that is used by this model.
+	 */
+	public ModelType getModelType()
+	{
+		return ModelType.SVM;
+	}
+}
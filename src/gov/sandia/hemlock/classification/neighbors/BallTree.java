@@ -0,0 +1,221 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.neighbors;
+
+/**
+ * A ball tree, in which each node is the smallest ball around its centroid
+ * holding its points.  The points of a node are split at the median of
+ * their projection onto the line between two far apart points.  A search
+ * skips a ball when its surface is farther from the query than the
+ * neighbors already found, which still prunes well in more dimensions than
+ * a KD-tree can handle.
+ *
+ * @author Sean A. Gilpin
+ */
+class BallTree extends SpatialIndex
+{
+	private final int[] start;
+	private final int[] end;
+	/** The center of each node; null once the precision is reduced */
+	private double[] centers;
+	/** The centers of a reduced tree */
+	private float[] floatCenters;
+	private double[] radii;
+	private final int[] left;
+	private final int[] right;
+	private int numNodes = 0;
+
+	BallTree(double[] points, int dim)
+	{
+		super(points, dim);
+		//every leaf holds at least LEAF_SIZE/2 points
+		int capacity = 4*numPoints/LEAF_SIZE + 4;
+		start = new int[capacity];
+		end = new int[capacity];
+		centers = new double[capacity*dim];
+		radii = new double[capacity];
+		left = new int[capacity];
+		right = new int[capacity];
+		build(0, numPoints, new double[numPoints]);
+	}
+
+	private int build(int from, int to, double[] keys)
+	{
+		int node = numNodes++;
+		start[node] = from;
+		end[node] = to;
+		left[node] = -1;
+
+		//centroid and radius
+		int c = node*dim;
+		for(int i = from; i < to; i++)
+		{
+			for(int j = 0; j < dim; j++)
+				centers[c + j] += points[i*dim + j];
+		}
+		for(int j = 0; j < dim; j++)
+			centers[c + j] /= (to - from);
+		double radius = 0;
+		int farthest = from;
+		for(int i = from; i < to; i++)
+		{
+			double d = distanceToCenter(node, i);
+			if(d > radius)
+			{
+				radius = d;
+				farthest = i;
+			}
+		}
+		radii[node] = Math.sqrt(radius);
+		if(to - from <= LEAF_SIZE || radius == 0)
+			return node;
+
+		//project onto the line from the point farthest from the center to
+		//the point farthest from that one
+		int other = farthest;
+		double otherDistance = -1;
+		for(int i = from; i < to; i++)
+		{
+			double d = pointDistance(farthest, i);
+			if(d > otherDistance)
+			{
+				otherDistance = d;
+				other = i;
+			}
+		}
+		double[] direction = new double[dim];
+		for(int j = 0; j < dim; j++)
+			direction[j] = points[other*dim + j] - points[farthest*dim + j];
+		for(int i = from; i < to; i++)
+		{
+			double p = 0;
+			for(int j = 0; j < dim; j++)
+				p += points[i*dim + j]*direction[j];
+			keys[i] = p;
+		}
+		int mid = (from + to) >>> 1;
+		select(keys, from, to, mid);
+		left[node] = build(from, mid, keys);
+		right[node] = build(mid, to, keys);
+		return node;
+	}
+
+	private double distanceToCenter(int node, int point)
+	{
+		double d = 0;
+		for(int j = 0; j < dim; j++)
+		{
+			double diff = points[point*dim + j] - centers[node*dim + j];
+			d += diff*diff;
+		}
+		return d;
+	}
+
+	private double pointDistance(int a, int b)
+	{
+		double d = 0;
+		for(int j = 0; j < dim; j++)
+		{
+			double diff = points[a*dim + j] - points[b*dim + j];
+			d += diff*diff;
+		}
+		return d;
+	}
+
+	/**
+	 * Stores the centers as floats and widens each ball to hold its
+	 * rounded points.
+	 */
+	void reduceNodes()
+	{
+		float[] reducedCenters = new float[numNodes*dim];
+		double[] reducedRadii = new double[numNodes];
+		for(int node = 0; node < numNodes; node++)
+		{
+			int c = node*dim;
+			for(int j = 0; j < dim; j++)
+				reducedCenters[c + j] = (float)((centers != null) ? centers[c + j] : floatCenters[c + j]);
+			double radius = 0;
+			for(int i = start[node]; i < end[node]; i++)
+			{
+				double d = 0;
+				for(int j = 0; j < dim; j++)
+				{
+					double diff = coordinate(i*dim + j) - reducedCenters[c + j];
+					d += diff*diff;
+				}
+				radius = Math.max(radius, d);
+			}
+			reducedRadii[node] = Math.sqrt(radius);
+		}
+		centers = null;
+		floatCenters = reducedCenters;
+		radii = reducedRadii;
+	}
+
+	void search(double[] query, NeighborHeap heap, double approximation)
+	{
+		double factor = (1 + approximation)*(1 + approximation);
+		search(0, query, heap, factor, lowerBound(0, query));
+	}
+
+	/**
+	 * @return The squared distance from the query to the surface of the
+	 * 	ball of a node, 0 if the query is inside it.
+	 */
+	private double lowerBound(int node, double[] query)
+	{
+		double d = 0;
+		int c = node*dim;
+		if(centers != null)
+		{
+			for(int j = 0; j < dim; j++)
+			{
+				double diff = query[j] - centers[c + j];
+				d += diff*diff;
+			}
+		}
+		else
+		{
+			for(int j = 0; j < dim; j++)
+			{
+				double diff = query[j] - floatCenters[c + j];
+				d += diff*diff;
+			}
+		}
+		double gap = Math.sqrt(d) - radii[node];
+		return (gap > 0) ? gap*gap : 0;
+	}
+
+	private void search(int node, double[] query, NeighborHeap heap, double factor, double bound)
+	{
+		if(bound*factor >= heap.worst())
+			return;
+		if(left[node] < 0)
+		{
+			searchLeaf(query, start[node], end[node], heap);
+			return;
+		}
+		double leftBound = lowerBound(left[node], query);
+		double rightBound = lowerBound(right[node], query);
+		if(leftBound <= rightBound)
+		{
+			search(left[node], query, heap, factor, leftBound);
+			search(right[node], query, heap, factor, rightBound);
+		}
+		else
+		{
+			search(right[node], query, heap, factor, rightBound);
+			search(left[node], query, heap, factor, leftBound);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.neighbors;
+
+/**
+ * A KD-tree, which splits the points of each node at the median of the
+ * coordinate they are most spread out along.  A search skips a child when
+ * the splitting plane is farther from the query than the neighbors already
+ * found, which is effective when there are few dimensions.
+ *
+ * @author Sean A. Gilpin
+ */
+class KDTree extends SpatialIndex
+{
+	/** Most dimensions a KD-tree is used for; beyond this nearly every
+		leaf is searched */
+	static final int MAX_DIMENSIONS = 16;
+
+	private final int[] start;
+	private final int[] end;
+	private final int[] splitDim;
+	/** The coordinate each node splits at, rounded like the points */
+	private double[] splitValue;
+	private final int[] left;
+	private final int[] right;
+	private int numNodes = 0;
+
+	KDTree(double[] points, int dim)
+	{
+		super(points, dim);
+		//every leaf holds at least LEAF_SIZE/2 points
+		int capacity = 4*numPoints/LEAF_SIZE + 4;
+		start = new int[capacity];
+		end = new int[capacity];
+		splitDim = new int[capacity];
+		splitValue = new double[capacity];
+		left = new int[capacity];
+		right = new int[capacity];
+		build(0, numPoints, new double[numPoints]);
+	}
+
+	private int build(int from, int to, double[] keys)
+	{
+		int node = numNodes++;
+		start[node] = from;
+		end[node] = to;
+		left[node] = -1;
+		if(to - from <= LEAF_SIZE)
+			return node;
+
+		//split on the coordinate with the widest spread
+		int bestDim = 0;
+		double bestSpread = -1;
+		for(int j = 0; j < dim; j++)
+		{
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for(int i = from; i < to; i++)
+			{
+				double v = points[i*dim + j];
+				if(v < min)
+					min = v;
+				if(v > max)
+					max = v;
+			}
+			if(max - min > bestSpread)
+			{
+				bestSpread = max - min;
+				bestDim = j;
+			}
+		}
+		if(bestSpread <= 0)
+			return node;
+
+		for(int i = from; i < to; i++)
+			keys[i] = points[i*dim + bestDim];
+		int mid = (from + to) >>> 1;
+		select(keys, from, to, mid);
+		splitDim[node] = bestDim;
+		splitValue[node] = keys[mid];
+		left[node] = build(from, mid, keys);
+		right[node] = build(mid, to, keys);
+		return node;
+	}
+
+	void reduceNodes()
+	{
+		double[] rounded = new double[numNodes];
+		for(int node = 0; node < numNodes; node++)
+			rounded[node] = round(splitValue[node]);
+		splitValue = rounded;
+	}
+
+	void search(double[] query, NeighborHeap heap, double approximation)
+	{
+		double factor = (1 + approximation)*(1 + approximation);
+		search(0, query, heap, factor);
+	}
+
+	private void search(int node, double[] query, NeighborHeap heap, double factor)
+	{
+		if(left[node] < 0)
+		{
+			searchLeaf(query, start[node], end[node], heap);
+			return;
+		}
+		double diff = query[splitDim[node]] - splitValue[node];
+		int near = (diff < 0) ? left[node] : right[node];
+		int far = (diff < 0) ? right[node] : left[node];
+		search(near, query, heap, factor);
+		if(diff*diff*factor < heap.worst())
+			search(far, query, heap, factor);
+	}
+}
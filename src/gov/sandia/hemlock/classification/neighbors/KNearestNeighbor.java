@@ -0,0 +1,320 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.neighbors;
+
+import gov.sandia.hemlock.classification.BatchModel;
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.ReducedPrecisionModel;
+import gov.sandia.hemlock.classification.StoragePrecision;
+import gov.sandia.hemlock.classification.parameters.KNearestNeighborParameters;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.WorkerThread;
+import gov.sandia.hemlock.data.AttributeType;
+import gov.sandia.hemlock.data.DataSet;
+import gov.sandia.hemlock.data.IDataSet;
+import gov.sandia.hemlock.data.RecordSchema;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Hemlock's own k-nearest neighbor classifier, which finds neighbors with
+ * a KD-tree or ball tree instead of comparing each query with every
+ * training instance.  Distances are the ones Weka's IBk uses.  Continuous
+ * attributes are scaled to [0, 1] by their range in the training data.
+ * Discrete attributes add 1 to the squared distance when their values
+ * differ, which is done by giving each value its own coordinate of
+ * sqrt(1/2).  The number of neighbors defaults to 1 as in IBk, and the
+ * neighbors vote with equal weight on top of a small prior for every
+ * class.
+ * <p>
+ * Predictions for a whole data set are divided among several threads.
+ * <p>
+ * The training instances can be stored as floats, or as 16 bit fractions
+ * of their [0, 1] range, by {@link #reducePrecision}.  Neighbors are then
+ * found exactly among the rounded instances, so a query whose neighbors
+ * are nearly tied may get different ones.
+ *
+ * @author Sean A. Gilpin
+ */
+public class KNearestNeighbor implements BatchModel, ReducedPrecisionModel
+{
+	/** Coordinate of the value of a discrete attribute */
+	private static final double DISCRETE_COORDINATE = Math.sqrt(0.5);
+	/** Fewest queries given to a thread when predicting a batch */
+	private static final int MIN_BATCH = 256;
+
+	private int numNeighbors;
+	private double approximation;
+	private int numClasses;
+	private int numTraining;
+	/** For each attribute, its first coordinate */
+	private int[] offset;
+	private boolean[] discrete;
+	private double[] minimum;
+	private double[] range;
+	private int dim;
+	private SpatialIndex index;
+	/** The class of each point of the index */
+	private int[] labels;
+	private transient DataSet dataSet;
+
+	/**
+	 * Associates this model with a set of data that will be used for
+	 * training.
+	 *
+	 * @param data A {@link DataSet}.
+	 */
+	public void setData(IDataSet data)
+	{
+		this.dataSet = (DataSet)data;
+	}
+
+	/**
+	 * Perform all steps to build/train the model.  Assumes the data set has
+	 * already been specified.
+	 *
+	 * @param modelParameters Specifies all information about which type of
+	 *	model should be built.
+	 * @throws Exception
+	 */
+	public void buildModel(ModelParameters modelParameters) throws Exception
+	{
+		KNearestNeighborParameters params = (KNearestNeighborParameters)modelParameters;
+		numNeighbors = params.isSetNumberOfNeighbors() ? Math.max(1, params.getNumberOfNeighbors()) : 1;
+		approximation = params.isSetApproximation() ? Math.max(0, params.getApproximation()) : 0;
+
+		RecordSchema schema = dataSet.recordSchema;
+		int numAttributes = schema.numAttributes;
+		numClasses = schema.labels.length;
+		numTraining = dataSet.records.size();
+		offset = new int[numAttributes];
+		discrete = new boolean[numAttributes];
+		minimum = new double[numAttributes];
+		range = new double[numAttributes];
+		dim = 0;
+		for(int a = 0; a < numAttributes; a++)
+		{
+			offset[a] = dim;
+			discrete[a] = schema.attributeTypes[a] == AttributeType.Discrete;
+			if(discrete[a])
+			{
+				dim += schema.attributeValues[a].length;
+			}
+			else
+			{
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				for(double[] record : dataSet.records)
+				{
+					min = Math.min(min, record[a]);
+					max = Math.max(max, record[a]);
+				}
+				minimum[a] = min;
+				range[a] = max - min;
+				dim++;
+			}
+		}
+
+		double[] points = new double[numTraining*dim];
+		double[] coordinates = new double[dim];
+		for(int i = 0; i < numTraining; i++)
+		{
+			encode(dataSet.records.get(i), coordinates);
+			System.arraycopy(coordinates, 0, points, i*dim, dim);
+		}
+		index = SpatialIndex.create(points, dim);
+		labels = new int[numTraining];
+		for(int i = 0; i < numTraining; i++)
+			labels[i] = (int)dataSet.records.get(index.original[i])[numAttributes];
+		//Cleanout training data
+		dataSet = null;
+	}
+
+	/**
+	 * Maps an instance to the coordinates its distances are measured in.
+	 */
+	private void encode(double[] record, double[] coordinates)
+	{
+		Arrays.fill(coordinates, 0);
+		for(int a = 0; a < offset.length; a++)
+		{
+			if(discrete[a])
+			{
+				int value = (int)record[a];
+				int end = (a + 1 < offset.length) ? offset[a + 1] : dim;
+				if(value >= 0 && offset[a] + value < end)
+					coordinates[offset[a] + value] = DISCRETE_COORDINATE;
+			}
+			else if(range[a] > 0)
+				coordinates[offset[a]] = (record[a] - minimum[a])/range[a];
+		}
+	}
+
+	/**
+	 * Predicts the distribution of one instance, reusing the given work
+	 * space.
+	 */
+	private double[] predict(double[] record, double[] coordinates, NeighborHeap heap)
+	{
+		encode(record, coordinates);
+		heap.clear();
+		if(numTraining > 0)
+			index.search(coordinates, heap, approximation);
+
+		//every class starts with a small weight, as in IBk
+		double[] distribution = new double[numClasses];
+		double prior = 1.0/Math.max(1, numTraining);
+		double total = numClasses*prior;
+		for(int c = 0; c < numClasses; c++)
+			distribution[c] = prior;
+		for(int i = 0; i < heap.size(); i++)
+		{
+			distribution[labels[heap.point(i)]] += 1;
+			total += 1;
+		}
+		for(int c = 0; c < numClasses; c++)
+			distribution[c] /= total;
+		return distribution;
+	}
+
+	/**
+	 * Predicts the class label for an instance. Assumes the model has
+	 * already been built.
+	 *
+	 * @param record The instance which the prediction is made for.
+	 * @return The index of the predicted class label
+	 * @throws Exception
+	 */
+	public double getTargetValue(double[] record) throws Exception
+	{
+		return argMax(getTargetDistribution(record));
+	}
+
+	/**
+	 * Predicts the class distribution given an instance. Assumes the model
+	 * has already been built.
+	 *
+	 * @param record The given instance which the prediction is made for.
+	 * @return Distribution represented as an array of probabilities, where
+	 * 	the ith element is the probability of class i.
+	 * @throws Exception
+	 */
+	public double[] getTargetDistribution(double[] record) throws Exception
+	{
+		return predict(record, new double[dim], new NeighborHeap(numNeighbors));
+	}
+
+	/**
+	 * Predicts the class distribution of each of a set of instances,
+	 * dividing them among the available processors.
+	 *
+	 * @param records The instances to make predictions for.
+	 * @return The distribution predicted for each instance.
+	 * @throws Exception If one of the threads fails.
+	 */
+	public double[][] getTargetDistributions(final ArrayList<double[]> records) throws Exception
+	{
+		final double[][] distributions = new double[records.size()][];
+		int numThreads = Math.min(WorkerThread.availableThreads(), records.size()/MIN_BATCH);
+		if(numThreads <= 1)
+		{
+			predictRange(records, distributions, 0, records.size());
+			return distributions;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		HemlockMetrics.registerExecutor(executor);
+		try
+		{
+			ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+			int chunk = (records.size() + numThreads - 1)/numThreads;
+			for(int from = 0; from < records.size(); from += chunk)
+			{
+				final int start = from;
+				final int end = Math.min(from + chunk, records.size());
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call()
+					{
+						predictRange(records, distributions, start, end);
+						return null;
+					}
+				}));
+			}
+			for(Future<Object> f : futures)
+				f.get();
+		}
+		finally
+		{
+			HemlockMetrics.unregisterExecutor(executor);
+			executor.shutdown();
+		}
+		return distributions;
+	}
+
+	private void predictRange(ArrayList<double[]> records, double[][] distributions, int start, int end)
+	{
+		double[] coordinates = new double[dim];
+		NeighborHeap heap = new NeighborHeap(numNeighbors);
+		for(int i = start; i < end; i++)
+			distributions[i] = predict(records.get(i), coordinates, heap);
+	}
+
+	/**
+	 * Makes a model with the same parameters whose training instances are
+	 * stored at the given precision.
+	 *
+	 * @param precision The precision of the training instances.
+	 * @return This model for {@link StoragePrecision#Full}, otherwise the
+	 * 	reduced model.
+	 */
+	public Model reducePrecision(StoragePrecision precision)
+	{
+		if(precision == StoragePrecision.Full)
+			return this;
+		KNearestNeighbor reduced = new KNearestNeighbor();
+		reduced.numNeighbors = numNeighbors;
+		reduced.approximation = approximation;
+		reduced.numClasses = numClasses;
+		reduced.numTraining = numTraining;
+		reduced.offset = offset;
+		reduced.discrete = discrete;
+		reduced.minimum = minimum;
+		reduced.range = range;
+		reduced.dim = dim;
+		reduced.labels = labels;
+		reduced.index = index.reducePrecision(precision);
+		return reduced;
+	}
+
+	private static int argMax(double[] distribution)
+	{
+		int maxIndex = 0;
+		for(int i = 1; i < distribution.length; i++)
+		{
+			if(distribution[i] > distribution[maxIndex])
+				maxIndex = i;
+		}
+		return maxIndex;
+	}
+
+	/**
+	 * Will report the learning algorithm that is used by this model.
+	 *
+	 * @return The learning algorithm that is used by this model.
+	 */
+	public ModelType getModelType()
+	{
+		return ModelType.KNearestNeighbor;
+	}
+}
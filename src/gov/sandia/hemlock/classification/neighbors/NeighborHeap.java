@@ -0,0 +1,111 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.neighbors;
+
+/**
+ * The k nearest points found so far by a search, kept in a binary heap
+ * with the farthest on top.  A heap is reused from one query to the next
+ * by calling {@link #clear}.
+ *
+ * @author Sean A. Gilpin
+ */
+class NeighborHeap
+{
+	private final int k;
+	private final double[] distances;
+	private final int[] points;
+	private int size = 0;
+
+	/**
+	 * @param k The number of neighbors to keep.
+	 */
+	NeighborHeap(int k)
+	{
+		this.k = k;
+		distances = new double[k];
+		points = new int[k];
+	}
+
+	void clear()
+	{
+		size = 0;
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return The squared distance a point must beat to be kept, infinite
+	 * 	until k points have been found.
+	 */
+	double worst()
+	{
+		return (size < k) ? Double.POSITIVE_INFINITY : distances[0];
+	}
+
+	/**
+	 * @param i A position in the heap, less than size().
+	 * @return The point at that position.
+	 */
+	int point(int i)
+	{
+		return points[i];
+	}
+
+	/**
+	 * Keeps a point if it is among the k nearest seen so far.
+	 *
+	 * @param distance The squared distance to the point.
+	 * @param point The point.
+	 */
+	void offer(double distance, int point)
+	{
+		if(size < k)
+		{
+			//sift up
+			int i = size++;
+			while(i > 0)
+			{
+				int parent = (i - 1)/2;
+				if(distances[parent] >= distance)
+					break;
+				distances[i] = distances[parent];
+				points[i] = points[parent];
+				i = parent;
+			}
+			distances[i] = distance;
+			points[i] = point;
+		}
+		else if(distance < distances[0])
+		{
+			//replace the farthest and sift down
+			int i = 0;
+			while(true)
+			{
+				int child = 2*i + 1;
+				if(child >= size)
+					break;
+				if(child + 1 < size && distances[child + 1] > distances[child])
+					child++;
+				if(distances[child] <= distance)
+					break;
+				distances[i] = distances[child];
+				points[i] = points[child];
+				i = child;
+			}
+			distances[i] = distance;
+			points[i] = point;
+		}
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.neighbors;
+
+import gov.sandia.hemlock.classification.StoragePrecision;
+import java.io.Serializable;
+
+/**
+ * A tree over a set of points for finding the nearest neighbors of a query
+ * by squared Euclidean distance.  The points are kept in one flat array,
+ * point i taking up elements i*dim to (i+1)*dim - 1, and are reordered
+ * while the tree is built so that the points of each leaf are next to each
+ * other in memory.
+ * <p>
+ * Every coordinate lies in [0, 1], so a reduced copy of the index made by
+ * {@link #reducePrecision} can store the points as floats or as 16 bit
+ * fractions.  Its nodes are rounded the same way as the points, so that a
+ * search of the reduced index is as exact as before, over the rounded
+ * points.
+ *
+ * @author Sean A. Gilpin
+ */
+abstract class SpatialIndex implements Serializable, Cloneable
+{
+	/** Number of points in a leaf before it is split */
+	static final int LEAF_SIZE = 16;
+	/** The value of one unit of a Quantized16 coordinate */
+	private static final double QUANTUM = 1.0/Character.MAX_VALUE;
+
+	/** The coordinates of the points, point after point; null once the
+		precision is reduced */
+	double[] points;
+	/** The coordinates of a Float32 index */
+	float[] floatPoints;
+	/** The coordinates of a Quantized16 index, in units of QUANTUM */
+	char[] quantizedPoints;
+	/** The precision the coordinates are stored in */
+	StoragePrecision precision = StoragePrecision.Full;
+	/** The number of coordinates of a point */
+	final int dim;
+	/** The number of points */
+	final int numPoints;
+	/** The position each point had before the points were reordered */
+	final int[] original;
+
+	/**
+	 * @param points The coordinates of the points, which are reordered.
+	 * @param dim The number of coordinates of a point.
+	 */
+	SpatialIndex(double[] points, int dim)
+	{
+		this.points = points;
+		this.dim = dim;
+		this.numPoints = (dim == 0) ? 0 : points.length/dim;
+		original = new int[numPoints];
+		for(int i = 0; i < numPoints; i++)
+			original[i] = i;
+	}
+
+	/**
+	 * Finds the nearest points to a query.  With an approximation of
+	 * epsilon, each neighbor found is at most (1 + epsilon) times farther
+	 * away than the true neighbor of the same rank.
+	 *
+	 * @param query The coordinates of the query.
+	 * @param heap Receives the nearest points, as positions in the
+	 * 	reordered points.
+	 * @param approximation The allowed relative error in distance.
+	 */
+	abstract void search(double[] query, NeighborHeap heap, double approximation);
+
+	/**
+	 * @return The squared distance between a query and a point.
+	 */
+	final double distance(double[] query, int point)
+	{
+		double d = 0;
+		int offset = point*dim;
+		if(points != null)
+		{
+			for(int j = 0; j < dim; j++)
+			{
+				double diff = query[j] - points[offset + j];
+				d += diff*diff;
+			}
+		}
+		else if(floatPoints != null)
+		{
+			for(int j = 0; j < dim; j++)
+			{
+				double diff = query[j] - floatPoints[offset + j];
+				d += diff*diff;
+			}
+		}
+		else
+		{
+			for(int j = 0; j < dim; j++)
+			{
+				double diff = query[j] - quantizedPoints[offset + j]*QUANTUM;
+				d += diff*diff;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * @param i The position of a coordinate in the flat array of points.
+	 * @return The coordinate, as stored.
+	 */
+	final double coordinate(int i)
+	{
+		if(points != null)
+			return points[i];
+		if(floatPoints != null)
+			return floatPoints[i];
+		return quantizedPoints[i]*QUANTUM;
+	}
+
+	/**
+	 * Rounds a coordinate to the precision of this index.  Rounding keeps
+	 * the order of coordinates, so a node split between two sets of points
+	 * still separates them once both are rounded.
+	 */
+	final double round(double value)
+	{
+		if(precision == StoragePrecision.Float32)
+			return (float)value;
+		if(precision == StoragePrecision.Quantized16)
+			return Math.round(Math.min(Math.max(value, 0), 1)/QUANTUM)*QUANTUM;
+		return value;
+	}
+
+	/**
+	 * Makes a copy of this index with the points stored at the given
+	 * precision.  This index is not changed.
+	 *
+	 * @param precision The precision of the coordinates.
+	 * @return The reduced index, this index for
+	 * 	{@link StoragePrecision#Full}.
+	 */
+	final SpatialIndex reducePrecision(StoragePrecision precision)
+	{
+		if(precision == StoragePrecision.Full)
+			return this;
+		SpatialIndex reduced;
+		try
+		{
+			reduced = (SpatialIndex)clone();
+		}
+		catch(CloneNotSupportedException e)
+		{
+			//SpatialIndex is Cloneable, so this cannot happen
+			throw new IllegalStateException(e);
+		}
+		int length = numPoints*dim;
+		reduced.precision = precision;
+		reduced.points = null;
+		reduced.floatPoints = null;
+		reduced.quantizedPoints = null;
+		if(precision == StoragePrecision.Float32)
+		{
+			reduced.floatPoints = new float[length];
+			for(int i = 0; i < length; i++)
+				reduced.floatPoints[i] = (float)coordinate(i);
+		}
+		else
+		{
+			reduced.quantizedPoints = new char[length];
+			for(int i = 0; i < length; i++)
+				reduced.quantizedPoints[i] = (char)Math.round(Math.min(Math.max(coordinate(i), 0), 1)/QUANTUM);
+		}
+		reduced.reduceNodes();
+		return reduced;
+	}
+
+	/**
+	 * Rounds the nodes of a reduced copy to match its rounded points.
+	 * The copy shares the node arrays of the original, so they must be
+	 * replaced rather than changed.
+	 */
+	abstract void reduceNodes();
+
+	/**
+	 * Checks every point of a leaf.
+	 */
+	final void searchLeaf(double[] query, int start, int end, NeighborHeap heap)
+	{
+		for(int i = start; i < end; i++)
+			heap.offer(distance(query, i), i);
+	}
+
+	/**
+	 * Swaps two points, keeping track of where they came from.
+	 */
+	final void swap(int a, int b)
+	{
+		if(a == b)
+			return;
+		int oa = a*dim;
+		int ob = b*dim;
+		for(int j = 0; j < dim; j++)
+		{
+			double t = points[oa + j];
+			points[oa + j] = points[ob + j];
+			points[ob + j] = t;
+		}
+		int t = original[a];
+		original[a] = original[b];
+		original[b] = t;
+	}
+
+	/**
+	 * Reorders the points in [start, end) so that the point at position
+	 * nth has the key it would have if they were sorted by key, with
+	 * smaller keys before it and larger keys after it.
+	 *
+	 * @param keys The key of each point, reordered with the points.
+	 */
+	final void select(double[] keys, int start, int end, int nth)
+	{
+		int lo = start;
+		int hi = end - 1;
+		while(lo < hi)
+		{
+			double pivot = keys[(lo + hi) >>> 1];
+			int i = lo;
+			int j = hi;
+			while(i <= j)
+			{
+				while(keys[i] < pivot)
+					i++;
+				while(keys[j] > pivot)
+					j--;
+				if(i <= j)
+				{
+					double t = keys[i];
+					keys[i] = keys[j];
+					keys[j] = t;
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+			if(nth <= j)
+				hi = j;
+			else if(nth >= i)
+				lo = i;
+			else
+				break;
+		}
+	}
+
+	/**
+	 * Chooses the kind of tree that searches best in the given number of
+	 * dimensions: a KD-tree, which splits on one coordinate at a time,
+	 * for few dimensions and a ball tree otherwise.
+	 *
+	 * @param points The coordinates of the points, which are reordered.
+	 * @param dim The number of coordinates of a point.
+	 * @return The index.
+	 */
+	static SpatialIndex create(double[] points, int dim)
+	{
+		if(dim <= KDTree.MAX_DIMENSIONS)
+			return new KDTree(points, dim);
+		return new BallTree(points, dim);
+	}
+}
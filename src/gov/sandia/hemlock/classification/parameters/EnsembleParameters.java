@@ -12,6 +12,7 @@
 package gov.sandia.hemlock.classification.parameters;
 
 import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.StoragePrecision;
 import gov.sandia.hemlock.classification.fusion.*;
 import gov.sandia.hemlock.core.FrameworkType;
 import java.util.Hashtable;
@@ -31,6 +32,8 @@ public class EnsembleParameters extends ModelParameters
 	protected int numberOfBaseClassifiers = 0;
 	protected long seed;
 	protected boolean seedSet=false;
+	protected boolean compileTrees = false;
+	protected StoragePrecision precision = StoragePrecision.Full;
 	
 	/**
 	 * Calls the inhereted ModelParameters constructor and then specifies
@@ -76,6 +79,14 @@ public class EnsembleParameters extends ModelParameters
 		{
 			this.setSeed(Long.parseLong(parameters.get("seed")));
 		}
+		if(parameters.containsKey("CompileTrees"))
+		{
+			this.setCompileTrees(Boolean.parseBoolean(parameters.get("CompileTrees")));
+		}
+		if(parameters.containsKey("Precision"))
+		{
+			this.setPrecision(StoragePrecision.valueOf(parameters.get("Precision")));
+		}
 	}
 	
 	public String getBaseClassifierSetID()
@@ -132,6 +143,45 @@ public class EnsembleParameters extends ModelParameters
 		return this.seedSet;
 	}
 	
+	/**
+	 * Specify whether base classifiers that are trees or forests should be
+	 * compiled into flat node tables, which predict the same distributions
+	 * faster.
+	 *
+	 * @param compileTrees True to compile tree base classifiers.
+	 */
+	public void setCompileTrees(boolean compileTrees)
+	{
+		this.compileTrees = compileTrees;
+	}
+	
+	/**
+	 * @return True if tree base classifiers should be compiled.
+	 */
+	public boolean getCompileTrees()
+	{
+		return this.compileTrees;
+	}
+	
+	/**
+	 * Specify the precision the base classifiers store their parameters in.
+	 * Reduced precisions take less memory and predict nearly the same.
+	 *
+	 * @param precision The precision of the base classifiers.
+	 */
+	public void setPrecision(StoragePrecision precision)
+	{
+		this.precision = precision;
+	}
+	
+	/**
+	 * @return The precision of the base classifiers.
+	 */
+	public StoragePrecision getPrecision()
+	{
+		return this.precision;
+	}
+	
 	public enum EnsembleGenerationType
 	{
 		Bagging, SameTrainingSet;
@@ -25,6 +25,8 @@ public class KNearestNeighborParameters extends ModelParameters
 {
 	private int numberOfNeighbors;
 	private boolean isNumberOfNeighborsSet = false;
+	private double approximation;
+	private boolean isApproximationSet = false;
 	
 	/**
 	 * Constructor for creating parameters instance, where none of the
@@ -57,6 +59,12 @@ public class KNearestNeighborParameters extends ModelParameters
 		{
 			setNumberOfNeighbors((int)Double.parseDouble(parameters.get("numberOfNeighbors")));
 		}
+		
+		//approximation
+		if(parameters.containsKey("approximation"))
+		{
+			setApproximation(Double.parseDouble(parameters.get("approximation")));
+		}
 	}
 	
 	/**
@@ -90,4 +98,37 @@ public class KNearestNeighborParameters extends ModelParameters
 	{
 		return isNumberOfNeighborsSet;
 	}
+	
+	/**
+	 * Allow the neighbor search to return neighbors up to (1 + epsilon)
+	 * times farther away than the true nearest neighbors, which lets it
+	 * skip more of the training instances.  Only used by the Hemlock
+	 * framework.
+	 *
+	 * @param epsilon The allowed relative error in distance, 0 for an
+	 * 	exact search.
+	 */
+	public void setApproximation(double epsilon)
+	{
+		approximation = epsilon;
+		isApproximationSet = true;
+	}
+	
+	/**
+	 * @return The allowed relative error in neighbor distance.
+	 */
+	public double getApproximation()
+	{
+		return approximation;
+	}
+	
+	/**
+	 * Check whether the parameter approximation has been set by the user.
+	 *
+	 * @return True if it has been set by the user.
+	 */
+	public boolean isSetApproximation()
+	{
+		return isApproximationSet;
+	}
 }
@@ -14,17 +14,20 @@ package gov.sandia.hemlock.classification.parameters;
 import gov.sandia.hemlock.classification.ModelType;
 import gov.sandia.hemlock.core.*;
 
+import java.io.Serializable;
+import java.lang.reflect.*;
 import java.util.*;
 
 /**
  * Base class for specifying parameters for a model to be constructed.  Is
  * not meant to every be instantiated.  Only subclasses of this class should
  * be instantiated.  Every derived class must always must specify a framework 
- * type and a model type.
+ * type and a model type.  Parameters are serializable so that they can be
+ * saved along with the ensembles they were used to build.
  * 
  * @author Sean A. Gilpin
  */
-public class ModelParameters
+public class ModelParameters implements Serializable
 {
 	/** The learning algorithm that should be used to build the model */
 	public final ModelType modelType;
@@ -62,6 +65,43 @@ public class ModelParameters
 		return isEnsemble;
 	}
 	
+	/**
+	 * Describes these parameters by the values of all of their fields,
+	 * including those of subclasses, so that two instances with the same
+	 * description specify the same model.
+	 *
+	 * @return A description of these parameters, or null if a field holds
+	 * 	an object, such as the base classifiers of an ensemble, that cannot
+	 * 	be described by value.
+	 */
+	public String getDescription()
+	{
+		TreeMap<String,String> values = new TreeMap<String,String>();
+		for(Class<?> c = getClass(); c != Object.class; c = c.getSuperclass())
+		{
+			for(Field field : c.getDeclaredFields())
+			{
+				if(Modifier.isStatic(field.getModifiers()))
+					continue;
+				try
+				{
+					field.setAccessible(true);
+					Object value = field.get(this);
+					if(!(value == null || value instanceof String || value instanceof Number ||
+							value instanceof Boolean || value instanceof Character || value instanceof Enum))
+						return null;
+					values.put(c.getSimpleName() + "." + field.getName(), String.valueOf(value));
+				}
+				catch(IllegalAccessException e)
+				{
+					//setAccessible succeeded, so this cannot happen
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+		return getClass().getName() + values.toString();
+	}
+	
 	/**
 	 * Used to instantiate ModelParameters derived classes.  Each value
 	 * from the enum {@link ModelType} corresponds to a subclass of
@@ -31,6 +31,8 @@ public class SVMParameters extends ModelParameters
 	private boolean isEpsilonSet;
 	private int seed;
 	private boolean isSeedSet;
+	private LossType loss;
+	private boolean isLossSet;
 	
 	//Some parameters not added:
 	//kernel
@@ -86,6 +88,11 @@ public class SVMParameters extends ModelParameters
 		{
 			this.setSeed((int)Double.parseDouble(parameters.get("seed")));
 		}
+		//loss
+		if(parameters.containsKey("loss"))
+		{
+			this.setLoss(LossType.valueOf(parameters.get("loss")));
+		}
 	}
 	
 	/**
@@ -217,5 +224,48 @@ public class SVMParameters extends ModelParameters
 		return isSeedSet;
 	}
 	
+	/**
+	 * Specify the loss minimized by the linear models of the hemlock
+	 * framework.  Weka's SMO always uses the hinge loss.
+	 *
+	 * @param loss The loss to minimize.
+	 */
+	public void setLoss(LossType loss)
+	{
+		this.loss = loss;
+		isLossSet = true;
+	}
+	
+	/**
+	 * Get the value of the loss parameter.
+	 *
+	 * @return The loss to minimize.
+	 */
+	public LossType getLoss()
+	{
+		return loss;
+	}
+	
+	/**
+	 * Check if the loss parameter has been explicitly set.
+	 *
+	 * @return True if the loss parameter has been explicitly set.
+	 */
+	public boolean isSetLoss()
+	{
+		return isLossSet;
+	}
+	
+	/**
+	 * The losses a linear model can be trained to minimize.
+	 */
+	public enum LossType
+	{
+		/** The support vector machine */
+		hinge,
+		/** Logistic regression */
+		logistic;
+	}
+	
 	
 }
@@ -0,0 +1,566 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.trees;
+
+import gov.sandia.hemlock.classification.BatchModel;
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.ReducedPrecisionModel;
+import gov.sandia.hemlock.classification.StoragePrecision;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.WorkerThread;
+import gov.sandia.hemlock.data.IDataSet;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A trained tree or forest compiled into one flat table of nodes, for fast
+ * scoring.  Every tree is stored in the same parallel arrays, so scoring an
+ * instance is a loop over array elements with no node objects, virtual
+ * calls or Weka instances.  Data sets are divided among the available
+ * processors and scored a block of instances per tree, with a few
+ * instances walking the tree in step so that the memory reads of one
+ * overlap those of the others.
+ * <p>
+ * Use {@link #compile} to compile the native {@link RandomTree} and
+ * {@link RandomForest} or the Weka RandomTree and RandomForest wrappers.
+ * The compiled model predicts the average of the distributions of its
+ * trees, which is what both frameworks predict, and reports the model type
+ * of the model it was compiled from.  It cannot be trained itself.
+ * <p>
+ * {@link #reducePrecision} makes a table that stores the split thresholds
+ * as floats and the class distributions as floats, or as 16 bit fractions
+ * of the largest probability in the table, sharing the rest of this table.
+ * An instance whose value lies between a threshold and its float takes the
+ * other branch, and the distributions are off by at most one part in
+ * 65535, so the reduced table predicts nearly but not exactly the same.
+ *
+ * @author Sean A. Gilpin
+ */
+public class CompiledTreeEnsemble implements BatchModel, ReducedPrecisionModel
+{
+	/** Number of instances walking the trees in step */
+	private static final int INTERLEAVE = 4;
+	/** Number of instances each tree scores before the next tree */
+	private static final int BLOCK = 256;
+	/** Fewest instances given to a thread when scoring a batch */
+	private static final int MIN_BATCH = 256;
+	private static final String WEKA_COMPILER = "gov.sandia.hemlock.wekaInterface.WekaTreeCompiler";
+
+	private final ModelType modelType;
+	private final int numClasses;
+	/** The root node of each tree */
+	private int[] roots = new int[0];
+	/** The attribute each node splits on, -1 for a leaf */
+	private int[] attribute = new int[64];
+	/** For a continuous split, values no greater than this go to the first
+		child and the rest to the second */
+	private double[] threshold = new double[64];
+	/** The number of the first child of each node */
+	private int[] firstChild = new int[64];
+	/** The number of children of a discrete split, one per value; 0 for a
+		continuous split */
+	private int[] arity = new int[64];
+	/** The offset in distributions of the class distribution of each leaf
+		and discrete split */
+	private int[] distribution = new int[64];
+	/** The class distributions of the nodes, numClasses values each */
+	private double[] distributions = new double[256];
+	private int numNodes = 0;
+	private int numDistributions = 0;
+	/** The thresholds of a reduced table, which has no threshold array */
+	private float[] floatThreshold;
+	/** The distributions of a Float32 table, which has no distributions
+		array */
+	private float[] floatDistributions;
+	/** The distributions of a Quantized16 table, in units of quantum */
+	private char[] quantizedDistributions;
+	private double quantum;
+	private StoragePrecision precision = StoragePrecision.Full;
+
+	/**
+	 * Creates an empty table.  Trees are added with {@link #addTree} and
+	 * {@link #addNodes} and their nodes defined with the set methods.
+	 *
+	 * @param modelType The model type the table is compiled from.
+	 * @param numClasses The number of class labels.
+	 */
+	public CompiledTreeEnsemble(ModelType modelType, int numClasses)
+	{
+		this.modelType = modelType;
+		this.numClasses = numClasses;
+	}
+
+	/**
+	 * Compiles a trained tree model.
+	 *
+	 * @param model A native or Weka RandomTree or RandomForest.
+	 * @return The compiled model.
+	 * @throws Exception If the model cannot be compiled.
+	 */
+	public static CompiledTreeEnsemble compile(Model model) throws Exception
+	{
+		if(model instanceof RandomTree)
+			return compile(ModelType.RandomTree, new Tree[] { ((RandomTree)model).getTree() });
+		if(model instanceof RandomForest)
+			return compile(ModelType.RandomForest, ((RandomForest)model).getTrees());
+		if(model.getClass().getName().startsWith("gov.sandia.hemlock.wekaInterface."))
+		{
+			//the Weka compiler is loaded by name, as Weka is not needed to
+			//compile this package
+			Class<?> compiler = Class.forName(WEKA_COMPILER);
+			return (CompiledTreeEnsemble)compiler.getMethod("compile", Model.class).invoke(null, model);
+		}
+		throw new Exception("a " + model.getModelType() + " model cannot be compiled");
+	}
+
+	/**
+	 * @param model A model.
+	 * @return True if {@link #compile} can compile the model.
+	 */
+	public static boolean isCompilable(Model model)
+	{
+		ModelType type = model.getModelType();
+		return !(model instanceof CompiledTreeEnsemble) &&
+			(type == ModelType.RandomTree || type == ModelType.RandomForest);
+	}
+
+	private static CompiledTreeEnsemble compile(ModelType modelType, Tree[] trees)
+	{
+		CompiledTreeEnsemble compiled = new CompiledTreeEnsemble(modelType, trees[0].distribution[0].length);
+		for(Tree tree : trees)
+		{
+			int offset = compiled.addTree(tree.size);
+			for(int node = 0; node < tree.size; node++)
+			{
+				if(tree.attribute[node] < 0)
+					compiled.setLeaf(offset + node, tree.distribution[node]);
+				else if(tree.discrete[node])
+					compiled.setDiscreteSplit(offset + node, tree.attribute[node], offset + tree.firstChild[node],
+						tree.numChildren[node], tree.distribution[node]);
+				else
+					compiled.setContinuousSplit(offset + node, tree.attribute[node], tree.threshold[node],
+						offset + tree.firstChild[node]);
+			}
+		}
+		compiled.trim();
+		return compiled;
+	}
+
+	/**
+	 * Starts a new tree.
+	 *
+	 * @param count The number of nodes to add for the tree, the first of
+	 * 	which is its root.
+	 * @return The number of the root node.
+	 */
+	public int addTree(int count)
+	{
+		roots = Arrays.copyOf(roots, roots.length + 1);
+		roots[roots.length - 1] = numNodes;
+		return addNodes(count);
+	}
+
+	/**
+	 * Adds consecutive nodes to the current tree, such as the children of
+	 * a split.
+	 *
+	 * @param count The number of nodes to add.
+	 * @return The number of the first node added.
+	 */
+	public int addNodes(int count)
+	{
+		if(numNodes + count > attribute.length)
+		{
+			int capacity = Math.max(2*attribute.length, numNodes + count);
+			attribute = Arrays.copyOf(attribute, capacity);
+			threshold = Arrays.copyOf(threshold, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			arity = Arrays.copyOf(arity, capacity);
+			distribution = Arrays.copyOf(distribution, capacity);
+		}
+		int first = numNodes;
+		numNodes += count;
+		return first;
+	}
+
+	/**
+	 * Makes a node a leaf.
+	 *
+	 * @param node The node.
+	 * @param dist The class distribution the leaf predicts.
+	 */
+	public void setLeaf(int node, double[] dist)
+	{
+		attribute[node] = -1;
+		distribution[node] = addDistribution(dist);
+	}
+
+	/**
+	 * Makes a node a split of a continuous attribute.
+	 *
+	 * @param node The node.
+	 * @param a The attribute split on.
+	 * @param splitThreshold Values no greater than this go to the first
+	 * 	child and the rest to the second.
+	 * @param first The first of the two consecutive children.
+	 */
+	public void setContinuousSplit(int node, int a, double splitThreshold, int first)
+	{
+		attribute[node] = a;
+		threshold[node] = splitThreshold;
+		firstChild[node] = first;
+		arity[node] = 0;
+		//no walk ends at a continuous split
+		distribution[node] = -1;
+	}
+
+	/**
+	 * Makes a node a split of a discrete attribute, with one child per
+	 * value.
+	 *
+	 * @param node The node.
+	 * @param a The attribute split on.
+	 * @param first The first of the consecutive children.
+	 * @param numChildren The number of children.
+	 * @param dist The class distribution predicted for a value with no
+	 * 	child.
+	 */
+	public void setDiscreteSplit(int node, int a, int first, int numChildren, double[] dist)
+	{
+		attribute[node] = a;
+		firstChild[node] = first;
+		arity[node] = numChildren;
+		distribution[node] = addDistribution(dist);
+	}
+
+	private int addDistribution(double[] dist)
+	{
+		if(numDistributions + numClasses > distributions.length)
+			distributions = Arrays.copyOf(distributions, Math.max(2*distributions.length, numDistributions + numClasses));
+		int offset = numDistributions;
+		if(dist != null)
+			System.arraycopy(dist, 0, distributions, offset, numClasses);
+		numDistributions += numClasses;
+		return offset;
+	}
+
+	/**
+	 * Frees the unused space once every tree is added.
+	 */
+	public void trim()
+	{
+		attribute = Arrays.copyOf(attribute, numNodes);
+		threshold = Arrays.copyOf(threshold, numNodes);
+		firstChild = Arrays.copyOf(firstChild, numNodes);
+		arity = Arrays.copyOf(arity, numNodes);
+		distribution = Arrays.copyOf(distribution, numNodes);
+		distributions = Arrays.copyOf(distributions, numDistributions);
+	}
+
+	/**
+	 * Makes a table with the same trees whose thresholds and distributions
+	 * are stored at the given precision.  Nodes cannot be added to the
+	 * reduced table.
+	 *
+	 * @param precision The precision of the thresholds and distributions.
+	 * @return This table for {@link StoragePrecision#Full}, otherwise the
+	 * 	reduced table.
+	 */
+	public Model reducePrecision(StoragePrecision precision)
+	{
+		if(precision == StoragePrecision.Full)
+			return this;
+		CompiledTreeEnsemble reduced = new CompiledTreeEnsemble(modelType, numClasses);
+		reduced.roots = roots;
+		reduced.attribute = attribute;
+		reduced.firstChild = firstChild;
+		reduced.arity = arity;
+		reduced.distribution = distribution;
+		reduced.numNodes = numNodes;
+		reduced.numDistributions = numDistributions;
+		reduced.precision = precision;
+		reduced.threshold = null;
+		reduced.floatThreshold = new float[numNodes];
+		for(int node = 0; node < numNodes; node++)
+			reduced.floatThreshold[node] = (float)threshold(node);
+		reduced.distributions = null;
+		if(precision == StoragePrecision.Float32)
+		{
+			reduced.floatDistributions = new float[numDistributions];
+			for(int i = 0; i < numDistributions; i++)
+				reduced.floatDistributions[i] = (float)distributionValue(i);
+		}
+		else
+		{
+			//distributions are probabilities, so the largest is usually 1
+			double max = 0;
+			for(int i = 0; i < numDistributions; i++)
+				max = Math.max(max, distributionValue(i));
+			reduced.quantum = ((max > 0) ? max : 1)/Character.MAX_VALUE;
+			reduced.quantizedDistributions = new char[numDistributions];
+			for(int i = 0; i < numDistributions; i++)
+				reduced.quantizedDistributions[i] = (char)Math.round(distributionValue(i)/reduced.quantum);
+		}
+		return reduced;
+	}
+
+	/**
+	 * @return The precision the thresholds and distributions are stored in.
+	 */
+	public StoragePrecision getPrecision()
+	{
+		return precision;
+	}
+
+	/**
+	 * @return The number of nodes in the table.
+	 */
+	public int getNumNodes()
+	{
+		return numNodes;
+	}
+
+	private double threshold(int node)
+	{
+		return (threshold != null) ? threshold[node] : floatThreshold[node];
+	}
+
+	private double distributionValue(int i)
+	{
+		if(distributions != null)
+			return distributions[i];
+		if(floatDistributions != null)
+			return floatDistributions[i];
+		return quantizedDistributions[i]*quantum;
+	}
+
+	/**
+	 * Adds the distribution at an offset to a sum of distributions.
+	 */
+	private void accumulate(int offset, double[] dist)
+	{
+		if(distributions != null)
+		{
+			for(int c = 0; c < numClasses; c++)
+				dist[c] += distributions[offset + c];
+		}
+		else if(floatDistributions != null)
+		{
+			for(int c = 0; c < numClasses; c++)
+				dist[c] += floatDistributions[offset + c];
+		}
+		else
+		{
+			for(int c = 0; c < numClasses; c++)
+				dist[c] += quantizedDistributions[offset + c]*quantum;
+		}
+	}
+
+	/**
+	 * Follows an instance from a node to a leaf.
+	 *
+	 * @return The offset of the distribution of the node it ends at.
+	 */
+	private int walk(int node, double[] record)
+	{
+		int a;
+		while((a = attribute[node]) >= 0)
+		{
+			int n = arity[node];
+			if(n == 0)
+				node = firstChild[node] + ((record[a] <= threshold(node)) ? 0 : 1);
+			else
+			{
+				//a value the tree has never seen stops at the split
+				int child = (int)record[a];
+				if(child < 0 || child >= n)
+					break;
+				node = firstChild[node] + child;
+			}
+		}
+		return distribution[node];
+	}
+
+	/**
+	 * Predicts the class label for an instance. Assumes the model has
+	 * already been built.
+	 *
+	 * @param record The instance which the prediction is made for.
+	 * @return The index of the predicted class label
+	 * @throws Exception
+	 */
+	public double getTargetValue(double[] record) throws Exception
+	{
+		return Tree.argMax(getTargetDistribution(record));
+	}
+
+	/**
+	 * Predicts the class distribution given an instance, as the average of
+	 * the distributions predicted by the trees.
+	 *
+	 * @param record The given instance which the prediction is made for.
+	 * @return Distribution represented as an array of probabilities, where
+	 * 	the ith element is the probability of class i.
+	 * @throws Exception
+	 */
+	public double[] getTargetDistribution(double[] record) throws Exception
+	{
+		double[] dist = new double[numClasses];
+		for(int t = 0; t < roots.length; t++)
+		{
+			accumulate(walk(roots[t], record), dist);
+		}
+		for(int c = 0; c < numClasses; c++)
+			dist[c] /= roots.length;
+		return dist;
+	}
+
+	/**
+	 * Predicts the class distribution of each of a set of instances,
+	 * dividing them among the available processors.
+	 *
+	 * @param records The instances to make predictions for.
+	 * @return The distribution predicted for each instance.
+	 * @throws Exception If one of the threads fails.
+	 */
+	public double[][] getTargetDistributions(final ArrayList<double[]> records) throws Exception
+	{
+		final double[][] dists = new double[records.size()][];
+		int numThreads = Math.min(WorkerThread.availableThreads(), records.size()/MIN_BATCH);
+		if(numThreads <= 1)
+		{
+			scoreRange(records, dists, 0, records.size());
+			return dists;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		HemlockMetrics.registerExecutor(executor);
+		try
+		{
+			ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+			int chunk = (records.size() + numThreads - 1)/numThreads;
+			for(int from = 0; from < records.size(); from += chunk)
+			{
+				final int start = from;
+				final int end = Math.min(from + chunk, records.size());
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call()
+					{
+						scoreRange(records, dists, start, end);
+						return null;
+					}
+				}));
+			}
+			for(Future<Object> f : futures)
+				f.get();
+		}
+		finally
+		{
+			HemlockMetrics.unregisterExecutor(executor);
+			executor.shutdown();
+		}
+		return dists;
+	}
+
+	/**
+	 * Scores instances start to end.  The instances are taken BLOCK at a
+	 * time and each tree scores the whole block before the next tree, so
+	 * that the nodes of a tree stay in the cache.  Within a block the
+	 * instances walk the tree INTERLEAVE at a time, each taking one step in
+	 * turn until all of them reach a leaf, so that their independent reads
+	 * of the node table can be in flight together.
+	 */
+	private void scoreRange(ArrayList<double[]> records, double[][] dists, int start, int end)
+	{
+		int[] node = new int[INTERLEAVE];
+		for(int blockStart = start; blockStart < end; blockStart += BLOCK)
+		{
+			int blockEnd = Math.min(blockStart + BLOCK, end);
+			for(int i = blockStart; i < blockEnd; i++)
+				dists[i] = new double[numClasses];
+			for(int t = 0; t < roots.length; t++)
+			{
+				for(int from = blockStart; from < blockEnd; from += INTERLEAVE)
+				{
+					int size = Math.min(INTERLEAVE, blockEnd - from);
+					for(int k = 0; k < size; k++)
+						node[k] = roots[t];
+					boolean moving = true;
+					while(moving)
+					{
+						moving = false;
+						for(int k = 0; k < size; k++)
+						{
+							int n = node[k];
+							int a = attribute[n];
+							if(a < 0)
+								continue;
+							double[] record = records.get(from + k);
+							int numChildren = arity[n];
+							if(numChildren == 0)
+								node[k] = firstChild[n] + ((record[a] <= threshold(n)) ? 0 : 1);
+							else
+							{
+								//a value the tree has never seen stops at
+								//the split, where walk ends at once
+								int child = (int)record[a];
+								if(child < 0 || child >= numChildren)
+									continue;
+								node[k] = firstChild[n] + child;
+							}
+							moving = true;
+						}
+					}
+					for(int k = 0; k < size; k++)
+					{
+						accumulate(walk(node[k], records.get(from + k)), dists[from + k]);
+					}
+				}
+			}
+			for(int i = blockStart; i < blockEnd; i++)
+			{
+				for(int c = 0; c < numClasses; c++)
+					dists[i][c] /= roots.length;
+			}
+		}
+	}
+
+	/**
+	 * Compiled models are made by {@link #compile}, not trained.
+	 *
+	 * @param data Ignored.
+	 */
+	public void setData(IDataSet data)
+	{
+	}
+
+	/**
+	 * Compiled models are made by {@link #compile}, not trained.
+	 *
+	 * @param modelParameters Ignored.
+	 * @throws Exception Always.
+	 */
+	public void buildModel(ModelParameters modelParameters) throws Exception
+	{
+		throw new Exception("a compiled tree ensemble cannot be trained; compile a trained model instead");
+	}
+
+	/**
+	 * @return The model type of the model this was compiled from.
+	 */
+	public ModelType getModelType()
+	{
+		return modelType;
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.trees;
+
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.ReducedPrecisionModel;
+import gov.sandia.hemlock.classification.StoragePrecision;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.classification.parameters.RandomForestParameters;
+import gov.sandia.hemlock.core.WorkerThread;
+import gov.sandia.hemlock.data.DataSet;
+import gov.sandia.hemlock.data.IDataSet;
+import gov.sandia.hemlock.data.QuantizedDataSet;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Hemlock's own random forest, which trains on a {@link QuantizedDataSet}
+ * instead of converting the data for Weka.  Each tree is grown from a
+ * bootstrap sample given as the number of times each row was drawn, so all
+ * of the trees share one copy of the data, and the trees are grown in
+ * parallel unless the forest is trained on a {@link WorkerThread}.  The
+ * parameters mean the same as for Weka's RandomForest, and have the same
+ * defaults: 10 trees, the number of features of {@link RandomTree}, and a
+ * seed of 1.  The forest is the same for any number of threads.
+ * <p>
+ * Trees grown on the forest's own threads only count towards the wall time
+ * {@link gov.sandia.hemlock.core.PerformanceRecorder} records for the train
+ * phase, not its CPU time and allocated bytes, so these understate the cost
+ * of a forest next to models trained on one thread.
+ * <p>
+ * At reduced precision the forest is stored as a {@link CompiledTreeEnsemble}.
+ *
+ * @author Sean A. Gilpin
+ */
+public class RandomForest implements ReducedPrecisionModel
+{
+	private Tree[] trees;
+	private transient DataSet dataSet;
+
+	/**
+	 * Associates this model with a set of data that will be used for
+	 * training.
+	 *
+	 * @param data A {@link DataSet}.
+	 */
+	public void setData(IDataSet data)
+	{
+		this.dataSet = (DataSet)data;
+	}
+
+	/**
+	 * Perform all steps to build/train the model.  Assumes the data set has
+	 * already been specified.
+	 *
+	 * @param modelParameters Specifies all information about which type of
+	 *	model should be built.
+	 * @throws Exception If growing one of the trees fails.
+	 */
+	public void buildModel(ModelParameters modelParameters) throws Exception
+	{
+		RandomForestParameters params = (RandomForestParameters)modelParameters;
+		final QuantizedDataSet data = QuantizedDataSet.quantize(dataSet);
+		final int numFeatures = RandomTree.getNumFeatures(params.isSetNumberOfFeatures() ? params.getNumberOfFeatures() : 0, data.numAttributes);
+		int numTrees = params.isSetNumberOfTrees() ? params.getNumberOfTrees() : 10;
+		Random random = new Random(params.isSetSeed() ? params.getSeed() : 1);
+
+		//draw every seed up front so the trees do not depend on the order
+		//the threads grow them in
+		final long[] seeds = new long[numTrees];
+		for(int i = 0; i < numTrees; i++)
+			seeds[i] = random.nextLong();
+		trees = new Tree[numTrees];
+
+		int numThreads = Math.min(numTrees, WorkerThread.availableThreads());
+		if(numThreads <= 1)
+		{
+			for(int i = 0; i < numTrees; i++)
+				trees[i] = growTree(data, seeds[i], numFeatures);
+		}
+		else
+		{
+			ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+			HemlockMetrics.registerExecutor(executor);
+			try
+			{
+				ArrayList<Future<Tree>> futures = new ArrayList<Future<Tree>>();
+				for(int i = 0; i < numTrees; i++)
+				{
+					final long seed = seeds[i];
+					futures.add(executor.submit(new Callable<Tree>() {
+						public Tree call()
+						{
+							return growTree(data, seed, numFeatures);
+						}
+					}));
+				}
+				for(int i = 0; i < numTrees; i++)
+					trees[i] = futures.get(i).get();
+			}
+			finally
+			{
+				HemlockMetrics.unregisterExecutor(executor);
+				executor.shutdown();
+			}
+		}
+		//Cleanout training data
+		dataSet = null;
+	}
+
+	/**
+	 * Grows one tree of the forest from its own bootstrap sample.
+	 */
+	private static Tree growTree(QuantizedDataSet data, long seed, int numFeatures)
+	{
+		Random random = new Random(seed);
+		int numRows = data.getNumRows();
+		double[] weights = new double[numRows];
+		for(int i = 0; i < numRows; i++)
+			weights[random.nextInt(numRows)]++;
+		return new TreeBuilder(data, weights, random, numFeatures, 0, 1).build();
+	}
+
+	/**
+	 * Predicts the class label for an instance. Assumes the model has
+	 * already been built.
+	 *
+	 * @param record The instance which the prediction is made for.
+	 * @return The index of the predicted class label
+	 * @throws Exception
+	 */
+	public double getTargetValue(double[] record) throws Exception
+	{
+		return Tree.argMax(getTargetDistribution(record));
+	}
+
+	/**
+	 * Predicts the class distribution given an instance, as the average of
+	 * the distributions predicted by the trees.  Assumes the model has
+	 * already been built.
+	 *
+	 * @param record The given instance which the prediction is made for.
+	 * @return Distribution represented as an array of probabilities, where
+	 * 	the ith element is the probability of class i.
+	 * @throws Exception
+	 */
+	public double[] getTargetDistribution(double[] record) throws Exception
+	{
+		double[] dist = null;
+		for(Tree tree : trees)
+		{
+			double[] treeDist = tree.getDistribution(record);
+			if(dist == null)
+				dist = new double[treeDist.length];
+			for(int c = 0; c < dist.length; c++)
+				dist[c] += treeDist[c];
+		}
+		for(int c = 0; c < dist.length; c++)
+			dist[c] /= trees.length;
+		return dist;
+	}
+
+	/**
+	 * @return The grown trees, for {@link CompiledTreeEnsemble}.
+	 */
+	Tree[] getTrees()
+	{
+		return trees;
+	}
+
+	/**
+	 * Compiles the forest into a table of nodes stored at the given
+	 * precision.
+	 *
+	 * @param precision The precision of the thresholds and distributions.
+	 * @return This model for {@link StoragePrecision#Full}, otherwise the
+	 * 	reduced {@link CompiledTreeEnsemble}.
+	 * @throws Exception
+	 */
+	public Model reducePrecision(StoragePrecision precision) throws Exception
+	{
+		if(precision == StoragePrecision.Full)
+			return this;
+		return CompiledTreeEnsemble.compile(this).reducePrecision(precision);
+	}
+
+	/**
+	 * Will report the learning algorithm that is used by this model.
+	 *
+	 * @return The learning algorithm that is used by this model.
+	 */
+	public ModelType getModelType()
+	{
+		return ModelType.RandomForest;
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.trees;
+
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.ReducedPrecisionModel;
+import gov.sandia.hemlock.classification.StoragePrecision;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.classification.parameters.RandomTreeParameters;
+import gov.sandia.hemlock.data.DataSet;
+import gov.sandia.hemlock.data.IDataSet;
+import gov.sandia.hemlock.data.QuantizedDataSet;
+import java.util.*;
+
+/**
+ * Hemlock's own random tree, which trains on a {@link QuantizedDataSet}
+ * instead of converting the data for Weka.  The parameters mean the same as
+ * for Weka's RandomTree, and have the same defaults: the number of features
+ * considered at each node defaults to log2 of the number of attributes plus
+ * one, the depth is unlimited, leaves hold at least one instance and the
+ * seed is 1.
+ * <p>
+ * At reduced precision the tree is stored as a {@link CompiledTreeEnsemble}.
+ *
+ * @author Sean A. Gilpin
+ */
+public class RandomTree implements ReducedPrecisionModel
+{
+	private Tree tree;
+	private transient DataSet dataSet;
+
+	/**
+	 * Associates this model with a set of data that will be used for
+	 * training.
+	 *
+	 * @param data A {@link DataSet}.
+	 */
+	public void setData(IDataSet data)
+	{
+		this.dataSet = (DataSet)data;
+	}
+
+	/**
+	 * Perform all steps to build/train the model.  Assumes the data set has
+	 * already been specified.
+	 *
+	 * @param modelParameters Specifies all information about which type of
+	 *	model should be built.
+	 * @throws Exception
+	 */
+	public void buildModel(ModelParameters modelParameters) throws Exception
+	{
+		RandomTreeParameters params = (RandomTreeParameters)modelParameters;
+		QuantizedDataSet data = QuantizedDataSet.quantize(dataSet);
+		int numFeatures = getNumFeatures(params.isSetNumFeatures() ? params.getNumFeatures() : 0, data.numAttributes);
+		int maxDepth = params.isSetMaxDepth() ? params.getMaxDepth() : 0;
+		double minInstances = params.isSetMinInstances() ? params.getMinInstances() : 1;
+		Random random = new Random(params.isSetSeed() ? params.getSeed() : 1);
+
+		double[] weights = new double[data.getNumRows()];
+		Arrays.fill(weights, 1);
+		tree = new TreeBuilder(data, weights, random, numFeatures, maxDepth, minInstances).build();
+		//Cleanout training data
+		dataSet = null;
+	}
+
+	/**
+	 * Predicts the class label for an instance. Assumes the model has
+	 * already been built.
+	 *
+	 * @param record The instance which the prediction is made for.
+	 * @return The index of the predicted class label
+	 * @throws Exception
+	 */
+	public double getTargetValue(double[] record) throws Exception
+	{
+		return Tree.argMax(tree.getDistribution(record));
+	}
+
+	/**
+	 * Predicts the class distribution given an instance. Assumes the model
+	 * has already been built.
+	 *
+	 * @param record The given instance which the prediction is made for.
+	 * @return Distribution represented as an array of probabilities, where
+	 * 	the ith element is the probability of class i.
+	 * @throws Exception
+	 */
+	public double[] getTargetDistribution(double[] record) throws Exception
+	{
+		return tree.getDistribution(record).clone();
+	}
+
+	/**
+	 * @return The grown tree, for {@link CompiledTreeEnsemble}.
+	 */
+	Tree getTree()
+	{
+		return tree;
+	}
+
+	/**
+	 * Compiles the tree into a table of nodes stored at the given
+	 * precision.
+	 *
+	 * @param precision The precision of the thresholds and distributions.
+	 * @return This model for {@link StoragePrecision#Full}, otherwise the
+	 * 	reduced {@link CompiledTreeEnsemble}.
+	 * @throws Exception
+	 */
+	public Model reducePrecision(StoragePrecision precision) throws Exception
+	{
+		if(precision == StoragePrecision.Full)
+			return this;
+		return CompiledTreeEnsemble.compile(this).reducePrecision(precision);
+	}
+
+	/**
+	 * Will report the learning algorithm that is used by this model.
+	 *
+	 * @return The learning algorithm that is used by this model.
+	 */
+	public ModelType getModelType()
+	{
+		return ModelType.RandomTree;
+	}
+
+	/**
+	 * Works out the number of attributes considered at each node the same
+	 * way Weka does.
+	 *
+	 * @param requested The numFeatures parameter, 0 or less for the
+	 * 	default.
+	 * @param numAttributes The number of attributes, not counting the
+	 * 	class label.
+	 * @return The number of attributes to consider.
+	 */
+	static int getNumFeatures(int requested, int numAttributes)
+	{
+		if(requested > numAttributes)
+			return numAttributes;
+		if(requested < 1)
+			return (int)(Math.log(numAttributes + 1)/Math.log(2)) + 1;
+		return requested;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.trees;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A decision tree grown by {@link TreeBuilder}, stored as parallel arrays
+ * indexed by node rather than as linked nodes, so that deep trees can be
+ * serialized without overflowing the stack.  Node 0 is the root and the
+ * children of a node are numbered consecutively.  Continuous attributes
+ * are split in two at a threshold, discrete attributes into one child per
+ * value.
+ *
+ * @author Sean A. Gilpin
+ */
+class Tree implements Serializable
+{
+	/** The attribute each node splits on, -1 for a leaf */
+	int[] attribute;
+	/** True if the node splits on a discrete attribute */
+	boolean[] discrete;
+	/** Values no greater than the threshold go to the first child */
+	double[] threshold;
+	/** The number of the first child of each node */
+	int[] firstChild;
+	/** The number of children of each node */
+	int[] numChildren;
+	/** The class distribution of the training instances reaching each
+		node */
+	double[][] distribution;
+	/** The number of nodes */
+	int size = 0;
+
+	Tree()
+	{
+		int capacity = 64;
+		attribute = new int[capacity];
+		discrete = new boolean[capacity];
+		threshold = new double[capacity];
+		firstChild = new int[capacity];
+		numChildren = new int[capacity];
+		distribution = new double[capacity][];
+	}
+
+	/**
+	 * Adds leaves to the tree.
+	 *
+	 * @param count The number of leaves to add.
+	 * @return The number of the first leaf added.
+	 */
+	int addNodes(int count)
+	{
+		if(size + count > attribute.length)
+		{
+			int capacity = Math.max(2*attribute.length, size + count);
+			attribute = Arrays.copyOf(attribute, capacity);
+			discrete = Arrays.copyOf(discrete, capacity);
+			threshold = Arrays.copyOf(threshold, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			numChildren = Arrays.copyOf(numChildren, capacity);
+			distribution = Arrays.copyOf(distribution, capacity);
+		}
+		int first = size;
+		for(int i = first; i < first + count; i++)
+			attribute[i] = -1;
+		size += count;
+		return first;
+	}
+
+	/**
+	 * Frees the unused space once the tree is grown.
+	 */
+	void trim()
+	{
+		attribute = Arrays.copyOf(attribute, size);
+		discrete = Arrays.copyOf(discrete, size);
+		threshold = Arrays.copyOf(threshold, size);
+		firstChild = Arrays.copyOf(firstChild, size);
+		numChildren = Arrays.copyOf(numChildren, size);
+		distribution = Arrays.copyOf(distribution, size);
+	}
+
+	/**
+	 * Follows an instance down the tree.  An instance with a discrete
+	 * value the tree has never seen stops at the node splitting on it.
+	 *
+	 * @param record The instance.
+	 * @return The class distribution of the node the instance ends at,
+	 * 	which must not be modified.
+	 */
+	double[] getDistribution(double[] record)
+	{
+		int node = 0;
+		while(attribute[node] >= 0)
+		{
+			double value = record[attribute[node]];
+			int child;
+			if(discrete[node])
+			{
+				child = (int)value;
+				if(child < 0 || child >= numChildren[node])
+					break;
+			}
+			else
+				child = (value <= threshold[node]) ? 0 : 1;
+			node = firstChild[node] + child;
+		}
+		return distribution[node];
+	}
+
+	/**
+	 * @param distribution A class distribution.
+	 * @return The index of the most probable class.
+	 */
+	static int argMax(double[] distribution)
+	{
+		int maxIndex = 0;
+		for(int i = 1; i < distribution.length; i++)
+		{
+			if(distribution[i] > distribution[maxIndex])
+				maxIndex = i;
+		}
+		return maxIndex;
+	}
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.classification.trees;
+
+import gov.sandia.hemlock.data.QuantizedDataSet;
+import java.util.*;
+
+/**
+ * Grows one random tree, splitting each node on the best of a random
+ * subset of the attributes by information gain, as Weka's RandomTree
+ * does.
+ * <p>
+ * The tree is grown on a {@link QuantizedDataSet}.  To search an attribute
+ * the builder adds up the class weights of the rows of the node in each
+ * bin, then tries the split between every pair of neighbouring bins, so
+ * nothing is sorted while the tree grows.  Each row has a weight, so a
+ * bootstrap sample is given as the number of times each row was drawn, and
+ * rows with no weight are left out.
+ *
+ * @author Sean A. Gilpin
+ */
+class TreeBuilder
+{
+	/** Smallest information gain that justifies a split */
+	private static final double MIN_GAIN = 1e-10;
+
+	private final QuantizedDataSet data;
+	private final byte[][] bins;
+	private final int[] labels;
+	private final double[] weights;
+	private final Random random;
+	private final int numFeatures;
+	private final int maxDepth;
+	private final double minInstances;
+	private final int numClasses;
+	private final int numAttributes;
+
+	/** The rows of each node, in a contiguous segment */
+	private int[] rows;
+	/** The child each row of the node being split goes to */
+	private int[] childOf;
+	private int[] buffer;
+	private int[] attributes;
+	/** Class weights of each bin, bin by bin */
+	private double[] histogram;
+
+	/** A node waiting to be grown, with its segment of the rows */
+	private static class Pending
+	{
+		final int node;
+		final int start;
+		final int end;
+		final int depth;
+
+		Pending(int node, int start, int end, int depth)
+		{
+			this.node = node;
+			this.start = start;
+			this.end = end;
+			this.depth = depth;
+		}
+	}
+
+	/**
+	 * @param data The training data.
+	 * @param weights The weight of each row of data.
+	 * @param random Chooses the attributes considered at each node.
+	 * @param numFeatures The number of attributes considered at each node,
+	 * 	from {@link RandomTree#getNumFeatures}.
+	 * @param maxDepth The greatest depth of the tree, 0 for no limit.
+	 * @param minInstances The least total weight of a leaf.
+	 */
+	TreeBuilder(QuantizedDataSet data, double[] weights, Random random, int numFeatures, int maxDepth, double minInstances)
+	{
+		this.data = data;
+		this.bins = data.getBins();
+		this.labels = data.getLabels();
+		this.weights = weights;
+		this.random = random;
+		this.numFeatures = numFeatures;
+		this.maxDepth = maxDepth;
+		this.minInstances = minInstances;
+		this.numClasses = data.numClasses;
+		this.numAttributes = data.numAttributes;
+	}
+
+	/**
+	 * @return The grown tree.
+	 */
+	Tree build()
+	{
+		int n = 0;
+		for(int i = 0; i < weights.length; i++)
+		{
+			if(weights[i] > 0)
+				n++;
+		}
+		rows = new int[n];
+		for(int i = 0, k = 0; i < weights.length; i++)
+		{
+			if(weights[i] > 0)
+				rows[k++] = i;
+		}
+		childOf = new int[weights.length];
+		buffer = new int[n];
+		attributes = new int[numAttributes];
+		for(int a = 0; a < numAttributes; a++)
+			attributes[a] = a;
+		histogram = new double[QuantizedDataSet.MAX_BINS*numClasses];
+
+		//grow from an explicit stack, as recursion could overflow on the
+		//long chains of nodes unbalanced data produces
+		Tree tree = new Tree();
+		ArrayList<Pending> stack = new ArrayList<Pending>();
+		stack.add(new Pending(tree.addNodes(1), 0, n, 0));
+		while(!stack.isEmpty())
+			grow(tree, stack.remove(stack.size() - 1), stack);
+		tree.trim();
+		return tree;
+	}
+
+	private void grow(Tree tree, Pending p, ArrayList<Pending> stack)
+	{
+		double[] dist = new double[numClasses];
+		for(int i = p.start; i < p.end; i++)
+			dist[labels[rows[i]]] += weights[rows[i]];
+		double total = 0;
+		int nonZero = 0;
+		for(int c = 0; c < numClasses; c++)
+		{
+			total += dist[c];
+			if(dist[c] > 0)
+				nonZero++;
+		}
+		tree.distribution[p.node] = normalize(dist.clone(), total);
+
+		if(nonZero < 2 || total < 2*minInstances || (maxDepth > 0 && p.depth >= maxDepth))
+			return;
+
+		//consider numFeatures random attributes, and more if none of them
+		//gives a split
+		double parentEntropy = entropy(dist, 0, total);
+		double bestGain = MIN_GAIN;
+		int bestAttribute = -1;
+		int bestBin = 0;
+		for(int i = 0; i < numAttributes && (i < numFeatures || bestAttribute < 0); i++)
+		{
+			int j = i + random.nextInt(numAttributes - i);
+			int a = attributes[j];
+			attributes[j] = attributes[i];
+			attributes[i] = a;
+
+			fillHistogram(a, p.start, p.end);
+			if(data.discrete[a])
+			{
+				double gain = parentEntropy - discreteEntropy(a);
+				if(gain > bestGain)
+				{
+					bestGain = gain;
+					bestAttribute = a;
+				}
+			}
+			else
+			{
+				double[] split = bestSplit(a, dist, total);
+				if(split != null && parentEntropy - split[0] > bestGain)
+				{
+					bestGain = parentEntropy - split[0];
+					bestAttribute = a;
+					bestBin = (int)split[1];
+				}
+			}
+		}
+		if(bestAttribute < 0)
+			return;
+
+		//send each row to its child and partition the segment
+		boolean discrete = data.discrete[bestAttribute];
+		int numChildren = discrete ? data.numBins[bestAttribute] : 2;
+		byte[] column = bins[bestAttribute];
+		for(int i = p.start; i < p.end; i++)
+		{
+			int r = rows[i];
+			int bin = QuantizedDataSet.toBin(column[r]);
+			childOf[r] = discrete ? bin : ((bin <= bestBin) ? 0 : 1);
+		}
+		int[] bounds = partition(p.start, p.end, numChildren);
+
+		int firstChild = tree.addNodes(numChildren);
+		tree.attribute[p.node] = bestAttribute;
+		tree.discrete[p.node] = discrete;
+		tree.threshold[p.node] = discrete ? 0 : data.upperEdges[bestAttribute][bestBin];
+		tree.firstChild[p.node] = firstChild;
+		tree.numChildren[p.node] = numChildren;
+		for(int k = 0; k < numChildren; k++)
+		{
+			if(bounds[k] == bounds[k + 1])
+				tree.distribution[firstChild + k] = tree.distribution[p.node];
+			else
+				stack.add(new Pending(firstChild + k, bounds[k], bounds[k + 1], p.depth + 1));
+		}
+	}
+
+	/**
+	 * Adds up the class weights of the rows of a node in each bin of an
+	 * attribute.
+	 */
+	private void fillHistogram(int a, int start, int end)
+	{
+		Arrays.fill(histogram, 0, data.numBins[a]*numClasses, 0);
+		byte[] column = bins[a];
+		for(int i = start; i < end; i++)
+		{
+			int r = rows[i];
+			histogram[QuantizedDataSet.toBin(column[r])*numClasses + labels[r]] += weights[r];
+		}
+	}
+
+	/**
+	 * Finds the best split between two neighbouring bins of a continuous
+	 * attribute from its histogram.
+	 *
+	 * @return The entropy of the best split and the last bin of its first
+	 * 	child, or null if no split leaves minInstances on both sides.
+	 */
+	private double[] bestSplit(int a, double[] dist, double total)
+	{
+		double[] left = new double[numClasses];
+		double[] right = new double[numClasses];
+		double leftWeight = 0;
+		double bestEntropy = Double.POSITIVE_INFINITY;
+		int bestBin = -1;
+		for(int b = 0; b < data.numBins[a] - 1; b++)
+		{
+			double binWeight = 0;
+			for(int c = 0; c < numClasses; c++)
+			{
+				left[c] += histogram[b*numClasses + c];
+				binWeight += histogram[b*numClasses + c];
+			}
+			//an empty bin gives the same split as the one before it
+			if(binWeight == 0)
+				continue;
+			leftWeight += binWeight;
+			if(leftWeight < minInstances || total - leftWeight < minInstances)
+				continue;
+			for(int c = 0; c < numClasses; c++)
+				right[c] = dist[c] - left[c];
+			double e = entropy(left, 0, leftWeight) + entropy(right, 0, total - leftWeight);
+			if(e < bestEntropy)
+			{
+				bestEntropy = e;
+				bestBin = b;
+			}
+		}
+		if(bestBin < 0)
+			return null;
+		return new double[] { bestEntropy, bestBin };
+	}
+
+	/**
+	 * @return The entropy of splitting on a discrete attribute, from its
+	 * 	histogram, or infinity if fewer than two children would get
+	 * 	minInstances.
+	 */
+	private double discreteEntropy(int a)
+	{
+		int largeEnough = 0;
+		double e = 0;
+		for(int v = 0; v < data.numBins[a]; v++)
+		{
+			double valueWeight = 0;
+			for(int c = 0; c < numClasses; c++)
+				valueWeight += histogram[v*numClasses + c];
+			if(valueWeight >= minInstances)
+				largeEnough++;
+			e += entropy(histogram, v*numClasses, valueWeight);
+		}
+		return (largeEnough < 2) ? Double.POSITIVE_INFINITY : e;
+	}
+
+	/**
+	 * Moves the rows of a segment into one contiguous part per child,
+	 * keeping their order within each part.
+	 *
+	 * @return The bounds of the parts, part k being [bounds[k], bounds[k+1]).
+	 */
+	private int[] partition(int start, int end, int numChildren)
+	{
+		int[] bounds = new int[numChildren + 1];
+		for(int i = start; i < end; i++)
+			bounds[childOf[rows[i]] + 1]++;
+		bounds[0] = start;
+		for(int k = 0; k < numChildren; k++)
+			bounds[k + 1] += bounds[k];
+		int[] next = bounds.clone();
+		for(int i = start; i < end; i++)
+			buffer[next[childOf[rows[i]]]++ - start] = rows[i];
+		System.arraycopy(buffer, 0, rows, start, end - start);
+		return bounds;
+	}
+
+	/**
+	 * @return The entropy of the class distribution in counts[offset] to
+	 * 	counts[offset + numClasses - 1] times its total weight, in nats, so
+	 * 	that the entropies of the children of a split can be added.
+	 */
+	private double entropy(double[] counts, int offset, double total)
+	{
+		if(total <= 0)
+			return 0;
+		double e = total*Math.log(total);
+		for(int c = offset; c < offset + numClasses; c++)
+		{
+			if(counts[c] > 0)
+				e -= counts[c]*Math.log(counts[c]);
+		}
+		return e;
+	}
+
+	private static double[] normalize(double[] dist, double total)
+	{
+		if(total > 0)
+		{
+			for(int c = 0; c < dist.length; c++)
+				dist[c] /= total;
+		}
+		return dist;
+	}
+}
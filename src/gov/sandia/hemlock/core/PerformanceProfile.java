@@ -0,0 +1,72 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.core;
+
+import java.util.*;
+
+/**
+ * The cost of a part of an experiment, such as one fold, as recorded by
+ * {@link PerformanceRecorder}.  Holds the totals for the whole part, the
+ * totals for each phase run during it, and the cost of training each base
+ * classifier.  The times of a phase include the times of any phases run
+ * inside of it, so training an ensemble includes training its base
+ * classifiers.
+ *
+ * @author Sean A. Gilpin
+ */
+public class PerformanceProfile
+{
+	/** Totals for the whole part of the experiment */
+	public PerformanceRecord total;
+	/** Largest amount of heap in use seen at a phase boundary, in bytes */
+	public long peakHeapBytes;
+	/** Totals for each phase, in the order the phases first finished */
+	public LinkedHashMap<String, PerformanceRecord> phases = new LinkedHashMap<String, PerformanceRecord>();
+	/** Cost of training each base classifier, in the order they were
+		trained */
+	public ArrayList<PerformanceRecord> baseModels = new ArrayList<PerformanceRecord>();
+
+	public PerformanceProfile(String name)
+	{
+		total = new PerformanceRecord(name);
+	}
+
+	/**
+	 * Adds the cost of one run of a phase.
+	 *
+	 * @param record The cost of the run.
+	 */
+	public void addPhase(PerformanceRecord record)
+	{
+		PerformanceRecord phase = phases.get(record.name);
+		if(phase == null)
+		{
+			phase = new PerformanceRecord(record.name);
+			phases.put(record.name, phase);
+		}
+		phase.add(record);
+	}
+
+	/**
+	 * Adds the phase totals of a profile for a smaller part of the
+	 * experiment, such as a fold, to this one.  The base classifiers of the
+	 * smaller part are not copied.
+	 *
+	 * @param child The profile to add.
+	 */
+	public void addPhases(PerformanceProfile child)
+	{
+		for(PerformanceRecord record : child.phases.values())
+			addPhase(record);
+		peakHeapBytes = Math.max(peakHeapBytes, child.peakHeapBytes);
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.core;
+
+/**
+ * The cost of one phase of an experiment, such as training a model, summed
+ * over every time the phase was run.
+ *
+ * @author Sean A. Gilpin
+ */
+public class PerformanceRecord
+{
+	/** Name of the phase */
+	public String name;
+	/** Number of times the phase was run */
+	public int count;
+	/** Elapsed time in nanoseconds */
+	public long wallTime;
+	/** CPU time of the running thread in nanoseconds */
+	public long cpuTime;
+	/** Bytes allocated by the running thread */
+	public long allocatedBytes;
+
+	public PerformanceRecord(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Adds the cost of another run of the same phase.
+	 *
+	 * @param other The cost to add.
+	 */
+	public void add(PerformanceRecord other)
+	{
+		count += other.count;
+		wallTime += other.wallTime;
+		cpuTime += other.cpuTime;
+		allocatedBytes += other.allocatedBytes;
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.core;
+
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Records the wall time, CPU time, allocated bytes and peak heap of the
+ * phases of an experiment.  Recording is done per thread:  a part of the
+ * experiment, such as a fold, is surrounded by {@link #start} and
+ * {@link #stop}, and the code it runs marks its phases with {@link #begin}
+ * and {@link #end}.  Parts may be nested, in which case the phases of the
+ * inner part are added to the outer part when it stops.
+ *
+ * When nothing is being recorded on a thread, {@link #begin} and
+ * {@link #end} only look up a thread local and return, so the phases can
+ * be marked unconditionally.  A phase is ended in a finally block, so that
+ * a phase that throws does not stay open and absorb the phases after it.
+ * Phases are only marked around coarse steps such as training a model,
+ * never per instance.
+ *
+ * CPU time and allocated bytes are those of the current thread, so work
+ * that a phase hands off to other threads is only counted in its wall time.
+ * Allocated bytes are only available on JVMs that support
+ * com.sun.management.ThreadMXBean, and are 0 otherwise.  Peak heap is
+ * sampled at phase boundaries, so short lived peaks between boundaries may
+ * be missed.
+ *
+ * @author Sean A. Gilpin
+ */
+public class PerformanceRecorder
+{
+	/** Loading a data set from the disk */
+	public static final String IMPORT = "import";
+	/** Converting a data set to a framework specific data set */
+	public static final String CONVERT = "convert";
+	/** Training the model being evaluated */
+	public static final String TRAIN = "train";
+	/** Training one base classifier of an ensemble */
+	public static final String TRAIN_BASE_MODEL = "trainBaseModel";
+	/** Training the part of an ensemble that combines the base
+		classifiers */
+	public static final String FUSE = "fuse";
+	/** Making predictions for the test instances */
+	public static final String SCORE = "score";
+	/** Calculating the evaluation measures */
+	public static final String EVALUATE = "evaluate";
+	/** Calculating the diversity measures */
+	public static final String DIVERSITY = "diversity";
+
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	private static final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+	private static final boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+	private static final boolean allocatedBytesSupported =
+		threadBean instanceof com.sun.management.ThreadMXBean &&
+		((com.sun.management.ThreadMXBean)threadBean).isThreadAllocatedMemorySupported();
+
+	/** The innermost part of an experiment being recorded on each thread */
+	private static final ThreadLocal<Session> sessions = new ThreadLocal<Session>();
+
+	/**
+	 * A phase, or a whole part of an experiment, that has started but not
+	 * ended.
+	 */
+	private static class Measurement
+	{
+		final String name;
+		final long startWall;
+		final long startCpu;
+		final long startAllocated;
+
+		Measurement(String name)
+		{
+			this.name = name;
+			startWall = System.nanoTime();
+			startCpu = cpuTime();
+			startAllocated = allocatedBytes();
+		}
+
+		PerformanceRecord finish()
+		{
+			PerformanceRecord record = new PerformanceRecord(name);
+			record.count = 1;
+			record.wallTime = System.nanoTime() - startWall;
+			record.cpuTime = cpuTime() - startCpu;
+			record.allocatedBytes = allocatedBytes() - startAllocated;
+			return record;
+		}
+	}
+
+	/**
+	 * A part of an experiment being recorded.
+	 */
+	private static class Session
+	{
+		final Session parent;
+		final Measurement whole;
+		final PerformanceProfile profile;
+		final LinkedList<Measurement> open = new LinkedList<Measurement>();
+
+		Session(Session parent, String name)
+		{
+			this.parent = parent;
+			this.profile = new PerformanceProfile(name);
+			this.whole = new Measurement(name);
+		}
+	}
+
+	private static long cpuTime()
+	{
+		return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : 0;
+	}
+
+	private static long allocatedBytes()
+	{
+		if(!allocatedBytesSupported)
+			return 0;
+		long bytes = ((com.sun.management.ThreadMXBean)threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return Math.max(bytes, 0);
+	}
+
+	private static void sampleHeap(Session session)
+	{
+		long used = memoryBean.getHeapMemoryUsage().getUsed();
+		if(used > session.profile.peakHeapBytes)
+			session.profile.peakHeapBytes = used;
+	}
+
+	/**
+	 * @return True if a part of an experiment is being recorded on the
+	 * 	current thread.
+	 */
+	public static boolean isRecording()
+	{
+		return sessions.get() != null;
+	}
+
+	/**
+	 * Starts recording a part of an experiment on the current thread.
+	 *
+	 * @param name Name of the part, such as "fold".
+	 */
+	public static void start(String name)
+	{
+		Session session = new Session(sessions.get(), name);
+		sampleHeap(session);
+		sessions.set(session);
+	}
+
+	/**
+	 * Stops recording the innermost part of an experiment on the current
+	 * thread.  Its phases are added to the enclosing part, if there is one.
+	 *
+	 * @return The cost of the part, or null if nothing was being recorded.
+	 */
+	public static PerformanceProfile stop()
+	{
+		Session session = sessions.get();
+		if(session == null)
+			return null;
+		sampleHeap(session);
+		session.profile.total = session.whole.finish();
+		if(session.parent != null)
+			session.parent.profile.addPhases(session.profile);
+		if(session.parent == null)
+			sessions.remove();
+		else
+			sessions.set(session.parent);
+		return session.profile;
+	}
+
+	/**
+	 * Discards everything being recorded on the current thread.  Used to
+	 * clean up when an experiment fails part way through.
+	 */
+	public static void reset()
+	{
+		sessions.remove();
+	}
+
+	/**
+	 * Marks the start of a phase.  Must be followed by a call to
+	 * {@link #end} on the same thread.
+	 *
+	 * @param phase Name of the phase.
+	 */
+	public static void begin(String phase)
+	{
+		Session session = sessions.get();
+		if(session == null)
+			return;
+		session.open.addLast(new Measurement(phase));
+	}
+
+	/**
+	 * Marks the end of the most recently started phase.
+	 */
+	public static void end()
+	{
+		Session session = sessions.get();
+		if(session == null || session.open.isEmpty())
+			return;
+		PerformanceRecord record = session.open.removeLast().finish();
+		session.profile.addPhase(record);
+		if(record.name.equals(TRAIN_BASE_MODEL))
+			session.profile.baseModels.add(record);
+		sampleHeap(session);
+	}
+}
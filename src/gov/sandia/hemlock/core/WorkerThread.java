@@ -0,0 +1,53 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+package gov.sandia.hemlock.core;
+
+import java.util.concurrent.*;
+
+/**
+ * A thread of one of Hemlock's thread pools that runs whole tasks, such as
+ * the folds of a parameter search.  Models and measures that would split
+ * their own work across a pool run it serially on a worker thread instead,
+ * so that pools are not nested inside pools and the number of busy threads
+ * stays at the size of the outer pool.
+ *
+ * @author Sean A. Gilpin
+ */
+public class WorkerThread extends Thread
+{
+	/** Creates the threads of a pool as worker threads */
+	public static final ThreadFactory FACTORY = new ThreadFactory()
+	{
+		public Thread newThread(Runnable task)
+		{
+			return new WorkerThread(task);
+		}
+	};
+
+	public WorkerThread(Runnable task)
+	{
+		super(task);
+	}
+
+	/**
+	 * @return The number of threads work started on the current thread may
+	 * 	be split across:  1 on a worker thread, and otherwise the number of
+	 * 	available processors.
+	 */
+	public static int availableThreads()
+	{
+		if(Thread.currentThread() instanceof WorkerThread)
+			return 1;
+		return Runtime.getRuntime().availableProcessors();
+	}
+}
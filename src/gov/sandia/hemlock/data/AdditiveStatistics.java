@@ -0,0 +1,63 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Statistics of a set of instances from which the statistics of a union, or
+ * of a difference, of sets can be worked out without looking at the
+ * instances again, such as counts and sums.  A learner trained from such
+ * statistics can use {@link FoldedDataSet#getStatistics} to train every
+ * fold of a cross validation from one pass over the data.
+ *
+ * @param <T> The class implementing this interface.
+ * @author Sean A. Gilpin
+ */
+public interface AdditiveStatistics<T extends AdditiveStatistics<T>> extends Serializable
+{
+	/**
+	 * @return An independent copy of these statistics.
+	 */
+	public T copy();
+
+	/**
+	 * Adds the statistics of another set of instances to these, making them
+	 * the statistics of both sets together.
+	 *
+	 * @param other Statistics of a set of instances with the same schema.
+	 */
+	public void merge(T other);
+
+	/**
+	 * Removes the statistics of a subset of the instances from these.
+	 *
+	 * @param other Statistics of instances that are included in these.
+	 */
+	public void subtract(T other);
+
+	/**
+	 * Gathers statistics from a set of instances.
+	 *
+	 * @param <T> The statistics gathered.
+	 */
+	public interface Calculator<T>
+	{
+		/**
+		 * @param schema The schema of the instances.
+		 * @param records The instances.
+		 * @return The statistics of the instances.
+		 */
+		public T compute(RecordSchema schema, List<double[]> records);
+	}
+}
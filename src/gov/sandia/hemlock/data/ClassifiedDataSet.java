@@ -12,7 +12,9 @@
 package gov.sandia.hemlock.data;
 
 
+import gov.sandia.hemlock.classification.BatchModel;
 import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
 
 import java.util.ArrayList;
 
@@ -36,6 +38,20 @@ public class ClassifiedDataSet
 	public double[][] predictedDistributions;
 	/** Information about this data set such as its name */
 	public DataSetInfo info;
+	/** Mean negative log of the probability predicted for the true class,
+		over the instances whose label is known*/
+	public double logLoss;
+	/** Mean squared difference between the predicted distribution and the
+		true class indicator vector, over the instances whose label is
+		known*/
+	public double brierScore;
+	/** Nanoseconds spent in the model's prediction calls, not counting the
+		bookkeeping of this data set*/
+	public long predictionNanos;
+	
+	/** Smallest probability used when taking the log for log loss, so that
+		a confident wrong prediction has a finite cost */
+	public static final double LOG_LOSS_EPSILON = 1e-15;
 	
 	
 	/**
@@ -58,10 +74,81 @@ public class ClassifiedDataSet
 		//predict labels
 		predictedLabels = new double[data.records.size()];
 		predictedDistributions = new double[data.records.size()][];
+		int classIndex = recordSchema.numAttributes;
+		double totalLogLoss = 0;
+		double totalBrier = 0;
+		int numLabeled = 0;
+		BatchModel batchClassifier = null;
+		if(classifier instanceof BatchModel)
+		{
+			batchClassifier = (BatchModel)classifier;
+			long start = System.nanoTime();
+			predictedDistributions = batchClassifier.getTargetDistributions(data.records);
+			predictionNanos = System.nanoTime() - start;
+		}
 		for(int i = 0; i < data.records.size(); i++)
 		{
-			predictedLabels[i] = classifier.getTargetValue(data.records.get(i));
-			predictedDistributions[i] = classifier.getTargetDistribution(data.records.get(i));
+			double[] record = data.records.get(i);
+			double[] distribution;
+			if(batchClassifier != null)
+			{
+				//the label is the first most probable class
+				distribution = predictedDistributions[i];
+				int label = 0;
+				for(int k = 1; k < distribution.length; k++)
+				{
+					if(distribution[k] > distribution[label])
+						label = k;
+				}
+				predictedLabels[i] = label;
+			}
+			else
+			{
+				long start = System.nanoTime();
+				predictedLabels[i] = classifier.getTargetValue(record);
+				distribution = classifier.getTargetDistribution(record);
+				predictionNanos += System.nanoTime() - start;
+				predictedDistributions[i] = distribution;
+			}
+			
+			//score the predicted distribution while it is at hand, skipping
+			//instances whose label is missing (NaN) or negative
+			double label = record[classIndex];
+			if(!(label >= 0))
+				continue;
+			numLabeled++;
+			int trueLabel = (int)label;
+			double pTrue = (trueLabel < distribution.length) ? distribution[trueLabel] : 0;
+			totalLogLoss -= Math.log(Math.max(pTrue, LOG_LOSS_EPSILON));
+			for(int k = 0; k < distribution.length; k++)
+			{
+				double diff = distribution[k] - ((k == trueLabel) ? 1 : 0);
+				totalBrier += diff*diff;
+			}
 		}
+		if(numLabeled > 0)
+		{
+			logLoss = totalLogLoss / numLabeled;
+			brierScore = totalBrier / numLabeled;
+		}
+		HemlockMetrics.rowsScored(predictedLabels.length);
+	}
+	
+	/**
+	 * Constructor that only makes predictions for a contiguous chunk of the
+	 * instances in a labeled data set.  This allows a large data set to be
+	 * scored a chunk at a time, so that only the predictions for one chunk
+	 * are held in memory at once.
+	 *
+	 * @param data The data to make predictions for.
+	 * @param classifier The model that will make th prediction
+	 * @param fromIndex Index of the first instance in the chunk.
+	 * @param toIndex One past the index of the last instance in the chunk.
+	 * @throws Exception
+	 */
+	public ClassifiedDataSet(DataSet data, Model classifier, int fromIndex, int toIndex) throws Exception
+	{
+		this(new DataSet(data.recordSchema, data.info,
+			new ArrayList<double[]>(data.records.subList(fromIndex, toIndex))), classifier);
 	}
 }
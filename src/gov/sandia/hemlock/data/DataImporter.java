@@ -10,6 +10,8 @@
  */
 
 package gov.sandia.hemlock.data;
+import gov.sandia.hemlock.core.PerformanceRecorder;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
 import java.io.*;
 import java.util.*;
 
@@ -26,6 +28,12 @@ public class DataImporter
 		subsequent attempts to load the data set are more efficient.*/
 	public static Hashtable<String, DataSet> cachedDataSets;
 	
+	/** First value of a data file in {@link FileFormatType#HemlockBinary}
+		format */
+	public static final int BINARY_MAGIC = 0x484D4C4B;
+	/** Version of the binary data file layout */
+	public static final int BINARY_VERSION = 1;
+	
 	/**
 	 * Load a data set either from the cache, or from the disk.
 	 *
@@ -39,14 +47,45 @@ public class DataImporter
 		if(info.fileFormat == FileFormatType.ModifiedC45)
 		{
 			String fileName = info.absolutePath + "/" + info.dataSetName;
+			HemlockMetrics.dataSetCacheLookup(cachedDataSets.containsKey(fileName));
 			if(cachedDataSets.containsKey(fileName))
 				return cachedDataSets.get(fileName);
 			
-			DataSet data =  importC45Modified(fileName + ".data", fileName + ".names", info );
+			DataSet data;
+			PerformanceRecorder.begin(PerformanceRecorder.IMPORT);
+			try
+			{
+				data = importC45Modified(fileName + ".data", fileName + ".names", info );
+			}
+			finally
+			{
+				PerformanceRecorder.end();
+			}
 			data.info = info;
 			cachedDataSets.put(fileName, data);
 			return data;
 		}
+		if(info.fileFormat == FileFormatType.HemlockBinary)
+		{
+			String fileName = info.absolutePath + "/" + info.dataSetName;
+			HemlockMetrics.dataSetCacheLookup(cachedDataSets.containsKey(fileName));
+			if(cachedDataSets.containsKey(fileName))
+				return cachedDataSets.get(fileName);
+			
+			DataSet data;
+			PerformanceRecorder.begin(PerformanceRecorder.IMPORT);
+			try
+			{
+				RecordSchema schema = createSchemaC45Modified(fileName + ".names");
+				data = new DataSet(schema, info, createRecordSetBinary(fileName + ".bin", schema));
+			}
+			finally
+			{
+				PerformanceRecorder.end();
+			}
+			cachedDataSets.put(fileName, data);
+			return data;
+		}
 		throw new Exception("unsupported file type");
 	}
 	
@@ -97,6 +136,45 @@ public class DataImporter
 		return recordSet;
 	}
 	
+	/**
+	 * Creates a list of instances to be included in the data set when
+	 * the data file is in the binary format.  The file starts with
+	 * {@link #BINARY_MAGIC}, {@link #BINARY_VERSION}, the number of
+	 * attributes as an int and the number of instances as a long, followed by
+	 * the attribute values and label of each instance as doubles.
+	 *
+	 * @param dataFileName Path to file that contains instances and labels.
+	 * @param schema Contains schema information about format of instances.
+	 * @return The list of instances read from disk.
+	 * @throws Exception If the file is not a binary data file for the schema.
+	 */
+	private ArrayList<double[]> createRecordSetBinary(String dataFileName, RecordSchema schema) throws Exception
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dataFileName), 1 << 16));
+		try
+		{
+			if(in.readInt() != BINARY_MAGIC || in.readInt() != BINARY_VERSION)
+				throw new Exception(dataFileName + " is not a binary data file.");
+			int numAttributes = in.readInt();
+			if(numAttributes != schema.numAttributes)
+				throw new Exception(dataFileName + " has " + numAttributes + " attributes but the schema has " + schema.numAttributes + ".");
+			long numRecords = in.readLong();
+			ArrayList<double[]> recordSet = new ArrayList<double[]>((int)numRecords);
+			for(long i = 0; i < numRecords; i++)
+			{
+				double[] record = new double[numAttributes + 1];
+				for(int j = 0; j <= numAttributes; j++)
+					record[j] = in.readDouble();
+				recordSet.add(record);
+			}
+			return recordSet;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
 	/**
 	 * Reads a schema file in Modified C45 format and uses the information
 	 * to create a {@link RecordSchema} object.
@@ -105,7 +183,7 @@ public class DataImporter
 	 * @return RecordSchema that is created.
 	 * @return IOException
 	 */
-	private RecordSchema createSchemaC45Modified(String namesFileName) throws IOException
+	public RecordSchema createSchemaC45Modified(String namesFileName) throws IOException
 	{
 		RecordSchema newSchema = new RecordSchema();
 		ArrayList<String> namesFile = readFile(namesFileName);
@@ -13,6 +13,7 @@ package gov.sandia.hemlock.data;
 
 import java.util.*;
 import java.io.*;
+import java.security.MessageDigest;
 
 /**
  * A set of labeled instances along with information about the original source
@@ -103,4 +104,54 @@ public class DataSet implements IDataSet
 		}
 		return sb.toString();
 	}
+	
+	/**
+	 * Computes a fingerprint of the schema and instances of this data set.
+	 * Two data sets with the same fingerprint hold the same instances in
+	 * the same order, so models trained on one may be reused for the
+	 * other.  Reads every instance, so callers should keep the result
+	 * rather than call this repeatedly.
+	 *
+	 * @return The SHA-1 digest of this data set as a hexadecimal string.
+	 * @throws Exception If SHA-1 is not available.
+	 */
+	public String getFingerprint() throws Exception
+	{
+		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+		digest.update(recordSchema.toString().getBytes("UTF-8"));
+		byte[] buffer = new byte[8*(recordSchema.numAttributes + 1)];
+		for(int i = 0; i < records.size(); i++)
+		{
+			double[] record = records.get(i);
+			int length = 0;
+			for(int j = 0; j < record.length; j++)
+			{
+				long bits = Double.doubleToLongBits(record[j]);
+				if(length == buffer.length)
+				{
+					digest.update(buffer, 0, length);
+					length = 0;
+				}
+				for(int b = 0; b < 8; b++)
+					buffer[length++] = (byte)(bits >>> (8*b));
+			}
+			digest.update(buffer, 0, length);
+		}
+		return toHex(digest.digest());
+	}
+	
+	/**
+	 * @param bytes Bytes to convert.
+	 * @return The bytes as a lower case hexadecimal string.
+	 */
+	public static String toHex(byte[] bytes)
+	{
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < bytes.length; i++)
+		{
+			sb.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(bytes[i] & 0xf, 16));
+		}
+		return sb.toString();
+	}
 }
@@ -99,7 +99,7 @@ public class DataSetGenerator
 		info.fileFormat = FileFormatType.ModifiedC45;
 		info.hasUnknownValues = false;
 		info.numberOfClasses = this.numClasses;
-		info.numberOfClasses = this.numContinuousFeatures;
+		info.numberOfContinuous = this.numContinuousFeatures;
 		info.numberOfNominal = this.numNominalFeatures;
 		info.numberOfRecords = this.numInstances;
 		
@@ -173,9 +173,9 @@ public class DataSetGenerator
 	 * arguments.
 	 *
 	 * @param args The command line arguments which will contain a path.
-	 * @throws FileNotFoundException
+	 * @throws Exception
 	 */
-	public static void main(String[] args) throws FileNotFoundException
+	public static void main(String[] args) throws Exception
 	{
 		String path = args[0];
 		
@@ -56,7 +56,6 @@ public class DataSetInfoEvaluator
 				if(curDirectory.isDirectory() && !curDirectory.isHidden())
 				{
 					DataSetInfo curInfo = processDataSet(dataSetNames[i], curDirectory);
-					curInfo.fileFormat = FileFormatType.ModifiedC45;
 					curInfo.repositoryName = name;
 					info.add(curInfo);
 				}
@@ -110,8 +109,16 @@ public class DataSetInfoEvaluator
 		DataSetInfo info = new DataSetInfo();
 		info.dataSetName = dataSetName;
 		info.absolutePath = directory.getPath();
+		//data sets written by StreamingDataSetGenerator may be binary
+		if(new File(directory, dataSetName + ".bin").exists() && !new File(directory, dataSetName + ".data").exists())
+			info.fileFormat = FileFormatType.HemlockBinary;
+		else
+			info.fileFormat = FileFormatType.ModifiedC45;
 			
-		processDataFile(info);
+		if(info.fileFormat == FileFormatType.HemlockBinary)
+			processBinaryDataFile(info);
+		else
+			processDataFile(info);
 		processNamesFile(info);
 			
 		return info;
@@ -144,6 +151,25 @@ public class DataSetInfoEvaluator
 		dataReader.close();
 	}
 	
+	/**
+	 * Reads the header of a binary data file, which holds the number of
+	 * records.  Binary data files never have unknown values.
+	 *
+	 * @param info Will specify which data set to load and will be location
+	 *	to store evaluation.
+	 * @throws Exception
+	 */
+	private static void processBinaryDataFile(DataSetInfo info) throws Exception
+	{
+		String dataFileName =  info.absolutePath + "/" + info.dataSetName + ".bin";
+		DataInputStream dataReader = new DataInputStream(new FileInputStream(dataFileName));
+		dataReader.readInt();	//magic
+		dataReader.readInt();	//version
+		dataReader.readInt();	//number of attributes
+		info.numberOfRecords = (int)dataReader.readLong();
+		dataReader.close();
+	}
+	
 	/**
 	 * Reads the schema for a data set and evaluates it, storing the
 	 * findings in the DataSetInfo object.
@@ -18,5 +18,8 @@ package gov.sandia.hemlock.data;
  */
 public enum FileFormatType
 {
-	ModifiedC45;
+	ModifiedC45,
+	/** Modified C45 names file with the instances stored as binary doubles
+		in a .bin file */
+	HemlockBinary;
 }
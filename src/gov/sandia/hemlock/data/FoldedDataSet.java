@@ -0,0 +1,108 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.data;
+
+import java.util.*;
+
+/**
+ * The training data set of one fold of a cross validation, which holds every
+ * subsample but the one set aside.  It remembers the subsamples it was put
+ * together from, so that learners whose statistics can be added up may
+ * compute the statistics of each subsample once and combine them for every
+ * fold, instead of passing over the training data of each fold.  The
+ * training data sets of the folds of one cross validation share the same
+ * folds array.
+ *
+ * @author Sean A. Gilpin
+ */
+public class FoldedDataSet extends DataSet
+{
+	//statistics of each cross validation, keyed by its folds array, which
+	//arrays compare by identity, and then by the name of the statistics.
+	//Element 0 holds the statistics of all the data and element i + 1
+	//those of fold i.
+	private static final WeakHashMap<ArrayList<double[]>[], Hashtable<String, Object[]>> statistics =
+		new WeakHashMap<ArrayList<double[]>[], Hashtable<String, Object[]>>();
+
+	/** Every subsample of the cross validation, including the one held out */
+	public final ArrayList<double[]>[] folds;
+	/** The subsample that is not part of this data set */
+	public final int heldOutFold;
+
+	/**
+	 * Puts together the training data set for one fold.
+	 *
+	 * @param schema The data set schema to be used.
+	 * @param info The information about the data set.
+	 * @param folds Every subsample of the cross validation.
+	 * @param heldOutFold The subsample to leave out.
+	 */
+	public FoldedDataSet(RecordSchema schema, DataSetInfo info, ArrayList<double[]>[] folds, int heldOutFold)
+	{
+		super(schema, info, concatenate(folds, heldOutFold));
+		this.folds = folds;
+		this.heldOutFold = heldOutFold;
+	}
+
+	private static ArrayList<double[]> concatenate(ArrayList<double[]>[] folds, int heldOutFold)
+	{
+		ArrayList<double[]> records = new ArrayList<double[]>();
+		for(int i = 0; i < folds.length; i++)
+		{
+			if(i != heldOutFold)
+				records.addAll(folds[i]);
+		}
+		return records;
+	}
+
+	/**
+	 * Works out statistics of this data set as the statistics of all of the
+	 * data minus those of the held out subsample.  The first fold of a cross
+	 * validation to ask for statistics of a given name gathers them for
+	 * each subsample, in one pass over the data, and the other folds reuse
+	 * them, so training every fold costs about as much as training one.
+	 *
+	 * @param name Identifies the kind of statistics, so that different
+	 * 	learners keep their statistics apart.
+	 * @param calculator Gathers the statistics of a subsample.
+	 * @return The statistics of this data set, which the caller may change.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends AdditiveStatistics<T>> T getStatistics(String name, AdditiveStatistics.Calculator<T> calculator)
+	{
+		Object[] shared;
+		synchronized(statistics)
+		{
+			Hashtable<String, Object[]> byName = statistics.get(folds);
+			if(byName == null)
+			{
+				byName = new Hashtable<String, Object[]>();
+				statistics.put(folds, byName);
+			}
+			shared = byName.get(name);
+			if(shared == null)
+			{
+				shared = new Object[folds.length + 1];
+				for(int i = 0; i < folds.length; i++)
+					shared[i + 1] = calculator.compute(recordSchema, folds[i]);
+				T total = ((T)shared[1]).copy();
+				for(int i = 1; i < folds.length; i++)
+					total.merge((T)shared[i + 1]);
+				shared[0] = total;
+				byName.put(name, shared);
+			}
+		}
+		T result = ((T)shared[0]).copy();
+		result.subtract((T)shared[heldOutFold + 1]);
+		return result;
+	}
+}
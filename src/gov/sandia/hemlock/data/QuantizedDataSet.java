@@ -0,0 +1,310 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.data;
+
+import gov.sandia.hemlock.core.PerformanceRecorder;
+import java.util.*;
+
+/**
+ * The instances of a data set with every attribute reduced to at most
+ * {@link #MAX_BINS} bins, stored one byte per value in columns.  This is
+ * the native data set of the Hemlock tree learners, which search for splits
+ * by adding up a histogram of the bins instead of sorting the values.  Row
+ * i holds instance i of the data set that was quantized.
+ * <p>
+ * A discrete attribute with at most MAX_BINS values is binned by its value.
+ * Any other attribute is cut into bins holding roughly equal numbers of
+ * instances.  When it has at most MAX_BINS distinct values each gets its
+ * own bin and no precision is lost.  The edge between two bins is halfway
+ * between the largest value of one and the smallest of the next, so a
+ * split between bins is the split an exact search would choose there.
+ * Missing values, stored as NaN, are rejected.
+ * <p>
+ * The edges are shared by every data set with the same
+ * {@link RecordSchema}, such as the folds of a cross validation and the
+ * bootstrap samples drawn from them, so that every model of an experiment
+ * splits on the same edges.  They are computed from the imported data set
+ * when it is cached by {@link DataImporter}, and otherwise from the first
+ * data set quantized.  Only the edges are shared:  the bins of a data set
+ * belong to its own quantized data set and are dropped along with it.
+ *
+ * @author Sean A. Gilpin
+ */
+public class QuantizedDataSet implements IDataSet
+{
+	/** Largest number of bins an attribute is cut into */
+	public static final int MAX_BINS = 256;
+
+	/**
+	 * How every attribute of a schema is cut into bins.
+	 */
+	private static class Binning
+	{
+		final boolean[] discrete;
+		final int[] numBins;
+		final double[][] upperEdges;
+
+		Binning(DataSet data) throws Exception
+		{
+			RecordSchema schema = data.recordSchema;
+			int numAttributes = schema.numAttributes;
+			discrete = new boolean[numAttributes];
+			numBins = new int[numAttributes];
+			upperEdges = new double[numAttributes][];
+			double[] values = new double[data.records.size()];
+			for(int a = 0; a < numAttributes; a++)
+			{
+				if(schema.attributeTypes[a] == AttributeType.Discrete && schema.attributeValues[a].length <= MAX_BINS)
+				{
+					discrete[a] = true;
+					numBins[a] = schema.attributeValues[a].length;
+				}
+				else
+				{
+					for(int i = 0; i < values.length; i++)
+					{
+						values[i] = data.records.get(i)[a];
+						if(Double.isNaN(values[i]))
+							throw missingValue(i, a);
+					}
+					upperEdges[a] = computeEdges(values);
+					numBins[a] = upperEdges[a].length + 1;
+				}
+			}
+		}
+	}
+
+	//keyed by the schema object, which RecordSchema does not override
+	//equals for, and weak so that an entry goes with its data set
+	private static final WeakHashMap<RecordSchema, Binning> shared =
+		new WeakHashMap<RecordSchema, Binning>();
+
+	/** Number of class labels */
+	public final int numClasses;
+	/** Number of attributes, not counting the class label */
+	public final int numAttributes;
+	/** True for a discrete attribute binned by its value, whose splits
+		have one child per value */
+	public final boolean[] discrete;
+	/** The number of bins of each attribute */
+	public final int[] numBins;
+	/** For each attribute that is not binned by value, the largest value
+		of each bin but the last */
+	public final double[][] upperEdges;
+
+	private final byte[][] bins;
+	private final int[] labels;
+
+	/**
+	 * Computes the bins of every attribute from a data set and quantizes
+	 * its instances.  Use {@link #quantize} rather than this constructor,
+	 * so that data sets with the same schema share their bin edges.
+	 *
+	 * @param data The data set to compute the bins from.
+	 * @throws Exception If a value is missing.
+	 */
+	public QuantizedDataSet(DataSet data) throws Exception
+	{
+		this(new Binning(data), data);
+	}
+
+	private QuantizedDataSet(Binning binning, DataSet data) throws Exception
+	{
+		numClasses = data.recordSchema.labels.length;
+		numAttributes = data.recordSchema.numAttributes;
+		discrete = binning.discrete;
+		numBins = binning.numBins;
+		upperEdges = binning.upperEdges;
+
+		int numRows = data.records.size();
+		bins = new byte[numAttributes][numRows];
+		labels = new int[numRows];
+		for(int i = 0; i < numRows; i++)
+		{
+			double[] record = data.records.get(i);
+			for(int a = 0; a < numAttributes; a++)
+			{
+				double value = record[a];
+				if(Double.isNaN(value) || (discrete[a] && (value < 0 || value >= numBins[a])))
+					throw missingValue(i, a);
+				bins[a][i] = (byte)findBin(a, value);
+			}
+			labels[i] = (int)record[numAttributes];
+		}
+	}
+
+	/**
+	 * Quantizes a data set with the bin edges shared by every data set with
+	 * the same schema, computing the edges if there are none yet.
+	 *
+	 * @param data A data set.
+	 * @return The quantized instances of data, in the same order.
+	 * @throws Exception If a value is missing.
+	 */
+	public static QuantizedDataSet quantize(DataSet data) throws Exception
+	{
+		PerformanceRecorder.begin(PerformanceRecorder.CONVERT);
+		try
+		{
+			Binning binning;
+			synchronized(shared)
+			{
+				binning = shared.get(data.recordSchema);
+				if(binning == null)
+				{
+					binning = new Binning(findImported(data));
+					shared.put(data.recordSchema, binning);
+				}
+			}
+			return new QuantizedDataSet(binning, data);
+		}
+		finally
+		{
+			PerformanceRecorder.end();
+		}
+	}
+
+	/**
+	 * Looks for the imported data set the given data set was drawn from, so
+	 * that the bins do not depend on which fold happens to be quantized
+	 * first.
+	 */
+	private static DataSet findImported(DataSet data)
+	{
+		Hashtable<String, DataSet> imported = DataImporter.cachedDataSets;
+		if(imported != null)
+		{
+			for(DataSet candidate : imported.values())
+			{
+				if(candidate.recordSchema == data.recordSchema)
+					return candidate;
+			}
+		}
+		return data;
+	}
+
+	private static Exception missingValue(int instance, int attribute)
+	{
+		return new Exception("instance " + instance + " has a missing or unknown value for attribute "
+			+ attribute + ", which the Hemlock tree learners do not support");
+	}
+
+	/**
+	 * @return The bin of each value, indexed by attribute and then row.
+	 */
+	public byte[][] getBins()
+	{
+		return bins;
+	}
+
+	/**
+	 * @return The index of the class label of each row.
+	 */
+	public int[] getLabels()
+	{
+		return labels;
+	}
+
+	/**
+	 * @return The number of rows.
+	 */
+	public int getNumRows()
+	{
+		return labels.length;
+	}
+
+	/**
+	 * @param bin A value from {@link #getBins}.
+	 * @return The bin as a number from 0 to 255.
+	 */
+	public static int toBin(byte bin)
+	{
+		return bin & 0xff;
+	}
+
+	/**
+	 * @param attribute An attribute.
+	 * @param value A value of the attribute.
+	 * @return The bin the value falls in.
+	 */
+	public int findBin(int attribute, double value)
+	{
+		if(discrete[attribute])
+			return (int)value;
+		double[] edges = upperEdges[attribute];
+		int lo = 0;
+		int hi = edges.length;
+		while(lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if(value <= edges[mid])
+				hi = mid;
+			else
+				lo = mid + 1;
+		}
+		return lo;
+	}
+
+	/**
+	 * Cuts the values of an attribute into at most MAX_BINS bins of roughly
+	 * equal numbers of instances, never putting a value in two bins.
+	 *
+	 * @param values The values, which are sorted in place.
+	 * @return The edges between the bins.
+	 */
+	private static double[] computeEdges(double[] values)
+	{
+		Arrays.sort(values);
+		int n = values.length;
+		int numDistinct = 0;
+		for(int i = 0; i < n; i++)
+		{
+			if(i == 0 || values[i] != values[i - 1])
+				numDistinct++;
+		}
+
+		ArrayList<Double> edges = new ArrayList<Double>();
+		if(numDistinct <= MAX_BINS)
+		{
+			for(int i = 1; i < n; i++)
+			{
+				if(values[i] != values[i - 1])
+					edges.add(midpoint(values[i - 1], values[i]));
+			}
+		}
+		else
+		{
+			//close a bin at the first change of value after each quantile
+			int start = 0;
+			for(int b = 1; b < MAX_BINS && start < n; b++)
+			{
+				int end = Math.max((int)((long)n*b/MAX_BINS), start + 1);
+				while(end < n && values[end] == values[end - 1])
+					end++;
+				if(end >= n)
+					break;
+				edges.add(midpoint(values[end - 1], values[end]));
+				start = end;
+			}
+		}
+		double[] result = new double[edges.size()];
+		for(int i = 0; i < result.length; i++)
+			result[i] = edges.get(i);
+		return result;
+	}
+
+	private static double midpoint(double below, double above)
+	{
+		double mid = (below + above)/2;
+		return (mid == above) ? below : mid;
+	}
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.data;
+
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Generates large data sets straight to disk.  The instances are divided
+ * into blocks of rows, and every block is generated from its own random
+ * number generator whose seed is derived from the generator seed and the
+ * block number.  Blocks can therefore be generated in parallel, and the
+ * same seed always produces the same file no matter how many threads are
+ * used.  Only a bounded number of blocks are held in memory at once, and
+ * they are written to disk in order as they finish.
+ *
+ * Besides the class means and standard deviations of
+ * {@link DataSetGenerator}, the class priors can be set to create an
+ * imbalanced data set, the features of an instance can be correlated
+ * through a shared latent factor, and a fraction of the labels can be
+ * flipped to another class after the features are generated.
+ *
+ * @author Sean A. Gilpin
+ */
+public class StreamingDataSetGenerator extends DataSetGenerator
+{
+	/** Seed that every block's random number generator is derived from */
+	public long seed = 0;
+	/** Number of instances generated in each block */
+	public int blockSize = 1000;
+	/** Number of threads generating blocks */
+	public int numThreads = Runtime.getRuntime().availableProcessors();
+	/** Relative frequency of each class, null for equally likely classes */
+	public double[] classPriors;
+	/** Correlation in [0,1] between the noise of any two features of
+		the same instance */
+	public double featureCorrelation = 0;
+	/** Probability that an instance is given a different, randomly chosen,
+		label than the class its features were generated from */
+	public double labelNoise = 0;
+	/** Format the data file is written in */
+	public FileFormatType fileFormat = FileFormatType.ModifiedC45;
+
+	/**
+	 * Sets the class means so that each class is shifted away from the
+	 * others by a random amount in every feature, and sets every standard
+	 * deviation to the same value.  Intended for generating data sets with
+	 * many features, where listing the means by hand is impractical.
+	 *
+	 * @param separation The largest distance between the means of two
+	 *	classes for a single feature.
+	 * @param deviation The standard deviation of every feature.
+	 * @param numNominalValues The number of values of every nominal feature.
+	 */
+	public void initializeParameters(double separation, double deviation, int numNominalValues)
+	{
+		int numFeatures = numContinuousFeatures + numNominalFeatures;
+		Random r = new Random(seed);
+		nominalFeaturesNumValues = new int[numFeatures];
+		mean = new double[numClasses][numFeatures];
+		std = new double[numClasses][numFeatures];
+		for(int j = 0; j < numFeatures; j++)
+		{
+			double center = (j < numNominalFeatures) ? numNominalValues / 2.0 : 0;
+			if(j < numNominalFeatures)
+				nominalFeaturesNumValues[j] = numNominalValues;
+			for(int c = 0; c < numClasses; c++)
+			{
+				mean[c][j] = center + separation*(r.nextDouble() - 0.5);
+				std[c][j] = deviation;
+			}
+		}
+	}
+
+	@Override
+	public DataSetInfo createDataSetInfo()
+	{
+		DataSetInfo info = super.createDataSetInfo();
+		info.fileFormat = fileFormat;
+		return info;
+	}
+
+	/**
+	 * Create a data set in memory using the same blocks that
+	 * {@link #generateToDisk} would write, so that small data sets can be
+	 * used directly without going through the disk.
+	 *
+	 * @return The DataSet that is generated.
+	 */
+	@Override
+	public DataSet generateDataSet()
+	{
+		double[] cumulativePriors = getCumulativePriors();
+		ArrayList<double[]> records = new ArrayList<double[]>(numInstances);
+		for(int block = 0; block < getNumBlocks(); block++)
+			records.addAll(Arrays.asList(generateBlock(block, cumulativePriors)));
+		return new DataSet(createSchema(), createDataSetInfo(), records);
+	}
+
+	/**
+	 * Generates the data set and writes it to the repository path.  The
+	 * schema is written to a names file and the instances to a data file in
+	 * the chosen format.
+	 *
+	 * @return Information needed to import the written data set.
+	 * @throws Exception If a block cannot be generated or written.
+	 */
+	public DataSetInfo generateToDisk() throws Exception
+	{
+		DataSetInfo info = createDataSetInfo();
+		final RecordSchema schema = createSchema();
+		new File(info.absolutePath).mkdirs();
+
+		//write names file
+		PrintStream psNames = new PrintStream(new FileOutputStream(info.absolutePath + "/" + info.dataSetName + ".names"));
+		psNames.print(schema.toString());
+		psNames.close();
+
+		//write data file
+		String extension = (fileFormat == FileFormatType.HemlockBinary) ? ".bin" : ".data";
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+			new FileOutputStream(info.absolutePath + "/" + info.dataSetName + extension), 1 << 16));
+		if(fileFormat == FileFormatType.HemlockBinary)
+		{
+			out.writeInt(DataImporter.BINARY_MAGIC);
+			out.writeInt(DataImporter.BINARY_VERSION);
+			out.writeInt(schema.numAttributes);
+			out.writeLong(numInstances);
+		}
+
+		final double[] cumulativePriors = getCumulativePriors();
+		int numBlocks = getNumBlocks();
+		int maxPending = 2*Math.max(1, numThreads);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numThreads));
+		HemlockMetrics.registerExecutor(executor);
+		try
+		{
+			//keep a bounded window of blocks in flight and write them in order
+			LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+			int nextBlock = 0;
+			while(nextBlock < numBlocks || !pending.isEmpty())
+			{
+				while(nextBlock < numBlocks && pending.size() < maxPending)
+				{
+					final int block = nextBlock++;
+					pending.add(executor.submit(new Callable<byte[]>()
+					{
+						public byte[] call() throws Exception
+						{
+							return encodeBlock(generateBlock(block, cumulativePriors), schema);
+						}
+					}));
+				}
+				out.write(pending.removeFirst().get());
+			}
+		}
+		finally
+		{
+			HemlockMetrics.unregisterExecutor(executor);
+			executor.shutdownNow();
+			out.close();
+		}
+		return info;
+	}
+
+	/**
+	 * @return The number of blocks the instances are divided into.
+	 */
+	private int getNumBlocks()
+	{
+		return (int)((numInstances + (long)blockSize - 1) / blockSize);
+	}
+
+	/**
+	 * Normalizes the class priors into a cumulative distribution.
+	 */
+	private double[] getCumulativePriors()
+	{
+		double[] cumulative = new double[numClasses];
+		double total = 0;
+		for(int c = 0; c < numClasses; c++)
+		{
+			total += (classPriors == null) ? 1 : classPriors[c];
+			cumulative[c] = total;
+		}
+		for(int c = 0; c < numClasses; c++)
+			cumulative[c] /= total;
+		return cumulative;
+	}
+
+	/**
+	 * Derives the seed of one block from the generator seed, mixing the bits
+	 * so that neighboring blocks get unrelated random number sequences.
+	 *
+	 * @param seed The generator seed.
+	 * @param block The block number.
+	 * @return The seed of the block.
+	 */
+	static long blockSeed(long seed, int block)
+	{
+		long z = seed + (block + 1)*0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Generates the instances of one block.
+	 *
+	 * @param block The block number.
+	 * @param cumulativePriors The cumulative distribution of the classes.
+	 * @return The instances, each with its label as the last value.
+	 */
+	private double[][] generateBlock(int block, double[] cumulativePriors)
+	{
+		Random r = new Random(blockSeed(seed, block));
+		int numFeatures = numContinuousFeatures + numNominalFeatures;
+		int first = block*blockSize;
+		int numRows = Math.min(blockSize, numInstances - first);
+		double shared = Math.sqrt(featureCorrelation);
+		double own = Math.sqrt(1 - featureCorrelation);
+
+		double[][] records = new double[numRows][numFeatures + 1];
+		for(int i = 0; i < numRows; i++)
+		{
+			//pick the class the features are generated from
+			double u = r.nextDouble();
+			int classIndex = 0;
+			while(classIndex < numClasses - 1 && u >= cumulativePriors[classIndex])
+				classIndex++;
+
+			double latent = (featureCorrelation > 0) ? r.nextGaussian() : 0;
+			for(int j = 0; j < numFeatures; j++)
+			{
+				double noise = shared*latent + own*r.nextGaussian();
+				double value = noise*std[classIndex][j] + mean[classIndex][j];
+				if(j < numNominalFeatures)
+				{
+					if(value < 0)
+						value = 0;
+					if(value > nominalFeaturesNumValues[j]-1)
+						value = nominalFeaturesNumValues[j]-1;
+					value = Math.round(value);
+				}
+				records[i][j] = value;
+			}
+
+			//flip the label to one of the other classes
+			int label = classIndex;
+			if(labelNoise > 0 && numClasses > 1 && r.nextDouble() < labelNoise)
+			{
+				label = r.nextInt(numClasses - 1);
+				if(label >= classIndex)
+					label++;
+			}
+			records[i][numFeatures] = label;
+		}
+		return records;
+	}
+
+	/**
+	 * Converts a block of instances into the bytes written to the data file.
+	 * Modified C45 text is written the same way as
+	 * {@link DataSet#recordsToString}.
+	 */
+	private byte[] encodeBlock(double[][] records, RecordSchema schema) throws IOException
+	{
+		if(fileFormat == FileFormatType.HemlockBinary)
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(records.length*(schema.numAttributes + 1)*8);
+			DataOutputStream out = new DataOutputStream(bytes);
+			for(int i = 0; i < records.length; i++)
+			{
+				for(int j = 0; j <= schema.numAttributes; j++)
+					out.writeDouble(records[i][j]);
+			}
+			out.close();
+			return bytes.toByteArray();
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < records.length; i++)
+		{
+			double[] record = records[i];
+			for(int j = 0; j < schema.numAttributes; j++)
+			{
+				if(schema.attributeTypes[j] == AttributeType.Continuous)
+					sb.append(record[j]);
+				else
+					sb.append((int)record[j]);
+				sb.append(" ");
+			}
+			sb.append((int)record[schema.numAttributes]); //write class label
+			sb.append("\n");
+		}
+		return sb.toString().getBytes("US-ASCII");
+	}
+
+	/**
+	 * Command line tool for writing a large synthetic data set.
+	 *
+	 * Usage: StreamingDataSetGenerator repositoryPath dataSetName
+	 *	numInstances numContinuous numNominal numClasses [-seed n]
+	 *	[-threads n] [-blockSize n] [-priors p1,p2,...] [-correlation r]
+	 *	[-labelNoise p] [-separation s] [-binary]
+	 *
+	 * @param args The command line arguments.
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if(args.length < 6)
+		{
+			System.out.println("Usage: StreamingDataSetGenerator repositoryPath dataSetName "
+				+ "numInstances numContinuous numNominal numClasses [-seed n] [-threads n] "
+				+ "[-blockSize n] [-priors p1,p2,...] [-correlation r] [-labelNoise p] "
+				+ "[-separation s] [-binary]");
+			System.exit(1);
+		}
+
+		StreamingDataSetGenerator generator = new StreamingDataSetGenerator();
+		generator.repositoryPath = args[0];
+		generator.dataSetName = args[1];
+		generator.numInstances = Integer.parseInt(args[2]);
+		generator.numContinuousFeatures = Integer.parseInt(args[3]);
+		generator.numNominalFeatures = Integer.parseInt(args[4]);
+		generator.numClasses = Integer.parseInt(args[5]);
+		double separation = 2;
+		for(int i = 6; i < args.length; i++)
+		{
+			if(args[i].equals("-seed"))
+				generator.seed = Long.parseLong(args[++i]);
+			else if(args[i].equals("-threads"))
+				generator.numThreads = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-blockSize"))
+				generator.blockSize = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-priors"))
+			{
+				String[] tokens = args[++i].split(",");
+				generator.classPriors = new double[tokens.length];
+				for(int c = 0; c < tokens.length; c++)
+					generator.classPriors[c] = Double.parseDouble(tokens[c]);
+			}
+			else if(args[i].equals("-correlation"))
+				generator.featureCorrelation = Double.parseDouble(args[++i]);
+			else if(args[i].equals("-labelNoise"))
+				generator.labelNoise = Double.parseDouble(args[++i]);
+			else if(args[i].equals("-separation"))
+				separation = Double.parseDouble(args[++i]);
+			else if(args[i].equals("-binary"))
+				generator.fileFormat = FileFormatType.HemlockBinary;
+			else
+				throw new Exception("Unknown option: " + args[i]);
+		}
+		if(generator.classPriors != null && generator.classPriors.length != generator.numClasses)
+			throw new Exception("Expected one prior for each of the " + generator.numClasses + " classes.");
+
+		generator.initializeParameters(separation, 2, 10);
+		generator.generateToDisk();
+	}
+}
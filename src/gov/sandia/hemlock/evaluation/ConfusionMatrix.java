@@ -50,6 +50,27 @@ public class ConfusionMatrix
 		this.matrix = matrix;
 	}
 	
+	/**
+	 * Constructor which wraps counts that were already accumulated, for
+	 * example by a {@link ConfusionMatrixAccumulator}.
+	 *
+	 * @param matrix The counts, where matrix[i][j] is the number of
+	 *	instances of class i that were predicted to be class j.
+	 */
+	public ConfusionMatrix(int[][] matrix)
+	{
+		int total = 0;
+		for(int i = 0; i < matrix.length; i++)
+		{
+			for(int j = 0; j < matrix[i].length; j++)
+			{
+				total += matrix[i][j];
+			}
+		}
+		this.total = total;
+		this.matrix = matrix;
+	}
+	
 	/**
 	 * Initialize the confusion matrix arrays and set values to all zeroes
 	 *
@@ -88,6 +109,170 @@ public class ConfusionMatrix
 		return (double)totalCorrect / total;
 	}
 	
+	/**
+	 * The number of instances of each class, which are the row sums of
+	 * the confusion matrix.
+	 */
+	private double[] rowTotals()
+	{
+		double[] totals = new double[matrix.length];
+		for(int i = 0; i < matrix.length; i++)
+			for(int j = 0; j < matrix.length; j++)
+				totals[i] += matrix[i][j];
+		return totals;
+	}
+	
+	/**
+	 * The number of instances predicted to be each class, which are the
+	 * column sums of the confusion matrix.
+	 */
+	private double[] columnTotals()
+	{
+		double[] totals = new double[matrix.length];
+		for(int i = 0; i < matrix.length; i++)
+			for(int j = 0; j < matrix.length; j++)
+				totals[j] += matrix[i][j];
+		return totals;
+	}
+	
+	/**
+	 * Calculates the precision of each class, the proportion of the
+	 * instances predicted to be that class which truly are.  A class that
+	 * is never predicted has a precision of 0.
+	 *
+	 * @return The precision of each class.
+	 */
+	public double[] calculatePrecision()
+	{
+		double[] predicted = columnTotals();
+		double[] precision = new double[matrix.length];
+		for(int i = 0; i < matrix.length; i++)
+			precision[i] = (predicted[i] == 0) ? 0 : matrix[i][i] / predicted[i];
+		return precision;
+	}
+	
+	/**
+	 * Calculates the recall of each class, the proportion of the instances
+	 * of that class which were predicted correctly.  A class with no
+	 * instances has a recall of 0.
+	 *
+	 * @return The recall of each class.
+	 */
+	public double[] calculateRecall()
+	{
+		double[] actual = rowTotals();
+		double[] recall = new double[matrix.length];
+		for(int i = 0; i < matrix.length; i++)
+			recall[i] = (actual[i] == 0) ? 0 : matrix[i][i] / actual[i];
+		return recall;
+	}
+	
+	/**
+	 * Calculates the F1 measure of each class, the harmonic mean of its
+	 * precision and recall.
+	 *
+	 * @return The F1 measure of each class.
+	 */
+	public double[] calculateF1()
+	{
+		double[] precision = calculatePrecision();
+		double[] recall = calculateRecall();
+		double[] f1 = new double[matrix.length];
+		for(int i = 0; i < matrix.length; i++)
+		{
+			double sum = precision[i] + recall[i];
+			f1[i] = (sum == 0) ? 0 : 2*precision[i]*recall[i] / sum;
+		}
+		return f1;
+	}
+	
+	/**
+	 * The unweighted mean of a measure over all classes.
+	 *
+	 * @param perClass The measure for each class.
+	 * @return The macro average.
+	 */
+	public static double macroAverage(double[] perClass)
+	{
+		double sum = 0;
+		for(int i = 0; i < perClass.length; i++)
+			sum += perClass[i];
+		return sum / perClass.length;
+	}
+	
+	/**
+	 * Calculates the micro averaged F1 measure, which pools the true
+	 * positives, false positives and false negatives of every class before
+	 * calculating precision and recall.  When every instance has exactly one
+	 * label this is the same as the accuracy.
+	 *
+	 * @return The micro averaged F1 measure.
+	 */
+	public double calculateMicroF1()
+	{
+		double truePositives = 0;
+		for(int i = 0; i < matrix.length; i++)
+			truePositives += matrix[i][i];
+		//every misclassification is one false positive and one false negative
+		double errors = total - truePositives;
+		double denominator = 2*truePositives + 2*errors;
+		return (denominator == 0) ? 0 : 2*truePositives / denominator;
+	}
+	
+	/**
+	 * Calculates Cohen's kappa, the agreement between the predicted and true
+	 * labels corrected for the agreement expected by chance.
+	 *
+	 * @return Cohen's kappa.
+	 */
+	public double calculateKappa()
+	{
+		if(total == 0)
+			return 0;
+		double[] actual = rowTotals();
+		double[] predicted = columnTotals();
+		double observed = 0;
+		double expected = 0;
+		for(int i = 0; i < matrix.length; i++)
+		{
+			observed += matrix[i][i];
+			expected += actual[i]*predicted[i];
+		}
+		observed /= total;
+		expected /= (double)total*total;
+		if(expected == 1)
+			return (observed == 1) ? 1 : 0;
+		return (observed - expected) / (1 - expected);
+	}
+	
+	/**
+	 * Calculates the Matthews correlation coefficient, using the multi-class
+	 * generalization of Gorodkin, which reduces to the usual two class MCC.
+	 *
+	 * @return The Matthews correlation coefficient.
+	 */
+	public double calculateMCC()
+	{
+		double[] actual = rowTotals();
+		double[] predicted = columnTotals();
+		double correct = 0;
+		double actualPredicted = 0;
+		double actualSquared = 0;
+		double predictedSquared = 0;
+		for(int i = 0; i < matrix.length; i++)
+		{
+			correct += matrix[i][i];
+			actualPredicted += actual[i]*predicted[i];
+			actualSquared += actual[i]*actual[i];
+			predictedSquared += predicted[i]*predicted[i];
+		}
+		double s = total;
+		double denominator = Math.sqrt(s*s - predictedSquared)*Math.sqrt(s*s - actualSquared);
+		if(denominator == 0)
+			return 0;
+		return (correct*s - actualPredicted) / denominator;
+	}
+	
 	/**
 	 * Creates a string representation of the matrix so that it can be
 	 * output to experiment result files.
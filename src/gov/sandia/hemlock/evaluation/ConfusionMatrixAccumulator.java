@@ -0,0 +1,107 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.evaluation;
+
+import gov.sandia.hemlock.data.ClassifiedDataSet;
+
+/**
+ * Accumulates the counts of a confusion matrix one prediction, or one chunk
+ * of predictions, at a time.  Accumulators built from different chunks,
+ * shards or folds can be combined with {@link #merge}.
+ *
+ * @author Sean A. Gilpin
+ */
+public class ConfusionMatrixAccumulator
+{
+	/** counts[i][j] is the number of instances of class i predicted to be
+		class j */
+	private final int[][] counts;
+
+	/**
+	 * @param numClasses The number of class labels.
+	 */
+	public ConfusionMatrixAccumulator(int numClasses)
+	{
+		counts = new int[numClasses][numClasses];
+	}
+
+	/**
+	 * Adds a single prediction.
+	 *
+	 * @param trueLabel The known class of the instance.
+	 * @param predictedLabel The class the model predicted.
+	 * @throws Exception If either label is not one of the classes.
+	 */
+	public void add(double trueLabel, double predictedLabel) throws Exception
+	{
+		counts[checkLabel(trueLabel, "true")][checkLabel(predictedLabel, "predicted")]++;
+	}
+
+	/**
+	 * Adds every prediction in a chunk of classified instances.
+	 *
+	 * @param data Contains predictions and true labels.
+	 * @throws Exception If a label is not one of the classes.
+	 */
+	public void add(ClassifiedDataSet data) throws Exception
+	{
+		int classIndex = data.recordSchema.numAttributes;
+		for(int i = 0; i < data.predictedLabels.length; i++)
+		{
+			add(data.records.get(i)[classIndex], data.predictedLabels[i]);
+		}
+	}
+
+	/**
+	 * @return The label as an index into the counts.
+	 * @throws Exception If the label is missing, not a whole number or not
+	 * 	in [0, numClasses).
+	 */
+	int checkLabel(double label, String kind) throws Exception
+	{
+		int index = (int)label;
+		if(index != label || index < 0 || index >= counts.length)
+			throw new Exception("The " + kind + " label " + label + " is not one of the "
+				+ counts.length + " classes.");
+		return index;
+	}
+
+	/**
+	 * Adds the counts of another accumulator to this one.
+	 *
+	 * @param other An accumulator for the same set of class labels.
+	 * @throws Exception If the number of classes differ.
+	 */
+	public void merge(ConfusionMatrixAccumulator other) throws Exception
+	{
+		if(other.counts.length != counts.length)
+			throw new Exception("Cannot merge confusion matrices with different numbers of classes.");
+		for(int i = 0; i < counts.length; i++)
+		{
+			for(int j = 0; j < counts.length; j++)
+			{
+				counts[i][j] += other.counts[i][j];
+			}
+		}
+	}
+
+	/**
+	 * @return The confusion matrix of all predictions added so far.
+	 */
+	public ConfusionMatrix toConfusionMatrix()
+	{
+		int[][] copy = new int[counts.length][];
+		for(int i = 0; i < counts.length; i++)
+			copy[i] = counts[i].clone();
+		return new ConfusionMatrix(copy);
+	}
+}
@@ -13,7 +13,6 @@ package gov.sandia.hemlock.evaluation;
 
 import gov.sandia.hemlock.classification.*;
 import gov.sandia.hemlock.data.*;
-import Jama.*;
 
 /**
  * Contains methods for measuring the diversity in a set of base classifiers.
@@ -66,7 +65,7 @@ public class Diversity
 			}
 		}
 		//take average over all pairs and all instances.
-		long total_comparisons = N*(((L)*(L-1))/2);
+		long total_comparisons = (long)N*L*(L-1)/2;
 		return ((double)totalDisagree)/total_comparisons;
 	}
 	
@@ -127,7 +126,10 @@ public class Diversity
 	}
 	
 	/**
-	 * Calculates the average pairwise correlation.
+	 * Calculates the average pairwise correlation between the oracle
+	 * outputs (correct or incorrect) of the base classifiers.  The
+	 * correlation of each pair is found from its agreement counts, see
+	 * {@link DiversityEngine#getCorrelation()}.
 	 * 
 	 * @param ClassifiedDataSet An array of predictions made by each base
 	 * 	classifier, along with the known true labels.
@@ -135,47 +137,7 @@ public class Diversity
 	 */
 	public static double correlation(ClassifiedDataSet[] cds) throws Exception
 	{
-		//Number of instances 
-		int N = cds[0].predictedLabels.length;
-		//Number of base classifiers
-		int L = cds.length;
-		
-		int classIndex = cds[0].recordSchema.numAttributes;
-		
-		//matrix of base classifier oracle values for all instances
-		double[][] x = new double[N][L];
-		for(int i=0; i<L; i++)
-		{
-			double count = 0;
-			for(int j=0; j<N; j++)
-			{
-				if(cds[i].predictedLabels[j] == cds[i].records.get(j)[classIndex])
-				{
-					x[j][i] = 1;
-					count++;
-				}
-				else
-				{
-					x[j][i] = 0; 
-				}
-			}
-			for(int j=0; j<N; j++) //Center data such that mean is zero
-				x[j][i] =- count/N;
-		}
-		Matrix m_x = new Matrix(x);
-		Matrix m_covariance = m_x.transpose().times(m_x);
-		
-		double total_corr = 0;
-		for(int i=0; i<L-1; i++)
-		{
-			for(int j=i+1; j<L; j++)
-			{
-				total_corr += m_covariance.get(i, j)/
-					Math.sqrt(m_covariance.get(i,i)*m_covariance.get(j,j));				
-			}
-		}
-		
-		return total_corr/((L*(L-1))/2);
+		return new DiversityEngine(cds).getCorrelation();
 	}
 	
 	/**
@@ -212,7 +174,7 @@ public class Diversity
 		}
 		
 		//Average results over all pairs and all instances
-		return totalD / (double)(N*(L*(L-1))/2);
+		return totalD / ((double)N*L*(L-1)/2);
 	}
 	
 	/**
@@ -224,31 +186,34 @@ public class Diversity
 	 * @throws Exception.
 	 */
 	public static double entropy(ClassifiedDataSet[] cds) throws Exception
+	{
+		return entropy(new DiversityProfile(cds));
+	}
+	
+	/**
+	 * Calculates the entropy diversity measurement from a precomputed
+	 * profile of the base classifier predictions.
+	 * 
+	 * @param profile Records which base classifiers were correct for
+	 * 	each instance.
+	 */
+	public static double entropy(DiversityProfile profile)
 	{
 		//Number of instances 
-		int N = cds[0].predictedLabels.length;
+		int N = profile.getNumInstances();
 		//Number of base classifiers
-		int L = cds.length;
+		int L = profile.getNumClassifiers();
+		int[] correct_count = profile.getCorrectCounts();
 
-		int classIndex = cds[0].recordSchema.numAttributes;
 		double totalE = 0;
-		
 		for(int i=0; i<N; i++)
 		{
-			double trueClass = cds[0].records.get(i)[classIndex];
-			double e = 0;
-			for(int j=0; j < L; j++)
-			{
-				if(cds[j].predictedLabels[i] == trueClass)
-				{
-					e++;
-				}
-			}
+			double e = correct_count[i];
 			e = Math.min(e, L - e);
 			totalE += e;
 		}
 		
-		return totalE / (double)((N*(L-1))/2);
+		return totalE / (double)(((long)N*(L-1))/2);
 	}
 	
 	/**
@@ -261,35 +226,23 @@ public class Diversity
 	 */
 	public static double general_diversity(ClassifiedDataSet[] cds) throws Exception
 	{
-		//Number of instances 
-		int N = cds[0].predictedLabels.length;
+		return general_diversity(new DiversityProfile(cds));
+	}
+	
+	/**
+	 * Calculates the general diversity (GD) measurement from a precomputed
+	 * profile of the base classifier predictions.
+	 * 
+	 * @param profile Records which base classifiers were correct for
+	 * 	each instance.
+	 */
+	public static double general_diversity(DiversityProfile profile)
+	{
 		//Number of base classifiers
-		int L = cds.length;
-
-		int classIndex = cds[0].recordSchema.numAttributes;
-		
-		//Calculate number of times classifier fails for each instance.
-		int[] fail_count = new int[N];
-		for(int i=0; i<N; i++)
-			fail_count[i]=0;
-		for(int i=0; i < L; i++)
-		{
-			for(int j=0; j< N; j++)
-			{
-				//If this is true then the prediction doesn't match the true class
-				if(cds[i].records.get(j)[classIndex] != cds[i].predictedLabels[j])
-					fail_count[j]++;
-			}
-		}
+		int L = profile.getNumClassifiers();
 		
-		//Calculate probability that random instance mispredicted i times
-		double[] pi = new double[L + 1];
-		for(int i=0; i<N; i++)
-		{
-			pi[fail_count[i]]++;
-		}
-		for(int i=0; i<(L+1); i++)
-			pi[i] = pi[i]/N; //normalize to create probabilities.
+		//Probability that random instance mispredicted i times
+		double[] pi = profile.getFailProbabilities();
 		
 		//Now calculate GD 
 		double p_1 = 0;
@@ -313,34 +266,23 @@ public class Diversity
 	 */
 	public static double coincident_failure(ClassifiedDataSet[] cds) throws Exception
 	{
-		//Number of instances 
-		int N = cds[0].predictedLabels.length;
+		return coincident_failure(new DiversityProfile(cds));
+	}
+	
+	/**
+	 * Calculates the coincident failure diversity (CFD) measurement from a
+	 * precomputed profile of the base classifier predictions.
+	 * 
+	 * @param profile Records which base classifiers were correct for
+	 * 	each instance.
+	 */
+	public static double coincident_failure(DiversityProfile profile)
+	{
 		//Number of base classifiers
-		int L = cds.length;
-
-		int classIndex = cds[0].recordSchema.numAttributes;
+		int L = profile.getNumClassifiers();
 		
-		//Calculate number of times classifier fails for each instance.
-		int[] fail_count = new int[N];
-		for(int i=0; i<N; i++)
-			fail_count[i]=0;
-		for(int i=0; i < L; i++)
-		{
-			for(int j=0; j< N; j++)
-			{
-				if(cds[i].records.get(j)[classIndex] != cds[i].predictedLabels[j])
-					fail_count[j]++;
-			}
-		}
-		
-		//Calculate probability that random instance mispredicted i times
-		double[] pi = new double[L + 1];
-		for(int i=0; i<N; i++)
-		{
-			pi[fail_count[i]]++;
-		}
-		for(int i=0; i<(L+1); i++)
-			pi[i] = pi[i]/N;
+		//Probability that random instance mispredicted i times
+		double[] pi = profile.getFailProbabilities();
 		
 		if(pi[0] == 1)	//All classifiers are always right
 			return 0;
@@ -364,35 +306,27 @@ public class Diversity
 	 * @throws Exception.
 	 */
 	public static double difficulty(ClassifiedDataSet[] cds) throws Exception
+	{
+		return difficulty(new DiversityProfile(cds));
+	}
+	
+	/**
+	 * Calculates the measure of difficulty diversity measurement from a
+	 * precomputed profile of the base classifier predictions.
+	 * 
+	 * @param profile Records which base classifiers were correct for
+	 * 	each instance.
+	 */
+	public static double difficulty(DiversityProfile profile)
 	{
 		//Number of instances 
-		int N = cds[0].predictedLabels.length;
+		int N = profile.getNumInstances();
 		//Number of base classifiers
-		int L = cds.length;
-
-		int classIndex = cds[0].recordSchema.numAttributes;
-		
-		//Calculate number of times classifier is correct for each instance.
-		int[] correct_count = new int[N];
-		for(int i=0; i<N; i++)
-			correct_count[i]=0;
-		for(int i=0; i < L; i++)
-		{
-			for(int j=0; j< N; j++)
-			{
-				if(cds[i].records.get(j)[classIndex] == cds[i].predictedLabels[j])
-					correct_count[j]++;
-			}
-		}
+		int L = profile.getNumClassifiers();
+		int[] correct_count = profile.getCorrectCounts();
 		
-		//Calculate probability that random instance correctly predicted i times
-		double[] pi = new double[L + 1];
-		for(int i=0; i<N; i++)
-		{
-			pi[correct_count[i]]++;
-		}
-		for(int i=0; i<(L+1); i++)
-			pi[i] = pi[i]/N;
+		//Probability that random instance correctly predicted i times
+		double[] pi = profile.getCorrectProbabilities();
 		
 		//Get mean
 		double mean = 0;
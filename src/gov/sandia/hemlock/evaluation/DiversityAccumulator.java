@@ -0,0 +1,263 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.evaluation;
+
+import gov.sandia.hemlock.data.*;
+
+/**
+ * Accumulates the counts behind the diversity measures of {@link Diversity}
+ * one chunk of instances at a time:  the pairwise agreement counts of every
+ * pair of base classifiers, the number of instances each base classifier
+ * predicted correctly, and the histogram of how many base classifiers
+ * predicted each instance correctly.  Only the counts are kept, so memory
+ * does not grow with the number of instances, and accumulators built from
+ * different chunks, shards or folds can be combined with {@link #merge}.
+ *
+ * The measures are found with the same definitions as {@link Diversity}.
+ *
+ * @author Sean A. Gilpin
+ */
+public class DiversityAccumulator
+{
+	/** Number of base classifiers */
+	private final int L;
+	/** Number of instances added so far */
+	private long N = 0;
+
+	/** Pairwise counts, in the pair ordering of DiversityEngine */
+	private final long[] bothCorrect;
+	private final long[] firstOnlyCorrect;
+	private final long[] disagreeFirstWrong;
+	private final long[] agreeWrong;
+	private final long[] oracleBothWrong;
+	/** Number of instances each base classifier predicted correctly */
+	private final long[] modelCorrect;
+	/** Number of instances predicted correctly by exactly i base
+		classifiers, for i = 0..L */
+	private final long[] correctHistogram;
+
+	/**
+	 * @param numClassifiers The number of base classifiers.
+	 */
+	public DiversityAccumulator(int numClassifiers)
+	{
+		L = numClassifiers;
+		int numPairs = (L*(L-1))/2;
+		bothCorrect = new long[numPairs];
+		firstOnlyCorrect = new long[numPairs];
+		disagreeFirstWrong = new long[numPairs];
+		agreeWrong = new long[numPairs];
+		oracleBothWrong = new long[numPairs];
+		modelCorrect = new long[L];
+		correctHistogram = new long[L + 1];
+	}
+
+	/**
+	 * Adds a chunk of instances.
+	 *
+	 * @param cds The predictions made by each base classifier for the
+	 * 	chunk, along with the known true labels.
+	 * @throws Exception If the number of base classifiers is wrong.
+	 */
+	public void add(ClassifiedDataSet[] cds) throws Exception
+	{
+		if(cds.length != L)
+			throw new Exception("Expected predictions from " + L + " base classifiers.");
+		DiversityProfile profile = new DiversityProfile(cds);
+		DiversityEngine engine = new DiversityEngine(cds, profile);
+		engine.addPairCounts(bothCorrect, firstOnlyCorrect, disagreeFirstWrong,
+			agreeWrong, oracleBothWrong);
+
+		for(int m = 0; m < L; m++)
+		{
+			long[] correct = profile.getCorrectVector(m);
+			for(int w = 0; w < correct.length; w++)
+				modelCorrect[m] += Long.bitCount(correct[w]);
+		}
+		int[] correctCount = profile.getCorrectCounts();
+		for(int i = 0; i < correctCount.length; i++)
+			correctHistogram[correctCount[i]]++;
+		N += profile.getNumInstances();
+	}
+
+	/**
+	 * Adds the counts of another accumulator to this one.
+	 *
+	 * @param other An accumulator for the same base classifiers.
+	 * @throws Exception If the number of base classifiers differ.
+	 */
+	public void merge(DiversityAccumulator other) throws Exception
+	{
+		if(other.L != L)
+			throw new Exception("Cannot merge diversity counts for different numbers of base classifiers.");
+		for(int p = 0; p < bothCorrect.length; p++)
+		{
+			bothCorrect[p] += other.bothCorrect[p];
+			firstOnlyCorrect[p] += other.firstOnlyCorrect[p];
+			disagreeFirstWrong[p] += other.disagreeFirstWrong[p];
+			agreeWrong[p] += other.agreeWrong[p];
+			oracleBothWrong[p] += other.oracleBothWrong[p];
+		}
+		for(int m = 0; m < L; m++)
+			modelCorrect[m] += other.modelCorrect[m];
+		for(int i = 0; i <= L; i++)
+			correctHistogram[i] += other.correctHistogram[i];
+		N += other.N;
+	}
+
+	/**
+	 * @return The number of instances added so far.
+	 */
+	public long getNumInstances()
+	{
+		return N;
+	}
+
+	/**
+	 * @return The average pairwise disagreement.
+	 */
+	public double getDisagreement()
+	{
+		double totalDisagree = 0;
+		for(int p = 0; p < bothCorrect.length; p++)
+			totalDisagree += firstOnlyCorrect[p] + disagreeFirstWrong[p];
+		return totalDisagree / ((double)N * bothCorrect.length);
+	}
+
+	/**
+	 * @return The average pairwise Yule Q statistic.
+	 */
+	public double getYuleQ()
+	{
+		double totalCor = 0;
+		for(int p = 0; p < bothCorrect.length; p++)
+		{
+			//normalize confusion matrix values, so they become probabilities
+			double a = bothCorrect[p] / (double)N;
+			double b = firstOnlyCorrect[p] / (double)N;
+			double c = disagreeFirstWrong[p] / (double)N;
+			double d = agreeWrong[p] / (double)N;
+			if(a*d+b*c == 0)
+				totalCor += 1;
+			else
+				totalCor += (a*d-b*c)/(a*d+b*c);
+		}
+		return totalCor / bothCorrect.length;
+	}
+
+	/**
+	 * @return The average pairwise double fault proportion.
+	 */
+	public double getDoubleFault()
+	{
+		double totalD = 0;
+		for(int p = 0; p < agreeWrong.length; p++)
+			totalD += agreeWrong[p];
+		return totalD / ((double)N * agreeWrong.length);
+	}
+
+	/**
+	 * @return The average pairwise correlation between the oracle outputs
+	 * 	of the base classifiers.
+	 */
+	public double getCorrelation()
+	{
+		double total_corr = 0;
+		int p = 0;
+		for(int i = 0; i < L - 1; i++)
+		{
+			for(int j = i + 1; j < L; j++, p++)
+			{
+				double a = bothCorrect[p];
+				double d = oracleBothWrong[p];
+				double b = modelCorrect[i] - a;
+				double c = modelCorrect[j] - a;
+				total_corr += DiversityEngine.correlation(a, b, c, d);
+			}
+		}
+		return total_corr / bothCorrect.length;
+	}
+
+	/**
+	 * @return The entropy diversity measurement.
+	 */
+	public double getEntropy()
+	{
+		double totalE = 0;
+		for(int i = 0; i <= L; i++)
+			totalE += correctHistogram[i] * (double)Math.min(i, L - i);
+		return totalE / (double)((N*(L-1))/2);
+	}
+
+	/**
+	 * The probability that a random instance is mispredicted by exactly
+	 * i of the base classifiers, for i = 0..L.
+	 */
+	private double[] getFailProbabilities()
+	{
+		double[] pi = new double[L + 1];
+		for(int i = 0; i <= L; i++)
+			pi[i] = correctHistogram[L - i] / (double)N;
+		return pi;
+	}
+
+	/**
+	 * @return The general diversity measurement.
+	 */
+	public double getGeneralDiversity()
+	{
+		double[] pi = getFailProbabilities();
+		double p_1 = 0;
+		double p_2 = 0;
+		for(int i = 1; i<=L; i++)
+		{
+			p_1 += (i / (float)L)*pi[i];
+			p_2 += (i / (float)L)*((i-1) / (float)(L-1))*pi[i];
+		}
+		return 1 - (p_2/p_1);
+	}
+
+	/**
+	 * @return The coincident failure diversity measurement.
+	 */
+	public double getCoincidentFailure()
+	{
+		double[] pi = getFailProbabilities();
+		if(pi[0] == 1)	//All classifiers are always right
+			return 0;
+		double sum = 0;
+		for(int i = 1; i<=L; i++)
+			sum += ((float)(L - i) / (float)(L -1))*pi[i];
+		return sum / (1.0 - pi[0]);
+	}
+
+	/**
+	 * @return The measure of difficulty.
+	 */
+	public double getDifficulty()
+	{
+		double[] pi = new double[L + 1];
+		for(int i = 0; i <= L; i++)
+			pi[i] = correctHistogram[i] / (double)N;
+
+		double mean = 0;
+		for(int i = 0; i <= L; i++)
+			mean += (i/(double)L)*pi[i];
+
+		//every instance predicted correctly by i base classifiers adds
+		//the same term, so add them a histogram bin at a time
+		double theta = 0;
+		for(int i = 0; i <= L; i++)
+			theta += correctHistogram[i]*Math.pow(i/(double)L - mean, 2)*pi[i];
+		return theta;
+	}
+}
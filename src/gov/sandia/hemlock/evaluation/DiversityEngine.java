@@ -0,0 +1,397 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.evaluation;
+
+import gov.sandia.hemlock.data.*;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Computes the pairwise diversity measures found in {@link Diversity} for a
+ * set of base classifiers in a single pass.  The predictions of each base
+ * classifier are packed into bit vectors, one bit per instance:  the
+ * correctness vectors of a {@link DiversityProfile} mark the instances the
+ * classifier got right, and a small number of bit planes encode the
+ * predicted label itself.  The pairwise counts needed by the pairwise
+ * measures are then found by counting bits in the combined words of two
+ * classifiers, so each pair of classifiers costs N/64 word operations
+ * instead of N boxed record lookups.  The pairs can optionally be divided
+ * among several threads.  The non-pairwise measures are computed directly
+ * from the profile, see {@link Diversity#entropy(DiversityProfile)}.
+ *
+ * The measures follow the same definitions, and produce the same values, as
+ * the methods of {@link Diversity}.  With fewer than two base classifiers
+ * there are no pairs, and every pairwise measure is NaN.
+ *
+ * @author Sean A. Gilpin
+ */
+public class DiversityEngine
+{
+	/** Number of instances */
+	private final int N;
+	/** Number of base classifiers */
+	private final int L;
+	/** Number of 64 bit words needed to hold one bit per instance */
+	private final int numWords;
+	/** Which base classifiers predicted each instance correctly */
+	private final DiversityProfile profile;
+	/** Bit i of labelPlanes[m][p] is bit p of the label classifier m
+		predicted for instance i */
+	private final long[][][] labelPlanes;
+	/** Mask of the valid bits in the last word of each vector */
+	private final long lastWordMask;
+
+	/** Pairwise counts, indexed by the position of the pair in the
+		ordering (0,1), (0,2), ..., (1,2), ... */
+	private long[] countBothCorrect;
+	private long[] countFirstOnlyCorrect;
+	private long[] countDisagreeFirstWrong;
+	private long[] countAgreeWrong;
+	private long[] countOracleBothWrong;
+	private boolean pairsCounted = false;
+
+	/**
+	 * Packs the predicted labels of each base classifier into bit planes.
+	 *
+	 * @param cds An array of predictions made by each base classifier,
+	 * 	along with the known true labels.
+	 * @param profile The profile built from the same predictions.
+	 */
+	public DiversityEngine(ClassifiedDataSet[] cds, DiversityProfile profile)
+	{
+		this.profile = profile;
+		N = profile.getNumInstances();
+		L = profile.getNumClassifiers();
+		numWords = profile.getNumWords();
+		lastWordMask = (N % 64 == 0) ? -1L : (1L << (N % 64)) - 1;
+
+		int numClasses = cds[0].recordSchema.labels.length;
+		int numPlanes = 1;
+		while((1 << numPlanes) < numClasses)
+			numPlanes++;
+
+		labelPlanes = new long[L][numPlanes][numWords];
+		for(int m = 0; m < L; m++)
+		{
+			double[] predicted = cds[m].predictedLabels;
+			long[][] planes = labelPlanes[m];
+			for(int i = 0; i < N; i++)
+			{
+				long bit = 1L << (i & 63);
+				int word = i >>> 6;
+				int label = (int)predicted[i];
+				for(int p = 0; p < numPlanes; p++)
+				{
+					if(((label >>> p) & 1) != 0)
+						planes[p][word] |= bit;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds the profile and packs the predicted labels of each base
+	 * classifier.
+	 *
+	 * @param cds An array of predictions made by each base classifier,
+	 * 	along with the known true labels.
+	 * @throws Exception If no base classifiers are given.
+	 */
+	public DiversityEngine(ClassifiedDataSet[] cds) throws Exception
+	{
+		this(cds, new DiversityProfile(cds));
+	}
+
+	/**
+	 * Counts the pairwise statistics for every pair of base classifiers
+	 * using the calling thread.
+	 */
+	public void countPairs()
+	{
+		try
+		{
+			countPairs(1);
+		}
+		catch(Exception e)
+		{
+			//cannot happen with a single thread
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Counts the pairwise statistics for every pair of base classifiers.
+	 * Each pair is independent of the others, so the pairs are divided
+	 * among the requested number of threads.
+	 *
+	 * @param numThreads The number of threads to divide the pairs among.
+	 * @throws Exception If one of the threads fails.
+	 */
+	public void countPairs(int numThreads) throws Exception
+	{
+		int numPairs = (L*(L-1))/2;
+		countBothCorrect = new long[numPairs];
+		countFirstOnlyCorrect = new long[numPairs];
+		countDisagreeFirstWrong = new long[numPairs];
+		countAgreeWrong = new long[numPairs];
+		countOracleBothWrong = new long[numPairs];
+
+		if(numThreads <= 1 || L < 3)
+		{
+			countRows(0, L - 1);
+		}
+		else
+		{
+			//hand out one first classifier at a time, the work per row
+			//shrinks as i grows so this keeps the threads balanced
+			ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+			HemlockMetrics.registerExecutor(executor);
+			try
+			{
+				ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+				for(int i = 0; i < L - 1; i++)
+				{
+					final int first = i;
+					futures.add(executor.submit(new Callable<Object>() {
+						public Object call()
+						{
+							countRows(first, first + 1);
+							return null;
+						}
+					}));
+				}
+				for(Future<Object> f : futures)
+					f.get();
+			}
+			finally
+			{
+				HemlockMetrics.unregisterExecutor(executor);
+				executor.shutdown();
+			}
+		}
+		pairsCounted = true;
+	}
+
+	/**
+	 * Counts the pairwise statistics for every pair (i,j) with i in the
+	 * range [fromFirst, toFirst) and j greater than i.
+	 */
+	private void countRows(int fromFirst, int toFirst)
+	{
+		for(int i = fromFirst; i < toFirst; i++)
+		{
+			for(int j = i + 1; j < L; j++)
+			{
+				countPair(i, j, pairIndex(i, j));
+			}
+		}
+	}
+
+	/**
+	 * Counts the statistics for a single pair of base classifiers by
+	 * combining their bit vectors one word at a time.
+	 */
+	private void countPair(int i, int j, int pair)
+	{
+		long[] ci = profile.getCorrectVector(i);
+		long[] cj = profile.getCorrectVector(j);
+		long[][] pi = labelPlanes[i];
+		long[][] pj = labelPlanes[j];
+		int numPlanes = pi.length;
+
+		long both = 0, firstOnly = 0, disagreeFirstWrong = 0, agreeWrong = 0, oracleBothWrong = 0;
+		for(int w = 0; w < numWords; w++)
+		{
+			long mask = (w == numWords - 1) ? lastWordMask : -1L;
+			//a bit is set in differ when the predicted labels differ
+			long differ = 0;
+			for(int p = 0; p < numPlanes; p++)
+				differ |= pi[p][w] ^ pj[p][w];
+			long agree = ~differ & mask;
+			differ &= mask;
+			long wi = ci[w];
+			long wj = cj[w];
+
+			both += Long.bitCount(wi & wj);
+			firstOnly += Long.bitCount(wi & differ);
+			disagreeFirstWrong += Long.bitCount(~wi & differ);
+			agreeWrong += Long.bitCount(~wi & agree);
+			oracleBothWrong += Long.bitCount(~(wi | wj) & mask);
+		}
+		countBothCorrect[pair] = both;
+		countFirstOnlyCorrect[pair] = firstOnly;
+		countDisagreeFirstWrong[pair] = disagreeFirstWrong;
+		countAgreeWrong[pair] = agreeWrong;
+		countOracleBothWrong[pair] = oracleBothWrong;
+	}
+
+	/**
+	 * Adds the pairwise counts of every pair to the given arrays, which are
+	 * indexed in the same pair ordering.  Used by {@link DiversityAccumulator}
+	 * to combine the counts of several chunks of instances.
+	 */
+	void addPairCounts(long[] bothCorrect, long[] firstOnlyCorrect,
+		long[] disagreeFirstWrong, long[] agreeWrong, long[] oracleBothWrong)
+	{
+		checkPairsCounted();
+		for(int p = 0; p < countBothCorrect.length; p++)
+		{
+			bothCorrect[p] += countBothCorrect[p];
+			firstOnlyCorrect[p] += countFirstOnlyCorrect[p];
+			disagreeFirstWrong[p] += countDisagreeFirstWrong[p];
+			agreeWrong[p] += countAgreeWrong[p];
+			oracleBothWrong[p] += countOracleBothWrong[p];
+		}
+	}
+
+	/**
+	 * The position of the pair (i,j), i < j, in the pair ordering.
+	 */
+	private int pairIndex(int i, int j)
+	{
+		return i*L - (i*(i+1))/2 + (j - i - 1);
+	}
+
+	private void checkPairsCounted()
+	{
+		if(!pairsCounted)
+			countPairs();
+	}
+
+	/**
+	 * Calculates the average pairwise disagreement.  Same definition as
+	 * {@link Diversity#disagreement}.
+	 *
+	 * @return The average pairwise disagreement.
+	 */
+	public double getDisagreement()
+	{
+		if(L < 2)
+			return Double.NaN;
+		checkPairsCounted();
+		long totalDisagree = 0;
+		for(int p = 0; p < countBothCorrect.length; p++)
+			totalDisagree += countFirstOnlyCorrect[p] + countDisagreeFirstWrong[p];
+		long total_comparisons = (long)N*L*(L-1)/2;
+		return ((double)totalDisagree)/total_comparisons;
+	}
+
+	/**
+	 * Calculates the average pairwise Yule Q statistic.  Same definition as
+	 * {@link Diversity#yule_q}.
+	 *
+	 * @return The average pairwise Yule Q statistic.
+	 */
+	public double getYuleQ()
+	{
+		if(L < 2)
+			return Double.NaN;
+		checkPairsCounted();
+		double totalCor = 0;
+		for(int p = 0; p < countBothCorrect.length; p++)
+		{
+			double a = countBothCorrect[p];
+			double b = countFirstOnlyCorrect[p];
+			double c = countDisagreeFirstWrong[p];
+			double d = countAgreeWrong[p];
+			//normalize confusion matrix values, so they become probabilities
+			a = a / N; b = b / N;
+			c = c / N; d = d / N;
+
+			if(a*d+b*c == 0)
+				totalCor += 1;
+			else
+				totalCor += (a*d-b*c)/(a*d+b*c);
+		}
+		return totalCor / ((L*(L-1))/2.0);
+	}
+
+	/**
+	 * Calculates the average pairwise double fault proportion.  Same
+	 * definition as {@link Diversity#double_fault}.
+	 *
+	 * @return The average pairwise double fault proportion.
+	 */
+	public double getDoubleFault()
+	{
+		if(L < 2)
+			return Double.NaN;
+		checkPairsCounted();
+		double totalD = 0;
+		for(int p = 0; p < countAgreeWrong.length; p++)
+			totalD += countAgreeWrong[p];
+		return totalD / ((double)N*L*(L-1)/2);
+	}
+
+	/**
+	 * Calculates the average pairwise correlation between the oracle
+	 * outputs (correct or incorrect) of the base classifiers.  Same
+	 * definition as {@link Diversity#correlation}.
+	 *
+	 * @return The average pairwise correlation.
+	 */
+	public double getCorrelation()
+	{
+		if(L < 2)
+			return Double.NaN;
+		checkPairsCounted();
+		double total_corr = 0;
+		for(int i = 0; i < L - 1; i++)
+		{
+			for(int j = i + 1; j < L; j++)
+			{
+				int p = pairIndex(i, j);
+				double a = countBothCorrect[p];
+				double d = countOracleBothWrong[p];
+				//number only i correct, and number only j correct
+				double b = countCorrect(i) - a;
+				double c = countCorrect(j) - a;
+				total_corr += correlation(a, b, c, d);
+			}
+		}
+		return total_corr/((L*(L-1))/2);
+	}
+
+	/**
+	 * The correlation between the oracle outputs of two base classifiers,
+	 * as defined by Kuncheva:  (ad - bc) / sqrt((a+b)(c+d)(a+c)(b+d)).
+	 * When one of the classifiers is always right or always wrong the
+	 * correlation is not defined; it is taken to be 1 if the two
+	 * classifiers are right on exactly the same instances and 0 otherwise.
+	 *
+	 * @param a Number of instances both classifiers predict correctly.
+	 * @param b Number only the first classifier predicts correctly.
+	 * @param c Number only the second classifier predicts correctly.
+	 * @param d Number both classifiers predict incorrectly.
+	 * @return The correlation of the pair.
+	 */
+	static double correlation(double a, double b, double c, double d)
+	{
+		double denominator = Math.sqrt((a+b)*(c+d)*(a+c)*(b+d));
+		if(denominator > 0)
+			return (a*d - b*c)/denominator;
+		return (b + c == 0) ? 1 : 0;
+	}
+
+	/**
+	 * Number of instances a base classifier predicted correctly.
+	 */
+	private long countCorrect(int m)
+	{
+		long[] cm = profile.getCorrectVector(m);
+		long count = 0;
+		for(int w = 0; w < numWords; w++)
+			count += Long.bitCount(cm[w]);
+		return count;
+	}
+}
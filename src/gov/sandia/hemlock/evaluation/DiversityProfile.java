@@ -0,0 +1,157 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.evaluation;
+
+import gov.sandia.hemlock.data.*;
+
+/**
+ * Records which base classifiers predicted each instance correctly.  The
+ * profile is built with a single pass over the predictions of all base
+ * classifiers and is shared by all of the diversity measures, so the
+ * per-instance counts are only computed once per evaluation.
+ *
+ * @author Sean A. Gilpin
+ */
+public class DiversityProfile
+{
+	/** Number of instances */
+	private final int N;
+	/** Number of base classifiers */
+	private final int L;
+	/** Number of 64 bit words needed to hold one bit per instance */
+	private final int numWords;
+	/** Bit i of correct[m] is set when classifier m predicted instance i
+		correctly */
+	private final long[][] correct;
+	/** Number of base classifiers that predicted each instance correctly */
+	private final int[] correctCount;
+	/** Number of instances predicted correctly by exactly i base
+		classifiers, for i = 0..L */
+	private final int[] correctHistogram;
+
+	/**
+	 * Builds the profile from the predictions of each base classifier.
+	 *
+	 * @param cds An array of predictions made by each base classifier,
+	 * 	along with the known true labels.
+	 * @throws Exception If no base classifiers are given.
+	 */
+	public DiversityProfile(ClassifiedDataSet[] cds) throws Exception
+	{
+		if(cds.length == 0)
+			throw new Exception("At least one base classifier is needed to measure diversity.");
+
+		N = cds[0].predictedLabels.length;
+		L = cds.length;
+		numWords = (N + 63) >>> 6;
+
+		//read the true labels only once for all classifiers
+		int classIndex = cds[0].recordSchema.numAttributes;
+		double[] trueLabels = new double[N];
+		for(int i = 0; i < N; i++)
+			trueLabels[i] = cds[0].records.get(i)[classIndex];
+
+		correct = new long[L][numWords];
+		correctCount = new int[N];
+		for(int m = 0; m < L; m++)
+		{
+			double[] predicted = cds[m].predictedLabels;
+			long[] correctBits = correct[m];
+			for(int i = 0; i < N; i++)
+			{
+				if(predicted[i] == trueLabels[i])
+				{
+					correctBits[i >>> 6] |= 1L << (i & 63);
+					correctCount[i]++;
+				}
+			}
+		}
+
+		correctHistogram = new int[L + 1];
+		for(int i = 0; i < N; i++)
+			correctHistogram[correctCount[i]]++;
+	}
+
+	/**
+	 * @return The number of instances.
+	 */
+	public int getNumInstances()
+	{
+		return N;
+	}
+
+	/**
+	 * @return The number of base classifiers.
+	 */
+	public int getNumClassifiers()
+	{
+		return L;
+	}
+
+	/**
+	 * @return The number of 64 bit words in each correctness vector.
+	 */
+	public int getNumWords()
+	{
+		return numWords;
+	}
+
+	/**
+	 * The correctness vector of a base classifier.  Bit i (bit i % 64 of
+	 * word i / 64) is set when the classifier predicted instance i
+	 * correctly.  Bits past the last instance are never set.
+	 *
+	 * @param model Index of the base classifier.
+	 * @return The correctness vector, which must not be modified.
+	 */
+	public long[] getCorrectVector(int model)
+	{
+		return correct[model];
+	}
+
+	/**
+	 * @return The number of base classifiers that predicted each instance
+	 * 	correctly, which must not be modified.
+	 */
+	public int[] getCorrectCounts()
+	{
+		return correctCount;
+	}
+
+	/**
+	 * The probability that a random instance is predicted correctly by
+	 * exactly i of the base classifiers, for i = 0..L.
+	 *
+	 * @return A new array holding the probabilities.
+	 */
+	public double[] getCorrectProbabilities()
+	{
+		double[] pi = new double[L + 1];
+		for(int i = 0; i < (L+1); i++)
+			pi[i] = correctHistogram[i] / (double)N;
+		return pi;
+	}
+
+	/**
+	 * The probability that a random instance is mispredicted by exactly
+	 * i of the base classifiers, for i = 0..L.
+	 *
+	 * @return A new array holding the probabilities.
+	 */
+	public double[] getFailProbabilities()
+	{
+		double[] pi = new double[L + 1];
+		for(int i = 0; i < (L+1); i++)
+			pi[i] = correctHistogram[L - i] / (double)N;
+		return pi;
+	}
+}
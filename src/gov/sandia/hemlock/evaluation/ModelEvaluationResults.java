@@ -12,6 +12,9 @@
 package gov.sandia.hemlock.evaluation;
 
 import gov.sandia.hemlock.classification.*;
+import gov.sandia.hemlock.core.PerformanceProfile;
+import gov.sandia.hemlock.core.PerformanceRecorder;
+import gov.sandia.hemlock.core.WorkerThread;
 import gov.sandia.hemlock.experiment.Experiment;
 import gov.sandia.hemlock.data.*;
 
@@ -28,6 +31,32 @@ public class ModelEvaluationResults
 	/** Stores the accuracy*/
 	public double accuracy;
 	
+	//Measures derived from the confusion matrix
+	/** Precision of each class*/
+	public double[] precision;
+	/** Unweighted mean of the precision of each class*/
+	public double macroPrecision;
+	/** Recall of each class*/
+	public double[] recall;
+	/** Unweighted mean of the recall of each class*/
+	public double macroRecall;
+	/** F1 measure of each class*/
+	public double[] f1;
+	/** Unweighted mean of the F1 measure of each class*/
+	public double macroF1;
+	/** F1 measure of the pooled counts of every class*/
+	public double microF1;
+	/** Cohen's kappa*/
+	public double kappa;
+	/** Matthews correlation coefficient*/
+	public double mcc;
+	
+	//Measures of the predicted distributions
+	/** Mean negative log probability of the true class*/
+	public double logLoss;
+	/** Mean squared error of the predicted distributions*/
+	public double brierScore;
+	
 	/** Stores information about the data set the evaluation were made for*/
 	public DataSetInfo dataSetInfo;
 	/** The type of model that made the predictions that were evaluated*/
@@ -43,6 +72,18 @@ public class ModelEvaluationResults
 	/** The positive class for the ROC evaluations */
 	public int positiveClass;
 	
+	//One against all ROC Graphs for every class
+	/** ROC plot x-axis coordinates of each class*/
+	public double[][] classROCXCoordinates;
+	/** ROC plot y-axis coordinates of each class*/
+	public double[][] classROCYCoordinates;
+	/** Area under curve of ROC plot of each class*/
+	public double[] classAUC;
+	/** Unweighted mean of the AUC of each class*/
+	public double macroAUC;
+	/** Mean of the AUC of each class weighted by the class frequency*/
+	public double weightedAUC;
+	
 	//Diversity
 	/** Stores diversity measurements */
 	public double diversity_disagreement;
@@ -57,13 +98,40 @@ public class ModelEvaluationResults
 	/** Indicators for which measurements have been calculated*/
 	public boolean calculated_disagreement = false;
 	public boolean calculated_correlation = false;
+	public boolean calculated_precision = false;
+	public boolean calculated_recall = false;
+	public boolean calculated_f1 = false;
+	public boolean calculated_kappa = false;
+	public boolean calculated_mcc = false;
+	public boolean calculated_logLoss = false;
+	public boolean calculated_brierScore = false;
 	public boolean calculated_ROCCurve = false;
+	public boolean calculated_multiClassROC = false;
 	public boolean calculated_yuleQ = false;
 	public boolean calculated_doubleFault = false;
 	public boolean calculated_entropy = false;
 	public boolean calculated_generalDiversity = false;
 	public boolean calculated_coincidentFailure = false;
 	public boolean calculated_difficulty = false;
+	public boolean calculated_baseModelCost = false;
+	
+	//Cost of each base classifier of an ensemble
+	/** Model type of each base classifier*/
+	public String[] baseModelTypes;
+	/** Accuracy of each base classifier*/
+	public double[] baseModelAccuracy;
+	/** Milliseconds spent training each base classifier, NaN when the base
+		classifiers were loaded*/
+	public double[] baseModelTrainTime;
+	/** Size in bytes of each serialized base classifier*/
+	public long[] baseModelSerializedSize;
+	/** Mean microseconds each base classifier took to predict the label and
+		class distribution of one instance*/
+	public double[] baseModelLatency;
+	
+	/** Time and memory spent on the fold these results are for, or null
+		when not recorded */
+	public PerformanceProfile performance;
 	
 	/**
 	 * Evaluates the model and stores the evaluation measurement in this
@@ -78,80 +146,384 @@ public class ModelEvaluationResults
 	public ModelEvaluationResults(ClassifiedDataSet dataSet, Model model, Experiment experiment) throws Exception
 	{
 		confusionMatrix = new ConfusionMatrix(dataSet);
-		accuracy = confusionMatrix.calculateAccuracy();
 		dataSetInfo = dataSet.info;
 		this.modelType = model.getModelType();
-		if(experiment.computeROCMetrics)
+		calculateConfusionMeasures(experiment);
+		//these were accumulated while the predictions were made
+		if(experiment.computeLogLoss)
 		{
-			//calculate roc graph points
-			this.calculated_ROCCurve = true;
-			this.positiveClass = experiment.rocPositiveClass;
-			ROCGraph roc = new ROCGraph(dataSet, positiveClass);
-			double[][] rocCoords = roc.calculateROCPoints();
-			this.rocXCoordinates = rocCoords[0];
-			this.rocYCoordinates = rocCoords[1];
-			this.auc = roc.calculateAUC();
+			this.calculated_logLoss = true;
+			this.logLoss = dataSet.logLoss;
 		}
-		if(experiment.modelParameters.isEnsemble())
+		if(experiment.computeBrierScore)
 		{
-			if(experiment.computeDiversity_disagreement ||	experiment.computeDiversity_correlation  ||
-					experiment.computeDiversity_yuleQ  ||	experiment.computeDiversity_doubleFault || 
-					experiment.computeDiversity_entropy  || experiment.computeDiversity_generalDiversity || 
-					experiment.computeDiversity_coincidentFailure  || experiment.computeDiversity_difficulty)
+			this.calculated_brierScore = true;
+			this.brierScore = dataSet.brierScore;
+		}
+		if(experiment.computeROCMetrics || experiment.computeMultiClassROCMetrics)
+		{
+			MultiClassROC roc = new MultiClassROC(dataSet);
+			if(experiment.computeROCMetrics)
 			{
-				//Precalculate predictions of all base classifier models
-				EnsembleModel eModel = (EnsembleModel)model;
-				DataSet labeled = new DataSet(dataSet.recordSchema, dataSet.info, dataSet.records);
-				Model[] baseModels = eModel.getBaseClassifierModels();
-				//Get classified data sets for each model
-				ClassifiedDataSet[] cds = new ClassifiedDataSet[baseModels.length];
-				for(int i = 0; i < baseModels.length; i++)
-				{
-					cds[i] = new ClassifiedDataSet(labeled, baseModels[i]);
-				}
-				
-				//Now calculate diversity measures
-				if(experiment.computeDiversity_disagreement)
-				{
-					this.diversity_disagreement = Diversity.disagreement(cds);
-					calculated_disagreement = true;
-				}
-				if(experiment.computeDiversity_correlation)
-				{
-					this.diversity_correlation = Diversity.correlation(cds);
-					calculated_correlation = true;
-				}
-				if(experiment.computeDiversity_yuleQ)
-				{
-					this.diversity_yuleQ = Diversity.yule_q(cds);
-					calculated_yuleQ = true;
-				}
-				if(experiment.computeDiversity_doubleFault)
-				{
-					this.diversity_doubleFault = Diversity.double_fault(cds);
-					calculated_doubleFault = true;
-				}
-				if(experiment.computeDiversity_entropy)
-				{
-					this.diversity_entropy = Diversity.entropy(cds);
-					calculated_entropy = true;
-				}
-				if(experiment.computeDiversity_generalDiversity)
+				//calculate roc graph points
+				this.calculated_ROCCurve = true;
+				this.positiveClass = experiment.rocPositiveClass;
+				double[][] rocCoords = MultiClassROC.downsample(
+					roc.calculateROCPoints(positiveClass), experiment.rocMaxPoints);
+				this.rocXCoordinates = rocCoords[0];
+				this.rocYCoordinates = rocCoords[1];
+				this.auc = roc.calculateAUC(positiveClass);
+			}
+			if(experiment.computeMultiClassROCMetrics)
+			{
+				//calculate one against all roc graph points for every class
+				this.calculated_multiClassROC = true;
+				int numClasses = roc.getNumClasses();
+				this.classROCXCoordinates = new double[numClasses][];
+				this.classROCYCoordinates = new double[numClasses][];
+				for(int k = 0; k < numClasses; k++)
 				{
-					this.diversity_generalDiversity = Diversity.general_diversity(cds);
-					calculated_generalDiversity = true;
+					double[][] rocCoords = MultiClassROC.downsample(
+						roc.calculateROCPoints(k), experiment.rocMaxPoints);
+					this.classROCXCoordinates[k] = rocCoords[0];
+					this.classROCYCoordinates[k] = rocCoords[1];
 				}
-				if(experiment.computeDiversity_coincidentFailure)
+				this.classAUC = roc.calculateAllAUC();
+				this.macroAUC = roc.calculateMacroAUC();
+				this.weightedAUC = roc.calculateWeightedAUC();
+			}
+		}
+		if(experiment.modelParameters.isEnsemble())
+		{
+			boolean diversityRequested = experiment.isDiversityRequested();
+			if(diversityRequested || experiment.computeBaseModelCost)
+			{
+				if(diversityRequested)
+					PerformanceRecorder.begin(PerformanceRecorder.DIVERSITY);
+				try
 				{
-					this.diversity_coincidentFailure = Diversity.coincident_failure(cds);
-					calculated_coincidentFailure = true;
+					//Precalculate predictions of all base classifier models
+					EnsembleModel eModel = (EnsembleModel)model;
+					DataSet labeled = new DataSet(dataSet.recordSchema, dataSet.info, dataSet.records);
+					Model[] baseModels = eModel.getBaseClassifierModels();
+					//Get classified data sets for each model
+					ClassifiedDataSet[] cds = new ClassifiedDataSet[baseModels.length];
+					for(int i = 0; i < baseModels.length; i++)
+						cds[i] = new ClassifiedDataSet(labeled, baseModels[i]);
+				
+					if(experiment.computeBaseModelCost)
+						calculateBaseModelCost(eModel, cds);
+					if(diversityRequested)
+						calculateDiversity(cds, experiment);
 				}
-				if(experiment.computeDiversity_difficulty)
+				finally
 				{
-					this.diversity_difficulty = Diversity.difficulty(cds);	
-					calculated_difficulty = true;
+					if(diversityRequested)
+						PerformanceRecorder.end();
 				}
 			}
 		}	
 	}
+	
+	/**
+	 * Stores the evaluation measurements of the predictions accumulated by
+	 * a {@link StreamingEvaluator}.  The ROC measurements are found from
+	 * its binned probabilities, and the cost of the base classifiers of an
+	 * ensemble is not measured.
+	 *
+	 * @param evaluator Holds the accumulated predictions.
+	 * @param model The model which made the predictions
+	 * @param dataSetInfo Information about the data set the predictions
+	 * 	were made for.
+	 * @param experiment The experiment which these results are for.
+	 * @throws Exception
+	 */
+	public ModelEvaluationResults(StreamingEvaluator evaluator, Model model, DataSetInfo dataSetInfo, Experiment experiment) throws Exception
+	{
+		confusionMatrix = evaluator.confusionMatrix.toConfusionMatrix();
+		this.dataSetInfo = dataSetInfo;
+		this.modelType = model.getModelType();
+		calculateConfusionMeasures(experiment);
+		if(experiment.computeLogLoss)
+		{
+			this.calculated_logLoss = true;
+			this.logLoss = evaluator.getLogLoss();
+		}
+		if(experiment.computeBrierScore)
+		{
+			this.calculated_brierScore = true;
+			this.brierScore = evaluator.getBrierScore();
+		}
+		ROCAccumulator roc = evaluator.roc;
+		if(experiment.computeROCMetrics)
+		{
+			this.calculated_ROCCurve = true;
+			this.positiveClass = experiment.rocPositiveClass;
+			double[][] rocCoords = MultiClassROC.downsample(
+				roc.calculateROCPoints(positiveClass), experiment.rocMaxPoints);
+			this.rocXCoordinates = rocCoords[0];
+			this.rocYCoordinates = rocCoords[1];
+			this.auc = roc.calculateAUC(positiveClass);
+		}
+		if(experiment.computeMultiClassROCMetrics)
+		{
+			this.calculated_multiClassROC = true;
+			int numClasses = roc.getNumClasses();
+			this.classROCXCoordinates = new double[numClasses][];
+			this.classROCYCoordinates = new double[numClasses][];
+			for(int k = 0; k < numClasses; k++)
+			{
+				double[][] rocCoords = MultiClassROC.downsample(
+					roc.calculateROCPoints(k), experiment.rocMaxPoints);
+				this.classROCXCoordinates[k] = rocCoords[0];
+				this.classROCYCoordinates[k] = rocCoords[1];
+			}
+			this.classAUC = roc.calculateAllAUC();
+			this.macroAUC = roc.calculateMacroAUC();
+			this.weightedAUC = roc.calculateWeightedAUC();
+		}
+		if(evaluator.diversity != null)
+			calculateDiversity(evaluator.diversity, experiment);
+	}
+	
+	/**
+	 * Scores a test set with a model and evaluates the predictions.  When
+	 * the experiment sets a chunk size, the test set is scored a chunk at a
+	 * time by a {@link StreamingEvaluator}, so that the predictions for
+	 * every instance are never held at once.
+	 *
+	 * @param testData Labeled instances to evaluate the model with.
+	 * @param model A trained model.
+	 * @param experiment The experiment which the results are for.
+	 * @return The results.
+	 * @throws Exception
+	 */
+	public static ModelEvaluationResults evaluate(DataSet testData, Model model, Experiment experiment) throws Exception
+	{
+		if(experiment.chunkSize > 0)
+		{
+			StreamingEvaluator evaluator = new StreamingEvaluator(model, testData.recordSchema,
+				experiment.chunkSize, StreamingEvaluator.DEFAULT_ROC_BINS, experiment.isDiversityRequested());
+			PerformanceRecorder.begin(PerformanceRecorder.SCORE);
+			try
+			{
+				evaluator.evaluate(testData);
+			}
+			finally
+			{
+				PerformanceRecorder.end();
+			}
+			PerformanceRecorder.begin(PerformanceRecorder.EVALUATE);
+			try
+			{
+				return new ModelEvaluationResults(evaluator, model, testData.info, experiment);
+			}
+			finally
+			{
+				PerformanceRecorder.end();
+			}
+		}
+		
+		ClassifiedDataSet cdata;
+		PerformanceRecorder.begin(PerformanceRecorder.SCORE);
+		try
+		{
+			cdata = new ClassifiedDataSet(testData, model);
+		}
+		finally
+		{
+			PerformanceRecorder.end();
+		}
+		PerformanceRecorder.begin(PerformanceRecorder.EVALUATE);
+		try
+		{
+			return new ModelEvaluationResults(cdata, model, experiment);
+		}
+		finally
+		{
+			PerformanceRecorder.end();
+		}
+	}
+	
+	/**
+	 * Calculates the accuracy and the requested measures derived from the
+	 * confusion matrix.
+	 */
+	private void calculateConfusionMeasures(Experiment experiment)
+	{
+		accuracy = confusionMatrix.calculateAccuracy();
+		if(experiment.computePrecision)
+		{
+			this.calculated_precision = true;
+			this.precision = confusionMatrix.calculatePrecision();
+			this.macroPrecision = ConfusionMatrix.macroAverage(precision);
+		}
+		if(experiment.computeRecall)
+		{
+			this.calculated_recall = true;
+			this.recall = confusionMatrix.calculateRecall();
+			this.macroRecall = ConfusionMatrix.macroAverage(recall);
+		}
+		if(experiment.computeF1)
+		{
+			this.calculated_f1 = true;
+			this.f1 = confusionMatrix.calculateF1();
+			this.macroF1 = ConfusionMatrix.macroAverage(f1);
+			this.microF1 = confusionMatrix.calculateMicroF1();
+		}
+		if(experiment.computeKappa)
+		{
+			this.calculated_kappa = true;
+			this.kappa = confusionMatrix.calculateKappa();
+		}
+		if(experiment.computeMCC)
+		{
+			this.calculated_mcc = true;
+			this.mcc = confusionMatrix.calculateMCC();
+		}
+	}
+	
+	/**
+	 * Calculates the cost of each base classifier of an ensemble alongside
+	 * its accuracy, so that the base classifiers can be compared.
+	 *
+	 * @param eModel The ensemble whose base classifiers are measured.
+	 * @param cds The predictions of each base classifier, along with the
+	 *	time its prediction calls took.
+	 * @throws Exception
+	 */
+	private void calculateBaseModelCost(EnsembleModel eModel, ClassifiedDataSet[] cds) throws Exception
+	{
+		Model[] baseModels = eModel.getBaseClassifierModels();
+		long[] trainTimes = eModel.getBaseClassifierTrainTimes();
+		int numModels = baseModels.length;
+		baseModelTypes = new String[numModels];
+		baseModelAccuracy = new double[numModels];
+		baseModelTrainTime = new double[numModels];
+		baseModelSerializedSize = new long[numModels];
+		baseModelLatency = new double[numModels];
+		for(int i = 0; i < numModels; i++)
+		{
+			baseModelTypes[i] = baseModels[i].getModelType().name();
+			baseModelAccuracy[i] = new ConfusionMatrix(cds[i]).calculateAccuracy();
+			baseModelTrainTime[i] = (trainTimes == null) ? Double.NaN : trainTimes[i] / 1e6;
+			baseModelSerializedSize[i] = ModelSerialization.getSerializedSize(baseModels[i]);
+			int numRows = cds[i].records.size();
+			baseModelLatency[i] = (numRows == 0) ? 0 : cds[i].predictionNanos / 1e3 / numRows;
+		}
+		calculated_baseModelCost = true;
+	}
+	
+	/**
+	 * Calculates the requested diversity measures of the base classifiers
+	 * of an ensemble.
+	 *
+	 * @param cds The predictions of each base classifier.
+	 * @param experiment The experiment which these results are for.
+	 * @throws Exception
+	 */
+	private void calculateDiversity(ClassifiedDataSet[] cds, Experiment experiment) throws Exception
+	{
+		//The profile counts the correct predictions for each instance once
+		//for all of the measures, and the engine shares the pairwise counts
+		//between all of the pairwise measures.
+		DiversityProfile profile = new DiversityProfile(cds);
+		DiversityEngine engine = null;
+		if(experiment.isPairwiseDiversityRequested())
+		{
+			engine = new DiversityEngine(cds, profile);
+			engine.countPairs(WorkerThread.availableThreads());
+		}
+		if(experiment.computeDiversity_disagreement)
+		{
+			this.diversity_disagreement = engine.getDisagreement();
+			calculated_disagreement = true;
+		}
+		if(experiment.computeDiversity_correlation)
+		{
+			this.diversity_correlation = engine.getCorrelation();
+			calculated_correlation = true;
+		}
+		if(experiment.computeDiversity_yuleQ)
+		{
+			this.diversity_yuleQ = engine.getYuleQ();
+			calculated_yuleQ = true;
+		}
+		if(experiment.computeDiversity_doubleFault)
+		{
+			this.diversity_doubleFault = engine.getDoubleFault();
+			calculated_doubleFault = true;
+		}
+		if(experiment.computeDiversity_entropy)
+		{
+			this.diversity_entropy = Diversity.entropy(profile);
+			calculated_entropy = true;
+		}
+		if(experiment.computeDiversity_generalDiversity)
+		{
+			this.diversity_generalDiversity = Diversity.general_diversity(profile);
+			calculated_generalDiversity = true;
+		}
+		if(experiment.computeDiversity_coincidentFailure)
+		{
+			this.diversity_coincidentFailure = Diversity.coincident_failure(profile);
+			calculated_coincidentFailure = true;
+		}
+		if(experiment.computeDiversity_difficulty)
+		{
+			this.diversity_difficulty = Diversity.difficulty(profile);	
+			calculated_difficulty = true;
+		}
+	}
+	
+	/**
+	 * Stores the requested diversity measures accumulated by a
+	 * {@link DiversityAccumulator}.
+	 *
+	 * @param accumulator The accumulated predictions of each base classifier.
+	 * @param experiment The experiment which these results are for.
+	 */
+	private void calculateDiversity(DiversityAccumulator accumulator, Experiment experiment)
+	{
+		if(experiment.computeDiversity_disagreement)
+		{
+			this.diversity_disagreement = accumulator.getDisagreement();
+			calculated_disagreement = true;
+		}
+		if(experiment.computeDiversity_correlation)
+		{
+			this.diversity_correlation = accumulator.getCorrelation();
+			calculated_correlation = true;
+		}
+		if(experiment.computeDiversity_yuleQ)
+		{
+			this.diversity_yuleQ = accumulator.getYuleQ();
+			calculated_yuleQ = true;
+		}
+		if(experiment.computeDiversity_doubleFault)
+		{
+			this.diversity_doubleFault = accumulator.getDoubleFault();
+			calculated_doubleFault = true;
+		}
+		if(experiment.computeDiversity_entropy)
+		{
+			this.diversity_entropy = accumulator.getEntropy();
+			calculated_entropy = true;
+		}
+		if(experiment.computeDiversity_generalDiversity)
+		{
+			this.diversity_generalDiversity = accumulator.getGeneralDiversity();
+			calculated_generalDiversity = true;
+		}
+		if(experiment.computeDiversity_coincidentFailure)
+		{
+			this.diversity_coincidentFailure = accumulator.getCoincidentFailure();
+			calculated_coincidentFailure = true;
+		}
+		if(experiment.computeDiversity_difficulty)
+		{
+			this.diversity_difficulty = accumulator.getDifficulty();
+			calculated_difficulty = true;
+		}
+	}
 }
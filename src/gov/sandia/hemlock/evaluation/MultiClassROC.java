@@ -0,0 +1,319 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.evaluation;
+
+import gov.sandia.hemlock.data.*;
+import java.util.*;
+
+/**
+ * Calculates one against all Receiver Operator Curve (ROC) graphs and Area
+ * Under the Curve (AUC) measurements for every class of a model at once.
+ * The true labels and predicted distributions are copied out of the data set
+ * a single time, and each class is ranked by an LSD radix sort of its scores
+ * on primitive arrays instead of sorting one object per instance with a
+ * comparator.  The curve and AUC for a class are the same as those found by
+ * {@link ROCGraph} for that positive class.
+ *
+ * @author Sean A. Gilpin
+ */
+public class MultiClassROC
+{
+	private final int numClasses;
+	private final int total;
+	/** True label of each instance */
+	private final int[] trueLabels;
+	/** scores[k][i] is the predicted probability of class k for instance i */
+	private final double[][] scores;
+	/** Number of instances of each class */
+	private final int[] totalP;
+
+	/** Lazily calculated results for each class */
+	private final double[][][] points;
+	private final double[] auc;
+	private final boolean[] calculated;
+
+	/**
+	 * Prepares the predictions for ROC analysis of every class.
+	 *
+	 * @param data The predictions along with the true class labels
+	 */
+	public MultiClassROC(ClassifiedDataSet data)
+	{
+		int classIndex = data.recordSchema.numAttributes;
+		numClasses = data.recordSchema.labels.length;
+		total = data.records.size();
+
+		trueLabels = new int[total];
+		totalP = new int[numClasses];
+		scores = new double[numClasses][total];
+		for(int i = 0; i < total; i++)
+		{
+			double label = data.records.get(i)[classIndex];
+			trueLabels[i] = (int)label;
+			if(label == trueLabels[i] && trueLabels[i] >= 0 && trueLabels[i] < numClasses)
+				totalP[trueLabels[i]]++;
+			else
+				trueLabels[i] = -1;  //never a member of a positive class
+			double[] distribution = data.predictedDistributions[i];
+			for(int k = 0; k < numClasses; k++)
+				scores[k][i] = distribution[k];
+		}
+
+		points = new double[numClasses][][];
+		auc = new double[numClasses];
+		calculated = new boolean[numClasses];
+	}
+
+	/**
+	 * @return The number of classes.
+	 */
+	public int getNumClasses()
+	{
+		return numClasses;
+	}
+
+	/**
+	 * Calculates the AUC measurement for one class against all the others.
+	 *
+	 * @param positiveClass The class to be used in one against all
+	 *	comparison
+	 * @return The AUC measurement value.
+	 */
+	public double calculateAUC(int positiveClass)
+	{
+		calculateCurve(positiveClass);
+		return auc[positiveClass];
+	}
+
+	/**
+	 * Calculates the ROC plot for one class against all the others.
+	 *
+	 * @param positiveClass The class to be used in one against all
+	 *	comparison
+	 * @return A 2xn array, the first row holds the x-axis components of the
+	 *	plotted points and the second row the y-axis components.
+	 */
+	public double[][] calculateROCPoints(int positiveClass)
+	{
+		calculateCurve(positiveClass);
+		double[][] copy = new double[2][];
+		copy[0] = points[positiveClass][0].clone();
+		copy[1] = points[positiveClass][1].clone();
+		return copy;
+	}
+
+	/**
+	 * Calculates the AUC measurement of every class against all the others.
+	 *
+	 * @return The AUC of each class.
+	 */
+	public double[] calculateAllAUC()
+	{
+		for(int k = 0; k < numClasses; k++)
+			calculateCurve(k);
+		return auc.clone();
+	}
+
+	/**
+	 * The unweighted mean of the one against all AUC measurements of the
+	 * classes that occur in the data.
+	 *
+	 * @return The macro averaged AUC.
+	 */
+	public double calculateMacroAUC()
+	{
+		double sum = 0;
+		int count = 0;
+		for(int k = 0; k < numClasses; k++)
+		{
+			if(totalP[k] > 0)
+			{
+				sum += calculateAUC(k);
+				count++;
+			}
+		}
+		return (count == 0) ? 0 : sum / count;
+	}
+
+	/**
+	 * The mean of the one against all AUC measurements of the classes,
+	 * weighted by the number of instances of each class.
+	 *
+	 * @return The weighted AUC.
+	 */
+	public double calculateWeightedAUC()
+	{
+		double sum = 0;
+		int count = 0;
+		for(int k = 0; k < numClasses; k++)
+		{
+			if(totalP[k] > 0)
+			{
+				sum += totalP[k]*calculateAUC(k);
+				count += totalP[k];
+			}
+		}
+		return (count == 0) ? 0 : sum / count;
+	}
+
+	/**
+	 * Ranks the instances by their score for the positive class and sweeps
+	 * through them once to find both the ROC points and the AUC.
+	 */
+	private void calculateCurve(int positiveClass)
+	{
+		if(calculated[positiveClass])
+			return;
+
+		int P = totalP[positiveClass];
+		int N = total - P;
+		//totalP and totalN must be greater than 0, otherwise use these values
+		if(P == 0)
+		{
+			points[positiveClass] = new double[][]{{0.0,1.0,1.0},{0.0,0.0,1.0}};
+			auc[positiveClass] = 0;
+			calculated[positiveClass] = true;
+			return;
+		}
+		if(N == 0)
+		{
+			points[positiveClass] = new double[][]{{0.0,0.0,1.0},{0.0,1.0,1.0}};
+			auc[positiveClass] = 1;
+			calculated[positiveClass] = true;
+			return;
+		}
+
+		double[] score = scores[positiveClass];
+		int[] order = sortDescending(score);
+
+		double[] xCoords = new double[total + 1];
+		double[] yCoords = new double[total + 1];
+		int numPoints = 0;
+		double FP = 0;
+		double TP = 0;
+		double FPPrev = 0;
+		double TPPrev = 0;
+		double fPrev = Double.NEGATIVE_INFINITY;
+		double area = 0;
+		for(int r = 0; r < total; r++)
+		{
+			int i = order[r];
+			if(score[i] != fPrev)
+			{
+				xCoords[numPoints] = FP/N;
+				yCoords[numPoints] = TP/P;
+				numPoints++;
+
+				area += (TP + TPPrev)*(FP - FPPrev)/2;
+				fPrev = score[i];
+				FPPrev = FP;
+				TPPrev = TP;
+			}
+			if(trueLabels[i] == positiveClass)
+				TP++;
+			else
+				FP++;
+		}
+		//push what should be (1,1) onto points
+		xCoords[numPoints] = FP/N;
+		yCoords[numPoints] = TP/P;
+		numPoints++;
+		area += (TP + TPPrev)*(FP - FPPrev)/2;
+
+		points[positiveClass] = new double[][]{Arrays.copyOf(xCoords, numPoints), Arrays.copyOf(yCoords, numPoints)};
+		auc[positiveClass] = area / (P*N);
+		calculated[positiveClass] = true;
+	}
+
+	/**
+	 * Orders the instances by descending score.  Instances with equal scores
+	 * keep their original relative order, as with the stable sort used by
+	 * {@link ROCGraph}.  Doubles are mapped to longs whose unsigned order is
+	 * the order of {@link Double#compare}, and the longs are sorted 16 bits
+	 * at a time.
+	 *
+	 * @param score The score of each instance.
+	 * @return The indices of the instances, highest score first.
+	 */
+	static int[] sortDescending(double[] score)
+	{
+		int n = score.length;
+		long[] keys = new long[n];
+		int[] order = new int[n];
+		for(int i = 0; i < n; i++)
+		{
+			long bits = Double.doubleToLongBits(score[i]);
+			//flip all the bits of negative numbers and only the sign bit of
+			//positive numbers, then complement to sort in descending order
+			long sortable = bits ^ ((bits >> 63) | Long.MIN_VALUE);
+			keys[i] = ~sortable;
+			order[i] = i;
+		}
+
+		long[] keyBuffer = new long[n];
+		int[] orderBuffer = new int[n];
+		int[] counts = new int[1 << 16];
+		for(int shift = 0; shift < 64; shift += 16)
+		{
+			Arrays.fill(counts, 0);
+			for(int i = 0; i < n; i++)
+				counts[(int)(keys[i] >>> shift) & 0xFFFF]++;
+			//skip a pass where every key has the same digit
+			if(n > 0 && counts[(int)(keys[0] >>> shift) & 0xFFFF] == n)
+				continue;
+			int sum = 0;
+			for(int d = 0; d < counts.length; d++)
+			{
+				int c = counts[d];
+				counts[d] = sum;
+				sum += c;
+			}
+			for(int i = 0; i < n; i++)
+			{
+				int pos = counts[(int)(keys[i] >>> shift) & 0xFFFF]++;
+				keyBuffer[pos] = keys[i];
+				orderBuffer[pos] = order[i];
+			}
+			long[] tk = keys; keys = keyBuffer; keyBuffer = tk;
+			int[] to = order; order = orderBuffer; orderBuffer = to;
+		}
+		return order;
+	}
+
+	/**
+	 * Reduces the number of points in an ROC plot.  The first and last
+	 * points are always kept and the rest are chosen at evenly spaced
+	 * positions along the curve.
+	 *
+	 * @param points A 2xn array of ROC points.
+	 * @param maxPoints The largest number of points to keep, 0 or less to
+	 *	keep them all.
+	 * @return The reduced points, or the given points if no reduction is
+	 *	needed.
+	 */
+	public static double[][] downsample(double[][] points, int maxPoints)
+	{
+		int n = points[0].length;
+		if(maxPoints <= 0 || n <= maxPoints)
+			return points;
+		if(maxPoints < 2)
+			maxPoints = 2;
+		double[][] reduced = new double[2][maxPoints];
+		for(int p = 0; p < maxPoints; p++)
+		{
+			int i = (int)Math.round(p * (n - 1) / (double)(maxPoints - 1));
+			reduced[0][p] = points[0][i];
+			reduced[1][p] = points[1][i];
+		}
+		return reduced;
+	}
+}
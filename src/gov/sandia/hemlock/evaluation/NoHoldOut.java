@@ -16,6 +16,7 @@ import gov.sandia.hemlock.classification.*;
 import gov.sandia.hemlock.classification.parameters.*;
 import gov.sandia.hemlock.core.*;
 import gov.sandia.hemlock.experiment.*;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
 import java.util.*;
 import java.io.*;
 
@@ -62,14 +63,33 @@ public class NoHoldOut
 		ModelParameters params = experiment.modelParameters;
 		ModelEvaluationResults results;
 
-		//Create model
-		ClassifierFactory cf = new ClassifierFactory(params.frameworkType, dataSet);
-		Model model = cf.createModel(params);
-				
-		//Calculate evaluation metrics
-		ClassifiedDataSet cdata = new ClassifiedDataSet(dataSet, model);
-		
-		results = new ModelEvaluationResults(cdata, model, experiment);
+		HemlockMetrics.foldsQueued(1);
+		boolean completed = false;
+		try
+		{
+			//Create model
+			ClassifierFactory cf = new ClassifierFactory(params.frameworkType, dataSet);
+			Model model;
+			PerformanceRecorder.begin(PerformanceRecorder.TRAIN);
+			try
+			{
+				model = cf.createModel(params);
+			}
+			finally
+			{
+				PerformanceRecorder.end();
+			}
+					
+			//Calculate evaluation metrics
+			results = ModelEvaluationResults.evaluate(dataSet, model, experiment);
+			HemlockMetrics.foldCompleted();
+			completed = true;
+		}
+		finally
+		{
+			if(!completed)
+				HemlockMetrics.foldsCancelled(1);
+		}
 
 		return results;
 	}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.evaluation;
+
+import java.util.*;
+
+/**
+ * Finds the models that are not dominated when trading a benefit, such as
+ * accuracy, against a cost, such as prediction latency.  A model is
+ * dominated when another model has at least its benefit for at most its
+ * cost, and is strictly better in one of the two.
+ *
+ * @author Sean A. Gilpin
+ */
+public class ParetoFront
+{
+	/**
+	 * @param benefit The benefit of each model, larger is better.
+	 * @param cost The cost of each model, smaller is better.
+	 * @return The indices of the models on the Pareto front, from cheapest
+	 * 	to most expensive.  Models with a NaN benefit or cost are left out.
+	 */
+	public static int[] compute(final double[] benefit, final double[] cost)
+	{
+		//sort by cost, breaking ties by the larger benefit, then keep each
+		//model that beats the best benefit of every cheaper model
+		Integer[] order = new Integer[benefit.length];
+		for(int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			public int compare(Integer a, Integer b)
+			{
+				int c = Double.compare(cost[a], cost[b]);
+				return (c != 0) ? c : Double.compare(benefit[b], benefit[a]);
+			}
+		});
+		ArrayList<Integer> front = new ArrayList<Integer>();
+		double bestBenefit = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < order.length; i++)
+		{
+			int m = order[i];
+			if(Double.isNaN(benefit[m]) || Double.isNaN(cost[m]))
+				continue;
+			if(benefit[m] > bestBenefit)
+			{
+				front.add(m);
+				bestBenefit = benefit[m];
+			}
+		}
+		int[] result = new int[front.size()];
+		for(int i = 0; i < result.length; i++)
+			result[i] = front.get(i);
+		return result;
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.evaluation;
+
+import gov.sandia.hemlock.classification.EnsembleModel;
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelSerialization;
+import gov.sandia.hemlock.classification.StoragePrecision;
+import gov.sandia.hemlock.data.*;
+
+/**
+ * Measures how much a model's predictions change when its parameters are
+ * stored at a reduced precision.  Both models score the same data set, and
+ * their accuracy, from a {@link ConfusionMatrix}, and one against all AUC
+ * of each class, from a {@link ROCGraph}, are compared, along with how
+ * often they predict the same label, the largest change in a predicted
+ * probability and how much smaller the reduced model is when serialized.
+ *
+ * @author Sean A. Gilpin
+ */
+public class PrecisionDrift
+{
+	/** Confusion matrix of the full precision model */
+	public final ConfusionMatrix fullMatrix;
+	/** Confusion matrix of the reduced precision model */
+	public final ConfusionMatrix reducedMatrix;
+	/** AUC of each class for the full precision model */
+	public final double[] fullAUC;
+	/** AUC of each class for the reduced precision model */
+	public final double[] reducedAUC;
+	/** Fraction of the instances given the same label by both models */
+	public final double agreement;
+	/** Largest absolute difference between the probabilities the models
+		predict for a class of an instance */
+	public final double maxProbabilityDifference;
+	/** Serialized size of the full precision model in bytes */
+	public final long fullSize;
+	/** Serialized size of the reduced precision model in bytes */
+	public final long reducedSize;
+
+	/**
+	 * Compares a model with a copy of it stored at a reduced precision.
+	 * An ensemble is copied before its base classifiers are reduced, as
+	 * {@link ModelSerialization#reducePrecision} reduces ensembles in
+	 * place.
+	 *
+	 * @param data The data set both models are evaluated on.
+	 * @param full A trained model.
+	 * @param precision The reduced precision.
+	 * @throws Exception If the model cannot be reduced or fails to score
+	 * 	the data.
+	 */
+	public PrecisionDrift(DataSet data, Model full, StoragePrecision precision) throws Exception
+	{
+		this(data, full, ModelSerialization.reducePrecision(
+			(full instanceof EnsembleModel) ? ModelSerialization.copyModel(full) : full, precision));
+	}
+
+	/**
+	 * Compares a full precision model with its reduced precision version.
+	 *
+	 * @param data The data set both models are evaluated on.
+	 * @param full The full precision model.
+	 * @param reduced The same model stored at a reduced precision.
+	 * @throws Exception If either model fails to score the data.
+	 */
+	public PrecisionDrift(DataSet data, Model full, Model reduced) throws Exception
+	{
+		ClassifiedDataSet fullPredictions = new ClassifiedDataSet(data, full);
+		ClassifiedDataSet reducedPredictions = new ClassifiedDataSet(data, reduced);
+		fullMatrix = new ConfusionMatrix(fullPredictions);
+		reducedMatrix = new ConfusionMatrix(reducedPredictions);
+
+		int numClasses = data.recordSchema.labels.length;
+		fullAUC = new double[numClasses];
+		reducedAUC = new double[numClasses];
+		for(int c = 0; c < numClasses; c++)
+		{
+			fullAUC[c] = new ROCGraph(fullPredictions, c).calculateAUC();
+			reducedAUC[c] = new ROCGraph(reducedPredictions, c).calculateAUC();
+		}
+
+		int same = 0;
+		double maxDifference = 0;
+		int n = fullPredictions.predictedLabels.length;
+		for(int i = 0; i < n; i++)
+		{
+			if(fullPredictions.predictedLabels[i] == reducedPredictions.predictedLabels[i])
+				same++;
+			double[] fullDist = fullPredictions.predictedDistributions[i];
+			double[] reducedDist = reducedPredictions.predictedDistributions[i];
+			for(int c = 0; c < fullDist.length; c++)
+				maxDifference = Math.max(maxDifference, Math.abs(fullDist[c] - reducedDist[c]));
+		}
+		agreement = (n == 0) ? 1 : (double)same/n;
+		maxProbabilityDifference = maxDifference;
+
+		fullSize = ModelSerialization.getSerializedSize(full);
+		reducedSize = ModelSerialization.getSerializedSize(reduced);
+	}
+
+	/**
+	 * @return The accuracy of the reduced model minus that of the full
+	 * 	precision model.
+	 */
+	public double calculateAccuracyDrift()
+	{
+		return reducedMatrix.calculateAccuracy() - fullMatrix.calculateAccuracy();
+	}
+
+	/**
+	 * @return The largest absolute change in the AUC of a class.
+	 */
+	public double calculateMaxAUCDrift()
+	{
+		double max = 0;
+		for(int c = 0; c < fullAUC.length; c++)
+			max = Math.max(max, Math.abs(reducedAUC[c] - fullAUC[c]));
+		return max;
+	}
+
+	/**
+	 * @return A one line summary of the drift.
+	 */
+	public String toString()
+	{
+		return "accuracy " + fullMatrix.calculateAccuracy() + " -> " + reducedMatrix.calculateAccuracy() +
+			", max AUC drift " + calculateMaxAUCDrift() +
+			", agreement " + agreement +
+			", max probability difference " + maxProbabilityDifference +
+			", size " + fullSize + " -> " + reducedSize + " bytes";
+	}
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.evaluation;
+
+import gov.sandia.hemlock.data.ClassifiedDataSet;
+import java.util.*;
+
+/**
+ * Accumulates histograms of the predicted class probabilities so that one
+ * against all ROC graphs and AUC measurements can be found without keeping
+ * every prediction in memory.  For each class, the probabilities in [0,1]
+ * are divided into a fixed number of equal width bins and the number of
+ * positive and negative instances falling in each bin is counted.  Each bin
+ * edge is then a threshold of the ROC graph.
+ *
+ * When the probabilities can only take values that fall in different bins,
+ * as is the case for tree models whose leaves hold few instances, the
+ * results are the same as {@link MultiClassROC}.  Otherwise, instances
+ * sharing a bin are treated as tied, which approximates the exact curve
+ * more closely as the number of bins grows.  Accumulators built from
+ * different chunks, shards or folds can be combined with {@link #merge}.
+ *
+ * @author Sean A. Gilpin
+ */
+public class ROCAccumulator
+{
+	private final int numClasses;
+	private final int numBins;
+	/** positives[k][b] is the number of instances of class k whose
+		probability of class k falls in bin b */
+	private final long[][] positives;
+	/** negatives[k][b] is the number of instances of other classes whose
+		probability of class k falls in bin b */
+	private final long[][] negatives;
+
+	/**
+	 * @param numClasses The number of class labels.
+	 * @param numBins The number of bins to divide the probabilities into.
+	 */
+	public ROCAccumulator(int numClasses, int numBins)
+	{
+		this.numClasses = numClasses;
+		this.numBins = numBins;
+		positives = new long[numClasses][numBins];
+		negatives = new long[numClasses][numBins];
+	}
+
+	/**
+	 * The bin a probability falls into.  Values outside of [0,1] are put
+	 * in the first or last bin.
+	 */
+	private int bin(double probability)
+	{
+		if(!(probability > 0))
+			return 0;
+		if(probability >= 1.0)
+			return numBins - 1;
+		return Math.min((int)(probability * numBins), numBins - 1);
+	}
+
+	/**
+	 * Adds a single prediction.
+	 *
+	 * @param trueLabel The known class of the instance.
+	 * @param distribution The predicted probability of each class.
+	 */
+	public void add(int trueLabel, double[] distribution)
+	{
+		for(int k = 0; k < numClasses; k++)
+		{
+			if(k == trueLabel)
+				positives[k][bin(distribution[k])]++;
+			else
+				negatives[k][bin(distribution[k])]++;
+		}
+	}
+
+	/**
+	 * Adds every prediction in a chunk of classified instances.
+	 *
+	 * @param data Contains predictions and true labels.
+	 */
+	public void add(ClassifiedDataSet data)
+	{
+		int classIndex = data.recordSchema.numAttributes;
+		for(int i = 0; i < data.predictedDistributions.length; i++)
+		{
+			add((int)data.records.get(i)[classIndex], data.predictedDistributions[i]);
+		}
+	}
+
+	/**
+	 * Adds the counts of another accumulator to this one.
+	 *
+	 * @param other An accumulator with the same classes and bins.
+	 * @throws Exception If the number of classes or bins differ.
+	 */
+	public void merge(ROCAccumulator other) throws Exception
+	{
+		if(other.numClasses != numClasses || other.numBins != numBins)
+			throw new Exception("Cannot merge ROC histograms with different numbers of classes or bins.");
+		for(int k = 0; k < numClasses; k++)
+		{
+			for(int b = 0; b < numBins; b++)
+			{
+				positives[k][b] += other.positives[k][b];
+				negatives[k][b] += other.negatives[k][b];
+			}
+		}
+	}
+
+	/**
+	 * @return The number of classes.
+	 */
+	public int getNumClasses()
+	{
+		return numClasses;
+	}
+
+	private long sum(long[] counts)
+	{
+		long total = 0;
+		for(int b = 0; b < counts.length; b++)
+			total += counts[b];
+		return total;
+	}
+
+	/**
+	 * Calculates the AUC measurement for one class against all the others.
+	 *
+	 * @param positiveClass The class to be used in one against all
+	 *	comparison
+	 * @return The AUC measurement value.
+	 */
+	public double calculateAUC(int positiveClass)
+	{
+		long[] pos = positives[positiveClass];
+		long[] neg = negatives[positiveClass];
+		double totalP = sum(pos);
+		double totalN = sum(neg);
+		//totalP and totalN must be greater than 0, otherwise use these values
+		if(totalP == 0)
+			return 0;
+		if(totalN == 0)
+			return 1;
+
+		//sweep the thresholds from the highest bin to the lowest
+		double TP = 0;
+		double area = 0;
+		for(int b = numBins - 1; b >= 0; b--)
+		{
+			//trapezoid between the thresholds above and below this bin
+			double TPPrev = TP;
+			TP += pos[b];
+			area += (TP + TPPrev)*neg[b]/2;
+		}
+		return area / (totalP*totalN);
+	}
+
+	/**
+	 * Calculates the ROC plot for one class against all the others, with
+	 * one point for each threshold at which some instance changes sides.
+	 *
+	 * @param positiveClass The class to be used in one against all
+	 *	comparison
+	 * @return A 2xn array, the first row holds the x-axis components of the
+	 *	plotted points and the second row the y-axis components.
+	 */
+	public double[][] calculateROCPoints(int positiveClass)
+	{
+		long[] pos = positives[positiveClass];
+		long[] neg = negatives[positiveClass];
+		double totalP = sum(pos);
+		double totalN = sum(neg);
+		//totalP and totalN must be greater than 0, otherwise use these curves
+		if(totalP == 0)
+			return new double[][]{{0.0,1.0,1.0},{0.0,0.0,1.0}};
+		if(totalN == 0)
+			return new double[][]{{0.0,0.0,1.0},{0.0,1.0,1.0}};
+
+		double[] xCoords = new double[numBins + 1];
+		double[] yCoords = new double[numBins + 1];
+		int numPoints = 1;  //start at (0,0)
+		double TP = 0;
+		double FP = 0;
+		for(int b = numBins - 1; b >= 0; b--)
+		{
+			if(pos[b] == 0 && neg[b] == 0)
+				continue;
+			TP += pos[b];
+			FP += neg[b];
+			xCoords[numPoints] = FP/totalN;
+			yCoords[numPoints] = TP/totalP;
+			numPoints++;
+		}
+		double[][] points = new double[2][];
+		points[0] = Arrays.copyOf(xCoords, numPoints);
+		points[1] = Arrays.copyOf(yCoords, numPoints);
+		return points;
+	}
+
+	/**
+	 * The unweighted mean of the one against all AUC measurements of the
+	 * classes that have been seen.
+	 *
+	 * @return The macro averaged AUC.
+	 */
+	public double calculateMacroAUC()
+	{
+		double total = 0;
+		int count = 0;
+		for(int k = 0; k < numClasses; k++)
+		{
+			if(sum(positives[k]) > 0)
+			{
+				total += calculateAUC(k);
+				count++;
+			}
+		}
+		return (count == 0) ? 0 : total / count;
+	}
+
+	/**
+	 * The mean of the one against all AUC measurements of the classes,
+	 * weighted by the number of instances of each class.
+	 *
+	 * @return The weighted AUC.
+	 */
+	public double calculateWeightedAUC()
+	{
+		double total = 0;
+		long count = 0;
+		for(int k = 0; k < numClasses; k++)
+		{
+			long numP = sum(positives[k]);
+			if(numP > 0)
+			{
+				total += numP*calculateAUC(k);
+				count += numP;
+			}
+		}
+		return (count == 0) ? 0 : total / count;
+	}
+
+	/**
+	 * Calculates the one against all AUC measurement of every class.
+	 *
+	 * @return The AUC of each class.
+	 */
+	public double[] calculateAllAUC()
+	{
+		double[] auc = new double[numClasses];
+		for(int k = 0; k < numClasses; k++)
+			auc[k] = calculateAUC(k);
+		return auc;
+	}
+}
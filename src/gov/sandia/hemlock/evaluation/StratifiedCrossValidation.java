@@ -16,6 +16,7 @@ import gov.sandia.hemlock.classification.*;
 import gov.sandia.hemlock.classification.parameters.*;
 import gov.sandia.hemlock.core.*;
 import gov.sandia.hemlock.experiment.*;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
 import java.util.*;
 import java.io.*;
 
@@ -88,25 +89,85 @@ public class StratifiedCrossValidation
 	 */
 	public ModelEvaluationResults[] runTest(Experiment experiment) throws FrameworkNotSupportedException, Exception
 	{
-		ModelParameters params = experiment.modelParameters;
 		ModelEvaluationResults[] results = new ModelEvaluationResults[numFolds];
-		for(int i=0; i < numFolds; i++)
+		HemlockMetrics.foldsQueued(numFolds);
+		int completed = 0;
+		try
+		{
+			for(int i=0; i < numFolds; i++)
+			{
+				results[i] = runFold(experiment, i);
+				HemlockMetrics.foldCompleted();
+				completed++;
+			}
+		}
+		finally
+		{
+			//a failed fold, and the folds after it, are no longer waiting
+			HemlockMetrics.foldsCancelled(numFolds - completed);
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * Trains a model on all but one of the subsamples and evaluates it on
+	 * the subsample that was held out.  The subsamples are not changed, so
+	 * different folds, or different experiments, may be run at the same
+	 * time from several threads.
+	 *
+	 * @param experiment The model parameters and evaluation measurement
+	 *	will be specified here.
+	 * @param fold The subsample to hold out.
+	 * @return The results for the fold.
+	 * @throws Exception
+	 */
+	public ModelEvaluationResults runFold(Experiment experiment, int fold) throws Exception
+	{
+		ModelParameters params = experiment.modelParameters;
+		if(experiment.computePerformance)
+			PerformanceRecorder.start("fold");
+		ModelEvaluationResults results;
+		PerformanceProfile performance = null;
+		try
 		{
 			//Create model
-			ClassifierFactory cf = new ClassifierFactory(params.frameworkType, createTrainingDataSet(i), i);
-			Model model = cf.createModel(params);
+			ClassifierFactory cf = new ClassifierFactory(params.frameworkType, createTrainingDataSet(fold), fold);
+			Model model;
+			PerformanceRecorder.begin(PerformanceRecorder.TRAIN);
+			try
+			{
+				model = cf.createModel(params);
+			}
+			finally
+			{
+				PerformanceRecorder.end();
+			}
 			
-			DataSet testFold = createTestDataSet(i);
+			DataSet testFold = createTestDataSet(fold);
 			
 			//Calculate evaluation metrics
-			ClassifiedDataSet cdata = new ClassifiedDataSet(testFold, model);
-			results[i] = new ModelEvaluationResults(cdata, model, experiment);
-			
+			results = ModelEvaluationResults.evaluate(testFold, model, experiment);
 		}
-		
+		finally
+		{
+			//a failed fold is not left open on a thread that is reused,
+			//such as one of a parameter search
+			if(experiment.computePerformance)
+				performance = PerformanceRecorder.stop();
+		}
+		results.performance = performance;
 		return results;
 	}
 	
+	/**
+	 * @return The number of subsamples.
+	 */
+	public int getNumberOfFolds()
+	{
+		return numFolds;
+	}
+	
 	/**
 	 * Subsampling method.  The subsamples will be partions of the original 
 	 * set of instances, where partitions will be of equal size (or as close
@@ -171,7 +232,8 @@ public class StratifiedCrossValidation
 	
 	/** 
 	 * Create a data set using all but one of the subsamples which will
-	 * be used to train a model.
+	 * be used to train a model.  The data set keeps the subsamples, so
+	 * learners may reuse statistics of a subsample across folds.
 	 *
 	 * @param foldk The identification of the subsample not to include
 	 * 	 in the data set.
@@ -179,14 +241,6 @@ public class StratifiedCrossValidation
 	 */
 	private DataSet createTrainingDataSet(int foldk)
 	{
-		ArrayList<double[]> records = new ArrayList<double[]>();
-		for(int i = 0; i < numFolds; i++)
-		{
-			if(i != foldk)
-			{
-				records.addAll(folds[i]);
-			}
-		}
-		return new DataSet(schema, info, records);
+		return new FoldedDataSet(schema, info, folds, foldk);
 	}
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.evaluation;
+
+import gov.sandia.hemlock.classification.*;
+import gov.sandia.hemlock.data.*;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
+import java.util.*;
+
+/**
+ * Evaluates a model on a large data set a chunk of instances at a time.
+ * Each chunk is scored once and folded into mergeable accumulators, so only
+ * the predictions for one chunk are held in memory at once.  Chunks can be
+ * taken from a data set with {@link #evaluate}, or added as they are read
+ * from any other source with {@link #add}.  Evaluators run over different
+ * shards of a data set can be combined with {@link #merge}.
+ *
+ * @author Sean A. Gilpin
+ */
+public class StreamingEvaluator
+{
+	/** Default number of instances scored at a time */
+	public static final int DEFAULT_CHUNK_SIZE = 10000;
+	/** Default number of probability bins used for ROC analysis */
+	public static final int DEFAULT_ROC_BINS = 1000;
+
+	public final ConfusionMatrixAccumulator confusionMatrix;
+	public final ROCAccumulator roc;
+	/** Only created when the model is an ensemble and diversity is
+		requested */
+	public final DiversityAccumulator diversity;
+
+	private final Model model;
+	private final RecordSchema schema;
+	private final int chunkSize;
+	private long numInstances = 0;
+	private double totalLogLoss = 0;
+	private double totalBrier = 0;
+
+	/**
+	 * @param model The model to evaluate.
+	 * @param schema The schema of the instances.
+	 * @param chunkSize The number of instances to score at a time.
+	 * @param rocBins The number of probability bins used for ROC analysis.
+	 * @param measureDiversity If true and the model is an ensemble, the
+	 *	diversity of its base classifiers is also accumulated.
+	 */
+	public StreamingEvaluator(Model model, RecordSchema schema, int chunkSize, int rocBins, boolean measureDiversity)
+	{
+		this.model = model;
+		this.schema = schema;
+		this.chunkSize = Math.max(1, chunkSize);
+		int numClasses = schema.labels.length;
+		confusionMatrix = new ConfusionMatrixAccumulator(numClasses);
+		roc = new ROCAccumulator(numClasses, rocBins);
+		if(measureDiversity && model instanceof EnsembleModel)
+			diversity = new DiversityAccumulator(((EnsembleModel)model).getBaseClassifierModels().length);
+		else
+			diversity = null;
+	}
+
+	/**
+	 * Scores every instance of the data set, a chunk at a time, and adds
+	 * the predictions to the accumulators.
+	 *
+	 * @param data Labeled instances to evaluate the model with.
+	 * @throws Exception
+	 */
+	public void evaluate(DataSet data) throws Exception
+	{
+		int numRecords = data.records.size();
+		for(int from = 0; from < numRecords; from += chunkSize)
+		{
+			int to = Math.min(from + chunkSize, numRecords);
+			add(new ArrayList<double[]>(data.records.subList(from, to)));
+		}
+	}
+
+	/**
+	 * Scores a chunk of instances and adds the predictions to the
+	 * accumulators.  The label of each instance is the first most probable
+	 * class of its predicted distribution, so every instance is scored
+	 * once.
+	 *
+	 * @param chunk Labeled instances of the schema of this evaluator.
+	 * @throws Exception If the model fails or a label is not one of the
+	 * 	classes, in which case nothing of the chunk is added.
+	 */
+	public void add(ArrayList<double[]> chunk) throws Exception
+	{
+		//check every label first, so that the probability of the true class
+		//can be looked up and a bad chunk leaves the totals as they were
+		int classIndex = schema.numAttributes;
+		int[] labels = new int[chunk.size()];
+		for(int i = 0; i < labels.length; i++)
+			labels[i] = confusionMatrix.checkLabel(chunk.get(i)[classIndex], "true");
+
+		double[][] distributions;
+		if(model instanceof BatchModel)
+			distributions = ((BatchModel)model).getTargetDistributions(chunk);
+		else
+		{
+			distributions = new double[chunk.size()][];
+			for(int i = 0; i < distributions.length; i++)
+				distributions[i] = model.getTargetDistribution(chunk.get(i));
+		}
+		HemlockMetrics.rowsScored(chunk.size());
+
+		for(int i = 0; i < distributions.length; i++)
+		{
+			double[] distribution = distributions[i];
+			int predicted = 0;
+			for(int k = 1; k < distribution.length; k++)
+			{
+				if(distribution[k] > distribution[predicted])
+					predicted = k;
+			}
+			int trueLabel = labels[i];
+			confusionMatrix.add(trueLabel, predicted);
+			roc.add(trueLabel, distribution);
+			double pTrue = (trueLabel < distribution.length) ? distribution[trueLabel] : 0;
+			totalLogLoss -= Math.log(Math.max(pTrue, ClassifiedDataSet.LOG_LOSS_EPSILON));
+			for(int k = 0; k < distribution.length; k++)
+			{
+				double diff = distribution[k] - ((k == trueLabel) ? 1 : 0);
+				totalBrier += diff*diff;
+			}
+		}
+		numInstances += chunk.size();
+
+		if(diversity != null)
+		{
+			Model[] baseModels = ((EnsembleModel)model).getBaseClassifierModels();
+			DataSet labeled = new DataSet(schema, null, chunk);
+			ClassifiedDataSet[] cds = new ClassifiedDataSet[baseModels.length];
+			for(int i = 0; i < baseModels.length; i++)
+				cds[i] = new ClassifiedDataSet(labeled, baseModels[i]);
+			diversity.add(cds);
+		}
+	}
+
+	/**
+	 * @return The number of instances added so far.
+	 */
+	public long getNumInstances()
+	{
+		return numInstances;
+	}
+
+	/**
+	 * @return The mean negative log of the probability predicted for the
+	 * 	true class, as {@link ClassifiedDataSet#logLoss}.
+	 */
+	public double getLogLoss()
+	{
+		return (numInstances == 0) ? 0 : totalLogLoss / numInstances;
+	}
+
+	/**
+	 * @return The mean squared difference between the predicted
+	 * 	distributions and the true class indicator vectors, as
+	 * 	{@link ClassifiedDataSet#brierScore}.
+	 */
+	public double getBrierScore()
+	{
+		return (numInstances == 0) ? 0 : totalBrier / numInstances;
+	}
+
+	/**
+	 * Adds the accumulated counts of another evaluator to this one.
+	 *
+	 * @param other An evaluator of the same kind of model and classes.
+	 * @throws Exception If the accumulators cannot be merged.
+	 */
+	public void merge(StreamingEvaluator other) throws Exception
+	{
+		confusionMatrix.merge(other.confusionMatrix);
+		roc.merge(other.roc);
+		if(diversity != null && other.diversity != null)
+			diversity.merge(other.diversity);
+		numInstances += other.numInstances;
+		totalLogLoss += other.totalLogLoss;
+		totalBrier += other.totalBrier;
+	}
+}
@@ -14,6 +14,7 @@ package gov.sandia.hemlock.experiment;
 import gov.sandia.hemlock.classification.parameters.ModelParameters;
 import gov.sandia.hemlock.data.DataSetQuery;
 import gov.sandia.hemlock.core.*;
+import gov.sandia.hemlock.evaluation.*;
 import java.util.*;
 import gov.sandia.hemlock.classification.fusion.*;
 
@@ -35,6 +36,14 @@ public class Experiment
 	public boolean computeConfusionMatrix = false;
 	public boolean computeAccuracy = false;
 	public boolean computeROCMetrics = false;
+	public boolean computeMultiClassROCMetrics = false;
+	public boolean computePrecision = false;
+	public boolean computeRecall = false;
+	public boolean computeF1 = false;
+	public boolean computeKappa = false;
+	public boolean computeMCC = false;
+	public boolean computeLogLoss = false;
+	public boolean computeBrierScore = false;
 	public boolean computeDiversity_disagreement = false;
 	public boolean computeDiversity_correlation = false;
 	public boolean computeDiversity_yuleQ = false;
@@ -43,7 +52,103 @@ public class Experiment
 	public boolean computeDiversity_generalDiversity = false;
 	public boolean computeDiversity_coincidentFailure = false;
 	public boolean computeDiversity_difficulty = false;
+	/** Record the accuracy, training time, size and prediction latency of
+		each base classifier of an ensemble */
+	public boolean computeBaseModelCost = false;
+	/** Record the time and memory spent in each phase of the experiment */
+	public boolean computePerformance = false;
 	public int rocPositiveClass;
+	/** Largest number of ROC points to report for a curve, 0 for all */
+	public int rocMaxPoints = 0;
+	/** Number of test instances scored at a time by a StreamingEvaluator,
+		0 to score the whole test set at once */
+	public int chunkSize = 0;
+	
+	/**
+	 * @return True if at least one of the diversity measures is requested.
+	 */
+	public boolean isDiversityRequested()
+	{
+		return computeDiversity_disagreement || computeDiversity_correlation ||
+			computeDiversity_yuleQ || computeDiversity_doubleFault ||
+			computeDiversity_entropy || computeDiversity_generalDiversity ||
+			computeDiversity_coincidentFailure || computeDiversity_difficulty;
+	}
+	
+	/**
+	 * @return True if at least one of the pairwise diversity measures is
+	 * 	requested.
+	 */
+	public boolean isPairwiseDiversityRequested()
+	{
+		return computeDiversity_disagreement || computeDiversity_correlation ||
+			computeDiversity_yuleQ || computeDiversity_doubleFault;
+	}
+	
+	/**
+	 * Adds the cost of each base classifier, averaged over the folds, and
+	 * the base classifiers on the accuracy versus prediction latency Pareto
+	 * front to the summary of an experiment.  Each entry is a space
+	 * separated list with one value per base classifier, except paretoFront
+	 * which lists the indices of the base classifiers on the front from
+	 * fastest to slowest.
+	 *
+	 * @param summary The summary to add to.
+	 * @param results The results of each fold.
+	 */
+	protected void addBaseModelCost(Hashtable<String,String> summary, ModelEvaluationResults[] results)
+	{
+		if(!this.computeBaseModelCost || !results[0].calculated_baseModelCost)
+			return;
+		int numModels = results[0].baseModelTypes.length;
+		double[] accuracy = new double[numModels];
+		double[] trainTime = new double[numModels];
+		double[] serializedSize = new double[numModels];
+		double[] latency = new double[numModels];
+		for(int i = 0; i < results.length; i++)
+		{
+			for(int m = 0; m < numModels; m++)
+			{
+				accuracy[m] += results[i].baseModelAccuracy[m] / results.length;
+				trainTime[m] += results[i].baseModelTrainTime[m] / results.length;
+				serializedSize[m] += results[i].baseModelSerializedSize[m] / (double)results.length;
+				latency[m] += results[i].baseModelLatency[m] / results.length;
+			}
+		}
+		StringBuilder types = new StringBuilder();
+		for(int m = 0; m < numModels; m++)
+		{
+			if(m > 0)
+				types.append(' ');
+			types.append(results[0].baseModelTypes[m]);
+		}
+		int[] front = ParetoFront.compute(accuracy, latency);
+		StringBuilder pareto = new StringBuilder();
+		for(int i = 0; i < front.length; i++)
+		{
+			if(i > 0)
+				pareto.append(' ');
+			pareto.append(front[i]);
+		}
+		summary.put("baseModelTypes", types.toString());
+		summary.put("baseModelAccuracy", join(accuracy));
+		summary.put("baseModelTrainTime", join(trainTime));
+		summary.put("baseModelSerializedSize", join(serializedSize));
+		summary.put("baseModelLatency", join(latency));
+		summary.put("paretoFront", pareto.toString());
+	}
+	
+	private static String join(double[] values)
+	{
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < values.length; i++)
+		{
+			if(i > 0)
+				sb.append(' ');
+			sb.append(Double.toString(values[i]));
+		}
+		return sb.toString();
+	}
 	
 	public void runExperiment(String outputFileName) throws Exception
 	{
@@ -66,5 +171,10 @@ public class Experiment
 			System.err.println(e.getError());
 			System.err.println("See README file for instructions on setting up that framework.");
 		}
+		finally
+		{
+			//discard anything left recording if the experiment failed
+			PerformanceRecorder.reset();
+		}
 	}
 }
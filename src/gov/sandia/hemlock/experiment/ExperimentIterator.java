@@ -0,0 +1,45 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.experiment;
+
+/**
+ * Hands out experiments one at a time, so that they can be created as they
+ * are needed instead of all being held in memory at once.
+ *
+ * @author Sean A. Gilpin
+ */
+public interface ExperimentIterator
+{
+	/**
+	 * @return True if there is another experiment.
+	 */
+	public boolean hasNext();
+
+	/**
+	 * @return The next experiment.
+	 * @throws Exception If the experiment cannot be created.
+	 */
+	public Experiment next() throws Exception;
+
+	/**
+	 * @return The total number of experiments.
+	 */
+	public long size();
+
+	/**
+	 * Releases anything held by the iterator, such as an open file.  Called
+	 * after the last experiment, or when giving up early.
+	 *
+	 * @throws Exception
+	 */
+	public void close() throws Exception;
+}
@@ -52,6 +52,25 @@ public class ExperimentReader
 	}
 	
 	
+	/**
+	 * Reads a single experiment element, such as one created by a
+	 * {@link MetaExperiment}.
+	 *
+	 * @param experimentNode The Experiment element.
+	 * @param info Information about all of the known data sets.
+	 * @param baseParams The base classifier sets that ensembles may refer
+	 * 	to, from {@link #readBaseClassifierParameters}.
+	 * @return The experiment.
+	 * @throws Exception
+	 */
+	public static Experiment readExperiment(Element experimentNode, DataSetInfo[] info, Hashtable<String, BaseClassifierSet> baseParams) throws Exception
+	{
+		dataSetInfo = info;
+		Experiment[] expArr = new Experiment[]{createExperiment(experimentNode)};
+		linkEnsemblesToBaseClassifiers(expArr, baseParams);
+		return expArr[0];
+	}
+	
 	public static void linkEnsemblesToBaseClassifiers(Experiment[] experiments, Hashtable<String, BaseClassifierSet> baseParams)
 	{
 		for(int i = 0; i < experiments.length; i++)
@@ -174,6 +193,7 @@ public class ExperimentReader
 			experiment.seed = Long.parseLong(cdSeed.getData());
 			experiment.seedSet = true;
 		} catch(Exception e){}
+		readChunkSize(experiment, eMethod);
 		//ModelParameters
 		experiment.modelParameters = createModelParameters((Element)experimentNode.getElementsByTagName("ModelParameters").item(0));
 		
@@ -195,6 +215,7 @@ public class ExperimentReader
 		experiment.name = experimentNode.getAttribute("ID").trim();
 		//Method
 		experiment.experimentType = ExperimentTypes.NoHoldOut;
+		readChunkSize(experiment, (Element)experimentNode.getElementsByTagName("Method").item(0));
 		
 		//ModelParameters
 		experiment.modelParameters = createModelParameters((Element)experimentNode.getElementsByTagName("ModelParameters").item(0));
@@ -210,6 +231,16 @@ public class ExperimentReader
 		return experiment;
 	}
 	
+	/**
+	 * Reads the optional number of test instances to score at a time.
+	 */
+	private static void readChunkSize(Experiment experiment, Element eMethod)
+	{
+		Element eChunkSize = (Element)eMethod.getElementsByTagName("ChunkSize").item(0);
+		if(eChunkSize != null)
+			experiment.chunkSize = Integer.parseInt(eChunkSize.getTextContent().trim());
+	}
+	
 	private static void readEvaluationMeasureTypes(Experiment experiment, NodeList nlMeasures)
 	{
 		for(int i = 0; i < nlMeasures.getLength(); i++)
@@ -224,8 +255,34 @@ public class ExperimentReader
 			{
 				experiment.computeROCMetrics = true;
 				experiment.rocPositiveClass = Integer.parseInt(eMetric.getAttribute("positiveClass"));
+				if(eMetric.hasAttribute("maxPoints"))
+					experiment.rocMaxPoints = Integer.parseInt(eMetric.getAttribute("maxPoints"));
+			}
+			if(strMetric.equalsIgnoreCase("MultiClassROCAnalysis"))
+			{
+				experiment.computeMultiClassROCMetrics = true;
+				if(eMetric.hasAttribute("maxPoints"))
+					experiment.rocMaxPoints = Integer.parseInt(eMetric.getAttribute("maxPoints"));
 			}
 			
+			//Read measurements derived from the confusion matrix
+			if(strMetric.equalsIgnoreCase("Precision"))
+				experiment.computePrecision = true;
+			if(strMetric.equalsIgnoreCase("Recall"))
+				experiment.computeRecall = true;
+			if(strMetric.equalsIgnoreCase("F1"))
+				experiment.computeF1 = true;
+			if(strMetric.equalsIgnoreCase("Kappa"))
+				experiment.computeKappa = true;
+			if(strMetric.equalsIgnoreCase("MCC"))
+				experiment.computeMCC = true;
+			
+			//Read measurements of the predicted distributions
+			if(strMetric.equalsIgnoreCase("LogLoss"))
+				experiment.computeLogLoss = true;
+			if(strMetric.equalsIgnoreCase("BrierScore"))
+				experiment.computeBrierScore = true;
+			
 			//Read diversity measurements
 			if(strMetric.equalsIgnoreCase("Diversity_disagreement"))
 				experiment.computeDiversity_disagreement = true;
@@ -243,6 +300,12 @@ public class ExperimentReader
 				experiment.computeDiversity_coincidentFailure = true;
 			if(strMetric.equalsIgnoreCase("Diversity_difficulty"))
 				experiment.computeDiversity_difficulty = true;	
+			
+			//Read cost measurements
+			if(strMetric.equalsIgnoreCase("BaseModelCost"))
+				experiment.computeBaseModelCost = true;
+			if(strMetric.equalsIgnoreCase("Performance"))
+				experiment.computePerformance = true;
 		}
 	}
 	
@@ -314,7 +377,11 @@ public class ExperimentReader
 					Element ePath = (Element)eDataSet.getElementsByTagName("Path").item(0);
 					CharacterData cdPath = (CharacterData)ePath.getFirstChild();
 					String strPath = cdPath.getData();
-					datasetPaths.add(DataSetInfo.fromPath(strPath, strName, FileFormatType.ModifiedC45));
+					//optional format attribute, Modified C45 by default
+					FileFormatType format = FileFormatType.ModifiedC45;
+					if(!ePath.getAttribute("format").equals(""))
+						format = FileFormatType.valueOf(ePath.getAttribute("format"));
+					datasetPaths.add(DataSetInfo.fromPath(strPath, strName, format));
 				}					
 			}
 			String[] arrDatasets = new String[datasets.size()];
@@ -12,6 +12,7 @@
 package gov.sandia.hemlock.experiment;
 
 import gov.sandia.hemlock.evaluation.ModelEvaluationResults;
+import gov.sandia.hemlock.core.*;
 import gov.sandia.hemlock.data.*;
 import javax.xml.stream.*;
 import java.io.*;
@@ -47,6 +48,11 @@ public class ExperimentWriter
 	}
 	
 	public void writeKFoldExperiment(ModelEvaluationResults[] results, Hashtable<String,String> summary) throws XMLStreamException
+	{
+		writeKFoldExperiment(results, summary, null);
+	}
+	
+	public void writeKFoldExperiment(ModelEvaluationResults[] results, Hashtable<String,String> summary, PerformanceProfile performance) throws XMLStreamException
 	{
 		writer.writeStartElement("KFoldCrossValidation");
 		for(int i = 0; i < results.length; i++)
@@ -77,11 +83,19 @@ public class ExperimentWriter
 
 		writer.writeEndElement();  //End Summary
 		
+		if(performance != null)
+			writePerformance(performance);
+		
 		writer.writeEndElement();  //End KFoldCrossValidation
 		
 	}
 	
 	public void writeNoHoldOutExperiment(Hashtable<String,String> summary) throws XMLStreamException
+	{
+		writeNoHoldOutExperiment(summary, null);
+	}
+	
+	public void writeNoHoldOutExperiment(Hashtable<String,String> summary, PerformanceProfile performance) throws XMLStreamException
 	{
 		writer.writeStartElement("NoHoldOut");
 		
@@ -104,6 +118,9 @@ public class ExperimentWriter
 		
 		writer.writeEndElement();  //End Summary
 		
+		if(performance != null)
+			writePerformance(performance);
+		
 		writer.writeEndElement();  //End KFoldCrossValidation
 		
 	}
@@ -124,6 +141,66 @@ public class ExperimentWriter
 			writer.writeCharacters(summary.get("AUC"));
 			writer.writeEndElement();
 		}
+		if(summary.containsKey("macroPrecision"))
+		{
+			writer.writeStartElement("macroPrecision");
+			writer.writeCharacters(summary.get("macroPrecision"));
+			writer.writeEndElement();
+		}
+		if(summary.containsKey("macroRecall"))
+		{
+			writer.writeStartElement("macroRecall");
+			writer.writeCharacters(summary.get("macroRecall"));
+			writer.writeEndElement();
+		}
+		if(summary.containsKey("macroF1"))
+		{
+			writer.writeStartElement("macroF1");
+			writer.writeCharacters(summary.get("macroF1"));
+			writer.writeEndElement();
+		}
+		if(summary.containsKey("microF1"))
+		{
+			writer.writeStartElement("microF1");
+			writer.writeCharacters(summary.get("microF1"));
+			writer.writeEndElement();
+		}
+		if(summary.containsKey("kappa"))
+		{
+			writer.writeStartElement("kappa");
+			writer.writeCharacters(summary.get("kappa"));
+			writer.writeEndElement();
+		}
+		if(summary.containsKey("MCC"))
+		{
+			writer.writeStartElement("MCC");
+			writer.writeCharacters(summary.get("MCC"));
+			writer.writeEndElement();
+		}
+		if(summary.containsKey("logLoss"))
+		{
+			writer.writeStartElement("logLoss");
+			writer.writeCharacters(summary.get("logLoss"));
+			writer.writeEndElement();
+		}
+		if(summary.containsKey("brierScore"))
+		{
+			writer.writeStartElement("brierScore");
+			writer.writeCharacters(summary.get("brierScore"));
+			writer.writeEndElement();
+		}
+		if(summary.containsKey("macroAUC"))
+		{
+			writer.writeStartElement("macroAUC");
+			writer.writeCharacters(summary.get("macroAUC"));
+			writer.writeEndElement();
+		}
+		if(summary.containsKey("weightedAUC"))
+		{
+			writer.writeStartElement("weightedAUC");
+			writer.writeCharacters(summary.get("weightedAUC"));
+			writer.writeEndElement();
+		}
 		if(summary.containsKey("diversity_disagreement"))
 		{
 			writer.writeStartElement("diversity_disagreement");
@@ -172,9 +249,57 @@ public class ExperimentWriter
 			writer.writeCharacters(summary.get("diversity_difficulty"));
 			writer.writeEndElement();
 		}
+		if(summary.containsKey("paretoFront"))
+		{
+			HashSet<String> front = new HashSet<String>();
+			if(summary.get("paretoFront").length() > 0)
+				front.addAll(Arrays.asList(summary.get("paretoFront").split(" ")));
+			writeBaseModelCost(summary.get("baseModelTypes").split(" "),
+				summary.get("baseModelAccuracy").split(" "),
+				summary.get("baseModelTrainTime").split(" "),
+				summary.get("baseModelSerializedSize").split(" "),
+				summary.get("baseModelLatency").split(" "), front);
+		}
 		
 	}
 	
+	/**
+	 * Writes the cost of each base classifier of an ensemble.  Training
+	 * times are in milliseconds, sizes in bytes and latencies in
+	 * microseconds per instance.
+	 *
+	 * @param front The indices of the base classifiers on the accuracy
+	 * 	versus latency Pareto front, or null if it was not computed.
+	 */
+	private void writeBaseModelCost(String[] types, String[] accuracy, String[] trainTime,
+			String[] serializedSize, String[] latency, Set<String> front) throws XMLStreamException
+	{
+		writer.writeStartElement("BaseModelCost");
+		for(int i = 0; i < types.length; i++)
+		{
+			String index = Integer.toString(i);
+			writer.writeStartElement("BaseModel");
+			writer.writeAttribute("index", index);
+			writer.writeAttribute("type", types[i]);
+			if(front != null)
+				writer.writeAttribute("paretoFront", Boolean.toString(front.contains(index)));
+			writer.writeStartElement("Accuracy");
+			writer.writeCharacters(accuracy[i]);
+			writer.writeEndElement();
+			writer.writeStartElement("TrainTime");
+			writer.writeCharacters(trainTime[i]);
+			writer.writeEndElement();
+			writer.writeStartElement("SerializedSize");
+			writer.writeCharacters(serializedSize[i]);
+			writer.writeEndElement();
+			writer.writeStartElement("Latency");
+			writer.writeCharacters(latency[i]);
+			writer.writeEndElement();
+			writer.writeEndElement();  //End BaseModel
+		}
+		writer.writeEndElement();  //End BaseModelCost
+	}
+	
 	private void writeModelEvaluationResults(ModelEvaluationResults results) throws XMLStreamException
 	{
 		if(experimentStarted)
@@ -196,6 +321,62 @@ public class ExperimentWriter
 			writer.writeStartElement("ConfusionMatrix");
 			writer.writeCharacters(results.confusionMatrix.toString());
 			writer.writeEndElement();
+			//print measures derived from the confusion matrix
+			if(results.calculated_precision)
+			{
+				writer.writeStartElement("Precision");
+				writer.writeCharacters(Arrays.toString(results.precision));
+				writer.writeEndElement();
+				writer.writeStartElement("MacroPrecision");
+				writer.writeCharacters(Double.toString(results.macroPrecision));
+				writer.writeEndElement();
+			}
+			if(results.calculated_recall)
+			{
+				writer.writeStartElement("Recall");
+				writer.writeCharacters(Arrays.toString(results.recall));
+				writer.writeEndElement();
+				writer.writeStartElement("MacroRecall");
+				writer.writeCharacters(Double.toString(results.macroRecall));
+				writer.writeEndElement();
+			}
+			if(results.calculated_f1)
+			{
+				writer.writeStartElement("F1");
+				writer.writeCharacters(Arrays.toString(results.f1));
+				writer.writeEndElement();
+				writer.writeStartElement("MacroF1");
+				writer.writeCharacters(Double.toString(results.macroF1));
+				writer.writeEndElement();
+				writer.writeStartElement("MicroF1");
+				writer.writeCharacters(Double.toString(results.microF1));
+				writer.writeEndElement();
+			}
+			if(results.calculated_kappa)
+			{
+				writer.writeStartElement("Kappa");
+				writer.writeCharacters(Double.toString(results.kappa));
+				writer.writeEndElement();
+			}
+			if(results.calculated_mcc)
+			{
+				writer.writeStartElement("MCC");
+				writer.writeCharacters(Double.toString(results.mcc));
+				writer.writeEndElement();
+			}
+			//print measures of the predicted distributions
+			if(results.calculated_logLoss)
+			{
+				writer.writeStartElement("LogLoss");
+				writer.writeCharacters(Double.toString(results.logLoss));
+				writer.writeEndElement();
+			}
+			if(results.calculated_brierScore)
+			{
+				writer.writeStartElement("BrierScore");
+				writer.writeCharacters(Double.toString(results.brierScore));
+				writer.writeEndElement();
+			}
 			//print ROC Curve
 			if(results.calculated_ROCCurve)
 			{
@@ -212,6 +393,35 @@ public class ExperimentWriter
 				writer.writeCharacters(arrString.replace(" ", ","));
 				writer.writeEndElement();
 			}
+			//print one against all ROC Curves of every class
+			if(results.calculated_multiClassROC)
+			{
+				writer.writeStartElement("MultiClassROC");
+				for(int k = 0; k < results.classAUC.length; k++)
+				{
+					writer.writeStartElement("Class");
+					writer.writeAttribute("index", Integer.toString(k));
+					writer.writeStartElement("ROCCurve");
+					writer.writeStartElement("XCoords");
+					writer.writeCharacters(Arrays.toString(results.classROCXCoordinates[k]));
+					writer.writeEndElement();
+					writer.writeStartElement("YCoords");
+					writer.writeCharacters(Arrays.toString(results.classROCYCoordinates[k]));
+					writer.writeEndElement();
+					writer.writeEndElement();
+					writer.writeStartElement("AUC");
+					writer.writeCharacters(Double.toString(results.classAUC[k]));
+					writer.writeEndElement();
+					writer.writeEndElement();  //End Class
+				}
+				writer.writeStartElement("macroAUC");
+				writer.writeCharacters(Double.toString(results.macroAUC));
+				writer.writeEndElement();
+				writer.writeStartElement("weightedAUC");
+				writer.writeCharacters(Double.toString(results.weightedAUC));
+				writer.writeEndElement();
+				writer.writeEndElement();  //End MultiClassROC
+			}
 			//print diversity measurements
 			if(results.calculated_disagreement)
 			{
@@ -261,15 +471,81 @@ public class ExperimentWriter
 				writer.writeCharacters(Double.toString(results.diversity_difficulty));
 				writer.writeEndElement();
 			}
-			
+			//print cost of each base classifier
+			if(results.calculated_baseModelCost)
+			{
+				int numModels = results.baseModelTypes.length;
+				String[] accuracy = new String[numModels];
+				String[] trainTime = new String[numModels];
+				String[] serializedSize = new String[numModels];
+				String[] latency = new String[numModels];
+				for(int i = 0; i < numModels; i++)
+				{
+					accuracy[i] = Double.toString(results.baseModelAccuracy[i]);
+					trainTime[i] = Double.toString(results.baseModelTrainTime[i]);
+					serializedSize[i] = Long.toString(results.baseModelSerializedSize[i]);
+					latency[i] = Double.toString(results.baseModelLatency[i]);
+				}
+				writeBaseModelCost(results.baseModelTypes, accuracy, trainTime, serializedSize, latency, null);
+			}
+			//print time and memory spent on this fold
+			if(results.performance != null)
+				writePerformance(results.performance);
 			
 			//End the the ModelEvaluationResults
 			writer.writeEndElement();	
 		}
 	}
 	
+	/**
+	 * Writes the time and memory spent on a part of an experiment.  Times
+	 * are in milliseconds.
+	 */
+	private void writePerformance(PerformanceProfile performance) throws XMLStreamException
+	{
+		writer.writeStartElement("Performance");
+		writePerformanceAttributes(performance.total);
+		writer.writeAttribute("peakHeapBytes", Long.toString(performance.peakHeapBytes));
+		for(PerformanceRecord phase : performance.phases.values())
+		{
+			writer.writeStartElement("Phase");
+			writer.writeAttribute("name", phase.name);
+			writer.writeAttribute("count", Integer.toString(phase.count));
+			writePerformanceAttributes(phase);
+			writer.writeEndElement();
+		}
+		for(int i = 0; i < performance.baseModels.size(); i++)
+		{
+			writer.writeStartElement("BaseModel");
+			writer.writeAttribute("index", Integer.toString(i));
+			writePerformanceAttributes(performance.baseModels.get(i));
+			writer.writeEndElement();
+		}
+		writer.writeEndElement();  //End Performance
+	}
+	
+	private void writePerformanceAttributes(PerformanceRecord record) throws XMLStreamException
+	{
+		writer.writeAttribute("wallTime", Double.toString(record.wallTime / 1e6));
+		writer.writeAttribute("cpuTime", Double.toString(record.cpuTime / 1e6));
+		writer.writeAttribute("allocatedBytes", Long.toString(record.allocatedBytes));
+	}
+	
 	public void stopExperiment() throws XMLStreamException
 	{
+		stopExperiment(null);
+	}
+	
+	/**
+	 * Ends the experiment, first writing the time and memory spent on the
+	 * whole experiment when it has been recorded.
+	 *
+	 * @param performance The cost of the experiment, or null.
+	 */
+	public void stopExperiment(PerformanceProfile performance) throws XMLStreamException
+	{
+		if(performance != null)
+			writePerformance(performance);
 		writer.writeEndElement();
 		writer.writeEndDocument();
 		writer.close();
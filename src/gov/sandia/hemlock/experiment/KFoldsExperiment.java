@@ -15,6 +15,7 @@ import gov.sandia.hemlock.classification.parameters.ModelParameters;
 import gov.sandia.hemlock.data.*;
 import gov.sandia.hemlock.evaluation.*;
 import gov.sandia.hemlock.classification.fusion.*;
+import gov.sandia.hemlock.core.*;
 
 import java.util.*;
 
@@ -39,9 +40,13 @@ public class KFoldsExperiment extends Experiment
 	{
 		ExperimentWriter writer = new ExperimentWriter(name, outputFileName);
 		writer.startExperiment();
+		if(computePerformance)
+			PerformanceRecorder.start("experiment");
 		DataSet[] dataSet = dataQuery.getDataSets(dataSetInfo);
 		for(int i = 0; i < dataSet.length; i++)
 		{
+			if(computePerformance)
+				PerformanceRecorder.start("dataSet");
 			StratifiedCrossValidation crossVal;
 
 			if(seedSet)
@@ -51,9 +56,10 @@ public class KFoldsExperiment extends Experiment
 			
 			ModelEvaluationResults[] results = crossVal.runTest(this);
 			Hashtable<String,String> summary = createSummary(results);
-			writer.writeKFoldExperiment(results, summary);
+			PerformanceProfile performance = computePerformance ? PerformanceRecorder.stop() : null;
+			writer.writeKFoldExperiment(results, summary, performance);
 		}
-		writer.stopExperiment();
+		writer.stopExperiment(computePerformance ? PerformanceRecorder.stop() : null);
 	}
 	
 	protected Hashtable<String,String> createSummary(ModelEvaluationResults[] results)
@@ -86,6 +92,96 @@ public class KFoldsExperiment extends Experiment
 			averageAUC = averageAUC / results.length;
 			summary.put("AUC", Double.toString(averageAUC));
 		}
+		//measures derived from the confusion matrix
+		if(this.computePrecision)
+		{
+			double averagePrecision = 0;
+			for(int i =0 ; i < results.length; i++)
+			{
+				averagePrecision += results[i].macroPrecision;
+			}
+			averagePrecision /= results.length;
+			summary.put("macroPrecision", Double.toString(averagePrecision));
+		}
+		if(this.computeRecall)
+		{
+			double averageRecall = 0;
+			for(int i =0 ; i < results.length; i++)
+			{
+				averageRecall += results[i].macroRecall;
+			}
+			averageRecall /= results.length;
+			summary.put("macroRecall", Double.toString(averageRecall));
+		}
+		if(this.computeF1)
+		{
+			double averageMacroF1 = 0;
+			double averageMicroF1 = 0;
+			for(int i =0 ; i < results.length; i++)
+			{
+				averageMacroF1 += results[i].macroF1;
+				averageMicroF1 += results[i].microF1;
+			}
+			averageMacroF1 /= results.length;
+			averageMicroF1 /= results.length;
+			summary.put("macroF1", Double.toString(averageMacroF1));
+			summary.put("microF1", Double.toString(averageMicroF1));
+		}
+		if(this.computeKappa)
+		{
+			double averageKappa = 0;
+			for(int i =0 ; i < results.length; i++)
+			{
+				averageKappa += results[i].kappa;
+			}
+			averageKappa /= results.length;
+			summary.put("kappa", Double.toString(averageKappa));
+		}
+		if(this.computeMCC)
+		{
+			double averageMCC = 0;
+			for(int i =0 ; i < results.length; i++)
+			{
+				averageMCC += results[i].mcc;
+			}
+			averageMCC /= results.length;
+			summary.put("MCC", Double.toString(averageMCC));
+		}
+		//measures of the predicted distributions
+		if(this.computeLogLoss)
+		{
+			double averageLogLoss = 0;
+			for(int i =0 ; i < results.length; i++)
+			{
+				averageLogLoss += results[i].logLoss;
+			}
+			averageLogLoss /= results.length;
+			summary.put("logLoss", Double.toString(averageLogLoss));
+		}
+		if(this.computeBrierScore)
+		{
+			double averageBrierScore = 0;
+			for(int i =0 ; i < results.length; i++)
+			{
+				averageBrierScore += results[i].brierScore;
+			}
+			averageBrierScore /= results.length;
+			summary.put("brierScore", Double.toString(averageBrierScore));
+		}
+		if(this.computeMultiClassROCMetrics)
+		{
+			double averageMacroAUC = 0;
+			double averageWeightedAUC = 0;
+			for(int i =0 ; i < results.length; i++)
+			{
+				averageMacroAUC += results[i].macroAUC;
+				averageWeightedAUC += results[i].weightedAUC;
+			}
+			averageMacroAUC = averageMacroAUC / results.length;
+			averageWeightedAUC = averageWeightedAUC / results.length;
+			summary.put("macroAUC", Double.toString(averageMacroAUC));
+			summary.put("weightedAUC", Double.toString(averageWeightedAUC));
+		}
 		//diversity
 		if(this.computeDiversity_disagreement)
 		{
@@ -167,7 +263,8 @@ public class KFoldsExperiment extends Experiment
 			averageDiv /= results.length; 
 			summary.put("diversity_difficulty", Double.toString(averageDiv));
 		}
-		
+		//cost of the base classifiers
+		addBaseModelCost(summary, results);
 		
 		return summary;
 	}
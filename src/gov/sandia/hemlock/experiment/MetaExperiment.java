@@ -14,30 +14,233 @@ package gov.sandia.hemlock.experiment;
 import java.io.*;
 import java.util.*;
 
+import gov.sandia.hemlock.classification.fusion.BaseClassifierSet;
+import gov.sandia.hemlock.data.DataSetInfo;
+
 import javax.xml.parsers.*;
+import javax.xml.stream.*;
 import javax.xml.transform.*;
 import javax.xml.transform.stream.*;
 import javax.xml.transform.dom.*;
 
 import org.w3c.dom.*;
 
+/**
+ * Expands a meta experiment, an experiment whose model parameters are given
+ * as lists or ranges of values, into one experiment for each combination of
+ * values.  When the meta experiment file also has a Search element, the
+ * combinations are instead searched in process by a {@link ParameterSearch}
+ * and only the best are written.
+ * <p>
+ * The experiments are created one at a time from the meta experiment, which
+ * is the only document held in memory, so the memory used does not grow with
+ * the number of combinations.  They are either streamed to an experiment
+ * file, or handed to {@link gov.sandia.hemlock.main.RunExperiment} directly
+ * by {@link #iterator}.
+ *
+ * @author Sean A. Gilpin
+ */
 public class MetaExperiment
 {
-	private String[] parameterNames;
-	private String[][] parameterValues;
-	private int numValues[];
-	private int combinations = 1;
+	String[] parameterNames;
+	String[][] parameterValues;
+	int numValues[];
+	private long combinations = 1;
 	
-	private Document doc;
+	Document doc;
+	Element root;
+	/** The experiment that is copied for every combination, without its
+		parameters */
+	Element experiment;
 	
 	public void createExperiments(String metaExperimentFile, String outputFile) throws Exception
+	{
+		readMetaExperiment(metaExperimentFile);
+		
+		NodeList nlSearch = root.getElementsByTagName("Search");
+		if(nlSearch.getLength() > 0)
+		{
+			Element eSearch = (Element)nlSearch.item(0);
+			root.removeChild(eSearch);
+			new ParameterSearch(this, eSearch).run(outputFile);
+			return;
+		}
+		
+		//replicate experiment and insert parameters
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile));
+		try
+		{
+			XMLStreamWriter writer = startAudit(out);
+			for(long i = 0; i < combinations; i++)
+			{
+				writeExperiment(writer, createExperiment(indexesOf(i), i));
+			}
+			endAudit(writer);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+	
+	/**
+	 * Reads a meta experiment file and returns its experiments one at a
+	 * time, creating each only when it is asked for.
+	 *
+	 * @param metaExperimentFile Path of the meta experiment file.
+	 * @param info Information about all of the known data sets.
+	 * @param auditFile If not null, every experiment handed out is also
+	 * 	written to this experiment file.
+	 * @return The experiments.
+	 * @throws Exception
+	 */
+	public ExperimentIterator iterator(String metaExperimentFile, final DataSetInfo[] info, String auditFile) throws Exception
+	{
+		readMetaExperiment(metaExperimentFile);
+		final Hashtable<String, BaseClassifierSet> baseParams = ExperimentReader.readBaseClassifierParameters(root);
+		final OutputStream out = (auditFile == null) ? null : new BufferedOutputStream(new FileOutputStream(auditFile));
+		final XMLStreamWriter writer;
+		try
+		{
+			writer = (out == null) ? null : startAudit(out);
+		}
+		catch(Exception e)
+		{
+			out.close();
+			throw e;
+		}
+		return new ExperimentIterator()
+		{
+			private long next = 0;
+			private boolean closed = false;
+			
+			public boolean hasNext()
+			{
+				return next < combinations;
+			}
+			
+			public Experiment next() throws Exception
+			{
+				Element newExperiment = createExperiment(indexesOf(next), next);
+				next++;
+				if(writer != null)
+					writeExperiment(writer, newExperiment);
+				return ExperimentReader.readExperiment(newExperiment, info, baseParams);
+			}
+			
+			public long size()
+			{
+				return combinations;
+			}
+			
+			public void close() throws Exception
+			{
+				if(out == null || closed)
+					return;
+				closed = true;
+				try
+				{
+					endAudit(writer);
+				}
+				finally
+				{
+					out.close();
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Starts writing an experiment file, beginning with everything in the
+	 * meta experiment file besides the experiment being expanded, such as
+	 * the base classifier sets.
+	 */
+	private XMLStreamWriter startAudit(OutputStream out) throws Exception
+	{
+		XMLOutputFactory of = XMLOutputFactory.newInstance();
+		XMLStreamWriter writer = of.createXMLStreamWriter(out, "UTF-8");
+		writer.writeStartDocument("UTF-8", "1.0");
+		writer.writeCharacters("\n");
+		writer.writeStartElement(root.getTagName());
+		writeAttributes(writer, root);
+		NodeList children = root.getChildNodes();
+		for(int i = 0; i < children.getLength(); i++)
+		{
+			if(children.item(i) != experiment)
+				writeNode(writer, children.item(i));
+		}
+		return writer;
+	}
+	
+	private void endAudit(XMLStreamWriter writer) throws Exception
+	{
+		writer.writeCharacters("\n");
+		writer.writeEndElement();
+		writer.writeEndDocument();
+		writer.close();
+	}
+	
+	private static void writeExperiment(XMLStreamWriter writer, Element newExperiment) throws XMLStreamException
+	{
+		writer.writeCharacters("\n\t");
+		writeNode(writer, newExperiment);
+	}
+	
+	/**
+	 * Writes a DOM node and everything below it.
+	 */
+	private static void writeNode(XMLStreamWriter writer, Node node) throws XMLStreamException
+	{
+		switch(node.getNodeType())
+		{
+		case Node.ELEMENT_NODE:
+			Element element = (Element)node;
+			writer.writeStartElement(element.getTagName());
+			writeAttributes(writer, element);
+			NodeList children = element.getChildNodes();
+			for(int i = 0; i < children.getLength(); i++)
+				writeNode(writer, children.item(i));
+			writer.writeEndElement();
+			break;
+		case Node.TEXT_NODE:
+			writer.writeCharacters(node.getNodeValue());
+			break;
+		case Node.CDATA_SECTION_NODE:
+			writer.writeCData(node.getNodeValue());
+			break;
+		case Node.COMMENT_NODE:
+			writer.writeComment(node.getNodeValue());
+			break;
+		default:
+			break;
+		}
+	}
+	
+	private static void writeAttributes(XMLStreamWriter writer, Element element) throws XMLStreamException
+	{
+		NamedNodeMap attributes = element.getAttributes();
+		for(int i = 0; i < attributes.getLength(); i++)
+		{
+			Node attribute = attributes.item(i);
+			writer.writeAttribute(attribute.getNodeName(), attribute.getNodeValue());
+		}
+	}
+	
+	/**
+	 * Reads a meta experiment file and the values of each of its
+	 * parameters.
+	 *
+	 * @param metaExperimentFile Path of the meta experiment file.
+	 * @throws Exception
+	 */
+	void readMetaExperiment(String metaExperimentFile) throws Exception
 	{
 		//read file
 		File file = new File(metaExperimentFile);
 		DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
 		doc = builder.parse(file);
-		Element root = (Element)doc.getElementsByTagName("Experiments").item(0);
-		Element experiment = (Element)root.getElementsByTagName("Experiment").item(0);
+		root = (Element)doc.getElementsByTagName("Experiments").item(0);
+		experiment = (Element)root.getElementsByTagName("Experiment").item(0);
 		Element modelParameters = 
 			(Element)experiment.getElementsByTagName("ModelParameters").item(0);
 		NodeList parameters = modelParameters.getElementsByTagName("Parameter");
@@ -46,6 +249,7 @@ public class MetaExperiment
 		parameterValues = new String[parameters.getLength()][];
 		parameterNames = new String[parameters.getLength()];
 		numValues = new int[parameters.getLength()];
+		combinations = 1;
 		for(int i = parameterValues.length-1; i >= 0 ; i--)
 		{
 			parameterNames[i] = getParamName((Element)parameters.item(i));
@@ -54,21 +258,9 @@ public class MetaExperiment
 			combinations *= numValues[i];
 			modelParameters.removeChild(parameters.item(i));
 		}
-		
-		
-		//replicate experiment and insert parameters
-		for(int i = 0; i < combinations; i++)
-		{
-			Element newExperiment = (Element)experiment.cloneNode(true);
-			insertParameters(newExperiment, i);
-			root.appendChild(newExperiment);
-		}
-		root.removeChild(experiment);
-		
-		writeToFile(outputFile);
 	}
 	
-	private void writeToFile(String fileName) throws Exception
+	void writeToFile(String fileName) throws Exception
 	{
 		File outputFile = new File(fileName);
 		StreamResult result = new StreamResult(outputFile);
@@ -79,32 +271,51 @@ public class MetaExperiment
 		transformer.transform(source, result);
 	}
 	
-	
-	private void insertParameters(Element experiment, int repNum)
-	{	
-		//rename experiment
-		String expName = experiment.getAttribute("ID");
-		experiment.setAttribute("ID", expName + "_" + repNum);
-		
-		//calculate indexes
-		int soFar = 1;
+	/**
+	 * Finds the index of the value of each parameter in a combination.
+	 *
+	 * @param repNum The number of the combination.
+	 * @return The index of each parameter's value.
+	 */
+	int[] indexesOf(long repNum)
+	{
+		long soFar = 1;
 		int[] indexes = new int[numValues.length];
 		for(int i = 0; i < numValues.length; i++)
 		{
-			indexes[i] = (repNum % (numValues[i]*soFar))/soFar;
+			indexes[i] = (int)((repNum % (numValues[i]*soFar))/soFar);
 			repNum = repNum - indexes[i]*soFar;
 			soFar = soFar * numValues[i];
 		}
+		return indexes;
+	}
+	
+	/**
+	 * Copies the experiment and inserts one combination of parameter
+	 * values.
+	 *
+	 * @param indexes The index of the value of each parameter.
+	 * @param repNum Number appended to the ID of the experiment.
+	 * @return The new experiment element, not yet added to the document.
+	 */
+	Element createExperiment(int[] indexes, long repNum)
+	{	
+		Element newExperiment = (Element)experiment.cloneNode(true);
+		
+		//rename experiment
+		String expName = newExperiment.getAttribute("ID");
+		newExperiment.setAttribute("ID", expName + "_" + repNum);
 		
 		//create parameters for set of indexes
 		Element[] params = createSetOfParameters(indexes);
 			
 		//insert parameters
 		Element modelParameters = 
-			(Element)experiment.getElementsByTagName("ModelParameters").item(0);
+			(Element)newExperiment.getElementsByTagName("ModelParameters").item(0);
 		for(int i = 0; i < params.length; i++)
 			modelParameters.appendChild(params[i]);
 		
+		return newExperiment;
 	}
 	
 	private Element[] createSetOfParameters(int[] indexes)
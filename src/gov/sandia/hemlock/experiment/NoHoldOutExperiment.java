@@ -14,6 +14,7 @@ package gov.sandia.hemlock.experiment;
 import gov.sandia.hemlock.classification.parameters.ModelParameters;
 import gov.sandia.hemlock.data.*;
 import gov.sandia.hemlock.evaluation.*;
+import gov.sandia.hemlock.core.*;
 
 import java.util.*;
 
@@ -35,15 +36,20 @@ public class NoHoldOutExperiment extends Experiment
 	{
 		ExperimentWriter writer = new ExperimentWriter(name, outputFileName);
 		writer.startExperiment();
+		if(computePerformance)
+			PerformanceRecorder.start("experiment");
 		DataSet[] dataSet = dataQuery.getDataSets(dataSetInfo);
 		for(int i = 0; i < dataSet.length; i++)
 		{
+			if(computePerformance)
+				PerformanceRecorder.start("dataSet");
 			NoHoldOut nho= new NoHoldOut(dataSet[i]);
 			ModelEvaluationResults results = nho.runTest(this);
 			Hashtable<String,String> summary = createSummary(results);
-			writer.writeNoHoldOutExperiment(summary);
+			PerformanceProfile performance = computePerformance ? PerformanceRecorder.stop() : null;
+			writer.writeNoHoldOutExperiment(summary, performance);
 		}
-		writer.stopExperiment();
+		writer.stopExperiment(computePerformance ? PerformanceRecorder.stop() : null);
 	}
 	
 	protected Hashtable<String,String> createSummary(ModelEvaluationResults results)
@@ -60,6 +66,28 @@ public class NoHoldOutExperiment extends Experiment
 		//aUC
 		if(this.computeROCMetrics)
 			summary.put("AUC", Double.toString(results.auc));
+		if(this.computePrecision)
+			summary.put("macroPrecision", Double.toString(results.macroPrecision));
+		if(this.computeRecall)
+			summary.put("macroRecall", Double.toString(results.macroRecall));
+		if(this.computeF1)
+		{
+			summary.put("macroF1", Double.toString(results.macroF1));
+			summary.put("microF1", Double.toString(results.microF1));
+		}
+		if(this.computeKappa)
+			summary.put("kappa", Double.toString(results.kappa));
+		if(this.computeMCC)
+			summary.put("MCC", Double.toString(results.mcc));
+		if(this.computeLogLoss)
+			summary.put("logLoss", Double.toString(results.logLoss));
+		if(this.computeBrierScore)
+			summary.put("brierScore", Double.toString(results.brierScore));
+		if(this.computeMultiClassROCMetrics)
+		{
+			summary.put("macroAUC", Double.toString(results.macroAUC));
+			summary.put("weightedAUC", Double.toString(results.weightedAUC));
+		}
 		
 		//Diversity
 		if(this.computeDiversity_disagreement)
@@ -78,6 +106,8 @@ public class NoHoldOutExperiment extends Experiment
 			summary.put("diversity_coincidentFailure", Double.toString(results.diversity_coincidentFailure));
 		if(this.computeDiversity_difficulty)
 			summary.put("diversity_difficulty", Double.toString(results.diversity_difficulty));
+		//cost of the base classifiers
+		addBaseModelCost(summary, new ModelEvaluationResults[]{results});
 
 		return summary;
 	}
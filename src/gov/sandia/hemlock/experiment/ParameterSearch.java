@@ -0,0 +1,597 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.experiment;
+
+import gov.sandia.hemlock.classification.fusion.BaseClassifierSet;
+import gov.sandia.hemlock.core.WorkerThread;
+import gov.sandia.hemlock.data.*;
+import gov.sandia.hemlock.evaluation.*;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.xml.stream.*;
+import org.w3c.dom.*;
+
+/**
+ * Searches the parameter combinations of a {@link MetaExperiment} in process
+ * for the most accurate, instead of writing every combination out as an
+ * experiment to be run.  Combinations are scored by stratified k-fold cross
+ * validation accuracy, averaged over the data sets of the experiment, and
+ * several combinations are scored at once.  The search is set up by a
+ * Search element in the meta experiment file, for example
+ * <pre>
+ * &lt;Search strategy="SuccessiveHalving" samples="27" eta="3"
+ *	minFraction="0.1" threads="4" seed="1" keep="1"/&gt;
+ * </pre>
+ * The strategies are:
+ * <ul>
+ * <li>Grid: every combination on all of the data.</li>
+ * <li>Random: samples combinations chosen at random on all of the data.</li>
+ * <li>SuccessiveHalving: samples random combinations are scored on a
+ *	stratified subsample of minFraction of each data set; the best 1/eta
+ *	are kept and scored again on eta times as much data, until the
+ *	survivors are scored on all of the data.</li>
+ * <li>Hyperband: several rounds of successive halving, from many
+ *	combinations on little data to a few combinations on all of the
+ *	data.</li>
+ * </ul>
+ * Unless earlyStopping is false, a combination stops being scored when,
+ * over the folds scored so far, it is clearly less accurate than the leading
+ * combination on the same data: its mean difference in accuracy on the folds
+ * both have scored, plus the larger of two standard errors and the
+ * tolerance, is below zero.  The leader is updated after every fold, so
+ * combinations scored at the same time are compared with each other before
+ * any of them has been scored on every fold.
+ * <p>
+ * The keep best combinations are written as an experiment file, ready to be
+ * run with all of their metrics, and every evaluation is written to a
+ * report next to it, with ".search.xml" appended to its name.
+ * <p>
+ * Each fold is scored on one of the search's {@link WorkerThread}s, which
+ * records its phases with
+ * {@link gov.sandia.hemlock.core.PerformanceRecorder} on its own, so
+ * nothing is added to the part that started the search.  Models trained
+ * there, such as a Hemlock RandomForest, do their work on that thread
+ * instead of their own thread pools, so their cost is counted in full.
+ *
+ * @author Sean A. Gilpin
+ */
+public class ParameterSearch
+{
+	public enum Strategy
+	{
+		Grid, Random, SuccessiveHalving, Hyperband;
+	}
+
+	/** A combination of parameter values */
+	private static class Candidate
+	{
+		int number;
+		int[] indexes;
+		Element element;
+		Experiment experiment;
+	}
+
+	/** The result of scoring a combination on some of the data */
+	private static class Evaluation
+	{
+		Candidate candidate;
+		double budget;
+		double[] foldAccuracies;
+		int foldsRun;
+		boolean stopped;
+
+		double getAccuracy()
+		{
+			double sum = 0;
+			for(int i = 0; i < foldsRun; i++)
+				sum += foldAccuracies[i];
+			return (foldsRun == 0) ? 0 : sum / foldsRun;
+		}
+	}
+
+	/** The folds scored so far by the leading combination on a subsample,
+		shared between the threads scoring the other combinations */
+	private static class Best
+	{
+		private double[] foldAccuracies;
+
+		/**
+		 * Makes a combination the leader if it has scored at least as many
+		 * folds as the leader and is more accurate on the folds the leader
+		 * has scored, so that the leader is never replaced by one that can
+		 * be compared on fewer folds.  The leader itself is offered again
+		 * after each of its folds and keeps the lead.
+		 */
+		synchronized void offer(Evaluation evaluation)
+		{
+			int n = evaluation.foldsRun;
+			if(foldAccuracies != null)
+			{
+				int common = foldAccuracies.length;
+				if(n < common)
+					return;
+				double sum = 0;
+				double leaderSum = 0;
+				for(int i = 0; i < common; i++)
+				{
+					sum += evaluation.foldAccuracies[i];
+					leaderSum += foldAccuracies[i];
+				}
+				if(sum < leaderSum || (sum == leaderSum && n == common))
+					return;
+			}
+			foldAccuracies = Arrays.copyOf(evaluation.foldAccuracies, n);
+		}
+
+		synchronized double[] getFoldAccuracies()
+		{
+			return foldAccuracies;
+		}
+	}
+
+	public Strategy strategy = Strategy.Random;
+	/** Number of combinations tried by the random strategies */
+	public int samples = 20;
+	/** Fraction of the combinations kept after each round of halving */
+	public double eta = 3;
+	/** Fraction of each data set used in the first round of halving */
+	public double minFraction = 1.0/9;
+	/** Number of folds used when the experiment is not k-fold cross
+		validation */
+	public int folds = 3;
+	/** Number of combinations scored at once */
+	public int threads = Runtime.getRuntime().availableProcessors();
+	/** Seed for choosing combinations, subsamples and folds */
+	public long seed = 0;
+	/** Number of best combinations written out */
+	public int keep = 1;
+	/** Stop scoring combinations that are clearly worse than the best */
+	public boolean earlyStopping = true;
+	/** Smallest difference in accuracy treated as clearly worse */
+	public double tolerance = 0.02;
+
+	private final MetaExperiment meta;
+	private final Random generator;
+	private final HashSet<String> tried = new HashSet<String>();
+	private final ArrayList<Evaluation> evaluations = new ArrayList<Evaluation>();
+	private DataSetInfo[] info;
+	private Hashtable<String, BaseClassifierSet> baseParams;
+	private DataSet[] dataSets;
+	private int numberOfFolds;
+	private long foldSeed;
+	private ExecutorService executor;
+
+	/**
+	 * @param meta The meta experiment, already read.
+	 * @param eSearch The Search element setting up the search.
+	 */
+	public ParameterSearch(MetaExperiment meta, Element eSearch)
+	{
+		this.meta = meta;
+		if(eSearch.hasAttribute("strategy"))
+			strategy = Strategy.valueOf(eSearch.getAttribute("strategy").trim());
+		if(eSearch.hasAttribute("samples"))
+			samples = Integer.parseInt(eSearch.getAttribute("samples").trim());
+		if(eSearch.hasAttribute("eta"))
+			eta = Double.parseDouble(eSearch.getAttribute("eta").trim());
+		if(eSearch.hasAttribute("minFraction"))
+			minFraction = Double.parseDouble(eSearch.getAttribute("minFraction").trim());
+		if(eSearch.hasAttribute("folds"))
+			folds = Integer.parseInt(eSearch.getAttribute("folds").trim());
+		if(eSearch.hasAttribute("threads"))
+			threads = Integer.parseInt(eSearch.getAttribute("threads").trim());
+		if(eSearch.hasAttribute("seed"))
+			seed = Long.parseLong(eSearch.getAttribute("seed").trim());
+		if(eSearch.hasAttribute("keep"))
+			keep = Integer.parseInt(eSearch.getAttribute("keep").trim());
+		if(eSearch.hasAttribute("earlyStopping"))
+			earlyStopping = Boolean.parseBoolean(eSearch.getAttribute("earlyStopping").trim());
+		if(eSearch.hasAttribute("tolerance"))
+			tolerance = Double.parseDouble(eSearch.getAttribute("tolerance").trim());
+		generator = new Random(seed);
+	}
+
+	/**
+	 * Runs the search and writes the best combinations as an experiment
+	 * file.
+	 *
+	 * @param outputFile Path of the experiment file to write.
+	 * @throws Exception
+	 */
+	public void run(String outputFile) throws Exception
+	{
+		info = DataSetInfoEvaluator.getInfoForAllDataSets();
+		baseParams = ExperimentReader.readBaseClassifierParameters(meta.root);
+
+		executor = Executors.newFixedThreadPool(Math.max(1, threads), WorkerThread.FACTORY);
+		HemlockMetrics.registerExecutor(executor);
+		try
+		{
+			switch(strategy)
+			{
+			case Grid:
+				evaluate(createGrid(), 1);
+				break;
+			case Random:
+				evaluate(createCandidates(samples), 1);
+				break;
+			case SuccessiveHalving:
+				successiveHalving(createCandidates(samples), minFraction);
+				break;
+			case Hyperband:
+				hyperband();
+				break;
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+			HemlockMetrics.unregisterExecutor(executor);
+		}
+
+		//write the best combinations as experiments
+		ArrayList<Evaluation> ranked = getRanking();
+		for(int i = 0; i < ranked.size() && i < keep; i++)
+			meta.root.appendChild(ranked.get(i).candidate.element);
+		meta.root.removeChild(meta.experiment);
+		meta.writeToFile(outputFile);
+		writeReport(outputFile + ".search.xml", ranked);
+	}
+
+	/**
+	 * Runs successive halving, scoring the candidates on a subsample and
+	 * keeping the best 1/eta for the next round on eta times as much data.
+	 *
+	 * @param candidates The combinations to start with.
+	 * @param budget The fraction of the data used in the first round.
+	 */
+	private void successiveHalving(List<Candidate> candidates, double budget) throws Exception
+	{
+		while(true)
+		{
+			List<Evaluation> round = evaluate(candidates, budget);
+			if(budget >= 1)
+				break;
+			Collections.sort(round, new Comparator<Evaluation>()
+			{
+				public int compare(Evaluation a, Evaluation b)
+				{
+					return compareEvaluations(a, b);
+				}
+			});
+			int survivors = Math.max(1, (int)Math.floor(round.size() / eta));
+			candidates = new ArrayList<Candidate>();
+			for(int i = 0; i < survivors; i++)
+				candidates.add(round.get(i).candidate);
+			budget = budget * eta;
+			if(budget > 1 - 1e-9)
+				budget = 1;
+		}
+	}
+
+	/**
+	 * Runs Hyperband, successive halving with several trade offs between the
+	 * number of combinations and the amount of data they start with.  The
+	 * samples attribute is ignored; the number of combinations in each
+	 * round follows from eta and minFraction.
+	 */
+	private void hyperband() throws Exception
+	{
+		int sMax = (int)Math.floor(Math.log(1 / minFraction) / Math.log(eta) + 1e-9);
+		for(int s = sMax; s >= 0; s--)
+		{
+			int n = (int)Math.ceil((sMax + 1.0) / (s + 1) * Math.pow(eta, s));
+			List<Candidate> candidates = createCandidates(n);
+			if(candidates.isEmpty())
+				break;
+			successiveHalving(candidates, Math.pow(eta, -s));
+		}
+	}
+
+	/**
+	 * Scores the candidates on a fraction of each data set, several at once.
+	 *
+	 * @param candidates The combinations to score.
+	 * @param budget The fraction of each data set to use.
+	 * @return The evaluation of each candidate, in the same order.
+	 */
+	private List<Evaluation> evaluate(List<Candidate> candidates, final double budget) throws Exception
+	{
+		final StratifiedCrossValidation[] crossVals = createCrossValidations(budget);
+		final Best best = new Best();
+		ArrayList<Future<Evaluation>> futures = new ArrayList<Future<Evaluation>>();
+		for(final Candidate candidate : candidates)
+		{
+			futures.add(executor.submit(new Callable<Evaluation>()
+			{
+				public Evaluation call() throws Exception
+				{
+					return evaluate(candidate, crossVals, best, budget);
+				}
+			}));
+		}
+		ArrayList<Evaluation> round = new ArrayList<Evaluation>();
+		for(Future<Evaluation> future : futures)
+		{
+			try
+			{
+				round.add(future.get());
+			}
+			catch(ExecutionException e)
+			{
+				if(e.getCause() instanceof Exception)
+					throw (Exception)e.getCause();
+				throw e;
+			}
+		}
+		synchronized(evaluations)
+		{
+			evaluations.addAll(round);
+		}
+		return round;
+	}
+
+	/**
+	 * Scores one candidate fold by fold, stopping early when it is clearly
+	 * worse than the leading candidate on the folds both have scored.
+	 */
+	private Evaluation evaluate(Candidate candidate, StratifiedCrossValidation[] crossVals, Best best, double budget) throws Exception
+	{
+		int totalFolds = 0;
+		for(int d = 0; d < crossVals.length; d++)
+			totalFolds += crossVals[d].getNumberOfFolds();
+
+		Evaluation evaluation = new Evaluation();
+		evaluation.candidate = candidate;
+		evaluation.budget = budget;
+		evaluation.foldAccuracies = new double[totalFolds];
+		for(int d = 0; d < crossVals.length && !evaluation.stopped; d++)
+		{
+			for(int f = 0; f < crossVals[d].getNumberOfFolds() && !evaluation.stopped; f++)
+			{
+				HemlockMetrics.foldsQueued(1);
+				ModelEvaluationResults results;
+				boolean completed = false;
+				try
+				{
+					results = crossVals[d].runFold(candidate.experiment, f);
+					HemlockMetrics.foldCompleted();
+					completed = true;
+				}
+				finally
+				{
+					if(!completed)
+						HemlockMetrics.foldsCancelled(1);
+				}
+				evaluation.foldAccuracies[evaluation.foldsRun++] = results.accuracy;
+				if(earlyStopping && evaluation.foldsRun < totalFolds)
+					evaluation.stopped = isClearlyWorse(evaluation, best.getFoldAccuracies());
+				if(!evaluation.stopped)
+					best.offer(evaluation);
+			}
+		}
+		return evaluation;
+	}
+
+	/**
+	 * Compares the folds scored so far with the same folds of the leading
+	 * candidate using the paired differences in accuracy.
+	 */
+	private boolean isClearlyWorse(Evaluation evaluation, double[] bestFolds)
+	{
+		if(bestFolds == null)
+			return false;
+		int n = Math.min(evaluation.foldsRun, bestFolds.length);
+		if(n < 2)
+			return false;
+		double sum = 0;
+		double sumSquares = 0;
+		for(int i = 0; i < n; i++)
+		{
+			double difference = evaluation.foldAccuracies[i] - bestFolds[i];
+			sum += difference;
+			sumSquares += difference*difference;
+		}
+		double mean = sum / n;
+		double variance = Math.max(0, (sumSquares - n*mean*mean) / (n - 1));
+		double standardError = Math.sqrt(variance / n);
+		return mean + Math.max(2*standardError, tolerance) < 0;
+	}
+
+	/**
+	 * Creates the folds of a stratified subsample of each data set.
+	 *
+	 * @param budget The fraction of each data set to use.
+	 */
+	private StratifiedCrossValidation[] createCrossValidations(double budget) throws Exception
+	{
+		if(dataSets == null)
+		{
+			//every combination only differs in its model parameters, so the
+			//data and folds are those of the experiment being expanded
+			Experiment first = ExperimentReader.readExperiment(
+				meta.createExperiment(new int[meta.parameterNames.length], 0), info, baseParams);
+			dataSets = first.dataQuery.getDataSets(info);
+			numberOfFolds = folds;
+			foldSeed = seed;
+			if(first instanceof KFoldsExperiment)
+			{
+				KFoldsExperiment kfe = (KFoldsExperiment)first;
+				numberOfFolds = kfe.numberOfFolds;
+				if(kfe.seedSet)
+					foldSeed = kfe.seed;
+			}
+		}
+		StratifiedCrossValidation[] crossVals = new StratifiedCrossValidation[dataSets.length];
+		for(int d = 0; d < dataSets.length; d++)
+		{
+			DataSet data = (budget >= 1) ? dataSets[d] : subsample(dataSets[d], budget);
+			crossVals[d] = new StratifiedCrossValidation(numberOfFolds, data, foldSeed);
+		}
+		return crossVals;
+	}
+
+	/**
+	 * Takes the same fraction of the instances of every class, but never
+	 * fewer than one per fold when the class has that many.
+	 */
+	private DataSet subsample(DataSet data, double fraction)
+	{
+		int numClasses = data.recordSchema.labels.length;
+		int labelIndex = data.recordSchema.numAttributes;
+		ArrayList<ArrayList<double[]>> byClass = new ArrayList<ArrayList<double[]>>();
+		for(int c = 0; c < numClasses; c++)
+			byClass.add(new ArrayList<double[]>());
+		for(double[] record : data.records)
+			byClass.get((int)record[labelIndex]).add(record);
+
+		Random r = new Random(seed);
+		ArrayList<double[]> records = new ArrayList<double[]>();
+		for(ArrayList<double[]> instances : byClass)
+		{
+			Collections.shuffle(instances, r);
+			int n = (int)Math.ceil(fraction * instances.size());
+			n = Math.min(instances.size(), Math.max(n, numberOfFolds));
+			records.addAll(instances.subList(0, n));
+		}
+		return new DataSet(data.recordSchema, data.info, records);
+	}
+
+	private List<Candidate> createGrid() throws Exception
+	{
+		long combinations = 1;
+		for(int i = 0; i < meta.numValues.length; i++)
+			combinations *= meta.numValues[i];
+		if(combinations > Integer.MAX_VALUE)
+			throw new Exception("Too many combinations for a grid search, use a random strategy");
+		ArrayList<Candidate> candidates = new ArrayList<Candidate>();
+		for(int i = 0; i < combinations; i++)
+			candidates.add(createCandidate(meta.indexesOf(i)));
+		return candidates;
+	}
+
+	/**
+	 * Chooses combinations at random that have not been tried yet.
+	 *
+	 * @param n The number of combinations wanted.
+	 * @return Up to n combinations, fewer when the rest have been tried.
+	 */
+	private List<Candidate> createCandidates(int n) throws Exception
+	{
+		double combinations = 1;
+		for(int i = 0; i < meta.numValues.length; i++)
+			combinations *= meta.numValues[i];
+		ArrayList<Candidate> candidates = new ArrayList<Candidate>();
+		while(candidates.size() < n && tried.size() < combinations)
+		{
+			int[] indexes = new int[meta.numValues.length];
+			for(int i = 0; i < indexes.length; i++)
+				indexes[i] = generator.nextInt(meta.numValues[i]);
+			if(!tried.contains(Arrays.toString(indexes)))
+				candidates.add(createCandidate(indexes));
+		}
+		return candidates;
+	}
+
+	/**
+	 * Creates the experiment for one combination.  Done on the calling
+	 * thread because DOM documents may not be read from several threads.
+	 */
+	private Candidate createCandidate(int[] indexes) throws Exception
+	{
+		tried.add(Arrays.toString(indexes));
+		Candidate candidate = new Candidate();
+		candidate.number = tried.size() - 1;
+		candidate.indexes = indexes;
+		candidate.element = meta.createExperiment(indexes, candidate.number);
+		candidate.experiment = ExperimentReader.readExperiment(candidate.element, info, baseParams);
+		return candidate;
+	}
+
+	/**
+	 * Orders evaluations from most to least accurate, putting those that
+	 * were stopped early last.
+	 */
+	private static int compareEvaluations(Evaluation a, Evaluation b)
+	{
+		if(a.stopped != b.stopped)
+			return a.stopped ? 1 : -1;
+		return Double.compare(b.getAccuracy(), a.getAccuracy());
+	}
+
+	/**
+	 * @return The evaluations on all of the data that were not stopped
+	 * 	early, from most to least accurate.
+	 */
+	private ArrayList<Evaluation> getRanking()
+	{
+		ArrayList<Evaluation> ranked = new ArrayList<Evaluation>();
+		for(Evaluation evaluation : evaluations)
+		{
+			if(evaluation.budget >= 1 && !evaluation.stopped)
+				ranked.add(evaluation);
+		}
+		Collections.sort(ranked, new Comparator<Evaluation>()
+		{
+			public int compare(Evaluation a, Evaluation b)
+			{
+				return compareEvaluations(a, b);
+			}
+		});
+		return ranked;
+	}
+
+	/**
+	 * Writes every evaluation made during the search.
+	 */
+	private void writeReport(String fileName, ArrayList<Evaluation> ranked) throws Exception
+	{
+		XMLOutputFactory of = XMLOutputFactory.newInstance();
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(fileName));
+		try
+		{
+			XMLStreamWriter writer = of.createXMLStreamWriter(out, "UTF-8");
+			writer.writeStartDocument("UTF-8", "1.0");
+			writer.writeStartElement("Search");
+			writer.writeAttribute("strategy", strategy.toString());
+			writer.writeAttribute("folds", Integer.toString(numberOfFolds));
+			if(!ranked.isEmpty())
+				writer.writeAttribute("best", ranked.get(0).candidate.element.getAttribute("ID"));
+			for(Evaluation evaluation : evaluations)
+			{
+				writer.writeStartElement("Evaluation");
+				writer.writeAttribute("ID", evaluation.candidate.element.getAttribute("ID"));
+				writer.writeAttribute("fraction", Double.toString(evaluation.budget));
+				writer.writeAttribute("foldsRun", Integer.toString(evaluation.foldsRun));
+				writer.writeAttribute("stopped", Boolean.toString(evaluation.stopped));
+				writer.writeAttribute("accuracy", Double.toString(evaluation.getAccuracy()));
+				for(int i = 0; i < meta.parameterNames.length; i++)
+				{
+					writer.writeStartElement("Parameter");
+					writer.writeAttribute("name", meta.parameterNames[i]);
+					writer.writeCharacters(meta.parameterValues[i][evaluation.candidate.indexes[i]]);
+					writer.writeEndElement();
+				}
+				writer.writeEndElement();
+			}
+			writer.writeEndElement();
+			writer.writeEndDocument();
+			writer.close();
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
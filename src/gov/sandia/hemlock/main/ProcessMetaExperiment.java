@@ -23,7 +23,10 @@ public class ProcessMetaExperiment
 
 	/**
 	 * Process a meta experiment file as input and creates experiments
-	 * in an experiment file as output.
+	 * in an experiment file as output.  When the meta experiment file has
+	 * a Search element, the parameter combinations are searched in process
+	 * and only the best are written; see
+	 * {@link gov.sandia.hemlock.experiment.ParameterSearch}.
 	 *
 	 * @param args Command line arguments.  First entry will be path
 	 * 	of meta experiment file and second entry the path of the
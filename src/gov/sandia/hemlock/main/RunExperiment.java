@@ -13,6 +13,7 @@ package gov.sandia.hemlock.main;
 import gov.sandia.hemlock.data.DataSetInfo;
 import gov.sandia.hemlock.data.DataSetInfoEvaluator;
 import gov.sandia.hemlock.experiment.*;
+import gov.sandia.hemlock.monitoring.*;
 import java.io.*;
 
 /**
@@ -29,29 +30,76 @@ public class RunExperiment
 	 *
 	 * @param args Command line arguments.  First entry is the path to
 	 * 	an experiment file, and the second entry is the path and
-	 *	prefix for writing the results to.
+	 *	prefix for writing the results to.  Alternatively the first entry
+	 *	is -meta, followed by the path to a meta experiment file, the
+	 *	path and prefix for the results, and optionally the path of an
+	 *	experiment file to record each experiment in.  The experiments of
+	 *	a meta experiment are created one at a time as they are run.
+	 *	Progress is published as a JMX MBean, and also served in
+	 *	Prometheus format on localhost when the hemlock.metrics.port
+	 *	system property is set.
 	 * @throws Exception
 	 */
 	public static void main(String[] args) throws Exception
 	{	
+		boolean isMeta = args[0].trim().equals("-meta");
+		int first = isMeta ? 1 : 0;
+		
 		//input experiment file name
-		String inputFileName = args[0].trim();
+		String inputFileName = args[first].trim();
 		if(!isInputValid(inputFileName))
 			System.err.println("Cannot open file " + inputFileName);
 		
 		//output path and file name prefix
-		String outputFileName = args[1].trim();
+		String outputFileName = args[first + 1].trim();
 		if(!isOutputValid(outputFileName))
 			System.err.println("Cannot write to the specified "
 				+ "location.  Make sure directory exists");
 		
-		DataSetInfo[] info = DataSetInfoEvaluator.getInfoForAllDataSets();
-		Experiment[] experiments = ExperimentReader.readExperimentFile(inputFileName,info);
+		//file to record the experiments of a meta experiment in
+		String auditFileName = null;
+		if(isMeta && args.length > first + 2)
+			auditFileName = args[first + 2].trim();
 		
-		for(int i = 0; i < experiments.length; i++)
+		HemlockMonitor.register();
+		PrometheusEndpoint endpoint = PrometheusEndpoint.startFromSystemProperty();
+		try
+		{
+			DataSetInfo[] info = DataSetInfoEvaluator.getInfoForAllDataSets();
+			if(isMeta)
+			{
+				ExperimentIterator experiments = new MetaExperiment().iterator(inputFileName, info, auditFileName);
+				try
+				{
+					HemlockMetrics.experimentsQueued((int)Math.min(experiments.size(), Integer.MAX_VALUE));
+					while(experiments.hasNext())
+					{
+						experiments.next().runExperiment(outputFileName);
+						HemlockMetrics.experimentCompleted();
+					}
+				}
+				finally
+				{
+					experiments.close();
+				}
+			}
+			else
+			{
+				Experiment[] experiments = ExperimentReader.readExperimentFile(inputFileName,info);
+				HemlockMetrics.experimentsQueued(experiments.length);
+				
+				for(int i = 0; i < experiments.length; i++)
+				{
+					experiments[i].runExperiment(outputFileName);
+					experiments[i] = null; //Let experiment be garbage collected
+					HemlockMetrics.experimentCompleted();
+				}
+			}
+		}
+		finally
 		{
-			experiments[i].runExperiment(outputFileName);
-			experiments[i] = null; //Let experiment be garbage collected
+			if(endpoint != null)
+				endpoint.stop();
 		}
 		
 	}
@@ -0,0 +1,476 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.main;
+
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelSerialization;
+import gov.sandia.hemlock.classification.StoragePrecision;
+import gov.sandia.hemlock.core.WorkerThread;
+import gov.sandia.hemlock.data.DataImporter;
+import gov.sandia.hemlock.data.DataSet;
+import gov.sandia.hemlock.data.RecordSchema;
+import gov.sandia.hemlock.evaluation.PrecisionDrift;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
+import gov.sandia.hemlock.serving.DeployedModel;
+import gov.sandia.hemlock.serving.ScoringProtocol;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Command line tool that scores a file of instances with a serialized
+ * model and writes the predicted label and distribution of each instance,
+ * in the order of the input.  The input is read a batch of instances at a
+ * time, each batch is parsed, scored and formatted by one of a pool of
+ * threads, and the finished batches are written in order.  Only a bounded
+ * window of batches is in flight, so memory does not grow with the size of
+ * the file.
+ * <p>
+ * The input is a Modified C4.5 data file, or a binary data file when its
+ * name ends in .bin, with the attributes described by a Modified C4.5
+ * names file.  The class label of a Modified C4.5 instance may be left out
+ * and is ignored if given.  The output is text, one line per instance
+ * holding the label name followed by the probability of each class of the
+ * schema, separated by spaces.  With -binary it is instead
+ * {@link #OUTPUT_MAGIC}, {@link DataImporter#BINARY_VERSION} and the number
+ * of classes as ints, followed for each instance by the label index as an
+ * int and the probability of each class as a double.  Either way a class
+ * the model gives no probability for is written as 0, and the output is
+ * written to a temporary file that only replaces the output file once
+ * every instance has been scored.
+ * <p>
+ * When the model is stored at a reduced precision, the first instances of
+ * the input are also scored by the full precision model and the
+ * {@link PrecisionDrift} is printed, provided they are labeled.
+ *
+ * @author Sean A. Gilpin
+ */
+public class ScoreFile
+{
+	/** First value of a binary output file */
+	public static final int OUTPUT_MAGIC = 0x484D4C50;
+
+	private final Model model;
+	private final RecordSchema schema;
+	private final boolean binaryOutput;
+
+	/**
+	 * @param model The trained model.
+	 * @param schema The schema of the instances.
+	 * @param binaryOutput True to write binary output instead of text.
+	 */
+	public ScoreFile(Model model, RecordSchema schema, boolean binaryOutput)
+	{
+		this.model = model;
+		this.schema = schema;
+		this.binaryOutput = binaryOutput;
+	}
+
+	/**
+	 * Scores every instance of a file.
+	 *
+	 * @param inputPath The data file, in binary format if its name ends in
+	 * 	.bin and in Modified C4.5 format otherwise.
+	 * @param outputPath The file to write the predictions to.
+	 * @param numThreads The number of threads parsing and scoring batches.
+	 * @param batchSize The number of instances in a batch.
+	 * @return The number of instances scored.
+	 * @throws Exception If the input cannot be read or parsed, or the
+	 * 	model fails, in which case the output file is left as it was.
+	 */
+	public long score(String inputPath, String outputPath, int numThreads, int batchSize) throws Exception
+	{
+		//write to a temporary file first so that a failed run does not
+		//leave a truncated output behind
+		File file = new File(outputPath);
+		File temp = new File(outputPath + ".tmp");
+		long count;
+		boolean written = false;
+		try
+		{
+			InputStream input = new BufferedInputStream(new FileInputStream(inputPath), 1 << 16);
+			try
+			{
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(temp), 1 << 16);
+				try
+				{
+					if(binaryOutput)
+					{
+						DataOutputStream header = new DataOutputStream(out);
+						header.writeInt(OUTPUT_MAGIC);
+						header.writeInt(DataImporter.BINARY_VERSION);
+						header.writeInt(schema.labels.length);
+					}
+					if(inputPath.endsWith(".bin"))
+						count = score(new BinaryReader(new DataInputStream(input), inputPath), out, numThreads, batchSize);
+					else
+						count = score(new TextReader(new BufferedReader(new InputStreamReader(input, "UTF-8"), 1 << 16)),
+							out, numThreads, batchSize);
+				}
+				finally
+				{
+					out.close();
+				}
+			}
+			finally
+			{
+				input.close();
+			}
+			if(file.exists())
+				file.delete();
+			if(!temp.renameTo(file))
+				throw new IOException("could not write " + outputPath);
+			written = true;
+		}
+		finally
+		{
+			if(!written)
+				temp.delete();
+		}
+		return count;
+	}
+
+	/**
+	 * Compares the model with its full precision version on the first
+	 * instances of a labeled data file.
+	 *
+	 * @param full The model at full precision.
+	 * @param inputPath The data file, as for {@link #score}.
+	 * @param sampleSize The number of instances to compare the models on.
+	 * @return The drift, or null if the file is empty or its first
+	 * 	instances are not all labeled.
+	 * @throws Exception If the input cannot be read or parsed, or either
+	 * 	model fails.
+	 */
+	public PrecisionDrift measureDrift(Model full, String inputPath, int sampleSize) throws Exception
+	{
+		InputStream input = new BufferedInputStream(new FileInputStream(inputPath), 1 << 16);
+		try
+		{
+			ArrayList<double[]> records;
+			if(inputPath.endsWith(".bin"))
+			{
+				BinaryReader reader = new BinaryReader(new DataInputStream(input), inputPath);
+				byte[] batch = reader.read(sampleSize);
+				records = (batch == null) ? null : reader.parse(batch, 0);
+			}
+			else
+			{
+				TextReader reader = new TextReader(new BufferedReader(new InputStreamReader(input, "UTF-8")));
+				reader.keepLabels = true;
+				ArrayList<String> batch = reader.read(sampleSize);
+				records = (batch == null) ? null : reader.parse(batch, 0);
+			}
+			if(records == null)
+				return null;
+			for(double[] record : records)
+			{
+				if(Double.isNaN(record[schema.numAttributes]))
+					return null;
+			}
+			return new PrecisionDrift(new DataSet(schema, null, records), full, model);
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	private <B> long score(final BatchReader<B> reader, OutputStream out, int numThreads, int batchSize) throws Exception
+	{
+		int maxPending = 2*Math.max(1, numThreads);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numThreads), WorkerThread.FACTORY);
+		HemlockMetrics.registerExecutor(executor);
+		long count = 0;
+		try
+		{
+			//keep a bounded window of batches in flight and write them in order
+			LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+			boolean more = true;
+			while(more || !pending.isEmpty())
+			{
+				while(more && pending.size() < maxPending)
+				{
+					final B batch = reader.read(batchSize);
+					if(batch == null)
+					{
+						more = false;
+						break;
+					}
+					final long first = count;
+					count += reader.size(batch);
+					pending.add(executor.submit(new Callable<byte[]>()
+					{
+						public byte[] call() throws Exception
+						{
+							return format(DeployedModel.getTargetDistributions(model, reader.parse(batch, first)));
+						}
+					}));
+				}
+				if(!pending.isEmpty())
+					out.write(pending.removeFirst().get());
+			}
+		}
+		finally
+		{
+			HemlockMetrics.unregisterExecutor(executor);
+			executor.shutdownNow();
+		}
+		return count;
+	}
+
+	/**
+	 * Formats the predictions of a batch for the output file.
+	 */
+	private byte[] format(double[][] distributions) throws IOException
+	{
+		int numClasses = schema.labels.length;
+		if(binaryOutput)
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(distributions.length*(4 + 8*numClasses));
+			for(double[] distribution : distributions)
+			{
+				buffer.putInt(ScoringProtocol.argMax(distribution));
+				for(int c = 0; c < numClasses; c++)
+					buffer.putDouble((c < distribution.length) ? distribution[c] : 0);
+			}
+			return buffer.array();
+		}
+		StringBuilder sb = new StringBuilder(distributions.length*16*(1 + numClasses));
+		for(double[] distribution : distributions)
+		{
+			sb.append(schema.labels[ScoringProtocol.argMax(distribution)]);
+			for(int c = 0; c < numClasses; c++)
+				sb.append(' ').append((c < distribution.length) ? distribution[c] : 0.0);
+			sb.append('\n');
+		}
+		return sb.toString().getBytes("UTF-8");
+	}
+
+	/**
+	 * Reads the input a batch at a time on the main thread, leaving the
+	 * parsing to the scoring threads.
+	 *
+	 * @param <B> An unparsed batch.
+	 */
+	private abstract class BatchReader<B>
+	{
+		/**
+		 * @return The unparsed instances of the next batch, or null at the
+		 * 	end of the input.
+		 */
+		abstract B read(int batchSize) throws IOException;
+
+		/**
+		 * @return The number of instances in an unparsed batch.
+		 */
+		abstract int size(B batch);
+
+		/**
+		 * @param first The number of the first instance of the batch in
+		 * 	the input, counting from 0, for error messages.
+		 * @return The parsed instances.
+		 */
+		abstract ArrayList<double[]> parse(B batch, long first) throws Exception;
+	}
+
+	/**
+	 * Reads a Modified C4.5 data file a batch of lines at a time.
+	 */
+	private class TextReader extends BatchReader<ArrayList<String>>
+	{
+		private final BufferedReader in;
+		/** True to translate the class labels given in the input */
+		boolean keepLabels = false;
+
+		TextReader(BufferedReader in)
+		{
+			this.in = in;
+		}
+
+		ArrayList<String> read(int batchSize) throws IOException
+		{
+			ArrayList<String> lines = new ArrayList<String>(batchSize);
+			String line;
+			while(lines.size() < batchSize && (line = in.readLine()) != null)
+			{
+				line = line.trim();
+				if(!line.equals(""))
+					lines.add(line);
+			}
+			return lines.isEmpty() ? null : lines;
+		}
+
+		int size(ArrayList<String> lines)
+		{
+			return lines.size();
+		}
+
+		ArrayList<double[]> parse(ArrayList<String> lines, long first) throws Exception
+		{
+			ArrayList<double[]> records = new ArrayList<double[]>(lines.size());
+			int numAttributes = schema.numAttributes;
+			for(int i = 0; i < lines.size(); i++)
+			{
+				String[] values = lines.get(i).split(" ");
+				if(values.length != numAttributes && values.length != numAttributes + 1)
+					throw new Exception("instance " + (first + i + 1) + " has " + values.length
+						+ " values but the schema has " + numAttributes + " attributes.");
+				double[] record = new double[numAttributes + 1];
+				try
+				{
+					for(int a = 0; a < numAttributes; a++)
+						record[a] = schema.getTranslation(a, values[a]);
+				}
+				catch(Exception e)
+				{
+					throw new Exception("instance " + (first + i + 1) + ": " + e.getMessage(), e);
+				}
+				//the label, if there is one, is not needed to score
+				record[numAttributes] = Double.NaN;
+				if(keepLabels && values.length > numAttributes)
+				{
+					try
+					{
+						record[numAttributes] = schema.getTranslation(numAttributes, values[numAttributes]);
+					}
+					catch(Exception e)
+					{
+						throw new Exception("instance " + (first + i + 1) + ": " + e.getMessage(), e);
+					}
+				}
+				records.add(record);
+			}
+			return records;
+		}
+	}
+
+	/**
+	 * Reads a binary data file a batch of instances at a time, as raw
+	 * bytes.
+	 */
+	private class BinaryReader extends BatchReader<byte[]>
+	{
+		private final DataInputStream in;
+		private final int recordLength;
+		private long remaining;
+
+		BinaryReader(DataInputStream in, String path) throws Exception
+		{
+			this.in = in;
+			if(in.readInt() != DataImporter.BINARY_MAGIC || in.readInt() != DataImporter.BINARY_VERSION)
+				throw new Exception(path + " is not a binary data file.");
+			int numAttributes = in.readInt();
+			if(numAttributes != schema.numAttributes)
+				throw new Exception(path + " has " + numAttributes + " attributes but the schema has " + schema.numAttributes + ".");
+			remaining = in.readLong();
+			recordLength = 8*(numAttributes + 1);
+		}
+
+		byte[] read(int batchSize) throws IOException
+		{
+			if(remaining == 0)
+				return null;
+			int size = (int)Math.min(batchSize, remaining);
+			byte[] bytes = new byte[size*recordLength];
+			in.readFully(bytes);
+			remaining -= size;
+			return bytes;
+		}
+
+		int size(byte[] batch)
+		{
+			return batch.length/recordLength;
+		}
+
+		ArrayList<double[]> parse(byte[] batch, long first)
+		{
+			ByteBuffer buffer = ByteBuffer.wrap(batch);
+			int size = size(batch);
+			ArrayList<double[]> records = new ArrayList<double[]>(size);
+			for(int i = 0; i < size; i++)
+			{
+				double[] record = new double[schema.numAttributes + 1];
+				for(int j = 0; j < record.length; j++)
+					record[j] = buffer.getDouble();
+				records.add(record);
+			}
+			return records;
+		}
+	}
+
+	/**
+	 * Scores a data file with a serialized model.
+	 *
+	 * Usage: ScoreFile modelPath namesPath inputPath outputPath
+	 *	[-threads n] [-batchSize n] [-precision p] [-driftSample n] [-binary]
+	 *
+	 * @param args The command line arguments.  The model was serialized by
+	 * 	{@link ModelSerialization}, the names file describes the attributes
+	 * 	of the input, -threads sets the number of threads parsing and
+	 * 	scoring (default the number of processors), -batchSize the
+	 * 	instances in a batch (default 500, few enough that a batch model
+	 * 	scores each batch on the thread it is given to), -precision the
+	 * 	{@link StoragePrecision} to store the model in, -driftSample the
+	 * 	number of instances the reduced and full precision models are
+	 * 	compared on when the precision is not Full (default 1000, 0 to not
+	 * 	compare them), and -binary writes binary output.
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if(args.length < 4)
+		{
+			System.out.println("Usage: ScoreFile modelPath namesPath inputPath outputPath "
+				+ "[-threads n] [-batchSize n] [-precision p] [-driftSample n] [-binary]");
+			System.exit(1);
+		}
+
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		int batchSize = 500;
+		StoragePrecision precision = StoragePrecision.Full;
+		int driftSample = 1000;
+		boolean binary = false;
+		for(int i = 4; i < args.length; i++)
+		{
+			if(args[i].equals("-threads"))
+				numThreads = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-batchSize"))
+				batchSize = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-precision"))
+				precision = StoragePrecision.valueOf(args[++i]);
+			else if(args[i].equals("-driftSample"))
+				driftSample = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-binary"))
+				binary = true;
+			else
+				throw new Exception("unknown argument " + args[i]);
+		}
+
+		Model model = ModelSerialization.loadModel(args[0], precision);
+		RecordSchema schema = new DataImporter().createSchemaC45Modified(args[1]);
+		ScoreFile scoreFile = new ScoreFile(model, schema, binary);
+		if(precision != StoragePrecision.Full && driftSample > 0)
+		{
+			PrecisionDrift drift = scoreFile.measureDrift(ModelSerialization.loadModel(args[0]), args[2], driftSample);
+			if(drift == null)
+				System.out.println("Precision drift not measured, the first instances are not labeled");
+			else
+				System.out.println("Precision drift: " + drift);
+		}
+		long start = System.nanoTime();
+		long count = scoreFile.score(args[2], args[3], numThreads, Math.max(1, batchSize));
+		double seconds = (System.nanoTime() - start)/1e9;
+		System.out.println("Scored " + count + " instances in " + String.format("%.1f", seconds) + " s");
+	}
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.main;
+
+import com.sun.net.httpserver.*;
+import gov.sandia.hemlock.classification.StoragePrecision;
+import gov.sandia.hemlock.monitoring.*;
+import gov.sandia.hemlock.serving.*;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A long lived server that scores instances with models loaded once, so
+ * that each batch does not pay for starting a JVM and deserializing the
+ * models.  It uses the HTTP server that comes with the JDK, bound to the
+ * loopback address, with bodies in the binary encoding of
+ * {@link ScoringProtocol}:
+ * <ul>
+ * <li>POST /score/name scores the instances in the body with a model.
+ * Concurrent requests to a model are scored in batches by its
+ * {@link DeployedModel}.</li>
+ * <li>PUT /models/name loads the serialized model whose path is the body
+ * and serves it under the name, replacing the version being served once
+ * it is loaded.  Since loading a model deserializes it, only models in
+ * the model directory the server was started with are loaded, and
+ * without one models can only be deployed when the server starts.</li>
+ * <li>DELETE /models/name stops serving a model.</li>
+ * <li>GET /models lists the models served, with the number of requests,
+ * instances and batches each has scored and the percentiles of the time
+ * its recent requests took from being queued to being scored.</li>
+ * </ul>
+ * {@link ScoringClient} sends requests from Java.
+ *
+ * @author Sean A. Gilpin
+ */
+public class ScoringServer
+{
+	/** Percentiles of the latency listed for each model */
+	private static final double[] PERCENTILES = { 50, 90, 99 };
+
+	private final ModelRegistry registry;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	/** The directory models may be deployed from while serving, or null */
+	private final File modelDirectory;
+
+	/**
+	 * Starts serving the models of a registry, without deploying models
+	 * while serving.
+	 *
+	 * @param registry The models to serve.
+	 * @param port The port to listen on, or 0 for any free port.
+	 * @param numThreads The number of requests handled at once.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public ScoringServer(ModelRegistry registry, int port, int numThreads) throws IOException
+	{
+		this(registry, port, numThreads, null);
+	}
+
+	/**
+	 * Starts serving the models of a registry.
+	 *
+	 * @param registry The models to serve.
+	 * @param port The port to listen on, or 0 for any free port.
+	 * @param numThreads The number of requests handled at once.
+	 * @param modelDirectory The directory PUT /models/name may load models
+	 * 	from, or null to refuse to deploy models while serving.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public ScoringServer(ModelRegistry registry, int port, int numThreads, File modelDirectory) throws IOException
+	{
+		this.registry = registry;
+		this.modelDirectory = (modelDirectory == null) ? null : modelDirectory.getCanonicalFile();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		server.createContext("/score/", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				handleScore(exchange);
+			}
+		});
+		server.createContext("/models", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				handleModels(exchange);
+			}
+		});
+		//requests must be handled on many threads to be batched together
+		executor = Executors.newFixedThreadPool(numThreads);
+		HemlockMetrics.registerExecutor(executor);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * @return The port the server listens on.
+	 */
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops the server and every model it serves.
+	 */
+	public void stop()
+	{
+		server.stop(0);
+		HemlockMetrics.unregisterExecutor(executor);
+		executor.shutdown();
+		registry.close();
+	}
+
+	private void handleScore(HttpExchange exchange) throws IOException
+	{
+		try
+		{
+			if(!exchange.getRequestMethod().equals("POST"))
+			{
+				sendText(exchange, 405, "use POST to score instances");
+				return;
+			}
+			String name = getName(exchange, "/score/");
+			if(registry.get(name) == null)
+			{
+				sendText(exchange, 404, "no model is deployed as " + name);
+				return;
+			}
+			ArrayList<double[]> records;
+			try
+			{
+				DataInputStream in = new DataInputStream(new BufferedInputStream(exchange.getRequestBody(), 1 << 16));
+				records = ScoringProtocol.readRequest(in);
+				in.close();
+			}
+			catch(IOException e)
+			{
+				sendText(exchange, 400, "malformed request: " + e.getMessage());
+				return;
+			}
+
+			double[][] distributions;
+			try
+			{
+				distributions = registry.score(name, records);
+			}
+			catch(Exception e)
+			{
+				sendText(exchange, 500, "scoring failed: " + e);
+				return;
+			}
+			exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+			exchange.sendResponseHeaders(200, ScoringProtocol.getResponseLength(distributions.length,
+				ScoringProtocol.getNumClasses(distributions)));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(exchange.getResponseBody(), 1 << 16));
+			ScoringProtocol.writeResponse(out, distributions);
+			out.close();
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	private void handleModels(HttpExchange exchange) throws IOException
+	{
+		try
+		{
+			String method = exchange.getRequestMethod();
+			String name = getName(exchange, "/models/");
+			if(method.equals("GET"))
+				sendText(exchange, 200, listModels());
+			else if(method.equals("PUT") && name.length() > 0)
+			{
+				String path = readText(exchange.getRequestBody()).trim();
+				if(modelDirectory == null)
+				{
+					sendText(exchange, 403, "deploying while serving is disabled, start the server with -modelDir\n");
+					return;
+				}
+				File file = findModel(path);
+				if(file == null)
+				{
+					sendText(exchange, 403, path + " is not in the model directory " + modelDirectory + "\n");
+					return;
+				}
+				try
+				{
+					DeployedModel deployed = registry.deploy(name, file.getPath());
+					sendText(exchange, 200, "deployed " + deployed.name + " version " + deployed.version + " from " + path + "\n");
+				}
+				catch(Exception e)
+				{
+					sendText(exchange, 500, "cannot load " + path + ": " + e + "\n");
+				}
+			}
+			else if(method.equals("DELETE") && name.length() > 0)
+			{
+				if(registry.undeploy(name))
+					sendText(exchange, 200, "undeployed " + name + "\n");
+				else
+					sendText(exchange, 404, "no model is deployed as " + name + "\n");
+			}
+			else
+				sendText(exchange, 405, "use GET /models, PUT /models/name or DELETE /models/name\n");
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	/**
+	 * @return One line per model served: its name, version, source,
+	 * 	counts, and latency percentiles in milliseconds.
+	 */
+	public String listModels()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("#name version requests rows batches");
+		for(double p : PERCENTILES)
+			sb.append(" p").append((int)p).append("_ms");
+		sb.append(" max_ms source\n");
+		for(DeployedModel deployed : registry.getDeployed())
+		{
+			long[] counts = deployed.getCounts();
+			sb.append(deployed.name).append(' ').append(deployed.version);
+			for(long count : counts)
+				sb.append(' ').append(count);
+			for(long nanos : deployed.latency.getPercentiles(PERCENTILES))
+				sb.append(' ').append(String.format("%.3f", nanos/1e6));
+			sb.append(' ').append(String.format("%.3f", deployed.latency.getMax()/1e6));
+			sb.append(' ').append(deployed.source).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param path The path of a serialized model, relative to the model
+	 * 	directory or absolute.
+	 * @return The model file, or null if it is not inside the model
+	 * 	directory, after following any links.
+	 */
+	private File findModel(String path) throws IOException
+	{
+		File file = new File(path);
+		if(!file.isAbsolute())
+			file = new File(modelDirectory, path);
+		file = file.getCanonicalFile();
+		if(!file.getPath().startsWith(modelDirectory.getPath() + File.separator))
+			return null;
+		return file;
+	}
+
+	/**
+	 * @return The model name following a prefix of the request path, or
+	 * 	the empty string.
+	 */
+	private static String getName(HttpExchange exchange, String prefix) throws IOException
+	{
+		String path = exchange.getRequestURI().getRawPath();
+		if(!path.startsWith(prefix))
+			return "";
+		return URLDecoder.decode(path.substring(prefix.length()), "UTF-8");
+	}
+
+	private static String readText(InputStream in) throws IOException
+	{
+		Reader reader = new InputStreamReader(in, "UTF-8");
+		StringBuilder sb = new StringBuilder();
+		char[] buffer = new char[4096];
+		int n;
+		while((n = reader.read(buffer)) > 0)
+			sb.append(buffer, 0, n);
+		reader.close();
+		return sb.toString();
+	}
+
+	private static void sendText(HttpExchange exchange, int code, String text) throws IOException
+	{
+		byte[] body = text.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(code, body.length);
+		OutputStream os = exchange.getResponseBody();
+		os.write(body);
+		os.close();
+	}
+
+	/**
+	 * Loads models and serves them until the process is stopped.
+	 *
+	 * @param args Command line arguments: optional -port followed by the
+	 * 	port to listen on (default 8642), -precision followed by a
+	 * 	{@link StoragePrecision} to store the models in (default Full),
+	 * 	-maxBatch followed by the most instances scored in one batch
+	 * 	(default 4096), -delay followed by the longest time in milliseconds
+	 * 	a request waits for others to join its batch (default 0, which
+	 * 	batches whatever requests arrive while a batch is scored) and
+	 * 	-threads followed by the number of requests handled at once
+	 * 	(default 64) and -modelDir followed by the directory models may
+	 * 	be deployed from while serving (by default they may not be); then
+	 * 	any number of name=path entries, each a model
+	 * 	serialized by
+	 * 	{@link gov.sandia.hemlock.classification.ModelSerialization} to
+	 * 	serve under the name.  Progress is published as a JMX MBean, and
+	 * 	also served in Prometheus format when the hemlock.metrics.port
+	 * 	system property is set.
+	 * @throws Exception If an argument is wrong or a model cannot be
+	 * 	loaded.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		int port = 8642;
+		StoragePrecision precision = StoragePrecision.Full;
+		int maxBatchRows = 4096;
+		double maxDelayMillis = 0;
+		int numThreads = 64;
+		File modelDirectory = null;
+		ArrayList<String> models = new ArrayList<String>();
+		for(int i = 0; i < args.length; i++)
+		{
+			String arg = args[i].trim();
+			if(arg.equals("-port"))
+				port = Integer.parseInt(args[++i].trim());
+			else if(arg.equals("-precision"))
+				precision = StoragePrecision.valueOf(args[++i].trim());
+			else if(arg.equals("-maxBatch"))
+				maxBatchRows = Integer.parseInt(args[++i].trim());
+			else if(arg.equals("-delay"))
+				maxDelayMillis = Double.parseDouble(args[++i].trim());
+			else if(arg.equals("-threads"))
+				numThreads = Integer.parseInt(args[++i].trim());
+			else if(arg.equals("-modelDir"))
+				modelDirectory = new File(args[++i].trim());
+			else if(arg.indexOf('=') > 0)
+				models.add(arg);
+			else
+				throw new Exception("unknown argument " + arg);
+		}
+
+		HemlockMonitor.register();
+		PrometheusEndpoint.startFromSystemProperty();
+		ModelRegistry registry = new ModelRegistry(precision, maxBatchRows, maxDelayMillis);
+		for(String model : models)
+		{
+			int split = model.indexOf('=');
+			DeployedModel deployed = registry.deploy(model.substring(0, split), model.substring(split + 1));
+			System.out.println("Deployed " + deployed.name + " from " + deployed.source);
+		}
+		ScoringServer server = new ScoringServer(registry, port, numThreads, modelDirectory);
+		System.out.println("Scoring on http://127.0.0.1:" + server.getPort() + "/");
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.monitoring;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide counters describing the progress of running experiments.
+ * The rest of Hemlock reports events here, and {@link HemlockMonitor} and
+ * {@link PrometheusEndpoint} publish them.  Every update is a single atomic
+ * addition made once per experiment, fold, model or scored data set, so the
+ * counters are always kept.
+ *
+ * @author Sean A. Gilpin
+ */
+public class HemlockMetrics
+{
+	private static final AtomicLong experimentsCompleted = new AtomicLong();
+	private static final AtomicLong experimentsQueued = new AtomicLong();
+	private static final AtomicLong foldsCompleted = new AtomicLong();
+	private static final AtomicLong foldsQueued = new AtomicLong();
+	private static final RateMeter modelsTrained = new RateMeter();
+	private static final RateMeter rowsScored = new RateMeter();
+	private static final AtomicLong cacheHits = new AtomicLong();
+	private static final AtomicLong cacheMisses = new AtomicLong();
+
+	/** Executors whose queued tasks are counted in the queue depth */
+	private static final Set<ExecutorService> executors =
+		Collections.synchronizedSet(new HashSet<ExecutorService>());
+
+	/**
+	 * Records that experiments are waiting to be run.
+	 *
+	 * @param n Number of experiments.
+	 */
+	public static void experimentsQueued(int n)
+	{
+		experimentsQueued.addAndGet(n);
+	}
+
+	/**
+	 * Records that one of the queued experiments has finished.
+	 */
+	public static void experimentCompleted()
+	{
+		experimentsQueued.decrementAndGet();
+		experimentsCompleted.incrementAndGet();
+	}
+
+	/**
+	 * Records that folds are waiting to be run.
+	 *
+	 * @param n Number of folds.
+	 */
+	public static void foldsQueued(int n)
+	{
+		foldsQueued.addAndGet(n);
+	}
+
+	/**
+	 * Records that one of the queued folds has finished.
+	 */
+	public static void foldCompleted()
+	{
+		foldsQueued.decrementAndGet();
+		foldsCompleted.incrementAndGet();
+	}
+
+	/**
+	 * Records that queued folds will not finish, because a fold failed.
+	 *
+	 * @param n Number of folds.
+	 */
+	public static void foldsCancelled(int n)
+	{
+		foldsQueued.addAndGet(-n);
+	}
+
+	/**
+	 * Records that a framework model, such as a base classifier, has been
+	 * trained.
+	 */
+	public static void modelTrained()
+	{
+		modelsTrained.add(1);
+	}
+
+	/**
+	 * Records that instances have been scored by a model.
+	 *
+	 * @param n Number of instances.
+	 */
+	public static void rowsScored(int n)
+	{
+		rowsScored.add(n);
+	}
+
+	/**
+	 * Records a lookup in the data set cache of
+	 * {@link gov.sandia.hemlock.data.DataImporter}.
+	 *
+	 * @param hit True if the data set was already cached.
+	 */
+	public static void dataSetCacheLookup(boolean hit)
+	{
+		if(hit)
+			cacheHits.incrementAndGet();
+		else
+			cacheMisses.incrementAndGet();
+	}
+
+	/**
+	 * Starts counting the tasks waiting in an executor's queue.  Must be
+	 * followed by {@link #unregisterExecutor} when the executor is shut down.
+	 *
+	 * @param executor The executor.
+	 */
+	public static void registerExecutor(ExecutorService executor)
+	{
+		executors.add(executor);
+	}
+
+	/**
+	 * Stops counting the tasks waiting in an executor's queue.
+	 *
+	 * @param executor The executor.
+	 */
+	public static void unregisterExecutor(ExecutorService executor)
+	{
+		executors.remove(executor);
+	}
+
+	public static long getExperimentsCompleted()
+	{
+		return experimentsCompleted.get();
+	}
+
+	public static long getExperimentsQueued()
+	{
+		return experimentsQueued.get();
+	}
+
+	public static long getFoldsCompleted()
+	{
+		return foldsCompleted.get();
+	}
+
+	public static long getFoldsQueued()
+	{
+		return foldsQueued.get();
+	}
+
+	public static long getModelsTrained()
+	{
+		return modelsTrained.getCount();
+	}
+
+	public static double getModelsTrainedPerSecond()
+	{
+		return modelsTrained.getRate();
+	}
+
+	public static long getRowsScored()
+	{
+		return rowsScored.getCount();
+	}
+
+	public static double getRowsScoredPerSecond()
+	{
+		return rowsScored.getRate();
+	}
+
+	public static long getDataSetCacheHits()
+	{
+		return cacheHits.get();
+	}
+
+	public static long getDataSetCacheMisses()
+	{
+		return cacheMisses.get();
+	}
+
+	/**
+	 * @return The fraction of data set lookups that were found in the
+	 * 	cache, or 0 if there have been no lookups.
+	 */
+	public static double getDataSetCacheHitRate()
+	{
+		long hits = cacheHits.get();
+		long total = hits + cacheMisses.get();
+		return (total == 0) ? 0 : hits / (double)total;
+	}
+
+	/**
+	 * @return The number of tasks waiting in the queues of all registered
+	 * 	executors.
+	 */
+	public static long getExecutorQueueDepth()
+	{
+		long depth = 0;
+		synchronized(executors)
+		{
+			for(ExecutorService executor : executors)
+			{
+				if(executor instanceof ThreadPoolExecutor)
+					depth += ((ThreadPoolExecutor)executor).getQueue().size();
+			}
+		}
+		return depth;
+	}
+
+	/**
+	 * @return The number of bytes of heap in use.
+	 */
+	public static long getHeapUsed()
+	{
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.monitoring;
+
+import java.lang.management.ManagementFactory;
+import javax.management.*;
+
+/**
+ * Publishes {@link HemlockMetrics} as an MBean in the platform MBean server
+ * under the name {@link #OBJECT_NAME}.
+ *
+ * @author Sean A. Gilpin
+ */
+public class HemlockMonitor implements HemlockMonitorMBean
+{
+	/** Name the MBean is registered under */
+	public static final String OBJECT_NAME = "gov.sandia.hemlock:type=Monitor";
+
+	/**
+	 * Registers the MBean, unless it is already registered.
+	 *
+	 * @throws Exception If the MBean cannot be registered.
+	 */
+	public static synchronized void register() throws Exception
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if(!server.isRegistered(name))
+			server.registerMBean(new HemlockMonitor(), name);
+	}
+
+	public long getExperimentsCompleted()
+	{
+		return HemlockMetrics.getExperimentsCompleted();
+	}
+
+	public long getExperimentsQueued()
+	{
+		return HemlockMetrics.getExperimentsQueued();
+	}
+
+	public long getFoldsCompleted()
+	{
+		return HemlockMetrics.getFoldsCompleted();
+	}
+
+	public long getFoldsQueued()
+	{
+		return HemlockMetrics.getFoldsQueued();
+	}
+
+	public long getModelsTrained()
+	{
+		return HemlockMetrics.getModelsTrained();
+	}
+
+	public double getModelsTrainedPerSecond()
+	{
+		return HemlockMetrics.getModelsTrainedPerSecond();
+	}
+
+	public long getRowsScored()
+	{
+		return HemlockMetrics.getRowsScored();
+	}
+
+	public double getRowsScoredPerSecond()
+	{
+		return HemlockMetrics.getRowsScoredPerSecond();
+	}
+
+	public double getDataSetCacheHitRate()
+	{
+		return HemlockMetrics.getDataSetCacheHitRate();
+	}
+
+	public long getExecutorQueueDepth()
+	{
+		return HemlockMetrics.getExecutorQueueDepth();
+	}
+
+	public long getHeapUsed()
+	{
+		return HemlockMetrics.getHeapUsed();
+	}
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.monitoring;
+
+/**
+ * Management interface for watching the progress of running experiments
+ * with JConsole or any other JMX client.
+ *
+ * @author Sean A. Gilpin
+ */
+public interface HemlockMonitorMBean
+{
+	public long getExperimentsCompleted();
+	public long getExperimentsQueued();
+	public long getFoldsCompleted();
+	public long getFoldsQueued();
+	public long getModelsTrained();
+	public double getModelsTrainedPerSecond();
+	public long getRowsScored();
+	public double getRowsScoredPerSecond();
+	public double getDataSetCacheHitRate();
+	public long getExecutorQueueDepth();
+	public long getHeapUsed();
+}
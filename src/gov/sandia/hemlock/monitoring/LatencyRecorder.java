@@ -0,0 +1,102 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.monitoring;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latencies of some operation, such as scoring
+ * requests, and reports their percentiles.  Recording is a store into a
+ * ring buffer, and the percentiles are found by sorting a copy of the
+ * buffer when they are asked for, which is far less often.
+ *
+ * @author Sean A. Gilpin
+ */
+public class LatencyRecorder
+{
+	/** Number of recent latencies kept by default */
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	private final long[] recent;
+	private long count = 0;
+	private long max = 0;
+
+	/**
+	 * Keeps the {@link #DEFAULT_CAPACITY} most recent latencies.
+	 */
+	public LatencyRecorder()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity The number of recent latencies to keep.
+	 */
+	public LatencyRecorder(int capacity)
+	{
+		recent = new long[capacity];
+	}
+
+	/**
+	 * Records one latency.
+	 *
+	 * @param nanos The latency in nanoseconds.
+	 */
+	public synchronized void record(long nanos)
+	{
+		recent[(int)(count % recent.length)] = nanos;
+		count++;
+		max = Math.max(max, nanos);
+	}
+
+	/**
+	 * @return The number of latencies ever recorded.
+	 */
+	public synchronized long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return The largest latency ever recorded, in nanoseconds.
+	 */
+	public synchronized long getMax()
+	{
+		return max;
+	}
+
+	/**
+	 * Finds percentiles of the recent latencies by the nearest rank.
+	 *
+	 * @param percentiles The percentiles to find, each from 0 to 100.
+	 * @return The latency in nanoseconds at each percentile, all 0 if
+	 * 	nothing has been recorded.
+	 */
+	public long[] getPercentiles(double[] percentiles)
+	{
+		long[] sorted;
+		synchronized(this)
+		{
+			sorted = Arrays.copyOf(recent, (int)Math.min(count, recent.length));
+		}
+		Arrays.sort(sorted);
+		long[] values = new long[percentiles.length];
+		if(sorted.length == 0)
+			return values;
+		for(int i = 0; i < percentiles.length; i++)
+		{
+			int rank = (int)Math.ceil(percentiles[i]/100*sorted.length);
+			values[i] = sorted[Math.min(Math.max(rank, 1), sorted.length) - 1];
+		}
+		return values;
+	}
+}
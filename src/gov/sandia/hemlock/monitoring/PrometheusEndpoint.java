@@ -0,0 +1,135 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.monitoring;
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.InetSocketAddress;
+
+/**
+ * A small HTTP server, bound to the loopback address, that serves
+ * {@link HemlockMetrics} at /metrics in the Prometheus text exposition
+ * format.  Uses the HTTP server that comes with the JDK, so no other
+ * services or libraries are needed.
+ *
+ * @author Sean A. Gilpin
+ */
+public class PrometheusEndpoint
+{
+	/** System property holding the port to serve metrics on */
+	public static final String PORT_PROPERTY = "hemlock.metrics.port";
+
+	private final HttpServer server;
+
+	/**
+	 * Starts serving metrics.
+	 *
+	 * @param port The port to listen on, or 0 for any free port.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public PrometheusEndpoint(int port) throws IOException
+	{
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		server.createContext("/metrics", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				byte[] body = scrape().getBytes("UTF-8");
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream os = exchange.getResponseBody();
+				os.write(body);
+				os.close();
+			}
+		});
+		server.start();
+	}
+
+	/**
+	 * Starts serving metrics if the {@link #PORT_PROPERTY} system property
+	 * is set.
+	 *
+	 * @return The endpoint, or null if the property is not set.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public static PrometheusEndpoint startFromSystemProperty() throws IOException
+	{
+		String port = System.getProperty(PORT_PROPERTY);
+		if(port == null || port.trim().equals(""))
+			return null;
+		return new PrometheusEndpoint(Integer.parseInt(port.trim()));
+	}
+
+	/**
+	 * @return The port metrics are served on.
+	 */
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops serving metrics.
+	 */
+	public void stop()
+	{
+		server.stop(0);
+	}
+
+	/**
+	 * @return The current value of every metric in the Prometheus text
+	 * 	exposition format.
+	 */
+	public static String scrape()
+	{
+		StringBuilder sb = new StringBuilder();
+		appendMetric(sb, "hemlock_experiments_completed_total", "counter",
+			"Experiments that have finished.", HemlockMetrics.getExperimentsCompleted());
+		appendMetric(sb, "hemlock_experiments_queued", "gauge",
+			"Experiments waiting to run or running.", HemlockMetrics.getExperimentsQueued());
+		appendMetric(sb, "hemlock_folds_completed_total", "counter",
+			"Folds that have finished.", HemlockMetrics.getFoldsCompleted());
+		appendMetric(sb, "hemlock_folds_queued", "gauge",
+			"Folds waiting to run or running.", HemlockMetrics.getFoldsQueued());
+		appendMetric(sb, "hemlock_models_trained_total", "counter",
+			"Framework models, such as base classifiers, that have been trained.", HemlockMetrics.getModelsTrained());
+		appendMetric(sb, "hemlock_models_trained_per_second", "gauge",
+			"Recent rate of training framework models.", HemlockMetrics.getModelsTrainedPerSecond());
+		appendMetric(sb, "hemlock_rows_scored_total", "counter",
+			"Instances scored by models.", HemlockMetrics.getRowsScored());
+		appendMetric(sb, "hemlock_rows_scored_per_second", "gauge",
+			"Recent rate of scoring instances.", HemlockMetrics.getRowsScoredPerSecond());
+		appendMetric(sb, "hemlock_dataset_cache_hits_total", "counter",
+			"Data set imports served from the cache.", HemlockMetrics.getDataSetCacheHits());
+		appendMetric(sb, "hemlock_dataset_cache_misses_total", "counter",
+			"Data set imports read from the disk.", HemlockMetrics.getDataSetCacheMisses());
+		appendMetric(sb, "hemlock_dataset_cache_hit_ratio", "gauge",
+			"Fraction of data set imports served from the cache.", HemlockMetrics.getDataSetCacheHitRate());
+		appendMetric(sb, "hemlock_executor_queue_depth", "gauge",
+			"Tasks waiting in the queues of Hemlock thread pools.", HemlockMetrics.getExecutorQueueDepth());
+		appendMetric(sb, "hemlock_heap_used_bytes", "gauge",
+			"Heap in use.", HemlockMetrics.getHeapUsed());
+		return sb.toString();
+	}
+
+	private static void appendMetric(StringBuilder sb, String name, String type, String help, double value)
+	{
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		sb.append(name).append(' ');
+		if(value == Math.rint(value) && Math.abs(value) < 1e15)
+			sb.append((long)value);
+		else
+			sb.append(value);
+		sb.append('\n');
+	}
+}
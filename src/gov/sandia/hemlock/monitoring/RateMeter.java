@@ -0,0 +1,81 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A counter that can also report how fast it has recently been increasing.
+ * The rate is measured from a snapshot of the count that is at least
+ * {@link #WINDOW_NANOS} old, so it covers roughly the last one to two
+ * windows no matter how often it is read.
+ *
+ * @author Sean A. Gilpin
+ */
+public class RateMeter
+{
+	/** Shortest time the rate is measured over */
+	public static final long WINDOW_NANOS = 10000000000L;
+
+	private final AtomicLong count = new AtomicLong();
+
+	/** The older snapshot the rate is measured from */
+	private long previousTime;
+	private long previousCount;
+	/** The newer snapshot, which becomes the older one once it is a
+		window old */
+	private long currentTime;
+	private long currentCount;
+
+	public RateMeter()
+	{
+		previousTime = currentTime = System.nanoTime();
+	}
+
+	/**
+	 * Adds to the count.
+	 *
+	 * @param n The amount to add.
+	 */
+	public void add(long n)
+	{
+		count.addAndGet(n);
+	}
+
+	/**
+	 * @return The total count.
+	 */
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	/**
+	 * @return The average increase per second since the older snapshot.
+	 */
+	public synchronized double getRate()
+	{
+		long now = System.nanoTime();
+		long total = count.get();
+		if(now - currentTime >= WINDOW_NANOS)
+		{
+			previousTime = currentTime;
+			previousCount = currentCount;
+			currentTime = now;
+			currentCount = total;
+		}
+		long elapsed = now - previousTime;
+		if(elapsed <= 0)
+			return 0;
+		return (total - previousCount) * 1e9 / elapsed;
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.serving;
+
+import gov.sandia.hemlock.classification.BatchModel;
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
+import gov.sandia.hemlock.monitoring.LatencyRecorder;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * One version of a model being served by a {@link ModelRegistry}.  Callers
+ * on many threads hand their instances to {@link #score}, which puts them
+ * on a queue, and worker threads score whatever requests have gathered on
+ * the queue as one batch.  A lone request is scored at once, while under
+ * load many small requests are scored together, so a {@link BatchModel}
+ * can divide them among its threads.  A batch model gets one worker, as it
+ * uses every processor itself; other models get one worker per processor.
+ * When a batch of several requests fails, each of its requests is scored
+ * again on its own, so that a malformed request, such as one whose
+ * instances have the wrong number of values, only fails itself.
+ * <p>
+ * The time from a request joining the queue until it is scored is kept
+ * in a {@link LatencyRecorder}.
+ *
+ * @author Sean A. Gilpin
+ */
+public class DeployedModel
+{
+	/** The name the model is served under */
+	public final String name;
+	/** Counts the versions deployed under the name, starting at 1 */
+	public final int version;
+	/** Where the model was loaded from */
+	public final String source;
+	/** Time from a request joining the queue until it is scored */
+	public final LatencyRecorder latency = new LatencyRecorder();
+
+	private final Model model;
+	/** Most instances in one batch, unless a single request has more */
+	private final int maxBatchRows;
+	/** Longest time a worker holding a request waits for others to join
+		its batch */
+	private final long maxDelayNanos;
+	private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+	private final Thread[] workers;
+	private boolean closed = false;
+	private long requests = 0;
+	private long rows = 0;
+	private long batches = 0;
+
+	//tells a worker to stop; put once per worker on closing
+	private static final Request STOP = new Request(null);
+
+	/**
+	 * Starts serving a model.
+	 *
+	 * @param name The name the model is served under.
+	 * @param version The version of the model under that name.
+	 * @param source Where the model was loaded from.
+	 * @param model The trained model.
+	 * @param maxBatchRows The most instances to score in one batch.
+	 * @param maxDelayMillis The longest a request waits for others to
+	 * 	join its batch; 0 to score whatever has gathered at once.
+	 */
+	public DeployedModel(String name, int version, String source, Model model, int maxBatchRows, double maxDelayMillis)
+	{
+		this.name = name;
+		this.version = version;
+		this.source = source;
+		this.model = model;
+		this.maxBatchRows = Math.max(1, maxBatchRows);
+		this.maxDelayNanos = (long)(maxDelayMillis*1e6);
+		int numWorkers = (model instanceof BatchModel) ? 1 : Runtime.getRuntime().availableProcessors();
+		workers = new Thread[numWorkers];
+		for(int i = 0; i < numWorkers; i++)
+		{
+			workers[i] = new Thread(new Runnable() {
+				public void run()
+				{
+					work();
+				}
+			}, "hemlock-scoring-" + name + "-v" + version + "-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Scores a set of instances, waiting for the batch they join.
+	 *
+	 * @param records The instances, each with the attribute values
+	 * 	followed by a class label, which is not used.
+	 * @return The distribution predicted for each instance, or null if
+	 * 	this version was closed first, in which case the caller should
+	 * 	send the instances to the version that replaced it.
+	 * @throws Exception If the model fails to score the batch.
+	 */
+	public double[][] score(ArrayList<double[]> records) throws Exception
+	{
+		Request request = new Request(records);
+		synchronized(this)
+		{
+			if(closed)
+				return null;
+			queue.add(request);
+		}
+		request.done.await();
+		latency.record(System.nanoTime() - request.arrival);
+		if(request.error != null)
+			throw request.error;
+		return request.distributions;
+	}
+
+	/**
+	 * Stops taking requests.  The requests already queued are still
+	 * scored, and the workers stop once they are.
+	 */
+	public void close()
+	{
+		synchronized(this)
+		{
+			if(closed)
+				return;
+			closed = true;
+			for(int i = 0; i < workers.length; i++)
+				queue.add(STOP);
+		}
+	}
+
+	/**
+	 * @return The number of requests, instances and batches scored so far.
+	 */
+	public synchronized long[] getCounts()
+	{
+		return new long[] { requests, rows, batches };
+	}
+
+	private void work()
+	{
+		try
+		{
+			ArrayList<Request> batch = new ArrayList<Request>();
+			boolean stopping = false;
+			while(!stopping)
+			{
+				Request first = queue.take();
+				if(first == STOP)
+					break;
+				batch.clear();
+				batch.add(first);
+				int size = first.records.size();
+				long deadline = System.nanoTime() + maxDelayNanos;
+				while(size < maxBatchRows)
+				{
+					long wait = deadline - System.nanoTime();
+					Request next = (wait > 0) ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+					if(next == null)
+						break;
+					if(next == STOP)
+					{
+						stopping = true;
+						break;
+					}
+					batch.add(next);
+					size += next.records.size();
+				}
+				scoreBatch(batch, size);
+			}
+		}
+		catch(InterruptedException e)
+		{
+			//the server is shutting down
+		}
+	}
+
+	/**
+	 * Scores the instances of a batch of requests together and hands each
+	 * request its share of the distributions.
+	 */
+	private void scoreBatch(ArrayList<Request> batch, int size)
+	{
+		ArrayList<double[]> records;
+		if(batch.size() == 1)
+			records = batch.get(0).records;
+		else
+		{
+			records = new ArrayList<double[]>(size);
+			for(Request request : batch)
+				records.addAll(request.records);
+		}
+		try
+		{
+			double[][] distributions = getTargetDistributions(model, records);
+			int from = 0;
+			for(Request request : batch)
+			{
+				request.distributions = Arrays.copyOfRange(distributions, from, from + request.records.size());
+				from += request.records.size();
+			}
+		}
+		catch(Throwable t)
+		{
+			//every request must be answered, or its caller waits forever
+			if(batch.size() == 1)
+				batch.get(0).error = toException(t);
+			else
+			{
+				for(Request request : batch)
+					scoreAlone(request);
+			}
+		}
+		synchronized(this)
+		{
+			requests += batch.size();
+			rows += size;
+			batches++;
+		}
+		for(Request request : batch)
+			request.done.countDown();
+	}
+
+	/**
+	 * Scores the instances of one request of a batch that failed.
+	 */
+	private void scoreAlone(Request request)
+	{
+		try
+		{
+			request.distributions = getTargetDistributions(model, request.records);
+		}
+		catch(Throwable t)
+		{
+			request.error = toException(t);
+		}
+	}
+
+	private static Exception toException(Throwable t)
+	{
+		return (t instanceof Exception) ? (Exception)t : new Exception(t);
+	}
+
+	/**
+	 * Predicts the class distribution of each of a set of instances, a
+	 * batch at a time for a {@link BatchModel} and one at a time otherwise.
+	 *
+	 * @param model A trained model.
+	 * @param records The instances.
+	 * @return The distribution predicted for each instance.
+	 * @throws Exception If the model fails.
+	 */
+	public static double[][] getTargetDistributions(Model model, ArrayList<double[]> records) throws Exception
+	{
+		double[][] distributions;
+		if(model instanceof BatchModel)
+			distributions = ((BatchModel)model).getTargetDistributions(records);
+		else
+		{
+			distributions = new double[records.size()][];
+			for(int i = 0; i < distributions.length; i++)
+				distributions[i] = model.getTargetDistribution(records.get(i));
+		}
+		HemlockMetrics.rowsScored(records.size());
+		return distributions;
+	}
+
+	/**
+	 * The instances of one call to {@link #score}, waiting for their
+	 * distributions.
+	 */
+	private static class Request
+	{
+		final ArrayList<double[]> records;
+		final long arrival = System.nanoTime();
+		final CountDownLatch done = new CountDownLatch(1);
+		double[][] distributions;
+		Exception error;
+
+		Request(ArrayList<double[]> records)
+		{
+			this.records = records;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.serving;
+
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelSerialization;
+import gov.sandia.hemlock.classification.StoragePrecision;
+import java.util.*;
+
+/**
+ * The models a scoring server holds, by name.  Deploying a model under a
+ * name that is already in use swaps in the new version once it is loaded:
+ * the old version keeps answering requests while the new one loads, and
+ * finishes the requests it has already taken after the swap.
+ * <p>
+ * A version is closed under the same lock that takes it out of the
+ * registry, so the registry only ever holds open versions.  A request
+ * turned away by a closed version therefore finds the version that
+ * replaced it, or none, when it looks the name up again.
+ *
+ * @author Sean A. Gilpin
+ */
+public class ModelRegistry
+{
+	private final Hashtable<String, DeployedModel> models = new Hashtable<String, DeployedModel>();
+	/** The last version deployed under each name, kept after undeploying
+		so that versions are never reused */
+	private final Hashtable<String, Integer> versions = new Hashtable<String, Integer>();
+	private final StoragePrecision precision;
+	private final int maxBatchRows;
+	private final double maxDelayMillis;
+
+	/**
+	 * @param precision The precision to store loaded models in.
+	 * @param maxBatchRows The most instances a model scores in one batch.
+	 * @param maxDelayMillis The longest a request waits for others to join
+	 * 	its batch.
+	 */
+	public ModelRegistry(StoragePrecision precision, int maxBatchRows, double maxDelayMillis)
+	{
+		this.precision = precision;
+		this.maxBatchRows = maxBatchRows;
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+	/**
+	 * Loads a serialized model and serves it under a name, replacing any
+	 * model already served under the name.
+	 *
+	 * @param name The name to serve the model under.
+	 * @param path The file the model was serialized to by
+	 * 	{@link ModelSerialization#serializeModel}.
+	 * @return The deployed version.
+	 * @throws Exception If the model cannot be loaded.
+	 */
+	public DeployedModel deploy(String name, String path) throws Exception
+	{
+		return deploy(name, path, ModelSerialization.loadModel(path, precision));
+	}
+
+	/**
+	 * Serves a trained model under a name, replacing any model already
+	 * served under the name.
+	 *
+	 * @param name The name to serve the model under.
+	 * @param source Describes where the model came from.
+	 * @param model The trained model.
+	 * @return The deployed version.
+	 */
+	public synchronized DeployedModel deploy(String name, String source, Model model)
+	{
+		Integer last = versions.get(name);
+		int version = (last == null) ? 1 : last.intValue() + 1;
+		versions.put(name, version);
+		DeployedModel deployed = new DeployedModel(name, version, source, model, maxBatchRows, maxDelayMillis);
+		DeployedModel old = models.put(name, deployed);
+		if(old != null)
+			old.close();
+		return deployed;
+	}
+
+	/**
+	 * Stops serving a model.
+	 *
+	 * @param name The name the model is served under.
+	 * @return True if a model was served under the name.
+	 */
+	public synchronized boolean undeploy(String name)
+	{
+		DeployedModel old = models.remove(name);
+		if(old == null)
+			return false;
+		old.close();
+		return true;
+	}
+
+	/**
+	 * @param name The name a model is served under.
+	 * @return The version served under the name, or null if there is none.
+	 */
+	public synchronized DeployedModel get(String name)
+	{
+		return models.get(name);
+	}
+
+	/**
+	 * @return The versions being served, sorted by name.
+	 */
+	public synchronized ArrayList<DeployedModel> getDeployed()
+	{
+		TreeMap<String, DeployedModel> sorted = new TreeMap<String, DeployedModel>(models);
+		return new ArrayList<DeployedModel>(sorted.values());
+	}
+
+	/**
+	 * Scores a set of instances with the model served under a name.  If the
+	 * model is swapped while the instances are being handed to it, they
+	 * are handed to the new version.
+	 *
+	 * @param name The name the model is served under.
+	 * @param records The instances.
+	 * @return The distribution predicted for each instance.
+	 * @throws Exception If no model is served under the name or the model
+	 * 	fails.
+	 */
+	public double[][] score(String name, ArrayList<double[]> records) throws Exception
+	{
+		while(true)
+		{
+			DeployedModel deployed = get(name);
+			if(deployed == null)
+				throw new Exception("no model is deployed as " + name);
+			double[][] distributions = deployed.score(records);
+			if(distributions != null)
+				return distributions;
+			//deployed was closed after it was looked up, so it is no
+			//longer in the registry
+		}
+	}
+
+	/**
+	 * Stops serving every model.
+	 */
+	public synchronized void close()
+	{
+		for(DeployedModel deployed : models.values())
+			deployed.close();
+		models.clear();
+	}
+}
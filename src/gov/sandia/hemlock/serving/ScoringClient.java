@@ -0,0 +1,129 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.serving;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * Sends instances to a {@link gov.sandia.hemlock.main.ScoringServer} to be
+ * scored, using the encoding of {@link ScoringProtocol}.  A client may be
+ * used by several threads at once.
+ *
+ * @author Sean A. Gilpin
+ */
+public class ScoringClient
+{
+	private final String baseURL;
+
+	/**
+	 * @param port The port the server listens on, on the loopback address.
+	 */
+	public ScoringClient(int port)
+	{
+		this.baseURL = "http://127.0.0.1:" + port;
+	}
+
+	/**
+	 * Scores instances with a model of the server.
+	 *
+	 * @param name The name the model is deployed as.
+	 * @param records The instances, each with the attribute values followed
+	 * 	by a class label, which is not used.
+	 * @return The predictions.
+	 * @throws IOException If the server cannot be reached or fails to
+	 * 	score the instances.
+	 */
+	public ScoringProtocol.Response score(String name, List<double[]> records) throws IOException
+	{
+		HttpURLConnection connection = open("/score/" + URLEncoder.encode(name, "UTF-8"), "POST");
+		int numValues = records.isEmpty() ? 0 : records.get(0).length;
+		connection.setFixedLengthStreamingMode(8 + 8L*records.size()*numValues);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 1 << 16));
+		ScoringProtocol.writeRequest(out, records);
+		out.close();
+		checkResponse(connection);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+		try
+		{
+			return ScoringProtocol.readResponse(in);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Has the server load a serialized model, replacing any model deployed
+	 * under the same name once it is loaded.
+	 *
+	 * @param name The name to deploy the model as.
+	 * @param path The path of the serialized model on the server.
+	 * @return The server's description of the deployed version.
+	 * @throws IOException If the model cannot be deployed.
+	 */
+	public String deploy(String name, String path) throws IOException
+	{
+		HttpURLConnection connection = open("/models/" + URLEncoder.encode(name, "UTF-8"), "PUT");
+		Writer out = new OutputStreamWriter(connection.getOutputStream(), "UTF-8");
+		out.write(path);
+		out.close();
+		return readText(connection);
+	}
+
+	/**
+	 * @return The server's listing of deployed models and their latencies.
+	 * @throws IOException If the server cannot be reached.
+	 */
+	public String getModels() throws IOException
+	{
+		return readText(open("/models", "GET"));
+	}
+
+	private HttpURLConnection open(String path, String method) throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection)new URL(baseURL + path).openConnection();
+		connection.setRequestMethod(method);
+		connection.setDoOutput(!method.equals("GET"));
+		return connection;
+	}
+
+	private static void checkResponse(HttpURLConnection connection) throws IOException
+	{
+		int code = connection.getResponseCode();
+		if(code == HttpURLConnection.HTTP_OK)
+			return;
+		InputStream error = connection.getErrorStream();
+		String message = (error == null) ? "" : readFully(error);
+		throw new IOException("the scoring server answered " + code + ": " + message.trim());
+	}
+
+	private static String readText(HttpURLConnection connection) throws IOException
+	{
+		checkResponse(connection);
+		return readFully(connection.getInputStream());
+	}
+
+	private static String readFully(InputStream in) throws IOException
+	{
+		Reader reader = new InputStreamReader(in, "UTF-8");
+		StringBuilder sb = new StringBuilder();
+		char[] buffer = new char[4096];
+		int n;
+		while((n = reader.read(buffer)) > 0)
+			sb.append(buffer, 0, n);
+		reader.close();
+		return sb.toString();
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.serving;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The binary encoding of scoring requests and responses, in the big endian
+ * order of {@link DataOutputStream}.  A request is the number of instances
+ * and the number of values per instance as ints, followed by the values of
+ * each instance as doubles: the attribute values, coded as in a Hemlock
+ * binary data file, and a class label, which is not used and may be NaN.
+ * A response is the number of instances and the number of classes as ints,
+ * followed for each instance by the predicted label as an int and the
+ * predicted distribution as floats.  The label is the first most probable
+ * class of the distribution before it is rounded to floats.
+ *
+ * @author Sean A. Gilpin
+ */
+public class ScoringProtocol
+{
+	/** Most values a request may hold, so that a bad header cannot make
+		the server allocate without limit */
+	public static final long MAX_VALUES = 1L << 28;
+	/** Most instances a request or response may hold, which also limits
+		requests whose instances have no values */
+	public static final int MAX_RECORDS = 1 << 24;
+
+	/**
+	 * Writes a request.
+	 *
+	 * @param out The stream to write to.
+	 * @param records The instances to score, all of the same length.
+	 * @throws IOException
+	 */
+	public static void writeRequest(DataOutputStream out, List<double[]> records) throws IOException
+	{
+		int numValues = records.isEmpty() ? 0 : records.get(0).length;
+		out.writeInt(records.size());
+		out.writeInt(numValues);
+		for(double[] record : records)
+		{
+			if(record.length != numValues)
+				throw new IOException("every instance of a request must have " + numValues + " values");
+			for(int j = 0; j < numValues; j++)
+				out.writeDouble(record[j]);
+		}
+	}
+
+	/**
+	 * Reads a request.
+	 *
+	 * @param in The stream to read from.
+	 * @return The instances to score.
+	 * @throws IOException If the request is malformed or cut short.
+	 */
+	public static ArrayList<double[]> readRequest(DataInputStream in) throws IOException
+	{
+		int numRecords = in.readInt();
+		int numValues = in.readInt();
+		if(numRecords < 0 || numValues < 0 || numRecords > MAX_RECORDS
+			|| (long)numRecords*Math.max(numValues, 1) > MAX_VALUES)
+			throw new IOException("bad request size " + numRecords + " by " + numValues);
+		ArrayList<double[]> records = new ArrayList<double[]>(numRecords);
+		for(int i = 0; i < numRecords; i++)
+		{
+			double[] record = new double[numValues];
+			for(int j = 0; j < numValues; j++)
+				record[j] = in.readDouble();
+			records.add(record);
+		}
+		return records;
+	}
+
+	/**
+	 * @param numRecords The number of instances scored.
+	 * @param numClasses The number of classes.
+	 * @return The length of the response in bytes.
+	 */
+	public static long getResponseLength(int numRecords, int numClasses)
+	{
+		return 8 + (long)numRecords*(4 + 4*numClasses);
+	}
+
+	/**
+	 * Writes a response.
+	 *
+	 * @param out The stream to write to.
+	 * @param distributions The distribution predicted for each instance.
+	 * @throws IOException
+	 */
+	public static void writeResponse(DataOutputStream out, double[][] distributions) throws IOException
+	{
+		int numClasses = getNumClasses(distributions);
+		out.writeInt(distributions.length);
+		out.writeInt(numClasses);
+		for(double[] distribution : distributions)
+		{
+			out.writeInt(argMax(distribution));
+			for(int c = 0; c < numClasses; c++)
+				out.writeFloat((float)distribution[c]);
+		}
+	}
+
+	/**
+	 * Reads a response.
+	 *
+	 * @param in The stream to read from.
+	 * @return The predictions.
+	 * @throws IOException If the response is malformed or cut short.
+	 */
+	public static Response readResponse(DataInputStream in) throws IOException
+	{
+		int numRecords = in.readInt();
+		int numClasses = in.readInt();
+		if(numRecords < 0 || numClasses < 0 || numRecords > MAX_RECORDS
+			|| (long)numRecords*(1 + numClasses) > MAX_VALUES)
+			throw new IOException("bad response size " + numRecords + " by " + numClasses);
+		Response response = new Response(numRecords);
+		for(int i = 0; i < numRecords; i++)
+		{
+			response.labels[i] = in.readInt();
+			double[] distribution = new double[numClasses];
+			for(int c = 0; c < numClasses; c++)
+				distribution[c] = in.readFloat();
+			response.distributions[i] = distribution;
+		}
+		return response;
+	}
+
+	/**
+	 * @return The number of classes of a set of distributions, 0 if there
+	 * 	are none.
+	 */
+	public static int getNumClasses(double[][] distributions)
+	{
+		return (distributions.length == 0) ? 0 : distributions[0].length;
+	}
+
+	/**
+	 * @param distribution A class distribution.
+	 * @return The index of the first most probable class.
+	 */
+	public static int argMax(double[] distribution)
+	{
+		int maxIndex = 0;
+		for(int i = 1; i < distribution.length; i++)
+		{
+			if(distribution[i] > distribution[maxIndex])
+				maxIndex = i;
+		}
+		return maxIndex;
+	}
+
+	/**
+	 * The predictions of a response.
+	 */
+	public static class Response
+	{
+		/** The label predicted for each instance */
+		public final int[] labels;
+		/** The distribution predicted for each instance */
+		public final double[][] distributions;
+
+		Response(int numRecords)
+		{
+			labels = new int[numRecords];
+			distributions = new double[numRecords][];
+		}
+	}
+}
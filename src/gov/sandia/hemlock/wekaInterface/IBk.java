@@ -12,8 +12,10 @@
 package gov.sandia.hemlock.wekaInterface;
 
 import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.UpdateableModel;
 import gov.sandia.hemlock.classification.ModelType;
 import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.data.DataSet;
 import gov.sandia.hemlock.data.IDataSet;
 import weka.core.Instance;
 
@@ -22,8 +24,12 @@ import weka.core.Instance;
  *
  * @author Sean A. Gilpin
  */
-public class IBk implements Model
+public class IBk implements UpdateableModel
 {
+	/** Unchanged from before models could be updated, so that previously
+		serialized models can still be loaded */
+	private static final long serialVersionUID = -8328868826531170650L;
+	
 	public weka.classifiers.lazy.IBk wekaIBk;
 	public WekaDataSet dataSet;
 	
@@ -92,6 +98,23 @@ public class IBk implements Model
 		return wekaIBk.distributionForInstance(instance);
 	}
 
+	/**
+	 * Updates the model with new training instances, one at a time, which
+	 * gives the same model as training on all of the instances together.
+	 *
+	 * @param newData The new instances.
+	 * @throws Exception
+	 */
+	public void updateModel(DataSet newData) throws Exception
+	{
+		for(double[] record : newData.records)
+		{
+			Instance instance = new Instance(1.0, record);
+			instance.setDataset(dataSet.records);
+			wekaIBk.updateClassifier(instance);
+		}
+	}
+	
 	/**
 	 * Will report the learning algorithm that is used by this model.
 	 * Assumes the model has been built.
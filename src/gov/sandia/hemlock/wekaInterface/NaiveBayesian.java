@@ -12,9 +12,11 @@
 package gov.sandia.hemlock.wekaInterface;
 
 import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.UpdateableModel;
 import gov.sandia.hemlock.classification.ModelType;
 import gov.sandia.hemlock.classification.parameters.ModelParameters;
 import weka.core.Instance;
+import gov.sandia.hemlock.data.DataSet;
 import gov.sandia.hemlock.data.IDataSet;
 
 /**
@@ -22,8 +24,11 @@ import gov.sandia.hemlock.data.IDataSet;
  *
  * @author Sean A. Gilpin
  */
-public class NaiveBayesian implements Model
+public class NaiveBayesian implements UpdateableModel
 {
+	/** Unchanged from before models could be updated, so that previously
+		serialized models can still be loaded */
+	private static final long serialVersionUID = 2444732537638998378L;
 
 	public weka.classifiers.bayes.NaiveBayes wekaNBModel;
 	public WekaDataSet dataSet;
@@ -96,6 +101,23 @@ public class NaiveBayesian implements Model
 		return wekaNBModel.distributionForInstance(instance);
 	}
 
+	/**
+	 * Updates the model with new training instances, one at a time, which
+	 * gives the same model as training on all of the instances together.
+	 *
+	 * @param newData The new instances.
+	 * @throws Exception
+	 */
+	public void updateModel(DataSet newData) throws Exception
+	{
+		for(double[] record : newData.records)
+		{
+			Instance instance = new Instance(1.0, record);
+			instance.setDataset(dataSet.records);
+			wekaNBModel.updateClassifier(instance);
+		}
+	}
+	
 	/**
 	 * Will report the learning algorithm that is used by this model.
 	 * Assumes the model has been built.
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.wekaInterface;
+
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.trees.CompiledTreeEnsemble;
+import java.lang.reflect.Field;
+import weka.core.Instances;
+
+/**
+ * Compiles the Weka RandomTree and RandomForest wrappers into a
+ * {@link CompiledTreeEnsemble}.  Weka keeps the nodes of a RandomTree in
+ * protected fields (m_Attribute, m_SplitPoint, m_Successors, m_ClassProbs
+ * and m_Info) and the trees of a RandomForest in its bagger, so they are
+ * read by reflection.  Weka sends values less than the split point to the
+ * first child, so the compiled threshold is the next smaller double, and a
+ * node with no class probabilities predicts those of its parent, as in
+ * Weka.
+ *
+ * @author Sean A. Gilpin
+ */
+public class WekaTreeCompiler
+{
+	/**
+	 * Compiles a Weka tree model.  Called by
+	 * {@link CompiledTreeEnsemble#compile}.
+	 *
+	 * @param model A trained {@link RandomTree} or {@link RandomForest}.
+	 * @return The compiled model.
+	 * @throws Exception If the model is not a tree model, or the Weka
+	 * 	classes do not have the expected fields.
+	 */
+	public static CompiledTreeEnsemble compile(Model model) throws Exception
+	{
+		Object[] trees;
+		Instances header;
+		ModelType modelType;
+		if(model instanceof RandomTree)
+		{
+			RandomTree rt = (RandomTree)model;
+			trees = new Object[] { rt.wekaRT };
+			header = rt.dataSet.records;
+			modelType = ModelType.RandomTree;
+		}
+		else if(model instanceof RandomForest)
+		{
+			RandomForest rf = (RandomForest)model;
+			Object bagger = getField(rf.wekaRFModel, "m_bagger");
+			trees = (Object[])getField(bagger, "m_Classifiers");
+			header = rf.dataSet.records;
+			modelType = ModelType.RandomForest;
+		}
+		else
+			throw new Exception("a " + model.getModelType() + " model cannot be compiled");
+
+		CompiledTreeEnsemble compiled = new CompiledTreeEnsemble(modelType, header.numClasses());
+		for(Object tree : trees)
+			compileNode(compiled, tree, compiled.addTree(1), null);
+		compiled.trim();
+		return compiled;
+	}
+
+	/**
+	 * Compiles a node of a Weka RandomTree and, recursively, the nodes
+	 * below it, as Weka itself walks the tree recursively.
+	 */
+	private static void compileNode(CompiledTreeEnsemble compiled, Object tree, int node, double[] parentProbs)
+		throws Exception
+	{
+		int attribute = ((Integer)getField(tree, "m_Attribute")).intValue();
+		double[] probs = (double[])getField(tree, "m_ClassProbs");
+		if(probs == null)
+			probs = parentProbs;
+		if(attribute < 0)
+		{
+			compiled.setLeaf(node, probs);
+			return;
+		}
+
+		Object[] successors = (Object[])getField(tree, "m_Successors");
+		Instances info = (Instances)getField(tree, "m_Info");
+		int first = compiled.addNodes(successors.length);
+		if(info.attribute(attribute).isNominal())
+			compiled.setDiscreteSplit(node, attribute, first, successors.length, probs);
+		else
+		{
+			double splitPoint = ((Double)getField(tree, "m_SplitPoint")).doubleValue();
+			compiled.setContinuousSplit(node, attribute, Math.nextAfter(splitPoint, Double.NEGATIVE_INFINITY), first);
+		}
+		for(int i = 0; i < successors.length; i++)
+			compileNode(compiled, successors[i], first + i, probs);
+	}
+
+	/**
+	 * Reads a field of an object, which may be declared by a superclass and
+	 * need not be public.
+	 */
+	private static Object getField(Object object, String name) throws Exception
+	{
+		for(Class<?> c = object.getClass(); c != null; c = c.getSuperclass())
+		{
+			try
+			{
+				Field field = c.getDeclaredField(name);
+				field.setAccessible(true);
+				return field.get(object);
+			}
+			catch(NoSuchFieldException e)
+			{
+				//look in the superclass
+			}
+		}
+		throw new Exception("cannot compile " + object.getClass().getName() + ", which has no field " + name);
+	}
+}
@@ -27,7 +27,12 @@ import org.junit.runners.*;
 @RunWith(value=Suite.class)
 @SuiteClasses(value={WekaInterface.class, UseCaseEndUser.class, Metrics.class, 
 	MetaExperiments.class, Evaluation.class, 
-	Ensembles.class, BaggingEnsembles.class})
+	Ensembles.class, BaggingEnsembles.class, Monitoring.class, Serving.class,
+	DiversityMeasures.class, StreamingEvaluation.class, NaiveBayes.class,
+	CompiledTrees.class, ReducedPrecision.class, ScoringFiles.class,
+	UpdatingModels.class, ModelCaching.class, ModelStoring.class,
+	ParameterSearches.class, LinearModels.class, NearestNeighbors.class,
+	ROCCurves.class, DataGeneration.class})
 public class AllExperiments {
 
 }
\ No newline at end of file
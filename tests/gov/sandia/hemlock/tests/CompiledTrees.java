@@ -0,0 +1,74 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.ClassifierFactory;
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.classification.trees.CompiledTreeEnsemble;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.DataSet;
+import java.util.*;
+import org.junit.*;
+
+public class CompiledTrees extends ExperimentTest
+{
+	@Test
+	public void testHemlockRandomTree() throws Exception
+	{
+		comparePredictions(FrameworkType.hemlock, ModelType.RandomTree);
+	}
+	
+	@Test
+	public void testHemlockRandomForest() throws Exception
+	{
+		comparePredictions(FrameworkType.hemlock, ModelType.RandomForest);
+	}
+	
+	@Test
+	public void testWekaRandomTree() throws Exception
+	{
+		comparePredictions(FrameworkType.weka, ModelType.RandomTree);
+	}
+	
+	@Test
+	public void testWekaRandomForest() throws Exception
+	{
+		comparePredictions(FrameworkType.weka, ModelType.RandomForest);
+	}
+	
+	/**
+	 * Checks that a compiled model predicts the same distributions as the
+	 * model it was compiled from, one instance at a time and in a batch.
+	 */
+	private static void comparePredictions(FrameworkType framework, ModelType type) throws Exception
+	{
+		for(String dataSetName : new String[]{"mixed_2", "continuous_2", "discrete_2"})
+		{
+			DataSet data = importDataSet(dataSetName);
+			Model model = new ClassifierFactory(framework, data).createModel(
+				ModelParameters.createModelParameters(framework, type, new Hashtable<String,String>()));
+			Assert.assertTrue(CompiledTreeEnsemble.isCompilable(model));
+			CompiledTreeEnsemble compiled = CompiledTreeEnsemble.compile(model);
+			double[][] batch = compiled.getTargetDistributions(data.records);
+			for(int i = 0; i < data.records.size(); i++)
+			{
+				double[] record = data.records.get(i);
+				double[] expected = model.getTargetDistribution(record);
+				Assert.assertArrayEquals(expected, compiled.getTargetDistribution(record), 1e-12);
+				Assert.assertArrayEquals(expected, batch[i], 1e-12);
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.data.*;
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+
+public class DataGeneration
+{
+	private static File folder;
+	
+	@BeforeClass
+	public static void createFolder()
+	{
+		folder = new File(System.getProperty("java.io.tmpdir"), "hemlock-generator-" + System.nanoTime());
+		folder.mkdirs();
+	}
+	
+	@AfterClass
+	public static void deleteFolder()
+	{
+		delete(folder);
+	}
+	
+	@Test
+	public void testTextIsSameAtAnyThreadCount() throws Exception
+	{
+		assertSameAtAnyThreadCount(FileFormatType.ModifiedC45, ".data");
+	}
+	
+	@Test
+	public void testBinaryIsSameAtAnyThreadCount() throws Exception
+	{
+		assertSameAtAnyThreadCount(FileFormatType.HemlockBinary, ".bin");
+	}
+	
+	@Test
+	public void testSeedChangesData() throws Exception
+	{
+		StreamingDataSetGenerator generator = createGenerator("seeds", FileFormatType.HemlockBinary);
+		List<double[]> first = generator.generateDataSet().records;
+		generator.seed++;
+		List<double[]> second = generator.generateDataSet().records;
+		int numDifferent = 0;
+		for(int i = 0; i < first.size(); i++)
+		{
+			if(!Arrays.equals(first.get(i), second.get(i)))
+				numDifferent++;
+		}
+		Assert.assertTrue(numDifferent > first.size()/2);
+	}
+	
+	@Test
+	public void testBinaryReadsBack() throws Exception
+	{
+		StreamingDataSetGenerator generator = createGenerator("binary", FileFormatType.HemlockBinary);
+		generator.repositoryPath = new File(folder, "readback").getPath();
+		DataSet expected = generator.generateDataSet();
+		DataSet imported = new DataImporter().importDataSet(generator.generateToDisk());
+		
+		Assert.assertEquals(FileFormatType.HemlockBinary, imported.info.fileFormat);
+		Assert.assertEquals(expected.recordSchema.toString(), imported.recordSchema.toString());
+		Assert.assertEquals(expected.records.size(), imported.records.size());
+		for(int i = 0; i < expected.records.size(); i++)
+			Assert.assertArrayEquals(expected.records.get(i), imported.records.get(i), 0);
+	}
+	
+	@Test
+	public void testTextReadsBack() throws Exception
+	{
+		StreamingDataSetGenerator generator = createGenerator("text", FileFormatType.ModifiedC45);
+		generator.repositoryPath = new File(folder, "readback").getPath();
+		DataSet expected = generator.generateDataSet();
+		DataSet imported = new DataImporter().importDataSet(generator.generateToDisk());
+		
+		Assert.assertEquals(expected.records.size(), imported.records.size());
+		for(int i = 0; i < expected.records.size(); i++)
+			Assert.assertArrayEquals(expected.records.get(i), imported.records.get(i), 0);
+	}
+	
+	/**
+	 * Writes the same data set with 1, 2 and 7 threads, which must give the
+	 * same bytes, and the same instances as generating it in memory.
+	 */
+	private static void assertSameAtAnyThreadCount(FileFormatType format, String extension) throws Exception
+	{
+		String name = "threads" + extension.replace('.', '_');
+		StreamingDataSetGenerator generator = createGenerator(name, format);
+		byte[] expected = null;
+		for(int numThreads : new int[]{1, 2, 7})
+		{
+			generator.numThreads = numThreads;
+			generator.repositoryPath = new File(folder, "threads_" + numThreads).getPath();
+			DataSetInfo info = generator.generateToDisk();
+			byte[] bytes = readFile(new File(info.absolutePath, name + extension));
+			if(expected == null)
+			{
+				expected = bytes;
+				DataSet imported = new DataImporter().importDataSet(info);
+				List<double[]> records = generator.generateDataSet().records;
+				for(int i = 0; i < records.size(); i++)
+					Assert.assertArrayEquals(records.get(i), imported.records.get(i), 0);
+			}
+			else
+				Assert.assertArrayEquals(expected, bytes);
+		}
+	}
+	
+	/**
+	 * A generator of 1050 mixed instances in blocks of 100, so that there
+	 * are more blocks than threads and the last block is short.
+	 */
+	private static StreamingDataSetGenerator createGenerator(String name, FileFormatType format)
+	{
+		StreamingDataSetGenerator generator = new StreamingDataSetGenerator();
+		generator.seed = 17;
+		generator.dataSetName = name;
+		generator.numClasses = 3;
+		generator.numNominalFeatures = 2;
+		generator.numContinuousFeatures = 3;
+		generator.numInstances = 1050;
+		generator.blockSize = 100;
+		generator.featureCorrelation = 0.3;
+		generator.labelNoise = 0.1;
+		generator.fileFormat = format;
+		generator.initializeParameters(2, 2, 4);
+		return generator;
+	}
+	
+	private static byte[] readFile(File file) throws IOException
+	{
+		byte[] bytes = new byte[(int)file.length()];
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try
+		{
+			in.readFully(bytes);
+		}
+		finally
+		{
+			in.close();
+		}
+		return bytes;
+	}
+	
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+		{
+			for(File child : children)
+				delete(child);
+		}
+		file.delete();
+	}
+}
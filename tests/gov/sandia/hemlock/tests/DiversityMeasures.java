@@ -0,0 +1,153 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.ClassifierFactory;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.*;
+import gov.sandia.hemlock.evaluation.Diversity;
+import gov.sandia.hemlock.evaluation.DiversityEngine;
+import java.io.*;
+import java.util.*;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.*;
+import org.w3c.dom.*;
+
+public class DiversityMeasures extends ExperimentTest
+{
+	@Test
+	public void testEngineTwoClasses() throws Exception
+	{
+		compareEngine(classify(importDataSet("mixed_2")));
+	}
+	
+	@Test
+	public void testEngineFourClasses() throws Exception
+	{
+		//more than two classes need the label bit planes of the engine
+		StreamingDataSetGenerator generator = new StreamingDataSetGenerator();
+		generator.seed = 1;
+		generator.dataSetName = "diversity_4";
+		generator.repositoryPath = "data/";
+		generator.numClasses = 4;
+		generator.numNominalFeatures = 2;
+		generator.numContinuousFeatures = 3;
+		generator.numInstances = 300;
+		generator.initializeParameters(2, 2, 5);
+		compareEngine(classify(generator.generateDataSet()));
+	}
+	
+	@Test
+	public void testCorrelationOnlyExperiment() throws Exception
+	{
+		//correlation is found by the engine, which must be created even
+		//when no other pairwise measure is requested
+		File results = new File("tests/experiments/results/DiversityMeasures/");
+		File[] old = results.listFiles();
+		for(int i = 0; old != null && i < old.length; i++)
+			old[i].delete();
+		runExperimentFile("tests/experiments/DiversityMeasures/noHoldOutCorrelation",
+			"tests/experiments/results/DiversityMeasures/DiversityMeasures");
+		
+		Document output = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(results.listFiles()[0]);
+		NodeList summaries = output.getElementsByTagName("Summary");
+		Assert.assertEquals(info.length, summaries.getLength());
+		for(int i = 0; i < summaries.getLength(); i++)
+		{
+			Element summary = (Element)summaries.item(i);
+			String dataSetName = summary.getElementsByTagName("dataSetName").item(0).getTextContent();
+			double reported = Double.parseDouble(
+				summary.getElementsByTagName("diversity_correlation").item(0).getTextContent());
+			Assert.assertEquals(correlation(classify(importDataSet(dataSetName))), reported, 1e-12);
+		}
+	}
+	
+	/**
+	 * Predicts the data set with several differently grown Hemlock trees
+	 * and a naive Bayes model.
+	 */
+	private static ClassifiedDataSet[] classify(DataSet data) throws Exception
+	{
+		ClassifiedDataSet[] cds = new ClassifiedDataSet[6];
+		ClassifierFactory factory = new ClassifierFactory(FrameworkType.hemlock, data);
+		for(int i = 0; i < 5; i++)
+		{
+			Hashtable<String,String> params = new Hashtable<String,String>();
+			params.put("seed", "" + (i + 1));
+			params.put("maxDepth", "" + (i + 1));
+			cds[i] = new ClassifiedDataSet(data, factory.createModel(
+				ModelParameters.createModelParameters(FrameworkType.hemlock, ModelType.RandomTree, params)));
+		}
+		cds[5] = new ClassifiedDataSet(data, factory.createModel(ModelParameters.createModelParameters(
+			FrameworkType.hemlock, ModelType.NaiveBayesian, new Hashtable<String,String>())));
+		return cds;
+	}
+	
+	private static void compareEngine(ClassifiedDataSet[] cds) throws Exception
+	{
+		DiversityEngine serial = new DiversityEngine(cds);
+		serial.countPairs();
+		DiversityEngine parallel = new DiversityEngine(cds);
+		parallel.countPairs(3);
+		//the base classifiers must differ for the comparison to mean much
+		Assert.assertTrue(serial.getDisagreement() > 0);
+		for(DiversityEngine engine : new DiversityEngine[]{serial, parallel})
+		{
+			Assert.assertEquals(Diversity.disagreement(cds), engine.getDisagreement(), 1e-12);
+			Assert.assertEquals(Diversity.yule_q(cds), engine.getYuleQ(), 1e-12);
+			Assert.assertEquals(Diversity.double_fault(cds), engine.getDoubleFault(), 1e-12);
+			Assert.assertEquals(correlation(cds), engine.getCorrelation(), 1e-12);
+		}
+	}
+	
+	/**
+	 * The average pairwise correlation of the oracle outputs, counted
+	 * directly from the predictions.
+	 */
+	private static double correlation(ClassifiedDataSet[] cds)
+	{
+		int N = cds[0].predictedLabels.length;
+		int L = cds.length;
+		int classIndex = cds[0].recordSchema.numAttributes;
+		double total = 0;
+		for(int i = 0; i < L - 1; i++)
+		{
+			for(int j = i + 1; j < L; j++)
+			{
+				double a = 0, b = 0, c = 0, d = 0;
+				for(int k = 0; k < N; k++)
+				{
+					double label = cds[i].records.get(k)[classIndex];
+					boolean iCorrect = cds[i].predictedLabels[k] == label;
+					boolean jCorrect = cds[j].predictedLabels[k] == label;
+					if(iCorrect && jCorrect)
+						a++;
+					else if(iCorrect)
+						b++;
+					else if(jCorrect)
+						c++;
+					else
+						d++;
+				}
+				double denominator = Math.sqrt((a + b)*(c + d)*(a + c)*(b + d));
+				if(denominator == 0)
+					total += (b == 0 && c == 0) ? 1 : 0;
+				else
+					total += (a*d - b*c)/denominator;
+			}
+		}
+		return total/((L*(L - 1))/2);
+	}
+}
@@ -11,6 +11,8 @@
 
 package gov.sandia.hemlock.tests;
 
+import gov.sandia.hemlock.data.DataImporter;
+import gov.sandia.hemlock.data.DataSet;
 import gov.sandia.hemlock.data.DataSetInfo;
 import gov.sandia.hemlock.data.DataSetInfoEvaluator;
 import gov.sandia.hemlock.experiment.Experiment;
@@ -30,6 +32,16 @@ public class ExperimentTest
 		info = DataSetInfoEvaluator.getInfoForAllDataSets();
 	}
 	
+	public static DataSet importDataSet(String dataSetName) throws Exception
+	{
+		for(int i = 0; i < info.length; i++)
+		{
+			if(info[i].dataSetName.equals(dataSetName))
+				return new DataImporter().importDataSet(info[i]);
+		}
+		throw new Exception("data set " + dataSetName + " was not found");
+	}
+	
 	public void runExperimentFile(String inputFileName, String outputFileName) throws Exception
 	{
 		
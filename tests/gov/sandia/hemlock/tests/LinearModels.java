@@ -0,0 +1,181 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.ClassifierFactory;
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.core.WorkerThread;
+import gov.sandia.hemlock.data.*;
+import java.util.*;
+import org.junit.*;
+
+public class LinearModels
+{
+	/** Corners of a triangle, each linearly separable from the other two */
+	private static final double[][] CENTERS = {{0, 0}, {10, 0}, {5, 10}};
+	private static final double SPREAD = 1;
+
+	@Test
+	public void testHingeSeparatesSeparableData() throws Exception
+	{
+		for(int numClasses = 2; numClasses <= 3; numClasses++)
+		{
+			DataSet data = createSeparableData(numClasses, 300);
+			assertSeparates(data, train(data, "hinge"));
+		}
+	}
+
+	@Test
+	public void testLogisticSeparatesSeparableData() throws Exception
+	{
+		for(int numClasses = 2; numClasses <= 3; numClasses++)
+		{
+			DataSet data = createSeparableData(numClasses, 300);
+			assertSeparates(data, train(data, "logistic"));
+		}
+	}
+
+	@Test
+	public void testDistributionsSumToOne() throws Exception
+	{
+		for(String loss : new String[]{"hinge", "logistic"})
+		{
+			for(int numClasses = 2; numClasses <= 3; numClasses++)
+			{
+				DataSet data = createSeparableData(numClasses, 300);
+				Model model = train(data, loss);
+				for(double[] record : data.records)
+				{
+					double total = 0;
+					for(double p : model.getTargetDistribution(record))
+					{
+						Assert.assertTrue(p >= 0 && p <= 1);
+						total += p;
+					}
+					Assert.assertEquals(1, total, 1e-12);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDistributionsAreMonotoneInMargin() throws Exception
+	{
+		DataSet data = createSeparableData(2, 300);
+		for(String loss : new String[]{"hinge", "logistic"})
+		{
+			Model model = train(data, loss);
+			//walk from beyond the first class to beyond the second
+			double previous = -1;
+			for(int step = 0; step <= 100; step++)
+			{
+				double t = -0.5 + 2.0*step/100;
+				double[] record = new double[3];
+				for(int j = 0; j < 2; j++)
+					record[j] = CENTERS[0][j] + t*(CENTERS[1][j] - CENTERS[0][j]);
+				double p = model.getTargetDistribution(record)[1];
+				Assert.assertTrue(loss + " at " + t, p >= previous);
+				previous = p;
+			}
+			Assert.assertTrue(model.getTargetDistribution(new double[]{CENTERS[0][0], CENTERS[0][1], 0})[1] < 0.5);
+			Assert.assertTrue(model.getTargetDistribution(new double[]{CENTERS[1][0], CENTERS[1][1], 0})[1] > 0.5);
+		}
+	}
+
+	@Test
+	public void testThreadsDoNotChangeModel() throws Exception
+	{
+		final DataSet data = createSeparableData(3, 300);
+		for(final String loss : new String[]{"hinge", "logistic"})
+		{
+			Model parallel = train(data, loss);
+			//a worker thread trains the one against the rest classifiers serially
+			final Model[] serial = new Model[1];
+			final Exception[] error = new Exception[1];
+			Thread worker = new WorkerThread(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						serial[0] = train(data, loss);
+					}
+					catch(Exception e)
+					{
+						error[0] = e;
+					}
+				}
+			});
+			worker.start();
+			worker.join();
+			if(error[0] != null)
+				throw error[0];
+			for(double[] record : data.records)
+				Assert.assertArrayEquals(serial[0].getTargetDistribution(record), parallel.getTargetDistribution(record), 0);
+		}
+	}
+
+	private static Model train(DataSet data, String loss) throws Exception
+	{
+		Hashtable<String,String> params = new Hashtable<String,String>();
+		params.put("loss", loss);
+		params.put("complexity", "10");
+		params.put("epsilon", "0.001");
+		params.put("seed", "1");
+		return new ClassifierFactory(FrameworkType.hemlock, data).createModel(
+			ModelParameters.createModelParameters(FrameworkType.hemlock, ModelType.SVM, params));
+	}
+
+	private static void assertSeparates(DataSet data, Model model) throws Exception
+	{
+		int label = data.recordSchema.numAttributes;
+		for(double[] record : data.records)
+			Assert.assertEquals(record[label], model.getTargetValue(record), 0);
+	}
+
+	/**
+	 * Creates instances spread uniformly in a small square around a corner
+	 * of the triangle of their class, using the schema of a generated data
+	 * set with two continuous features.
+	 */
+	private static DataSet createSeparableData(int numClasses, int numInstances)
+	{
+		StreamingDataSetGenerator generator = new StreamingDataSetGenerator();
+		generator.seed = 3;
+		generator.dataSetName = "separable_" + numClasses;
+		generator.repositoryPath = "data/";
+		generator.numClasses = numClasses;
+		generator.numNominalFeatures = 0;
+		generator.numContinuousFeatures = 2;
+		generator.numInstances = numInstances;
+		generator.initializeParameters(2, 1, 2);
+		DataSet generated = generator.generateDataSet();
+
+		Random random = new Random(11);
+		ArrayList<double[]> records = new ArrayList<double[]>(numInstances);
+		for(int i = 0; i < numInstances; i++)
+		{
+			int c = i % numClasses;
+			double[] record = new double[3];
+			for(int j = 0; j < 2; j++)
+				record[j] = CENTERS[c][j] + SPREAD*(2*random.nextDouble() - 1);
+			record[2] = c;
+			records.add(record);
+		}
+		return new DataSet(generated.recordSchema, generated.info, records);
+	}
+}
@@ -12,13 +12,21 @@
 package gov.sandia.hemlock.tests;
 
 
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.parameters.EnsembleParameters;
 import gov.sandia.hemlock.evaluation.AccuracyTable;
-import gov.sandia.hemlock.experiment.MetaExperiment;
+import gov.sandia.hemlock.experiment.*;
+import gov.sandia.hemlock.main.RunExperiment;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
 import java.io.*;
-import org.junit.Test;
+import java.util.*;
+import javax.xml.parsers.*;
+import org.junit.*;
+import org.w3c.dom.*;
 
 public class MetaExperiments extends ExperimentTest
 {
+	private static final String SWEEP = "tests/meta-experiments/sweep_SumRule";
 
 	@Test
 	public void processOptimizeRandomTree() throws Exception
@@ -56,5 +64,193 @@ public class MetaExperiments extends ExperimentTest
 		pw.print(table);
 		pw.close();
 	}
+	
+	@Test
+	public void searchGridRandomTree() throws Exception
+	{
+		File folder = new File(System.getProperty("java.io.tmpdir"), "hemlock-search-" + System.nanoTime());
+		folder.mkdirs();
+		File output = new File(folder, "search_RandomTree");
+		File report = new File(folder, "search_RandomTree.search.xml");
+		try
+		{
+			long queued = HemlockMetrics.getFoldsQueued();
+			MetaExperiment me = new MetaExperiment();
+			me.createExperiments("tests/meta-experiments/search_RandomTree", output.getPath());
+			Assert.assertEquals(queued, HemlockMetrics.getFoldsQueued());
+			
+			//every one of the four depths is scored on all of the data
+			DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			Element search = builder.parse(report).getDocumentElement();
+			NodeList evaluations = search.getElementsByTagName("Evaluation");
+			Assert.assertEquals(4, evaluations.getLength());
+			String best = null;
+			double bestAccuracy = Double.NEGATIVE_INFINITY;
+			for(int i = 0; i < evaluations.getLength(); i++)
+			{
+				Element evaluation = (Element)evaluations.item(i);
+				Assert.assertEquals(1.0, Double.parseDouble(evaluation.getAttribute("fraction")), 0);
+				double accuracy = Double.parseDouble(evaluation.getAttribute("accuracy"));
+				Assert.assertTrue(accuracy >= 0 && accuracy <= 1);
+				if(evaluation.getAttribute("stopped").equals("false"))
+				{
+					Assert.assertEquals("3", evaluation.getAttribute("foldsRun"));
+					if(accuracy > bestAccuracy)
+					{
+						bestAccuracy = accuracy;
+						best = evaluation.getAttribute("ID");
+					}
+				}
+			}
+			Assert.assertEquals(best, search.getAttribute("best"));
+			
+			//the best combinations are written out, most accurate first
+			NodeList experiments = builder.parse(output).getElementsByTagName("Experiment");
+			Assert.assertTrue(experiments.getLength() >= 1 && experiments.getLength() <= 2);
+			Assert.assertEquals(best, ((Element)experiments.item(0)).getAttribute("ID"));
+		}
+		finally
+		{
+			output.delete();
+			report.delete();
+			folder.delete();
+		}
+	}
+	
+	@Test
+	public void iterateSweepSumRule() throws Exception
+	{
+		File folder = new File(System.getProperty("java.io.tmpdir"), "hemlock-meta-" + System.nanoTime());
+		folder.mkdirs();
+		File created = new File(folder, "created");
+		File audit = new File(folder, "audit");
+		try
+		{
+			new MetaExperiment().createExperiments(SWEEP, created.getPath());
+			
+			//the experiments are created in order as they are asked for
+			ExperimentIterator experiments = new MetaExperiment().iterator(SWEEP, info, audit.getPath());
+			Assert.assertEquals(12, experiments.size());
+			int count = 0;
+			try
+			{
+				while(experiments.hasNext())
+				{
+					Experiment experiment = experiments.next();
+					Assert.assertEquals("SumRule_" + count, experiment.name);
+					EnsembleParameters params = (EnsembleParameters)experiment.modelParameters;
+					String[] values = getSweepValues(count);
+					Assert.assertEquals(values[0].equals("1") ? ModelType.RandomTree : ModelType.NaiveBayesian,
+						params.getBaseModelParameters().params[0].modelType);
+					Assert.assertEquals(EnsembleParameters.EnsembleGenerationType.valueOf(values[1]), params.getEnsembleGeneration());
+					Assert.assertEquals(Long.parseLong(values[2]), params.getSeed());
+					count++;
+				}
+			}
+			finally
+			{
+				experiments.close();
+			}
+			Assert.assertEquals(experiments.size(), count);
+			
+			//and recorded exactly as createExperiments writes them
+			assertSameContents(created, audit);
+			checkSweepExperiments(audit);
+		}
+		finally
+		{
+			created.delete();
+			audit.delete();
+			folder.delete();
+		}
+	}
+	
+	@Test
+	public void runSweepSumRule() throws Exception
+	{
+		File folder = new File(System.getProperty("java.io.tmpdir"), "hemlock-meta-" + System.nanoTime());
+		folder.mkdirs();
+		File created = new File(folder, "created");
+		File audit = new File(folder, "audit");
+		try
+		{
+			new MetaExperiment().createExperiments(SWEEP, created.getPath());
+			RunExperiment.main(new String[]{"-meta", SWEEP, new File(folder, "run").getPath(), audit.getPath()});
+			assertSameContents(created, audit);
+			
+			//every experiment is run once
+			for(int i = 0; i < 12; i++)
+			{
+				final String prefix = "run_SumRule_" + i + ".";
+				Assert.assertEquals(1, folder.list(new FilenameFilter()
+				{
+					public boolean accept(File dir, String name)
+					{
+						return name.startsWith(prefix);
+					}
+				}).length);
+			}
+		}
+		finally
+		{
+			for(File file : folder.listFiles())
+				file.delete();
+			folder.delete();
+		}
+	}
+	
+	/**
+	 * @return The base classifier set, ensemble generation and seed of a
+	 * 	combination of the sweep, the first parameter changing fastest.
+	 */
+	private static String[] getSweepValues(int combination)
+	{
+		return new String[]{
+			new String[]{"1", "2"}[combination % 2],
+			new String[]{"SameTrainingSet", "Bagging"}[(combination / 2) % 2],
+			new String[]{"1", "2", "3"}[combination / 4]};
+	}
+	
+	/**
+	 * Checks the experiments written for the sweep, along with the base
+	 * classifier sets copied from the meta experiment.
+	 */
+	private static void checkSweepExperiments(File file) throws Exception
+	{
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+		Assert.assertEquals(1, doc.getElementsByTagName("BaseClassifiers").getLength());
+		NodeList experiments = doc.getElementsByTagName("Experiment");
+		Assert.assertEquals(12, experiments.getLength());
+		for(int i = 0; i < experiments.getLength(); i++)
+		{
+			Element experiment = (Element)experiments.item(i);
+			Assert.assertEquals("SumRule_" + i, experiment.getAttribute("ID"));
+			Element modelParameters = (Element)experiment.getElementsByTagName("ModelParameters").item(0);
+			NodeList parameters = modelParameters.getElementsByTagName("Parameter");
+			String[] values = getSweepValues(i);
+			String[] names = {"BaseClassifierSetID", "EnsembleGeneration", "seed"};
+			Assert.assertEquals(names.length, parameters.getLength());
+			for(int p = 0; p < names.length; p++)
+			{
+				Element parameter = (Element)parameters.item(p);
+				Assert.assertEquals(names[p], parameter.getAttribute("name"));
+				Assert.assertEquals(values[p], parameter.getTextContent());
+			}
+		}
+	}
+	
+	private static void assertSameContents(File expected, File actual) throws IOException
+	{
+		Assert.assertEquals(expected.length(), actual.length());
+		DataInputStream in = new DataInputStream(new FileInputStream(expected));
+		byte[] expectedBytes = new byte[(int)expected.length()];
+		in.readFully(expectedBytes);
+		in.close();
+		in = new DataInputStream(new FileInputStream(actual));
+		byte[] actualBytes = new byte[(int)actual.length()];
+		in.readFully(actualBytes);
+		in.close();
+		Assert.assertTrue(Arrays.equals(expectedBytes, actualBytes));
+	}
 
 }
@@ -11,8 +11,14 @@
 
 package gov.sandia.hemlock.tests;
 
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.data.*;
+import gov.sandia.hemlock.evaluation.ConfusionMatrix;
 import org.junit.*;
 import java.io.*;
+import java.util.*;
 
 public class Metrics extends ExperimentTest
 {
@@ -27,6 +33,174 @@ public class Metrics extends ExperimentTest
 			"tests/correct-outputs/Metrics_kFoldRandomTreeROC.20090727140119.xml");
 	}
 	
+	/**
+	 * Two classes, with class 1 as the positive class:  TP = 2, TN = 5,
+	 * FP = 1 and FN = 2.
+	 */
+	@Test
+	public void testTwoClassConfusionMeasures()
+	{
+		ConfusionMatrix cm = new ConfusionMatrix(new int[][]{{5, 1}, {2, 2}});
+		Assert.assertEquals(10, cm.total);
+		Assert.assertEquals(7/10.0, cm.calculateAccuracy(), 1e-12);
+		Assert.assertArrayEquals(new double[]{5/7.0, 2/3.0}, cm.calculatePrecision(), 1e-12);
+		Assert.assertArrayEquals(new double[]{5/6.0, 2/4.0}, cm.calculateRecall(), 1e-12);
+		Assert.assertArrayEquals(new double[]{10/13.0, 4/7.0}, cm.calculateF1(), 1e-12);
+		Assert.assertEquals(7/10.0, cm.calculateMicroF1(), 1e-12);
+		//observed agreement 0.7, chance agreement (6*7 + 4*3)/100 = 0.54
+		Assert.assertEquals(0.16/0.46, cm.calculateKappa(), 1e-12);
+		//(TP*TN - FP*FN)/sqrt((TP+FP)(TP+FN)(TN+FP)(TN+FN))
+		Assert.assertEquals((2*5 - 1*2)/Math.sqrt(3*4*6*7), cm.calculateMCC(), 1e-12);
+	}
+	
+	/**
+	 * Three classes with 4, 4 and 2 instances, predicted 4, 3 and 3 times,
+	 * 6 of them correctly.
+	 */
+	@Test
+	public void testThreeClassConfusionMeasures()
+	{
+		ConfusionMatrix cm = new ConfusionMatrix(new int[][]{{3, 1, 0}, {0, 2, 2}, {1, 0, 1}});
+		Assert.assertEquals(10, cm.total);
+		Assert.assertEquals(6/10.0, cm.calculateAccuracy(), 1e-12);
+		double[] precision = cm.calculatePrecision();
+		double[] recall = cm.calculateRecall();
+		double[] f1 = cm.calculateF1();
+		Assert.assertArrayEquals(new double[]{3/4.0, 2/3.0, 1/3.0}, precision, 1e-12);
+		Assert.assertArrayEquals(new double[]{3/4.0, 2/4.0, 1/2.0}, recall, 1e-12);
+		//2TP/(2TP + FP + FN)
+		Assert.assertArrayEquals(new double[]{6/8.0, 4/7.0, 2/5.0}, f1, 1e-12);
+		Assert.assertEquals((3/4.0 + 2/3.0 + 1/3.0)/3, ConfusionMatrix.macroAverage(precision), 1e-12);
+		Assert.assertEquals((6/8.0 + 4/7.0 + 2/5.0)/3, ConfusionMatrix.macroAverage(f1), 1e-12);
+		Assert.assertEquals(6/10.0, cm.calculateMicroF1(), 1e-12);
+		//chance agreement (4*4 + 4*3 + 2*3)/100 = 0.34
+		Assert.assertEquals((0.6 - 0.34)/(1 - 0.34), cm.calculateKappa(), 1e-12);
+		//(6*10 - 34)/sqrt((100 - (16 + 9 + 9))*(100 - (16 + 16 + 4)))
+		Assert.assertEquals(26/Math.sqrt(66*64), cm.calculateMCC(), 1e-12);
+	}
+	
+	/**
+	 * Every instance is predicted to be class 0, class 2 has no instances,
+	 * so the measures of the classes never predicted or never seen are 0.
+	 */
+	@Test
+	public void testDegenerateConfusionMeasures()
+	{
+		ConfusionMatrix cm = new ConfusionMatrix(new int[][]{{4, 0, 0}, {2, 0, 0}, {0, 0, 0}});
+		Assert.assertArrayEquals(new double[]{4/6.0, 0, 0}, cm.calculatePrecision(), 1e-12);
+		Assert.assertArrayEquals(new double[]{1, 0, 0}, cm.calculateRecall(), 1e-12);
+		Assert.assertArrayEquals(new double[]{8/10.0, 0, 0}, cm.calculateF1(), 1e-12);
+		Assert.assertEquals(4/6.0, cm.calculateMicroF1(), 1e-12);
+		Assert.assertEquals(0, cm.calculateKappa(), 1e-12);
+		Assert.assertEquals(0, cm.calculateMCC(), 0);
+		
+		ConfusionMatrix perfect = new ConfusionMatrix(new int[][]{{3, 0}, {0, 5}});
+		Assert.assertEquals(1, perfect.calculateKappa(), 1e-12);
+		Assert.assertEquals(1, perfect.calculateMCC(), 1e-12);
+		ConfusionMatrix oneClass = new ConfusionMatrix(new int[][]{{5, 0}, {0, 0}});
+		Assert.assertEquals(1, oneClass.calculateKappa(), 0);
+		Assert.assertEquals(0, oneClass.calculateMCC(), 0);
+		
+		ConfusionMatrix empty = new ConfusionMatrix(new int[][]{{0, 0}, {0, 0}});
+		Assert.assertEquals(0, empty.calculateMicroF1(), 0);
+		Assert.assertEquals(0, empty.calculateKappa(), 0);
+		Assert.assertEquals(0, empty.calculateMCC(), 0);
+	}
+	
+	/**
+	 * Log loss and Brier score of four labeled instances, one of them a
+	 * confident mistake, and one instance with a missing label that is
+	 * skipped.
+	 */
+	@Test
+	public void testLogLossAndBrierScore() throws Exception
+	{
+		double[][] records = {
+			{0.5, 0.25, 0.25, 0},
+			{0.2, 0.8, 0, 1},
+			{1, 0, 0, 2},
+			{0.1, 0.1, 0.8, Double.NaN},
+			{0, 0, 1, 2}};
+		ClassifiedDataSet data = classify(records);
+		
+		double logLoss = (-Math.log(0.5) - Math.log(0.8) - Math.log(ClassifiedDataSet.LOG_LOSS_EPSILON) - Math.log(1))/4;
+		double brier = ((0.25 + 0.0625 + 0.0625) + (0.04 + 0.04 + 0) + (1 + 0 + 1) + 0)/4;
+		Assert.assertEquals(logLoss, data.logLoss, 1e-12);
+		Assert.assertEquals(brier, data.brierScore, 1e-12);
+		
+		//the confusion matrix of the same predictions
+		ConfusionMatrix cm = new ConfusionMatrix(classify(new double[][]{records[0], records[1], records[2], records[4]}));
+		Assert.assertArrayEquals(new int[]{1, 0, 0}, cm.matrix[0]);
+		Assert.assertArrayEquals(new int[]{0, 1, 0}, cm.matrix[1]);
+		Assert.assertArrayEquals(new int[]{1, 0, 1}, cm.matrix[2]);
+	}
+	
+	/**
+	 * Classifies instances whose attributes are the distribution predicted
+	 * for them, followed by the true label.
+	 */
+	private static ClassifiedDataSet classify(double[][] records) throws Exception
+	{
+		int numClasses = records[0].length - 1;
+		StreamingDataSetGenerator generator = new StreamingDataSetGenerator();
+		generator.dataSetName = "scores_" + numClasses;
+		generator.repositoryPath = "data/";
+		generator.numClasses = numClasses;
+		generator.numNominalFeatures = 0;
+		generator.numContinuousFeatures = numClasses;
+		generator.numInstances = 0;
+		generator.initializeParameters(2, 1, 2);
+		DataSet generated = generator.generateDataSet();
+		
+		ArrayList<double[]> copies = new ArrayList<double[]>();
+		for(double[] record : records)
+			copies.add(record.clone());
+		DataSet data = new DataSet(generated.recordSchema, generated.info, copies);
+		return new ClassifiedDataSet(data, new ScoresModel(numClasses));
+	}
+	
+	/**
+	 * Predicts the attributes of an instance as its distribution.
+	 */
+	private static class ScoresModel implements Model
+	{
+		private final int numClasses;
+		
+		ScoresModel(int numClasses)
+		{
+			this.numClasses = numClasses;
+		}
+		
+		public void setData(IDataSet data)
+		{
+		}
+		
+		public void buildModel(ModelParameters modelParameters)
+		{
+		}
+		
+		public double getTargetValue(double[] record)
+		{
+			int label = 0;
+			for(int k = 1; k < numClasses; k++)
+			{
+				if(record[k] > record[label])
+					label = k;
+			}
+			return label;
+		}
+		
+		public double[] getTargetDistribution(double[] record)
+		{
+			return Arrays.copyOf(record, numClasses);
+		}
+		
+		public ModelType getModelType()
+		{
+			return null;
+		}
+	}
+	
 	@BeforeClass
 	public static void clean() throws Exception
 	{
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.*;
+import gov.sandia.hemlock.classification.fusion.BaseClassifierSet;
+import gov.sandia.hemlock.classification.parameters.EnsembleParameters;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.*;
+import java.util.*;
+import org.junit.*;
+
+public class ModelCaching
+{
+	private static DataSet first;
+	private static DataSet second;
+	private int capacity;
+	
+	@BeforeClass
+	public static void generateData()
+	{
+		StreamingDataSetGenerator generator = new StreamingDataSetGenerator();
+		generator.seed = 5;
+		generator.dataSetName = "caching_2";
+		generator.repositoryPath = "data/";
+		generator.numClasses = 2;
+		generator.numNominalFeatures = 2;
+		generator.numContinuousFeatures = 3;
+		generator.numInstances = 400;
+		generator.initializeParameters(2, 2, 4);
+		DataSet data = generator.generateDataSet();
+		first = new DataSet(data.recordSchema, data.info, new ArrayList<double[]>(data.records.subList(0, 200)));
+		second = new DataSet(data.recordSchema, data.info, new ArrayList<double[]>(data.records.subList(200, 400)));
+	}
+	
+	@Before
+	public void clearCache()
+	{
+		capacity = ModelCache.getCapacity();
+		ModelCache.setCapacity(100);
+		ModelCache.clear();
+	}
+	
+	@After
+	public void restoreCache()
+	{
+		ModelCache.setCapacity(capacity);
+	}
+	
+	@Test
+	public void testKeys() throws Exception
+	{
+		String fingerprint = first.getFingerprint();
+		Assert.assertEquals(ModelCache.createKey(createTree(1), fingerprint), ModelCache.createKey(createTree(1), fingerprint));
+		Assert.assertFalse(ModelCache.createKey(createTree(1), fingerprint).equals(ModelCache.createKey(createTree(2), fingerprint)));
+		Assert.assertFalse(ModelCache.createKey(createTree(1), fingerprint).equals(
+			ModelCache.createKey(createTree(1), second.getFingerprint())));
+		
+		//the base classifiers of an ensemble can not be described by value
+		EnsembleParameters ensembleParams = createEnsembleParameters(new BaseClassifierSet(new ModelParameters[]{createTree(1)}));
+		Assert.assertNull(ensembleParams.getDescription());
+		Assert.assertNull(ModelCache.createKey(ensembleParams, fingerprint));
+		
+		//so they are never cached
+		long misses = ModelCache.getMisses();
+		ModelCache.put(null, train(first, createTree(1)), 1);
+		Assert.assertNull(ModelCache.get(null));
+		Assert.assertEquals(misses, ModelCache.getMisses());
+	}
+	
+	@Test
+	public void testHitsNeedDataAndParameters() throws Exception
+	{
+		BaseClassifierSet baseSet = new BaseClassifierSet(new ModelParameters[]{createTree(1), createTree(2)});
+		long hits = ModelCache.getHits();
+		long misses = ModelCache.getMisses();
+		Model[] built = buildEnsemble(first, baseSet).getBaseClassifierModels();
+		Assert.assertEquals(hits, ModelCache.getHits());
+		Assert.assertEquals(misses + 2, ModelCache.getMisses());
+		
+		//the same parameters on the same data are found
+		Model[] found = buildEnsemble(first, new BaseClassifierSet(new ModelParameters[]{createTree(1), createTree(2)})).getBaseClassifierModels();
+		Assert.assertSame(built[0], found[0]);
+		Assert.assertSame(built[1], found[1]);
+		Assert.assertEquals(hits + 2, ModelCache.getHits());
+		
+		//other data is not
+		Model[] otherData = buildEnsemble(second, baseSet).getBaseClassifierModels();
+		Assert.assertNotSame(built[0], otherData[0]);
+		Assert.assertNotSame(built[1], otherData[1]);
+		
+		//and neither are other parameters
+		Model[] otherParameters = buildEnsemble(first, new BaseClassifierSet(new ModelParameters[]{createTree(2), createTree(3)})).getBaseClassifierModels();
+		Assert.assertSame(built[1], otherParameters[0]);
+		Assert.assertNotSame(built[0], otherParameters[1]);
+		Assert.assertNotSame(built[1], otherParameters[1]);
+		Assert.assertEquals(hits + 3, ModelCache.getHits());
+		Assert.assertEquals(misses + 5, ModelCache.getMisses());
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedEviction() throws Exception
+	{
+		Model model = train(first, createTree(1));
+		ModelCache.setCapacity(2);
+		ModelCache.put("a", model, 1);
+		ModelCache.put("b", model, 2);
+		Assert.assertNotNull(ModelCache.get("a"));
+		ModelCache.put("c", model, 3);
+		
+		//b was used least recently
+		Assert.assertNull(ModelCache.get("b"));
+		Assert.assertEquals(1, ModelCache.get("a").trainTime);
+		Assert.assertEquals(3, ModelCache.get("c").trainTime);
+		
+		//shrinking the cache keeps the most recently used
+		ModelCache.setCapacity(1);
+		Assert.assertNull(ModelCache.get("a"));
+		Assert.assertSame(model, ModelCache.get("c").model);
+		
+		//a cache without capacity keeps nothing
+		ModelCache.setCapacity(0);
+		ModelCache.put("d", model, 4);
+		ModelCache.setCapacity(1);
+		Assert.assertNull(ModelCache.get("d"));
+	}
+	
+	@Test
+	public void testSoftReferencesAreCleared() throws Exception
+	{
+		//nothing else holds the model
+		ModelCache.put("soft", train(first, createTree(1)), 1);
+		
+		//the collector clears soft references before running out of memory
+		try
+		{
+			ArrayList<long[]> filler = new ArrayList<long[]>();
+			while(true)
+				filler.add(new long[1 << 17]);
+		}
+		catch(OutOfMemoryError e)
+		{
+		}
+		long misses = ModelCache.getMisses();
+		Assert.assertNull(ModelCache.get("soft"));
+		Assert.assertEquals(misses + 1, ModelCache.getMisses());
+	}
+	
+	private static ModelParameters createTree(int seed) throws Exception
+	{
+		Hashtable<String,String> params = new Hashtable<String,String>();
+		params.put("seed", "" + seed);
+		return ModelParameters.createModelParameters(FrameworkType.hemlock, ModelType.RandomTree, params);
+	}
+	
+	private static Model train(DataSet data, ModelParameters params) throws Exception
+	{
+		return new ClassifierFactory(FrameworkType.hemlock, data).createModel(params);
+	}
+	
+	private static EnsembleParameters createEnsembleParameters(BaseClassifierSet baseSet) throws Exception
+	{
+		EnsembleParameters ensembleParams = (EnsembleParameters)ModelParameters.createModelParameters(
+			FrameworkType.hemlock, ModelType.Voting, new Hashtable<String,String>());
+		ensembleParams.setBaseModelParameters(baseSet);
+		return ensembleParams;
+	}
+	
+	private static EnsembleModel buildEnsemble(DataSet data, BaseClassifierSet baseSet) throws Exception
+	{
+		return (EnsembleModel)new ClassifierFactory(FrameworkType.hemlock, data).createModel(createEnsembleParameters(baseSet));
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.*;
+import gov.sandia.hemlock.classification.fusion.BaseClassifierSet;
+import gov.sandia.hemlock.classification.parameters.EnsembleParameters;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.*;
+import java.io.*;
+import java.security.MessageDigest;
+import java.util.*;
+import org.junit.*;
+
+public class ModelStoring
+{
+	private static DataSet data;
+	private static Model model;
+	private File directory;
+	
+	@BeforeClass
+	public static void trainModel() throws Exception
+	{
+		StreamingDataSetGenerator generator = new StreamingDataSetGenerator();
+		generator.seed = 7;
+		generator.dataSetName = "storing_2";
+		generator.repositoryPath = "data/";
+		generator.numClasses = 2;
+		generator.numNominalFeatures = 2;
+		generator.numContinuousFeatures = 3;
+		generator.numInstances = 200;
+		generator.initializeParameters(2, 2, 4);
+		data = generator.generateDataSet();
+		model = new ClassifierFactory(FrameworkType.hemlock, data).createModel(createTree(1));
+	}
+	
+	@Before
+	public void createDirectory()
+	{
+		directory = new File(System.getProperty("java.io.tmpdir"), "hemlock-store-" + System.nanoTime());
+	}
+	
+	@After
+	public void deleteDirectory()
+	{
+		delete(directory);
+	}
+	
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+		{
+			for(File child : children)
+				delete(child);
+		}
+		file.delete();
+	}
+	
+	@Test
+	public void testKey() throws Exception
+	{
+		ModelParameters params = createTree(1);
+		String fingerprint = data.getFingerprint();
+		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+		digest.update(fingerprint.getBytes("UTF-8"));
+		digest.update((byte)0);
+		digest.update(params.getDescription().getBytes("UTF-8"));
+		String key = ModelStore.createKey(params, fingerprint);
+		Assert.assertEquals(DataSet.toHex(digest.digest()), key);
+		Assert.assertEquals(40, key.length());
+		
+		Assert.assertFalse(key.equals(ModelStore.createKey(createTree(2), fingerprint)));
+		EnsembleParameters ensembleParams = (EnsembleParameters)ModelParameters.createModelParameters(
+			FrameworkType.hemlock, ModelType.Voting, new Hashtable<String,String>());
+		ensembleParams.setBaseModelParameters(new BaseClassifierSet(new ModelParameters[]{params}));
+		Assert.assertNull(ModelStore.createKey(ensembleParams, fingerprint));
+	}
+	
+	@Test
+	public void testStoreAndLoad() throws Exception
+	{
+		ModelStore store = new ModelStore(directory, 0);
+		String key = ModelStore.createKey(createTree(1), data.getFingerprint());
+		Assert.assertNull(store.load(key));
+		store.store(key, model, 42);
+		
+		//the model is renamed into place under the first two characters of
+		//its key, leaving no temporary file behind
+		File file = getFile(directory, key);
+		Assert.assertTrue(file.exists());
+		Assert.assertEquals(1, file.getParentFile().list().length);
+		Assert.assertEquals(file.length(), store.getSize());
+		
+		ModelCache.Entry entry = store.load(key);
+		Assert.assertEquals(42, entry.trainTime);
+		for(double[] record : data.records)
+			Assert.assertArrayEquals(model.getTargetDistribution(record), entry.model.getTargetDistribution(record), 0);
+		
+		//storing again replaces the model
+		store.store(key, model, 43);
+		Assert.assertEquals(43, store.load(key).trainTime);
+		Assert.assertEquals(file.length(), store.getSize());
+		
+		//a half written model left by an interrupted run is not counted
+		//when the store is opened again
+		FileOutputStream out = new FileOutputStream(file.getPath() + ".tmp");
+		out.write(new byte[100]);
+		out.close();
+		Assert.assertEquals(file.length(), new ModelStore(directory, 0).getSize());
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedAreDeleted() throws Exception
+	{
+		String fingerprint = data.getFingerprint();
+		String[] keys = new String[3];
+		for(int i = 0; i < keys.length; i++)
+			keys[i] = ModelStore.createKey(createTree(i + 1), fingerprint);
+		
+		//the same model under each key, so that every file is the same size
+		ModelStore measure = new ModelStore(new File(directory, "measure"), 0);
+		measure.store(keys[0], model, 1);
+		long length = measure.getSize();
+		
+		File storeDirectory = new File(directory, "store");
+		ModelStore store = new ModelStore(storeDirectory, length*5/2);
+		store.store(keys[0], model, 1);
+		store.store(keys[1], model, 1);
+		long now = System.currentTimeMillis();
+		getFile(storeDirectory, keys[0]).setLastModified(now - 200000);
+		getFile(storeDirectory, keys[1]).setLastModified(now - 100000);
+		
+		//loading a model marks it as used, so the other one is deleted
+		Assert.assertNotNull(store.load(keys[0]));
+		store.store(keys[2], model, 1);
+		Assert.assertTrue(getFile(storeDirectory, keys[0]).exists());
+		Assert.assertFalse(getFile(storeDirectory, keys[1]).exists());
+		Assert.assertTrue(getFile(storeDirectory, keys[2]).exists());
+		Assert.assertEquals(2*length, store.getSize());
+		Assert.assertNull(store.load(keys[1]));
+	}
+	
+	@Test
+	public void testDamagedModelsAreDiscarded() throws Exception
+	{
+		ModelStore store = new ModelStore(directory, 0);
+		String fingerprint = data.getFingerprint();
+		String truncatedKey = ModelStore.createKey(createTree(1), fingerprint);
+		String garbageKey = ModelStore.createKey(createTree(2), fingerprint);
+		store.store(truncatedKey, model, 1);
+		store.store(garbageKey, model, 1);
+		
+		File truncated = getFile(directory, truncatedKey);
+		byte[] bytes = new byte[(int)truncated.length()];
+		DataInputStream in = new DataInputStream(new FileInputStream(truncated));
+		in.readFully(bytes);
+		in.close();
+		FileOutputStream out = new FileOutputStream(truncated);
+		out.write(bytes, 0, bytes.length/2);
+		out.close();
+		
+		File garbage = getFile(directory, garbageKey);
+		out = new FileOutputStream(garbage);
+		out.write("not a model".getBytes("UTF-8"));
+		out.close();
+		
+		//a model that cannot be read is deleted, so it is trained again
+		Assert.assertNull(store.load(truncatedKey));
+		Assert.assertNull(store.load(garbageKey));
+		Assert.assertFalse(truncated.exists());
+		Assert.assertFalse(garbage.exists());
+		Assert.assertEquals(0, new ModelStore(directory, 0).getSize());
+	}
+	
+	@Test
+	public void testFailedStoreDoesNotStopTraining() throws Exception
+	{
+		ModelStore previous = ModelStore.getDefault();
+		ModelStore store = new ModelStore(directory, 0);
+		ModelStore.setDefault(store);
+		try
+		{
+			//a file where the model's subdirectory should be makes the
+			//write fail as a full disk would
+			String key = ModelStore.createKey(createTree(1), data.getFingerprint());
+			File blocker = new File(directory, key.substring(0, 2));
+			FileOutputStream out = new FileOutputStream(blocker);
+			out.close();
+			
+			Model trained = new ClassifierFactory(FrameworkType.hemlock, data).createModel(createTree(1));
+			for(double[] record : data.records)
+				Assert.assertArrayEquals(model.getTargetDistribution(record), trained.getTargetDistribution(record), 0);
+			Assert.assertEquals(0, store.getSize());
+			Assert.assertNull(store.load(key));
+		}
+		finally
+		{
+			ModelStore.setDefault(previous);
+		}
+	}
+	
+	private static File getFile(File storeDirectory, String key)
+	{
+		return new File(new File(storeDirectory, key.substring(0, 2)), key + ModelStore.EXTENSION);
+	}
+	
+	private static ModelParameters createTree(int seed) throws Exception
+	{
+		Hashtable<String,String> params = new Hashtable<String,String>();
+		params.put("seed", "" + seed);
+		return ModelParameters.createModelParameters(FrameworkType.hemlock, ModelType.RandomTree, params);
+	}
+}
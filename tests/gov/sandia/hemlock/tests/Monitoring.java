@@ -0,0 +1,91 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.DataSet;
+import gov.sandia.hemlock.evaluation.StratifiedCrossValidation;
+import gov.sandia.hemlock.experiment.Experiment;
+import gov.sandia.hemlock.monitoring.HemlockMetrics;
+import gov.sandia.hemlock.monitoring.PrometheusEndpoint;
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import org.junit.*;
+
+public class Monitoring extends ExperimentTest
+{
+	@Test
+	public void testPrometheusScrape() throws Exception
+	{
+		DataSet data = importDataSet("mixed_2");
+		Experiment experiment = new Experiment();
+		experiment.computeAccuracy = true;
+		long queued = HemlockMetrics.getFoldsQueued();
+		long completed = HemlockMetrics.getFoldsCompleted();
+		
+		//Hemlock has no RIPPER, so the first fold fails
+		experiment.modelParameters = ModelParameters.createModelParameters(FrameworkType.hemlock,
+			ModelType.RIPPER, new Hashtable<String,String>());
+		try
+		{
+			new StratifiedCrossValidation(3, data, 1).runTest(experiment);
+			Assert.fail("RIPPER should not be supported by the hemlock framework");
+		}
+		catch(Exception e)
+		{
+		}
+		Assert.assertEquals(queued, HemlockMetrics.getFoldsQueued());
+		
+		experiment.modelParameters = ModelParameters.createModelParameters(FrameworkType.hemlock,
+			ModelType.NaiveBayesian, new Hashtable<String,String>());
+		new StratifiedCrossValidation(3, data, 1).runTest(experiment);
+		
+		PrometheusEndpoint endpoint = new PrometheusEndpoint(0);
+		try
+		{
+			String metrics = scrape(endpoint.getPort());
+			Assert.assertEquals(queued, getMetric(metrics, "hemlock_folds_queued"), 0);
+			Assert.assertEquals(completed + 3, getMetric(metrics, "hemlock_folds_completed_total"), 0);
+			Assert.assertTrue(metrics.contains("# TYPE hemlock_folds_completed_total counter\n"));
+		}
+		finally
+		{
+			endpoint.stop();
+		}
+	}
+	
+	private static String scrape(int port) throws Exception
+	{
+		InputStream in = new URL("http://127.0.0.1:" + port + "/metrics").openStream();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		StringBuilder sb = new StringBuilder();
+		String line;
+		while((line = reader.readLine()) != null)
+			sb.append(line).append('\n');
+		reader.close();
+		return sb.toString();
+	}
+	
+	private static double getMetric(String metrics, String name) throws Exception
+	{
+		for(String line : metrics.split("\n"))
+		{
+			if(line.startsWith(name + " "))
+				return Double.parseDouble(line.substring(name.length() + 1));
+		}
+		throw new Exception("metric " + name + " was not scraped");
+	}
+}
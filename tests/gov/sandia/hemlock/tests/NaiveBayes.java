@@ -0,0 +1,104 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.ClassifierFactory;
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.bayes.NaiveBayesStatistics;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.*;
+import java.util.*;
+import org.junit.*;
+
+public class NaiveBayes extends ExperimentTest
+{
+	@Test
+	public void testMergeMatchesAllInstances() throws Exception
+	{
+		DataSet data = importDataSet("mixed_2");
+		int cut = data.records.size()/3;
+		NaiveBayesStatistics statistics = NaiveBayesStatistics.compute(data.recordSchema, data.records.subList(0, cut));
+		statistics.merge(NaiveBayesStatistics.compute(data.recordSchema,
+			data.records.subList(cut, data.records.size())));
+		assertStatisticsEqual(NaiveBayesStatistics.compute(data.recordSchema, data.records), statistics);
+	}
+	
+	@Test
+	public void testSubtractMatchesRemainingInstances() throws Exception
+	{
+		DataSet data = importDataSet("mixed_2");
+		int cut = data.records.size()/3;
+		List<double[]> removed = data.records.subList(0, cut);
+		List<double[]> remaining = data.records.subList(cut, data.records.size());
+		
+		NaiveBayesStatistics statistics = NaiveBayesStatistics.compute(data.recordSchema, data.records);
+		statistics.subtract(NaiveBayesStatistics.compute(data.recordSchema, removed));
+		assertStatisticsEqual(NaiveBayesStatistics.compute(data.recordSchema, remaining), statistics);
+	}
+	
+	@Test
+	public void testSubtractEverything() throws Exception
+	{
+		DataSet data = importDataSet("mixed_2");
+		NaiveBayesStatistics statistics = NaiveBayesStatistics.compute(data.recordSchema, data.records);
+		statistics.subtract(NaiveBayesStatistics.compute(data.recordSchema, data.records));
+		assertStatisticsEqual(new NaiveBayesStatistics(data.recordSchema), statistics);
+	}
+	
+	@Test
+	public void testFoldsTrainFromSubtractedStatistics() throws Exception
+	{
+		DataSet data = importDataSet("mixed_2");
+		int numFolds = 3;
+		@SuppressWarnings("unchecked")
+		ArrayList<double[]>[] folds = new ArrayList[numFolds];
+		for(int i = 0; i < numFolds; i++)
+			folds[i] = new ArrayList<double[]>();
+		for(int i = 0; i < data.records.size(); i++)
+			folds[i % numFolds].add(data.records.get(i));
+		
+		ModelParameters params = ModelParameters.createModelParameters(FrameworkType.hemlock,
+			ModelType.NaiveBayesian, new Hashtable<String,String>());
+		for(int k = 0; k < numFolds; k++)
+		{
+			FoldedDataSet folded = new FoldedDataSet(data.recordSchema, data.info, folds, k);
+			DataSet plain = new DataSet(data.recordSchema, data.info, new ArrayList<double[]>(folded.records));
+			assertStatisticsEqual(NaiveBayesStatistics.compute(plain), NaiveBayesStatistics.compute(folded));
+			
+			Model fromFolds = new ClassifierFactory(FrameworkType.hemlock, folded).createModel(params);
+			Model direct = new ClassifierFactory(FrameworkType.hemlock, plain).createModel(params);
+			for(double[] record : folds[k])
+				Assert.assertArrayEquals(direct.getTargetDistribution(record), fromFolds.getTargetDistribution(record), 1e-9);
+		}
+	}
+	
+	private static void assertStatisticsEqual(NaiveBayesStatistics expected, NaiveBayesStatistics actual)
+	{
+		Assert.assertArrayEquals(expected.classCounts, actual.classCounts, 0);
+		for(int a = 0; a < expected.numAttributes; a++)
+		{
+			if(expected.valueCounts[a] != null)
+			{
+				for(int c = 0; c < expected.numClasses; c++)
+					Assert.assertArrayEquals(expected.valueCounts[a][c], actual.valueCounts[a][c], 0);
+				continue;
+			}
+			Assert.assertArrayEquals(expected.counts[a], actual.counts[a], 0);
+			Assert.assertArrayEquals(expected.means[a], actual.means[a], 1e-9);
+			for(int c = 0; c < expected.numClasses; c++)
+				Assert.assertEquals(expected.deviations[a][c], actual.deviations[a][c], 1e-9*Math.max(1, expected.deviations[a][c]));
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.BatchModel;
+import gov.sandia.hemlock.classification.ClassifierFactory;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.*;
+import java.util.*;
+import org.junit.*;
+
+public class NearestNeighbors
+{
+	private static final int NUM_TRAINING = 500;
+	private static final int NUM_QUERIES = 1000;
+	private static final int NUM_NEIGHBORS = 5;
+
+	/**
+	 * Few enough coordinates for a KD-tree:  2 nominal features of 3
+	 * values and 4 continuous features.
+	 */
+	@Test
+	public void testKDTreeMatchesScan() throws Exception
+	{
+		assertMatchesScan(2, 3, 4);
+	}
+
+	/**
+	 * Too many coordinates for a KD-tree, so a ball tree is used:  3
+	 * nominal features of 4 values and 8 continuous features.
+	 */
+	@Test
+	public void testBallTreeMatchesScan() throws Exception
+	{
+		assertMatchesScan(3, 4, 8);
+	}
+
+	@Test
+	public void testBatchMatchesSingleInstances() throws Exception
+	{
+		for(int numContinuous = 4; numContinuous <= 20; numContinuous += 16)
+		{
+			DataSet data = generate(2, 3, numContinuous);
+			BatchModel model = train(training(data));
+			ArrayList<double[]> queries = queries(data);
+			double[][] batch = model.getTargetDistributions(queries);
+			Assert.assertEquals(queries.size(), batch.length);
+			for(int i = 0; i < queries.size(); i++)
+				Assert.assertArrayEquals(model.getTargetDistribution(queries.get(i)), batch[i], 0);
+		}
+	}
+
+	/**
+	 * Every training instance is given its own class, so a distribution
+	 * tells exactly which instances were found as neighbors.
+	 */
+	private static void assertMatchesScan(int numNominal, int numNominalValues, int numContinuous) throws Exception
+	{
+		DataSet data = generate(numNominal, numNominalValues, numContinuous);
+		DataSet training = training(data);
+		BatchModel model = train(training);
+		for(double[] query : queries(data))
+			Assert.assertArrayEquals(scan(training, query), model.getTargetDistribution(query), 0);
+	}
+
+	/**
+	 * Finds the neighbors of a query by comparing it with every training
+	 * instance, by the distance of IBk, and votes as the model does.
+	 */
+	private static double[] scan(DataSet training, double[] query)
+	{
+		RecordSchema schema = training.recordSchema;
+		int numAttributes = schema.numAttributes;
+		double[] minimum = new double[numAttributes];
+		double[] range = new double[numAttributes];
+		for(int a = 0; a < numAttributes; a++)
+		{
+			if(schema.attributeTypes[a] == AttributeType.Discrete)
+				continue;
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for(double[] record : training.records)
+			{
+				min = Math.min(min, record[a]);
+				max = Math.max(max, record[a]);
+			}
+			minimum[a] = min;
+			range[a] = max - min;
+		}
+
+		int numTraining = training.records.size();
+		final double[] distances = new double[numTraining];
+		Integer[] order = new Integer[numTraining];
+		for(int i = 0; i < numTraining; i++)
+		{
+			double[] record = training.records.get(i);
+			double d = 0;
+			for(int a = 0; a < numAttributes; a++)
+			{
+				if(schema.attributeTypes[a] == AttributeType.Discrete)
+				{
+					if(record[a] != query[a])
+						d += 1;
+				}
+				else if(range[a] > 0)
+				{
+					double diff = (query[a] - record[a])/range[a];
+					d += diff*diff;
+				}
+			}
+			distances[i] = d;
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			public int compare(Integer a, Integer b)
+			{
+				return Double.compare(distances[a], distances[b]);
+			}
+		});
+		//ties at the kth neighbor would make the neighbors ambiguous
+		Assert.assertTrue(distances[order[NUM_NEIGHBORS]] - distances[order[NUM_NEIGHBORS - 1]] > 1e-9);
+
+		int numClasses = schema.labels.length;
+		double[] distribution = new double[numClasses];
+		double prior = 1.0/numTraining;
+		double total = numClasses*prior;
+		for(int c = 0; c < numClasses; c++)
+			distribution[c] = prior;
+		for(int i = 0; i < NUM_NEIGHBORS; i++)
+		{
+			distribution[(int)training.records.get(order[i])[numAttributes]] += 1;
+			total += 1;
+		}
+		for(int c = 0; c < numClasses; c++)
+			distribution[c] /= total;
+		return distribution;
+	}
+
+	private static BatchModel train(DataSet training) throws Exception
+	{
+		Hashtable<String,String> params = new Hashtable<String,String>();
+		params.put("numberOfNeighbors", Integer.toString(NUM_NEIGHBORS));
+		return (BatchModel)new ClassifierFactory(FrameworkType.hemlock, training).createModel(
+			ModelParameters.createModelParameters(FrameworkType.hemlock, ModelType.KNearestNeighbor, params));
+	}
+
+	/**
+	 * Generates the training instances followed by the queries, with one
+	 * class for each training instance.
+	 */
+	private static DataSet generate(int numNominal, int numNominalValues, int numContinuous)
+	{
+		StreamingDataSetGenerator generator = new StreamingDataSetGenerator();
+		generator.seed = 9;
+		generator.dataSetName = "neighbors_" + numContinuous;
+		generator.repositoryPath = "data/";
+		generator.numClasses = NUM_TRAINING;
+		generator.numNominalFeatures = numNominal;
+		generator.numContinuousFeatures = numContinuous;
+		generator.numInstances = NUM_TRAINING + NUM_QUERIES;
+		generator.initializeParameters(2, 2, numNominalValues);
+		return generator.generateDataSet();
+	}
+
+	private static DataSet training(DataSet data)
+	{
+		int label = data.recordSchema.numAttributes;
+		ArrayList<double[]> records = new ArrayList<double[]>(NUM_TRAINING);
+		for(int i = 0; i < NUM_TRAINING; i++)
+		{
+			double[] record = data.records.get(i).clone();
+			record[label] = i;
+			records.add(record);
+		}
+		return new DataSet(data.recordSchema, data.info, records);
+	}
+
+	private static ArrayList<double[]> queries(DataSet data)
+	{
+		return new ArrayList<double[]>(data.records.subList(NUM_TRAINING, NUM_TRAINING + NUM_QUERIES));
+	}
+}
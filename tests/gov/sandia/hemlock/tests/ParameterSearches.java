@@ -0,0 +1,323 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.experiment.MetaExperiment;
+import java.io.*;
+import java.util.*;
+import javax.xml.parsers.*;
+import javax.xml.transform.*;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.junit.*;
+import org.w3c.dom.*;
+
+public class ParameterSearches
+{
+	private static final String META_EXPERIMENT = "tests/meta-experiments/search_strategies_RandomTree";
+	/** 3 folds on each of 2 data sets */
+	private static final int TOTAL_FOLDS = 6;
+	/** 4 depths times 4 minimum leaf sizes */
+	private static final int COMBINATIONS = 16;
+	
+	private File folder;
+	
+	/** One Evaluation element of a search report */
+	private static class Evaluation
+	{
+		String id;
+		double fraction;
+		int foldsRun;
+		boolean stopped;
+		double accuracy;
+		String parameters;
+	}
+	
+	@Before
+	public void createFolder()
+	{
+		folder = new File(System.getProperty("java.io.tmpdir"), "hemlock-search-" + System.nanoTime());
+		folder.mkdirs();
+	}
+	
+	@After
+	public void deleteFolder()
+	{
+		for(File file : folder.listFiles())
+			file.delete();
+		folder.delete();
+	}
+	
+	@Test
+	public void testGrid() throws Exception
+	{
+		File output = search("grid", "Grid", "true");
+		List<Evaluation> evaluations = readReport(output);
+		Assert.assertEquals(COMBINATIONS, evaluations.size());
+		HashSet<String> combinations = new HashSet<String>();
+		for(Evaluation evaluation : evaluations)
+		{
+			Assert.assertEquals(1, evaluation.fraction, 0);
+			combinations.add(evaluation.parameters);
+		}
+		Assert.assertEquals(COMBINATIONS, combinations.size());
+		checkEarlyStopping(evaluations, true);
+		checkBest(output, evaluations, 2);
+		
+		//without early stopping every combination is scored on every fold,
+		//and those that were not stopped score the same
+		File full = search("full", "Grid", "false");
+		List<Evaluation> fullEvaluations = readReport(full);
+		checkEarlyStopping(fullEvaluations, false);
+		for(int i = 0; i < COMBINATIONS; i++)
+		{
+			Evaluation evaluation = evaluations.get(i);
+			Assert.assertEquals(evaluation.parameters, fullEvaluations.get(i).parameters);
+			if(!evaluation.stopped)
+				Assert.assertEquals(evaluation.accuracy, fullEvaluations.get(i).accuracy, 0);
+		}
+		checkBest(full, fullEvaluations, 2);
+	}
+	
+	@Test
+	public void testSuccessiveHalving() throws Exception
+	{
+		File output = search("halving", "SuccessiveHalving", "true");
+		List<Evaluation> evaluations = readReport(output);
+		
+		//9 samples on a ninth of the data, the best 3 on a third and the
+		//best one on all of it
+		List<List<Evaluation>> rounds = split(evaluations, new int[]{9, 3, 1});
+		checkFractions(rounds.get(0), 1.0/9);
+		checkFractions(rounds.get(1), 1.0/3);
+		checkFractions(rounds.get(2), 1);
+		checkSurvivors(rounds);
+		HashSet<String> sampled = new HashSet<String>();
+		for(Evaluation evaluation : rounds.get(0))
+			sampled.add(evaluation.parameters);
+		Assert.assertEquals(9, sampled.size());
+		checkEarlyStopping(evaluations, true);
+		checkBest(output, evaluations, 2);
+		
+		//the same seed samples the same combinations and keeps the same
+		File again = search("again", "SuccessiveHalving", "true");
+		List<Evaluation> repeated = readReport(again);
+		Assert.assertEquals(evaluations.size(), repeated.size());
+		for(int i = 0; i < evaluations.size(); i++)
+		{
+			Assert.assertEquals(evaluations.get(i).id, repeated.get(i).id);
+			Assert.assertEquals(evaluations.get(i).parameters, repeated.get(i).parameters);
+			Assert.assertEquals(evaluations.get(i).accuracy, repeated.get(i).accuracy, 0);
+		}
+	}
+	
+	@Test
+	public void testHyperband() throws Exception
+	{
+		File output = search("hyperband", "Hyperband", "true");
+		List<Evaluation> evaluations = readReport(output);
+		
+		//with eta 3 and a ninth of the data, the brackets start 9
+		//combinations on a ninth, 5 on a third and 3 on all of the data,
+		//but only 2 combinations are left untried for the last bracket
+		List<List<Evaluation>> rounds = split(evaluations, new int[]{9, 3, 1, 5, 1, 2});
+		checkFractions(rounds.get(0), 1.0/9);
+		checkFractions(rounds.get(1), 1.0/3);
+		checkFractions(rounds.get(2), 1);
+		checkFractions(rounds.get(3), 1.0/3);
+		checkFractions(rounds.get(4), 1);
+		checkFractions(rounds.get(5), 1);
+		checkSurvivors(rounds.subList(0, 3));
+		checkSurvivors(rounds.subList(3, 5));
+		
+		//each bracket starts with combinations that were not tried before
+		HashSet<String> tried = new HashSet<String>();
+		for(int r : new int[]{0, 3, 5})
+		{
+			for(Evaluation evaluation : rounds.get(r))
+				Assert.assertTrue(tried.add(evaluation.parameters));
+		}
+		Assert.assertEquals(COMBINATIONS, tried.size());
+		checkEarlyStopping(evaluations, true);
+		checkBest(output, evaluations, 2);
+	}
+	
+	/**
+	 * Runs a search of the meta experiment with the given strategy.
+	 *
+	 * @return The experiment file written by the search.
+	 */
+	private File search(String name, String strategy, String earlyStopping) throws Exception
+	{
+		DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+		Document doc = builder.parse(new File(META_EXPERIMENT));
+		Element search = (Element)doc.getElementsByTagName("Search").item(0);
+		search.setAttribute("strategy", strategy);
+		search.setAttribute("earlyStopping", earlyStopping);
+		File meta = new File(folder, name + ".meta");
+		Transformer transformer = TransformerFactory.newInstance().newTransformer();
+		transformer.transform(new DOMSource(doc), new StreamResult(meta));
+		
+		File output = new File(folder, name);
+		new MetaExperiment().createExperiments(meta.getPath(), output.getPath());
+		return output;
+	}
+	
+	private static List<Evaluation> readReport(File output) throws Exception
+	{
+		DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+		NodeList nodes = builder.parse(new File(output.getPath() + ".search.xml")).getElementsByTagName("Evaluation");
+		ArrayList<Evaluation> evaluations = new ArrayList<Evaluation>();
+		for(int i = 0; i < nodes.getLength(); i++)
+		{
+			Element e = (Element)nodes.item(i);
+			Evaluation evaluation = new Evaluation();
+			evaluation.id = e.getAttribute("ID");
+			evaluation.fraction = Double.parseDouble(e.getAttribute("fraction"));
+			evaluation.foldsRun = Integer.parseInt(e.getAttribute("foldsRun"));
+			evaluation.stopped = Boolean.parseBoolean(e.getAttribute("stopped"));
+			evaluation.accuracy = Double.parseDouble(e.getAttribute("accuracy"));
+			evaluation.parameters = getParameters(e);
+			evaluations.add(evaluation);
+		}
+		return evaluations;
+	}
+	
+	/**
+	 * @return The parameter values of a search Evaluation or an experiment,
+	 * 	by name.
+	 */
+	private static String getParameters(Element element)
+	{
+		TreeMap<String,String> values = new TreeMap<String,String>();
+		NodeList parameters = element.getElementsByTagName("Parameter");
+		for(int i = 0; i < parameters.getLength(); i++)
+		{
+			Element parameter = (Element)parameters.item(i);
+			values.put(parameter.getAttribute("name"), parameter.getTextContent().trim());
+		}
+		return values.toString();
+	}
+	
+	private static List<List<Evaluation>> split(List<Evaluation> evaluations, int[] sizes)
+	{
+		ArrayList<List<Evaluation>> rounds = new ArrayList<List<Evaluation>>();
+		int from = 0;
+		for(int size : sizes)
+		{
+			rounds.add(evaluations.subList(from, from + size));
+			from += size;
+		}
+		Assert.assertEquals(evaluations.size(), from);
+		return rounds;
+	}
+	
+	private static void checkFractions(List<Evaluation> round, double fraction)
+	{
+		for(Evaluation evaluation : round)
+			Assert.assertEquals(fraction, evaluation.fraction, 1e-8);
+	}
+	
+	/**
+	 * Checks that each round of halving scores the best of the round
+	 * before, in order.
+	 */
+	private static void checkSurvivors(List<List<Evaluation>> rounds)
+	{
+		for(int r = 1; r < rounds.size(); r++)
+		{
+			List<Evaluation> ranked = rank(rounds.get(r - 1));
+			List<Evaluation> survivors = rounds.get(r);
+			for(int i = 0; i < survivors.size(); i++)
+			{
+				Assert.assertEquals(ranked.get(i).id, survivors.get(i).id);
+				Assert.assertEquals(ranked.get(i).parameters, survivors.get(i).parameters);
+			}
+		}
+	}
+	
+	/**
+	 * Checks that a combination is only stopped early, after being compared
+	 * on at least two folds, when early stopping is on.
+	 */
+	private static void checkEarlyStopping(List<Evaluation> evaluations, boolean earlyStopping)
+	{
+		int stopped = 0;
+		for(Evaluation evaluation : evaluations)
+		{
+			if(evaluation.stopped)
+			{
+				stopped++;
+				Assert.assertTrue(evaluation.foldsRun >= 2 && evaluation.foldsRun < TOTAL_FOLDS);
+			}
+			else
+				Assert.assertEquals(TOTAL_FOLDS, evaluation.foldsRun);
+		}
+		//a leaf of at least 1000 instances predicts one class, and is
+		//clearly worse than the rest
+		if(earlyStopping)
+			Assert.assertTrue(stopped > 0);
+		else
+			Assert.assertEquals(0, stopped);
+	}
+	
+	/**
+	 * Checks that the report names the most accurate combination scored on
+	 * all of the data, and that the best ones are written as experiments,
+	 * most accurate first.
+	 */
+	private static void checkBest(File output, List<Evaluation> evaluations, int keep) throws Exception
+	{
+		ArrayList<Evaluation> finished = new ArrayList<Evaluation>();
+		for(Evaluation evaluation : evaluations)
+		{
+			if(evaluation.fraction >= 1 && !evaluation.stopped)
+				finished.add(evaluation);
+		}
+		List<Evaluation> ranked = rank(finished);
+		
+		DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+		Element report = builder.parse(new File(output.getPath() + ".search.xml")).getDocumentElement();
+		Assert.assertEquals(ranked.get(0).id, report.getAttribute("best"));
+		
+		NodeList experiments = builder.parse(output).getElementsByTagName("Experiment");
+		Assert.assertEquals(Math.min(keep, ranked.size()), experiments.getLength());
+		for(int i = 0; i < experiments.getLength(); i++)
+		{
+			Element experiment = (Element)experiments.item(i);
+			Assert.assertEquals(ranked.get(i).id, experiment.getAttribute("ID"));
+			Element modelParameters = (Element)experiment.getElementsByTagName("ModelParameters").item(0);
+			Assert.assertEquals(ranked.get(i).parameters, getParameters(modelParameters));
+		}
+	}
+	
+	/**
+	 * Orders evaluations as the search does, from most to least accurate
+	 * with those stopped early last, keeping ties in the order they were
+	 * scored.
+	 */
+	private static List<Evaluation> rank(List<Evaluation> evaluations)
+	{
+		ArrayList<Evaluation> ranked = new ArrayList<Evaluation>(evaluations);
+		Collections.sort(ranked, new Comparator<Evaluation>()
+		{
+			public int compare(Evaluation a, Evaluation b)
+			{
+				if(a.stopped != b.stopped)
+					return a.stopped ? 1 : -1;
+				return Double.compare(b.accuracy, a.accuracy);
+			}
+		});
+		return ranked;
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.data.*;
+import gov.sandia.hemlock.evaluation.MultiClassROC;
+import gov.sandia.hemlock.evaluation.ROCGraph;
+import java.util.*;
+import org.junit.*;
+
+public class ROCCurves
+{
+	private static final int NUM_CLASSES = 4;
+
+	/** Scores of only 11 values, so most instances tie with others */
+	@Test
+	public void testManyTiesMatchROCGraph() throws Exception
+	{
+		assertMatchesROCGraph(classify(400, 10, 1));
+	}
+
+	/** Scores of 10000 values, so only a few instances tie */
+	@Test
+	public void testFewTiesMatchROCGraph() throws Exception
+	{
+		assertMatchesROCGraph(classify(400, 10000, 2));
+	}
+
+	/** Every score is the same, so the curve is a single step */
+	@Test
+	public void testAllTiedMatchROCGraph() throws Exception
+	{
+		assertMatchesROCGraph(classify(100, 0, 3));
+	}
+
+	@Test
+	public void testOneClassMatchesROCGraph() throws Exception
+	{
+		ClassifiedDataSet data = classify(100, 10, 4);
+		for(double[] record : data.records)
+			record[NUM_CLASSES] = 2;
+		assertMatchesROCGraph(data);
+	}
+
+	@Test
+	public void testAveragesOfAUC() throws Exception
+	{
+		ClassifiedDataSet data = classify(400, 10, 5);
+		double[] auc = new double[NUM_CLASSES];
+		int[] counts = new int[NUM_CLASSES];
+		for(int k = 0; k < NUM_CLASSES; k++)
+			auc[k] = new ROCGraph(data, k).calculateAUC();
+		for(double[] record : data.records)
+			counts[(int)record[NUM_CLASSES]]++;
+
+		double macro = 0;
+		double weighted = 0;
+		int numPresent = 0;
+		for(int k = 0; k < NUM_CLASSES; k++)
+		{
+			if(counts[k] == 0)
+				continue;
+			macro += auc[k];
+			weighted += counts[k]*auc[k];
+			numPresent++;
+		}
+		MultiClassROC roc = new MultiClassROC(data);
+		Assert.assertArrayEquals(auc, roc.calculateAllAUC(), 0);
+		Assert.assertEquals(macro/numPresent, roc.calculateMacroAUC(), 1e-12);
+		Assert.assertEquals(weighted/data.records.size(), roc.calculateWeightedAUC(), 1e-12);
+	}
+
+	@Test
+	public void testDownsample() throws Exception
+	{
+		ClassifiedDataSet data = classify(400, 10000, 6);
+		MultiClassROC roc = new MultiClassROC(data);
+		for(int k = 0; k < NUM_CLASSES; k++)
+		{
+			double[][] points = roc.calculateROCPoints(k);
+			double[][] expected = new ROCGraph(data, k).calculateROCPoints();
+			int n = points[0].length;
+			Assert.assertSame(points, MultiClassROC.downsample(points, 0));
+			Assert.assertSame(points, MultiClassROC.downsample(points, n));
+
+			for(int maxPoints = 1; maxPoints < n; maxPoints += 7)
+			{
+				double[][] reduced = MultiClassROC.downsample(points, maxPoints);
+				double[][] reducedExpected = MultiClassROC.downsample(expected, maxPoints);
+				Assert.assertArrayEquals(reducedExpected[0], reduced[0], 0);
+				Assert.assertArrayEquals(reducedExpected[1], reduced[1], 0);
+
+				int length = Math.max(2, maxPoints);
+				Assert.assertEquals(length, reduced[0].length);
+				Assert.assertEquals(length, reduced[1].length);
+				//the ends are kept, and the rest are points of the curve in order
+				Assert.assertEquals(points[0][0], reduced[0][0], 0);
+				Assert.assertEquals(points[1][0], reduced[1][0], 0);
+				Assert.assertEquals(points[0][n - 1], reduced[0][length - 1], 0);
+				Assert.assertEquals(points[1][n - 1], reduced[1][length - 1], 0);
+				int next = 0;
+				for(int p = 0; p < length; p++)
+				{
+					while(next < n && (points[0][next] != reduced[0][p] || points[1][next] != reduced[1][p]))
+						next++;
+					Assert.assertTrue("point " + p + " is not on the curve", next < n);
+				}
+			}
+		}
+	}
+
+	private static void assertMatchesROCGraph(ClassifiedDataSet data)
+	{
+		MultiClassROC roc = new MultiClassROC(data);
+		Assert.assertEquals(NUM_CLASSES, roc.getNumClasses());
+		for(int k = 0; k < NUM_CLASSES; k++)
+		{
+			ROCGraph graph = new ROCGraph(data, k);
+			double[][] expected = graph.calculateROCPoints();
+			double[][] points = roc.calculateROCPoints(k);
+			Assert.assertArrayEquals(expected[0], points[0], 0);
+			Assert.assertArrayEquals(expected[1], points[1], 0);
+			Assert.assertEquals(graph.calculateAUC(), roc.calculateAUC(k), 0);
+		}
+	}
+
+	/**
+	 * Creates predictions whose scores are multiples of 1/levels, with the
+	 * last instance given the same scores as the first so that at least
+	 * one pair is tied.  Class 3 never occurs.
+	 *
+	 * @param levels The number of steps between scores of 0 and 1, or 0
+	 * 	to give every score 0.5.
+	 */
+	private static ClassifiedDataSet classify(int numInstances, int levels, long seed) throws Exception
+	{
+		StreamingDataSetGenerator generator = new StreamingDataSetGenerator();
+		generator.seed = seed;
+		generator.dataSetName = "roc_4";
+		generator.repositoryPath = "data/";
+		generator.numClasses = NUM_CLASSES;
+		generator.numNominalFeatures = 0;
+		generator.numContinuousFeatures = NUM_CLASSES;
+		generator.numInstances = numInstances;
+		generator.initializeParameters(2, 1, 2);
+		DataSet data = generator.generateDataSet();
+
+		Random random = new Random(seed);
+		for(int i = 0; i < numInstances; i++)
+		{
+			double[] record = data.records.get(i);
+			for(int k = 0; k < NUM_CLASSES; k++)
+				record[k] = (levels == 0) ? 0.5 : random.nextInt(levels + 1)/(double)levels;
+			record[NUM_CLASSES] = random.nextInt(NUM_CLASSES - 1);
+		}
+		System.arraycopy(data.records.get(0), 0, data.records.get(numInstances - 1), 0, NUM_CLASSES);
+		return new ClassifiedDataSet(data, new ScoresModel());
+	}
+
+	/**
+	 * Predicts the attributes of an instance as its distribution, so that
+	 * a test can choose the scores.
+	 */
+	private static class ScoresModel implements Model
+	{
+		public void setData(IDataSet data)
+		{
+		}
+
+		public void buildModel(ModelParameters modelParameters)
+		{
+		}
+
+		public double getTargetValue(double[] record)
+		{
+			return 0;
+		}
+
+		public double[] getTargetDistribution(double[] record)
+		{
+			return Arrays.copyOf(record, NUM_CLASSES);
+		}
+
+		public ModelType getModelType()
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.*;
+import gov.sandia.hemlock.classification.fusion.BaseClassifierSet;
+import gov.sandia.hemlock.classification.parameters.EnsembleParameters;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.classification.trees.CompiledTreeEnsemble;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.*;
+import gov.sandia.hemlock.evaluation.PrecisionDrift;
+import java.io.File;
+import java.util.*;
+import org.junit.*;
+
+public class ReducedPrecision extends ExperimentTest
+{
+	//largest error of a probability rounded to a float
+	private static final double FLOAT32_BOUND = 1e-6;
+	//largest error of a probability rounded to half a 16 bit quantum
+	private static final double QUANTIZED16_BOUND = 0.5/Character.MAX_VALUE + 1e-9;
+	
+	private static DataSet train;
+	private static DataSet test;
+	
+	@BeforeClass
+	public static void generateData()
+	{
+		//overlapping classes, so that the predicted probabilities are not
+		//all 0 or 1 and small changes in them can change the label
+		StreamingDataSetGenerator generator = new StreamingDataSetGenerator();
+		generator.seed = 1;
+		generator.dataSetName = "precision_3";
+		generator.repositoryPath = "data/";
+		generator.numClasses = 3;
+		generator.numNominalFeatures = 2;
+		generator.numContinuousFeatures = 4;
+		generator.numInstances = 2000;
+		generator.initializeParameters(2, 2, 5);
+		DataSet data = generator.generateDataSet();
+		train = new DataSet(data.recordSchema, data.info, new ArrayList<double[]>(data.records.subList(0, 1000)));
+		test = new DataSet(data.recordSchema, data.info, new ArrayList<double[]>(data.records.subList(1000, 2000)));
+	}
+	
+	@Test
+	public void testRandomTree() throws Exception
+	{
+		Model model = train(ModelType.RandomTree);
+		checkDrift(new PrecisionDrift(test, model, StoragePrecision.Float32), FLOAT32_BOUND);
+		checkDrift(new PrecisionDrift(test, model, StoragePrecision.Quantized16), QUANTIZED16_BOUND);
+	}
+	
+	@Test
+	public void testRandomForest() throws Exception
+	{
+		Model model = train(ModelType.RandomForest);
+		double[][] before = new ClassifiedDataSet(test, model).predictedDistributions;
+		checkDrift(new PrecisionDrift(test, model, StoragePrecision.Float32), FLOAT32_BOUND);
+		checkDrift(new PrecisionDrift(test, model, StoragePrecision.Quantized16), QUANTIZED16_BOUND);
+		
+		//the forest is reduced in place, so the drift must reduce a copy
+		double[][] after = new ClassifiedDataSet(test, model).predictedDistributions;
+		for(int i = 0; i < before.length; i++)
+			Assert.assertArrayEquals(before[i], after[i], 0);
+	}
+	
+	@Test
+	public void testKNearestNeighbor() throws Exception
+	{
+		//a rounded reference point can change which neighbors are nearest,
+		//so only the labels and the measures are bounded
+		Model model = train(ModelType.KNearestNeighbor);
+		checkDrift(new PrecisionDrift(test, model, StoragePrecision.Float32), 1);
+		checkDrift(new PrecisionDrift(test, model, StoragePrecision.Quantized16), 1);
+	}
+	
+	@Test
+	public void testSavedEnsemble() throws Exception
+	{
+		ModelParameters[] baseParams = new ModelParameters[3];
+		for(int i = 0; i < baseParams.length; i++)
+		{
+			Hashtable<String,String> parameters = new Hashtable<String,String>();
+			parameters.put("seed", Integer.toString(i + 1));
+			baseParams[i] = ModelParameters.createModelParameters(FrameworkType.hemlock, ModelType.RandomTree, parameters);
+		}
+		Hashtable<String,String> parameters = new Hashtable<String,String>();
+		parameters.put("EnsembleGeneration", "Bagging");
+		parameters.put("seed", "1");
+		EnsembleParameters ensembleParams = (EnsembleParameters)ModelParameters.createModelParameters(
+			FrameworkType.hemlock, ModelType.SumRule, parameters);
+		ensembleParams.setBaseModelParameters(new BaseClassifierSet(baseParams));
+		Model ensemble = new ClassifierFactory(FrameworkType.hemlock, train).createModel(ensembleParams);
+		
+		File modelFile = File.createTempFile("hemlock-precision", ".model");
+		try
+		{
+			ModelSerialization.serializeModel(ensemble, modelFile.getPath());
+			Model loaded = ModelSerialization.loadModel(modelFile.getPath(), StoragePrecision.Float32);
+			
+			//the base classifiers are reduced, the saved ensemble is not
+			for(Model baseClassifier : ((EnsembleModel)loaded).getBaseClassifierModels())
+				Assert.assertEquals(StoragePrecision.Float32, ((CompiledTreeEnsemble)baseClassifier).getPrecision());
+			for(Model baseClassifier : ((EnsembleModel)ensemble).getBaseClassifierModels())
+				Assert.assertFalse(baseClassifier instanceof CompiledTreeEnsemble);
+			
+			//the sum rule averages the members, so it drifts no more than they do
+			for(double[] record : test.records)
+				Assert.assertArrayEquals(ensemble.getTargetDistribution(record), loaded.getTargetDistribution(record), FLOAT32_BOUND);
+		}
+		finally
+		{
+			modelFile.delete();
+		}
+	}
+	
+	private static Model train(ModelType type) throws Exception
+	{
+		return new ClassifierFactory(FrameworkType.hemlock, train).createModel(
+			ModelParameters.createModelParameters(FrameworkType.hemlock, type, new Hashtable<String,String>()));
+	}
+	
+	/**
+	 * Checks that the reduced model is smaller and predicts nearly what
+	 * the full precision model does.
+	 */
+	private static void checkDrift(PrecisionDrift drift, double probabilityBound)
+	{
+		Assert.assertTrue(drift.reducedSize < drift.fullSize);
+		Assert.assertTrue(drift.maxProbabilityDifference <= probabilityBound);
+		Assert.assertTrue(drift.agreement >= 0.99);
+		Assert.assertEquals(0, drift.calculateAccuracyDrift(), 0.01);
+		Assert.assertEquals(0, drift.calculateMaxAUCDrift(), 0.01);
+	}
+}
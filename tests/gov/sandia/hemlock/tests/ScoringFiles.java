@@ -0,0 +1,202 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.*;
+import gov.sandia.hemlock.classification.fusion.BaseClassifierSet;
+import gov.sandia.hemlock.classification.parameters.EnsembleParameters;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.DataImporter;
+import gov.sandia.hemlock.data.DataSet;
+import gov.sandia.hemlock.main.ScoreFile;
+import gov.sandia.hemlock.serving.ScoringProtocol;
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+
+public class ScoringFiles extends ExperimentTest
+{
+	private static DataSet data;
+	private static Model model;
+	private static File folder;
+	
+	@BeforeClass
+	public static void createModel() throws Exception
+	{
+		data = importDataSet("mixed_2");
+		ModelParameters[] baseParams = new ModelParameters[4];
+		for(int i = 0; i < 3; i++)
+		{
+			Hashtable<String,String> params = new Hashtable<String,String>();
+			params.put("seed", "" + (i + 1));
+			baseParams[i] = ModelParameters.createModelParameters(FrameworkType.hemlock, ModelType.RandomTree, params);
+		}
+		baseParams[3] = ModelParameters.createModelParameters(FrameworkType.hemlock,
+			ModelType.NaiveBayesian, new Hashtable<String,String>());
+		Hashtable<String,String> parameters = new Hashtable<String,String>();
+		parameters.put("EnsembleGeneration", "Bagging");
+		parameters.put("seed", "1");
+		EnsembleParameters ensembleParams = (EnsembleParameters)ModelParameters.createModelParameters(
+			FrameworkType.hemlock, ModelType.Voting, parameters);
+		ensembleParams.setBaseModelParameters(new BaseClassifierSet(baseParams));
+		Model ensemble = new ClassifierFactory(FrameworkType.hemlock, data).createModel(ensembleParams);
+		
+		//score with the model as the command line tool would load it
+		folder = new File(System.getProperty("java.io.tmpdir"), "hemlock-scorefile-" + System.nanoTime());
+		folder.mkdirs();
+		File modelFile = new File(folder, "voting.model");
+		ModelSerialization.serializeModel(ensemble, modelFile.getPath());
+		model = ModelSerialization.loadModel(modelFile.getPath());
+		modelFile.delete();
+	}
+	
+	@AfterClass
+	public static void deleteFolder()
+	{
+		for(File file : folder.listFiles())
+			file.delete();
+		folder.delete();
+	}
+	
+	@Test
+	public void testTextInput() throws Exception
+	{
+		String input = data.info.absolutePath + "/" + data.info.dataSetName + ".data";
+		File output = new File(folder, "text.out");
+		//small batches on several threads, so that batches finish out of order
+		long count = new ScoreFile(model, data.recordSchema, false).score(input, output.getPath(), 4, 7);
+		Assert.assertEquals(data.records.size(), count);
+		
+		BufferedReader in = new BufferedReader(new FileReader(output));
+		try
+		{
+			int numClasses = data.recordSchema.labels.length;
+			for(double[] record : data.records)
+			{
+				double[] expected = model.getTargetDistribution(record);
+				String[] values = in.readLine().split(" ");
+				Assert.assertEquals(1 + numClasses, values.length);
+				Assert.assertEquals(data.recordSchema.labels[ScoringProtocol.argMax(expected)], values[0]);
+				for(int c = 0; c < numClasses; c++)
+					Assert.assertEquals(expected[c], Double.parseDouble(values[c + 1]), 0);
+			}
+			Assert.assertNull(in.readLine());
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	@Test
+	public void testBinaryInputAndOutput() throws Exception
+	{
+		File input = new File(folder, "input.bin");
+		writeBinary(data.records, input);
+		File output = new File(folder, "binary.out");
+		long count = new ScoreFile(model, data.recordSchema, true).score(input.getPath(), output.getPath(), 3, 5);
+		Assert.assertEquals(data.records.size(), count);
+		
+		int numClasses = data.recordSchema.labels.length;
+		Assert.assertEquals(12 + data.records.size()*(4 + 8*numClasses), output.length());
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(output)));
+		try
+		{
+			Assert.assertEquals(ScoreFile.OUTPUT_MAGIC, in.readInt());
+			Assert.assertEquals(DataImporter.BINARY_VERSION, in.readInt());
+			Assert.assertEquals(numClasses, in.readInt());
+			for(double[] record : data.records)
+			{
+				double[] expected = model.getTargetDistribution(record);
+				Assert.assertEquals(ScoringProtocol.argMax(expected), in.readInt());
+				for(int c = 0; c < numClasses; c++)
+					Assert.assertEquals(expected[c], in.readDouble(), 0);
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	@Test
+	public void testFailedBatchLeavesNoOutput() throws Exception
+	{
+		//copy the data file with a malformed instance well after the first batch
+		String source = data.info.absolutePath + "/" + data.info.dataSetName + ".data";
+		File input = new File(folder, "malformed.data");
+		BufferedReader in = new BufferedReader(new FileReader(source));
+		PrintStream out = new PrintStream(new FileOutputStream(input));
+		String line;
+		int lineNumber = 0;
+		while((line = in.readLine()) != null)
+			out.println((++lineNumber == 40) ? "not an instance" : line);
+		in.close();
+		out.close();
+		
+		File output = new File(folder, "malformed.out");
+		try
+		{
+			new ScoreFile(model, data.recordSchema, false).score(input.getPath(), output.getPath(), 4, 7);
+			Assert.fail("a malformed instance was scored");
+		}
+		catch(Exception e)
+		{
+			Assert.assertTrue(e.getMessage().contains("instance 40"));
+		}
+		Assert.assertFalse(output.exists());
+		Assert.assertFalse(new File(output.getPath() + ".tmp").exists());
+		
+		//an earlier output is left as it was
+		out = new PrintStream(new FileOutputStream(output));
+		out.println("earlier output");
+		out.close();
+		try
+		{
+			new ScoreFile(model, data.recordSchema, false).score(input.getPath(), output.getPath(), 4, 7);
+			Assert.fail("a malformed instance was scored");
+		}
+		catch(Exception e)
+		{
+		}
+		BufferedReader earlier = new BufferedReader(new FileReader(output));
+		Assert.assertEquals("earlier output", earlier.readLine());
+		Assert.assertNull(earlier.readLine());
+		earlier.close();
+	}
+	
+	/**
+	 * Writes instances in the binary data file format read by DataImporter.
+	 */
+	private static void writeBinary(ArrayList<double[]> records, File file) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try
+		{
+			out.writeInt(DataImporter.BINARY_MAGIC);
+			out.writeInt(DataImporter.BINARY_VERSION);
+			out.writeInt(data.recordSchema.numAttributes);
+			out.writeLong(records.size());
+			for(double[] record : records)
+			{
+				for(double value : record)
+					out.writeDouble(value);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
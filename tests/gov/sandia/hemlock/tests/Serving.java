@@ -0,0 +1,215 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.*;
+import gov.sandia.hemlock.classification.fusion.BaseClassifierSet;
+import gov.sandia.hemlock.classification.parameters.EnsembleParameters;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.DataSet;
+import gov.sandia.hemlock.main.ScoringServer;
+import gov.sandia.hemlock.serving.*;
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+
+public class Serving extends ExperimentTest
+{
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		DataSet data = importDataSet("mixed_2");
+		Model model = new ClassifierFactory(FrameworkType.hemlock, data).createModel(
+			ModelParameters.createModelParameters(FrameworkType.hemlock,
+				ModelType.NaiveBayesian, new Hashtable<String,String>()));
+		File folder = new File(System.getProperty("java.io.tmpdir"), "hemlock-serving-" + System.nanoTime());
+		folder.mkdirs();
+		File modelFile = new File(folder, "nb.model");
+		ModelSerialization.serializeModel(model, modelFile.getPath());
+		
+		ScoringServer server = new ScoringServer(new ModelRegistry(StoragePrecision.Full, 4096, 0), 0, 4, folder);
+		try
+		{
+			ScoringClient client = new ScoringClient(server.getPort());
+			Assert.assertTrue(client.deploy("nb", "nb.model").startsWith("deployed nb version 1"));
+			
+			//the server predicts what the model predicts, to float precision
+			ScoringProtocol.Response response = client.score("nb", data.records);
+			Assert.assertEquals(data.records.size(), response.labels.length);
+			for(int i = 0; i < data.records.size(); i++)
+			{
+				double[] expected = model.getTargetDistribution(data.records.get(i));
+				Assert.assertArrayEquals(expected, response.distributions[i], 1e-6);
+				Assert.assertEquals(ScoringProtocol.argMax(expected), response.labels[i]);
+			}
+			Assert.assertTrue(client.getModels().contains("\nnb 1 1 " + data.records.size() + " "));
+			
+			//models outside the model directory are not loaded
+			try
+			{
+				client.deploy("nb", "../" + folder.getName() + "-other/nb.model");
+				Assert.fail("a model outside the model directory was deployed");
+			}
+			catch(IOException e)
+			{
+				Assert.assertTrue(e.getMessage().contains("403"));
+			}
+		}
+		finally
+		{
+			server.stop();
+			modelFile.delete();
+			folder.delete();
+		}
+	}
+	
+	@Test
+	public void testEnsembleRoundTrip() throws Exception
+	{
+		DataSet data = importDataSet("mixed_2");
+		Model ensemble = createEnsemble(data, ModelType.Voting);
+		File folder = new File(System.getProperty("java.io.tmpdir"), "hemlock-serving-" + System.nanoTime());
+		folder.mkdirs();
+		File modelFile = new File(folder, "voting.model");
+		ModelSerialization.serializeModel(ensemble, modelFile.getPath());
+		
+		ScoringServer server = new ScoringServer(new ModelRegistry(StoragePrecision.Full, 4096, 0), 0, 4, folder);
+		try
+		{
+			ScoringClient client = new ScoringClient(server.getPort());
+			Assert.assertTrue(client.deploy("voting", "voting.model").startsWith("deployed voting version 1"));
+			ScoringProtocol.Response response = client.score("voting", data.records);
+			for(int i = 0; i < data.records.size(); i++)
+				Assert.assertArrayEquals(ensemble.getTargetDistribution(data.records.get(i)), response.distributions[i], 1e-6);
+		}
+		finally
+		{
+			server.stop();
+			modelFile.delete();
+			folder.delete();
+		}
+	}
+	
+	@Test
+	public void testEnsemblesSerialize() throws Exception
+	{
+		DataSet data = importDataSet("mixed_2");
+		for(ModelType type : new ModelType[]{ModelType.Voting, ModelType.SumRule, ModelType.LinearRegression})
+		{
+			Model ensemble = createEnsemble(data, type);
+			Model loaded = ModelSerialization.copyModel(ensemble);
+			for(double[] record : data.records)
+				Assert.assertArrayEquals(ensemble.getTargetDistribution(record), loaded.getTargetDistribution(record), 0);
+			
+			//the training data is not saved, so a loaded ensemble can not learn more
+			try
+			{
+				((UpdateableModel)loaded).updateModel(data);
+				Assert.fail("a loaded " + type + " ensemble was updated");
+			}
+			catch(Exception e)
+			{
+			}
+		}
+	}
+	
+	/**
+	 * Trains a bagged ensemble of Hemlock trees and a naive Bayes model.
+	 */
+	private static Model createEnsemble(DataSet data, ModelType type) throws Exception
+	{
+		ModelParameters[] baseParams = new ModelParameters[4];
+		for(int i = 0; i < 3; i++)
+		{
+			Hashtable<String,String> params = new Hashtable<String,String>();
+			params.put("seed", "" + (i + 1));
+			baseParams[i] = ModelParameters.createModelParameters(FrameworkType.hemlock, ModelType.RandomTree, params);
+		}
+		baseParams[3] = ModelParameters.createModelParameters(FrameworkType.hemlock,
+			ModelType.NaiveBayesian, new Hashtable<String,String>());
+		
+		Hashtable<String,String> parameters = new Hashtable<String,String>();
+		parameters.put("EnsembleGeneration", "Bagging");
+		parameters.put("seed", "1");
+		EnsembleParameters ensembleParams = (EnsembleParameters)ModelParameters.createModelParameters(
+			FrameworkType.hemlock, type, parameters);
+		ensembleParams.setBaseModelParameters(new BaseClassifierSet(baseParams));
+		return new ClassifierFactory(FrameworkType.hemlock, data).createModel(ensembleParams);
+	}
+	
+	@Test
+	public void testMalformedRequestInBatch() throws Exception
+	{
+		DataSet data = importDataSet("mixed_2");
+		Model model = new ClassifierFactory(FrameworkType.hemlock, data).createModel(
+			ModelParameters.createModelParameters(FrameworkType.hemlock,
+				ModelType.NaiveBayesian, new Hashtable<String,String>()));
+		//requests wait long enough to be scored in one batch
+		final DeployedModel deployed = new DeployedModel("nb", 1, "test", model, 4096, 500);
+		try
+		{
+			final ArrayList<double[]> good = new ArrayList<double[]>(data.records);
+			final ArrayList<double[]> bad = new ArrayList<double[]>();
+			bad.add(new double[1]);
+			final Object[] results = new Object[2];
+			Thread[] threads = new Thread[2];
+			for(int t = 0; t < threads.length; t++)
+			{
+				final int index = t;
+				threads[t] = new Thread(new Runnable()
+				{
+					public void run()
+					{
+						try
+						{
+							results[index] = deployed.score((index == 0) ? good : bad);
+						}
+						catch(Exception e)
+						{
+							results[index] = e;
+						}
+					}
+				});
+				threads[t].start();
+			}
+			for(Thread thread : threads)
+				thread.join();
+			Assert.assertTrue(results[0] instanceof double[][]);
+			Assert.assertEquals(good.size(), ((double[][])results[0]).length);
+			Assert.assertTrue(results[1] instanceof Exception);
+		}
+		finally
+		{
+			deployed.close();
+		}
+	}
+	
+	@Test
+	public void testRequestSizeLimit() throws Exception
+	{
+		//a header with no values per instance may not ask for 2^31-1 of them
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(Integer.MAX_VALUE);
+		out.writeInt(0);
+		out.close();
+		try
+		{
+			ScoringProtocol.readRequest(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+			Assert.fail("an oversized request was accepted");
+		}
+		catch(IOException e)
+		{
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.ClassifierFactory;
+import gov.sandia.hemlock.classification.Model;
+import gov.sandia.hemlock.classification.ModelType;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.*;
+import gov.sandia.hemlock.evaluation.*;
+import gov.sandia.hemlock.experiment.Experiment;
+import java.util.*;
+import org.junit.*;
+
+public class StreamingEvaluation extends ExperimentTest
+{
+	@Test
+	public void testMergedShardsMatchWholeDataSet() throws Exception
+	{
+		DataSet data = importDataSet("mixed_2");
+		Model model = train(data, ModelType.NaiveBayesian, 1);
+		int half = data.records.size()/2;
+		
+		StreamingEvaluator whole = new StreamingEvaluator(model, data.recordSchema, 7, 100, false);
+		whole.evaluate(data);
+		StreamingEvaluator merged = new StreamingEvaluator(model, data.recordSchema, 7, 100, false);
+		merged.add(new ArrayList<double[]>(data.records.subList(0, half)));
+		StreamingEvaluator second = new StreamingEvaluator(model, data.recordSchema, 7, 100, false);
+		second.add(new ArrayList<double[]>(data.records.subList(half, data.records.size())));
+		merged.merge(second);
+		
+		ClassifiedDataSet cdata = new ClassifiedDataSet(data, model);
+		int[][] expected = new ConfusionMatrix(cdata).matrix;
+		for(StreamingEvaluator evaluator : new StreamingEvaluator[]{whole, merged})
+		{
+			Assert.assertEquals(data.records.size(), evaluator.getNumInstances());
+			int[][] actual = evaluator.confusionMatrix.toConfusionMatrix().matrix;
+			for(int i = 0; i < expected.length; i++)
+				Assert.assertArrayEquals(expected[i], actual[i]);
+			Assert.assertEquals(cdata.logLoss, evaluator.getLogLoss(), 1e-12);
+			Assert.assertEquals(cdata.brierScore, evaluator.getBrierScore(), 1e-12);
+		}
+		Assert.assertEquals(whole.roc.calculateAUC(1), merged.roc.calculateAUC(1), 0);
+		Assert.assertEquals(new MultiClassROC(cdata).calculateAUC(1), whole.roc.calculateAUC(1), 0.02);
+	}
+	
+	@Test
+	public void testMergedDiversityMatchesEngine() throws Exception
+	{
+		DataSet data = importDataSet("mixed_2");
+		Model[] models = new Model[4];
+		for(int i = 0; i < models.length; i++)
+			models[i] = train(data, ModelType.RandomTree, i + 1);
+		int half = data.records.size()/2;
+		DataSet first = new DataSet(data.recordSchema, data.info, new ArrayList<double[]>(data.records.subList(0, half)));
+		DataSet second = new DataSet(data.recordSchema, data.info,
+			new ArrayList<double[]>(data.records.subList(half, data.records.size())));
+		
+		DiversityAccumulator merged = new DiversityAccumulator(models.length);
+		merged.add(classify(first, models));
+		DiversityAccumulator other = new DiversityAccumulator(models.length);
+		other.add(classify(second, models));
+		merged.merge(other);
+		
+		ClassifiedDataSet[] cds = classify(data, models);
+		DiversityEngine engine = new DiversityEngine(cds);
+		engine.countPairs();
+		Assert.assertEquals(data.records.size(), merged.getNumInstances());
+		Assert.assertEquals(engine.getDisagreement(), merged.getDisagreement(), 1e-12);
+		Assert.assertEquals(engine.getYuleQ(), merged.getYuleQ(), 1e-12);
+		Assert.assertEquals(engine.getDoubleFault(), merged.getDoubleFault(), 1e-12);
+		Assert.assertEquals(engine.getCorrelation(), merged.getCorrelation(), 1e-12);
+		Assert.assertEquals(Diversity.entropy(cds), merged.getEntropy(), 1e-12);
+		Assert.assertEquals(Diversity.general_diversity(cds), merged.getGeneralDiversity(), 1e-12);
+		Assert.assertEquals(Diversity.coincident_failure(cds), merged.getCoincidentFailure(), 1e-12);
+		Assert.assertEquals(Diversity.difficulty(cds), merged.getDifficulty(), 1e-12);
+	}
+	
+	@Test
+	public void testChunkedExperimentMatchesWholeTestSet() throws Exception
+	{
+		DataSet data = importDataSet("mixed_2");
+		Experiment experiment = new Experiment();
+		experiment.computeAccuracy = true;
+		experiment.computeKappa = true;
+		experiment.computeLogLoss = true;
+		experiment.computeBrierScore = true;
+		experiment.modelParameters = ModelParameters.createModelParameters(FrameworkType.hemlock,
+			ModelType.NaiveBayesian, new Hashtable<String,String>());
+		StratifiedCrossValidation cv = new StratifiedCrossValidation(3, data, 1);
+		ModelEvaluationResults expected = cv.runFold(experiment, 0);
+		experiment.chunkSize = 4;
+		ModelEvaluationResults actual = cv.runFold(experiment, 0);
+		Assert.assertEquals(expected.accuracy, actual.accuracy, 0);
+		Assert.assertEquals(expected.kappa, actual.kappa, 0);
+		Assert.assertEquals(expected.logLoss, actual.logLoss, 1e-12);
+		Assert.assertEquals(expected.brierScore, actual.brierScore, 1e-12);
+	}
+	
+	@Test
+	public void testRejectsUnknownLabels() throws Exception
+	{
+		ConfusionMatrixAccumulator accumulator = new ConfusionMatrixAccumulator(2);
+		double[][] labels = {{2, 0}, {-1, 0}, {Double.NaN, 0}, {0.5, 0}, {0, 2}};
+		for(double[] pair : labels)
+		{
+			try
+			{
+				accumulator.add(pair[0], pair[1]);
+				Assert.fail("the labels " + pair[0] + ", " + pair[1] + " should be rejected");
+			}
+			catch(Exception e)
+			{
+			}
+		}
+		accumulator.add(1, 0);
+		Assert.assertEquals(1, accumulator.toConfusionMatrix().matrix[1][0]);
+	}
+	
+	private static Model train(DataSet data, ModelType type, int seed) throws Exception
+	{
+		Hashtable<String,String> params = new Hashtable<String,String>();
+		if(type == ModelType.RandomTree)
+		{
+			params.put("seed", "" + seed);
+			params.put("maxDepth", "" + seed);
+		}
+		return new ClassifierFactory(FrameworkType.hemlock, data).createModel(
+			ModelParameters.createModelParameters(FrameworkType.hemlock, type, params));
+	}
+	
+	private static ClassifiedDataSet[] classify(DataSet data, Model[] models) throws Exception
+	{
+		ClassifiedDataSet[] cds = new ClassifiedDataSet[models.length];
+		for(int i = 0; i < models.length; i++)
+			cds[i] = new ClassifiedDataSet(data, models[i]);
+		return cds;
+	}
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2009 Sandia Corporation.  Under the terms of Contract 
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government retains 
+ * certain rights in this software.
+ * Hemlock is distributed under a BSD License.  See LICENSE for details.
+ *
+ * Authors:             Sean Gilpin, Daniel Dunlavy
+ * Company:             Sandia National Laboratories
+ * Project:             HEMLOCK
+ */
+
+
+package gov.sandia.hemlock.tests;
+
+import gov.sandia.hemlock.classification.*;
+import gov.sandia.hemlock.classification.fusion.BaseClassifierSet;
+import gov.sandia.hemlock.classification.parameters.EnsembleParameters;
+import gov.sandia.hemlock.classification.parameters.ModelParameters;
+import gov.sandia.hemlock.classification.trees.CompiledTreeEnsemble;
+import gov.sandia.hemlock.core.FrameworkType;
+import gov.sandia.hemlock.data.*;
+import java.io.File;
+import java.util.*;
+import org.junit.*;
+
+public class UpdatingModels
+{
+	private static DataSet base;
+	private static DataSet a;
+	private static DataSet b;
+	private static DataSet all;
+	
+	@BeforeClass
+	public static void generateData()
+	{
+		StreamingDataSetGenerator generator = new StreamingDataSetGenerator();
+		generator.seed = 3;
+		generator.dataSetName = "updating_3";
+		generator.repositoryPath = "data/";
+		generator.numClasses = 3;
+		generator.numNominalFeatures = 2;
+		generator.numContinuousFeatures = 4;
+		generator.numInstances = 900;
+		generator.initializeParameters(2, 2, 5);
+		DataSet data = generator.generateDataSet();
+		base = subset(data, 0, 300);
+		a = subset(data, 300, 600);
+		b = subset(data, 600, 900);
+		all = subset(data, 300, 900);
+	}
+	
+	private static DataSet subset(DataSet data, int from, int to)
+	{
+		return new DataSet(data.recordSchema, data.info, new ArrayList<double[]>(data.records.subList(from, to)));
+	}
+	
+	/**
+	 * A base classifier trained elsewhere, which keeps the new instances it
+	 * is given without learning from them, so that the ensemble around it
+	 * has a fixed set of base classifiers.
+	 */
+	public static class FixedModel implements UpdateableModel
+	{
+		private final Model model;
+		public final ArrayList<DataSet> updates = new ArrayList<DataSet>();
+		
+		public FixedModel(Model model)
+		{
+			this.model = model;
+		}
+		
+		public void updateModel(DataSet newData)
+		{
+			updates.add(newData);
+		}
+		
+		public void buildModel(ModelParameters modelParameters)
+		{
+		}
+		
+		public double getTargetValue(double[] record) throws Exception
+		{
+			return model.getTargetValue(record);
+		}
+		
+		public double[] getTargetDistribution(double[] record) throws Exception
+		{
+			return model.getTargetDistribution(record);
+		}
+		
+		public ModelType getModelType()
+		{
+			return model.getModelType();
+		}
+		
+		public void setData(IDataSet data)
+		{
+		}
+	}
+	
+	@Test
+	public void testLinearRegressionUpdateMatchesBuild() throws Exception
+	{
+		File folder = saveFixedModels(new ModelType[]{ModelType.NaiveBayesian, ModelType.RandomTree, ModelType.RandomTree});
+		try
+		{
+			Model updated = createEnsemble(ModelType.LinearRegression, a, new BaseClassifierSet(folder.getPath()), "SameTrainingSet");
+			((UpdateableModel)updated).updateModel(b);
+			Model built = createEnsemble(ModelType.LinearRegression, all, new BaseClassifierSet(folder.getPath()), "SameTrainingSet");
+			
+			//the weights solved from the kept products are the weights
+			//solved from all of the design rows at once
+			for(double[] record : base.records)
+				Assert.assertArrayEquals(built.getTargetDistribution(record), updated.getTargetDistribution(record), 1e-9);
+		}
+		finally
+		{
+			deleteFolder(folder);
+		}
+	}
+	
+	@Test
+	public void testOnlineBagging() throws Exception
+	{
+		ModelType[] types = new ModelType[20];
+		Arrays.fill(types, ModelType.NaiveBayesian);
+		File folder = saveFixedModels(types);
+		try
+		{
+			EnsembleModel ensemble = (EnsembleModel)createEnsemble(ModelType.Voting, a, new BaseClassifierSet(folder.getPath()), "Bagging");
+			ensemble.updateModel(b);
+			
+			//each new instance is repeated a Poisson(1) number of times, so
+			//a member sees about as many instances as were added, and about
+			//1 - 1/e of them at least once
+			HashSet<double[]> added = new HashSet<double[]>(b.records);
+			double totalSize = 0;
+			double totalDistinct = 0;
+			HashSet<Integer> sizes = new HashSet<Integer>();
+			for(Model member : ensemble.getBaseClassifierModels())
+			{
+				ArrayList<DataSet> updates = ((FixedModel)member).updates;
+				Assert.assertEquals(1, updates.size());
+				List<double[]> bag = updates.get(0).records;
+				for(double[] record : bag)
+					Assert.assertTrue(added.contains(record));
+				totalSize += bag.size();
+				totalDistinct += new HashSet<double[]>(bag).size();
+				sizes.add(bag.size());
+			}
+			int numMembers = types.length;
+			Assert.assertEquals(1, totalSize/numMembers/b.records.size(), 0.05);
+			Assert.assertEquals(1 - Math.exp(-1), totalDistinct/numMembers/b.records.size(), 0.05);
+			Assert.assertTrue(sizes.size() > 1);
+		}
+		finally
+		{
+			deleteFolder(folder);
+		}
+	}
+	
+	@Test
+	public void testSharedMembersAreCopied() throws Exception
+	{
+		int capacity = ModelCache.getCapacity();
+		ModelCache.setCapacity(100);
+		ModelCache.clear();
+		try
+		{
+			BaseClassifierSet baseSet = createBaseClassifierSet();
+			EnsembleModel updated = (EnsembleModel)createEnsemble(ModelType.Voting, a, baseSet, "SameTrainingSet");
+			EnsembleModel other = (EnsembleModel)createEnsemble(ModelType.Voting, a, baseSet, "SameTrainingSet");
+			Model[] shared = other.getBaseClassifierModels().clone();
+			for(int i = 0; i < shared.length; i++)
+				Assert.assertSame(shared[i], updated.getBaseClassifierModels()[i]);
+			double[][] before = new ClassifiedDataSet(base, other).predictedDistributions;
+			
+			updated.updateModel(b);
+			
+			//the ensemble sharing the cached members is left as it was
+			for(int i = 0; i < shared.length; i++)
+			{
+				Assert.assertSame(shared[i], other.getBaseClassifierModels()[i]);
+				Assert.assertNotSame(shared[i], updated.getBaseClassifierModels()[i]);
+			}
+			double[][] after = new ClassifiedDataSet(base, other).predictedDistributions;
+			for(int i = 0; i < before.length; i++)
+				Assert.assertArrayEquals(before[i], after[i], 0);
+			checkMembersMatchBuild(updated);
+		}
+		finally
+		{
+			ModelCache.setCapacity(capacity);
+		}
+	}
+	
+	@Test
+	public void testOnlyRetrainedMembersAreCompiled() throws Exception
+	{
+		Hashtable<String,String> parameters = new Hashtable<String,String>();
+		parameters.put("CompileTrees", "true");
+		EnsembleModel ensemble = (EnsembleModel)createEnsemble(ModelType.Voting, a, createBaseClassifierSet(), "SameTrainingSet", parameters);
+		Model bayes = ensemble.getBaseClassifierModels()[0];
+		Model tree = ensemble.getBaseClassifierModels()[1];
+		Assert.assertTrue(tree instanceof CompiledTreeEnsemble);
+		
+		ensemble.updateModel(b);
+		
+		//the naive Bayes member learns in place, the tree is trained again
+		//and compiled
+		Assert.assertSame(bayes, ensemble.getBaseClassifierModels()[0]);
+		Assert.assertNotSame(tree, ensemble.getBaseClassifierModels()[1]);
+		Assert.assertTrue(ensemble.getBaseClassifierModels()[1] instanceof CompiledTreeEnsemble);
+		checkMembersMatchBuild(ensemble);
+	}
+	
+	/**
+	 * Checks that the naive Bayes and random tree members of an ensemble
+	 * built on a and updated with b predict what they would if trained on
+	 * both.
+	 */
+	private static void checkMembersMatchBuild(EnsembleModel ensemble) throws Exception
+	{
+		BaseClassifierSet baseSet = createBaseClassifierSet();
+		ClassifierFactory factory = new ClassifierFactory(FrameworkType.hemlock, all);
+		for(int i = 0; i < baseSet.params.length; i++)
+		{
+			Model expected = factory.createModel(baseSet.params[i]);
+			Model member = ensemble.getBaseClassifierModels()[i];
+			for(double[] record : base.records)
+				Assert.assertArrayEquals(expected.getTargetDistribution(record), member.getTargetDistribution(record), 1e-9);
+		}
+	}
+	
+	private static BaseClassifierSet createBaseClassifierSet() throws Exception
+	{
+		Hashtable<String,String> params = new Hashtable<String,String>();
+		params.put("seed", "1");
+		return new BaseClassifierSet(new ModelParameters[]{
+			ModelParameters.createModelParameters(FrameworkType.hemlock, ModelType.NaiveBayesian, new Hashtable<String,String>()),
+			ModelParameters.createModelParameters(FrameworkType.hemlock, ModelType.RandomTree, params)});
+	}
+	
+	private static Model createEnsemble(ModelType type, DataSet data, BaseClassifierSet baseSet, String generation) throws Exception
+	{
+		return createEnsemble(type, data, baseSet, generation, new Hashtable<String,String>());
+	}
+	
+	private static Model createEnsemble(ModelType type, DataSet data, BaseClassifierSet baseSet, String generation,
+		Hashtable<String,String> parameters) throws Exception
+	{
+		parameters.put("EnsembleGeneration", generation);
+		parameters.put("seed", "1");
+		EnsembleParameters ensembleParams = (EnsembleParameters)ModelParameters.createModelParameters(
+			FrameworkType.hemlock, type, parameters);
+		ensembleParams.setBaseModelParameters(baseSet);
+		return new ClassifierFactory(FrameworkType.hemlock, data).createModel(ensembleParams);
+	}
+	
+	/**
+	 * Trains models of the given types on the base instances and saves
+	 * them, as fixed models, where an ensemble built on a loads them from.
+	 */
+	private static File saveFixedModels(ModelType[] types) throws Exception
+	{
+		File folder = new File(System.getProperty("java.io.tmpdir"), "hemlock-updating-" + System.nanoTime());
+		File modelFolder = new File(folder, a.info.dataSetName);
+		modelFolder.mkdirs();
+		ClassifierFactory factory = new ClassifierFactory(FrameworkType.hemlock, base);
+		for(int i = 0; i < types.length; i++)
+		{
+			Hashtable<String,String> params = new Hashtable<String,String>();
+			params.put("seed", "" + (i + 1));
+			Model model = factory.createModel(ModelParameters.createModelParameters(FrameworkType.hemlock, types[i], params));
+			ModelSerialization.serializeModel(new FixedModel(model), new File(modelFolder, i + ".model").getPath());
+		}
+		return folder;
+	}
+	
+	private static void deleteFolder(File folder)
+	{
+		for(File modelFolder : folder.listFiles())
+		{
+			for(File file : modelFolder.listFiles())
+				file.delete();
+			modelFolder.delete();
+		}
+		folder.delete();
+	}
+}